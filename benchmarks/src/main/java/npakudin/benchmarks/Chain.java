@@ -0,0 +1,33 @@
+package npakudin.benchmarks;
+
+/**
+ * Node of a long chain, the last node references the first one, as in CycleReference
+ */
+public class Chain {
+
+    private final int value;
+    private Chain next;
+
+    public Chain(int value) {
+        this.value = value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public Chain getNext() {
+        return next;
+    }
+
+    public static Chain of(int length, int lastValue) {
+        Chain first = new Chain(0);
+        Chain last = first;
+        for (int i = 1; i < length; i++) {
+            last.next = new Chain(i == length - 1 ? lastValue : i);
+            last = last.next;
+        }
+        last.next = first;
+        return first;
+    }
+}
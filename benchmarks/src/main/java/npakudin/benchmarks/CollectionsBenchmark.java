@@ -0,0 +1,70 @@
+package npakudin.benchmarks;
+
+import npakudin.DeepComparer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Large lists, maps and sets of small objects. Sets are compared regardless of order, their items are shuffled
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionsBenchmark {
+
+    @Param({ "list", "map", "set" })
+    public String collection;
+
+    @Param({ "100000" })
+    public int size;
+
+    @Param({ Inputs.EQUAL, Inputs.DIFFERENT_LATE })
+    public String input;
+
+    private DeepComparer comparer;
+    private Object expected;
+    private Object actual;
+
+    @Setup
+    public void setUp() {
+        comparer = DeepComparer.builder()
+                .unorderedTypes(Set.class)
+                .build();
+        expected = collection(items(size, false));
+        List<Item> actualItems = items(size, Inputs.isDifferent(input));
+        if ("set".equals(collection))
+            Collections.shuffle(actualItems, new Random(1));
+        actual = collection(actualItems);
+    }
+
+    private static List<Item> items(int size, boolean differentLast) {
+        List<Item> res = new ArrayList<Item>();
+        for (int i = 0; i < size; i++)
+            res.add(new Item(i, differentLast && i == size - 1 ? "different" : "item" + i));
+        return res;
+    }
+
+    private Object collection(List<Item> items) {
+        if ("list".equals(collection))
+            return items;
+        if ("set".equals(collection))
+            return new LinkedHashSet<Item>(items);
+        if ("map".equals(collection)) {
+            Map<Integer, Item> res = new HashMap<Integer, Item>();
+            for (Item item : items)
+                res.put(item.getId(), item);
+            return res;
+        }
+        throw new IllegalArgumentException(collection);
+    }
+
+    @Benchmark
+    public String compare() {
+        return comparer.findDifference(expected, actual);
+    }
+}
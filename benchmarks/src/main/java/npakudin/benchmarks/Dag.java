@@ -0,0 +1,44 @@
+package npakudin.benchmarks;
+
+/**
+ * Node of a graph, where both children of a node are the same object: it's a tree of 2^depth paths,
+ * but it has only depth + 1 objects
+ */
+public class Dag {
+
+    private final Dag left;
+    private final Dag right;
+    private final int value;
+
+    public Dag(Dag left, Dag right, int value) {
+        this.left = left;
+        this.right = right;
+        this.value = value;
+    }
+
+    public Dag getLeft() {
+        return left;
+    }
+
+    public Dag getRight() {
+        return right;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public static Dag of(int depth, int leafValue) {
+        Dag res = new Dag(null, null, leafValue);
+        for (int i = 0; i < depth; i++)
+            res = new Dag(res, res, i);
+        return res;
+    }
+
+    /**
+     * Left subgraph is the same as in of(depth, leafValue), leaf of the right one is different
+     */
+    public static Dag differentOnTheRight(int depth, int leafValue) {
+        return new Dag(of(depth - 1, leafValue), of(depth - 1, leafValue + 1), depth - 1);
+    }
+}
@@ -0,0 +1,40 @@
+package npakudin.benchmarks;
+
+import npakudin.DeepComparer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long chain of objects with a cycle: depth of comparison is the length of the chain
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeepChainBenchmark {
+
+    @Param({ "100", "10000" })
+    public int length;
+
+    @Param({ Inputs.EQUAL, Inputs.DIFFERENT_LATE })
+    public String input;
+
+    private DeepComparer comparer;
+    private Chain expected;
+    private Chain actual;
+
+    @Setup
+    public void setUp() {
+        comparer = new DeepComparer();
+        expected = Chain.of(length, length - 1);
+        actual = Chain.of(length, Inputs.isDifferent(input) ? -1 : length - 1);
+    }
+
+    @Benchmark
+    public String compare() {
+        return comparer.findDifference(expected, actual);
+    }
+}
@@ -0,0 +1,52 @@
+package npakudin.benchmarks;
+
+import npakudin.DeepComparer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many exclude globs, which are matched against path of each node, and none of them excludes anything
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExcludePathsBenchmark {
+
+    @Param({ "0", "200" })
+    public int excludePaths;
+
+    @Param({ Inputs.EQUAL, Inputs.DIFFERENT_LATE })
+    public String input;
+
+    private DeepComparer comparer;
+    private List<WidePojo> expected;
+    private List<WidePojo> actual;
+
+    @Setup
+    public void setUp() {
+        String[] paths = new String[excludePaths];
+        for (int i = 0; i < paths.length; i++) {
+            switch (i % 4) {
+                case 0: paths[i] = "$root.[*].getValue" + i + "x"; break;
+                case 1: paths[i] = "$root.[" + i + "?].getName?"; break;
+                case 2: paths[i] = "$root.*.*.missing" + i; break;
+                default: paths[i] = "$root.[*].get*Value" + i; break;
+            }
+        }
+        comparer = DeepComparer.builder()
+                .excludePaths(paths)
+                .build();
+        expected = WidePojoBenchmark.pojos(1000, false);
+        actual = WidePojoBenchmark.pojos(1000, Inputs.isDifferent(input));
+    }
+
+    @Benchmark
+    public String compare() {
+        return comparer.findDifference(expected, actual);
+    }
+}
@@ -0,0 +1,62 @@
+package npakudin.benchmarks;
+
+import npakudin.DeepComparer;
+import npakudin.FloatTolerance;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Large arrays of doubles compared with tolerance, all items of actual differ from expected by rounding noise
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FloatToleranceBenchmark {
+
+    @Param({ "absolute", "relative", "ulps" })
+    public String tolerance;
+
+    @Param({ "1000000" })
+    public int size;
+
+    @Param({ Inputs.EQUAL, Inputs.DIFFERENT_LATE })
+    public String input;
+
+    private DeepComparer comparer;
+    private double[] expected;
+    private double[] actual;
+
+    @Setup
+    public void setUp() {
+        comparer = DeepComparer.builder()
+                .floatTolerance(tolerance())
+                .build();
+        expected = new double[size];
+        actual = new double[size];
+        for (int i = 0; i < size; i++) {
+            expected[i] = i * 0.1 + 1;
+            actual[i] = Math.nextUp(expected[i]);
+        }
+        if (Inputs.isDifferent(input))
+            actual[size - 1] = -1;
+    }
+
+    private FloatTolerance tolerance() {
+        if ("absolute".equals(tolerance))
+            return FloatTolerance.absolute(1e-9);
+        if ("relative".equals(tolerance))
+            return FloatTolerance.relative(1e-12);
+        if ("ulps".equals(tolerance))
+            return FloatTolerance.ulps(4);
+        throw new IllegalArgumentException(tolerance);
+    }
+
+    @Benchmark
+    public String compare() {
+        return comparer.findDifference(expected, actual);
+    }
+}
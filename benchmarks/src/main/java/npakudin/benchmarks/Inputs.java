@@ -0,0 +1,22 @@
+package npakudin.benchmarks;
+
+/**
+ * Pairs of compared graphs: equal ones are compared completely,
+ * late difference is found after almost all nodes are compared
+ */
+public final class Inputs {
+
+    public static final String EQUAL = "equal";
+    public static final String DIFFERENT_LATE = "differentLate";
+
+    private Inputs() {
+    }
+
+    public static boolean isDifferent(String input) {
+        if (EQUAL.equals(input))
+            return false;
+        if (DIFFERENT_LATE.equals(input))
+            return true;
+        throw new IllegalArgumentException(input);
+    }
+}
@@ -0,0 +1,63 @@
+package npakudin.benchmarks;
+
+import npakudin.DeepComparer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Large arrays of primitives, they must be compared without boxing
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveArraysBenchmark {
+
+    @Param({ "int", "double" })
+    public String type;
+
+    @Param({ "1000000" })
+    public int size;
+
+    @Param({ Inputs.EQUAL, Inputs.DIFFERENT_LATE })
+    public String input;
+
+    private DeepComparer comparer;
+    private Object expected;
+    private Object actual;
+
+    @Setup
+    public void setUp() {
+        comparer = new DeepComparer();
+        expected = array(false);
+        actual = array(Inputs.isDifferent(input));
+    }
+
+    private Object array(boolean differentLast) {
+        if ("int".equals(type)) {
+            int[] res = new int[size];
+            for (int i = 0; i < size; i++)
+                res[i] = i;
+            if (differentLast)
+                res[size - 1] = -1;
+            return res;
+        }
+        if ("double".equals(type)) {
+            double[] res = new double[size];
+            for (int i = 0; i < size; i++)
+                res[i] = i * 0.5;
+            if (differentLast)
+                res[size - 1] = -1;
+            return res;
+        }
+        throw new IllegalArgumentException(type);
+    }
+
+    @Benchmark
+    public String compare() {
+        return comparer.findDifference(expected, actual);
+    }
+}
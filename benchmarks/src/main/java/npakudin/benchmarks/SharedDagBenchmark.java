@@ -0,0 +1,46 @@
+package npakudin.benchmarks;
+
+import npakudin.DeepComparer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Graph with shared subgraphs: without remembering equal pairs it's exponential,
+ * so depth is small enough to be compared both ways
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SharedDagBenchmark {
+
+    @Param({ "16" })
+    public int depth;
+
+    @Param({ "false", "true" })
+    public boolean rememberEqualPairs;
+
+    @Param({ Inputs.EQUAL, Inputs.DIFFERENT_LATE })
+    public String input;
+
+    private DeepComparer comparer;
+    private Dag expected;
+    private Dag actual;
+
+    @Setup
+    public void setUp() {
+        comparer = DeepComparer.builder()
+                .rememberEqualPairs(rememberEqualPairs)
+                .build();
+        expected = Dag.of(depth, 0);
+        actual = Inputs.isDifferent(input) ? Dag.differentOnTheRight(depth, 0) : Dag.of(depth, 0);
+    }
+
+    @Benchmark
+    public String compare() {
+        return comparer.findDifference(expected, actual);
+    }
+}
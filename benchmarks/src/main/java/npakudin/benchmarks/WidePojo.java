@@ -0,0 +1,181 @@
+package npakudin.benchmarks;
+
+/**
+ * Object with many getters, each of them is called by reflection
+ */
+public class WidePojo {
+
+    private final String name;
+    private final int value0;
+    private final int value1;
+    private final int value2;
+    private final int value3;
+    private final int value4;
+    private final int value5;
+    private final int value6;
+    private final int value7;
+    private final int value8;
+    private final int value9;
+    private final int value10;
+    private final int value11;
+    private final int value12;
+    private final int value13;
+    private final int value14;
+    private final int value15;
+    private final int value16;
+    private final int value17;
+    private final int value18;
+    private final int value19;
+    private final int value20;
+    private final int value21;
+    private final int value22;
+    private final int value23;
+    private final int value24;
+    private final int value25;
+    private final int value26;
+    private final int value27;
+    private final int value28;
+    private final int value29;
+    private final int value30;
+    private final int value31;
+
+    public WidePojo(int seed) {
+        this(seed, seed + 31);
+    }
+
+    public WidePojo(int seed, int lastValue) {
+        this.name = "pojo" + seed;
+        this.value0 = seed;
+        this.value1 = seed + 1;
+        this.value2 = seed + 2;
+        this.value3 = seed + 3;
+        this.value4 = seed + 4;
+        this.value5 = seed + 5;
+        this.value6 = seed + 6;
+        this.value7 = seed + 7;
+        this.value8 = seed + 8;
+        this.value9 = seed + 9;
+        this.value10 = seed + 10;
+        this.value11 = seed + 11;
+        this.value12 = seed + 12;
+        this.value13 = seed + 13;
+        this.value14 = seed + 14;
+        this.value15 = seed + 15;
+        this.value16 = seed + 16;
+        this.value17 = seed + 17;
+        this.value18 = seed + 18;
+        this.value19 = seed + 19;
+        this.value20 = seed + 20;
+        this.value21 = seed + 21;
+        this.value22 = seed + 22;
+        this.value23 = seed + 23;
+        this.value24 = seed + 24;
+        this.value25 = seed + 25;
+        this.value26 = seed + 26;
+        this.value27 = seed + 27;
+        this.value28 = seed + 28;
+        this.value29 = seed + 29;
+        this.value30 = seed + 30;
+        this.value31 = lastValue;
+    }
+
+    public String getName() {
+        return name;
+    }
+    public int getValue0() {
+        return value0;
+    }
+    public int getValue1() {
+        return value1;
+    }
+    public int getValue2() {
+        return value2;
+    }
+    public int getValue3() {
+        return value3;
+    }
+    public int getValue4() {
+        return value4;
+    }
+    public int getValue5() {
+        return value5;
+    }
+    public int getValue6() {
+        return value6;
+    }
+    public int getValue7() {
+        return value7;
+    }
+    public int getValue8() {
+        return value8;
+    }
+    public int getValue9() {
+        return value9;
+    }
+    public int getValue10() {
+        return value10;
+    }
+    public int getValue11() {
+        return value11;
+    }
+    public int getValue12() {
+        return value12;
+    }
+    public int getValue13() {
+        return value13;
+    }
+    public int getValue14() {
+        return value14;
+    }
+    public int getValue15() {
+        return value15;
+    }
+    public int getValue16() {
+        return value16;
+    }
+    public int getValue17() {
+        return value17;
+    }
+    public int getValue18() {
+        return value18;
+    }
+    public int getValue19() {
+        return value19;
+    }
+    public int getValue20() {
+        return value20;
+    }
+    public int getValue21() {
+        return value21;
+    }
+    public int getValue22() {
+        return value22;
+    }
+    public int getValue23() {
+        return value23;
+    }
+    public int getValue24() {
+        return value24;
+    }
+    public int getValue25() {
+        return value25;
+    }
+    public int getValue26() {
+        return value26;
+    }
+    public int getValue27() {
+        return value27;
+    }
+    public int getValue28() {
+        return value28;
+    }
+    public int getValue29() {
+        return value29;
+    }
+    public int getValue30() {
+        return value30;
+    }
+    public int getValue31() {
+        return value31;
+    }
+}
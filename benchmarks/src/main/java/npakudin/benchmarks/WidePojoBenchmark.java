@@ -0,0 +1,50 @@
+package npakudin.benchmarks;
+
+import npakudin.DeepComparer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * List of objects with many getters: cost of reflective calls and of primitive properties
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WidePojoBenchmark {
+
+    @Param({ "1000" })
+    public int size;
+
+    @Param({ Inputs.EQUAL, Inputs.DIFFERENT_LATE })
+    public String input;
+
+    private DeepComparer comparer;
+    private List<WidePojo> expected;
+    private List<WidePojo> actual;
+
+    @Setup
+    public void setUp() {
+        comparer = new DeepComparer();
+        expected = pojos(size, false);
+        actual = pojos(size, Inputs.isDifferent(input));
+    }
+
+    static List<WidePojo> pojos(int size, boolean differentLast) {
+        List<WidePojo> res = new ArrayList<WidePojo>();
+        for (int i = 0; i < size - 1; i++)
+            res.add(new WidePojo(i));
+        res.add(differentLast ? new WidePojo(size - 1, -1) : new WidePojo(size - 1));
+        return res;
+    }
+
+    @Benchmark
+    public String compare() {
+        return comparer.findDifference(expected, actual);
+    }
+}
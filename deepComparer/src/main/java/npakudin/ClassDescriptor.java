@@ -0,0 +1,188 @@
+package npakudin;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reflection data necessary for comparing objects of one class:
+ * kind of the class, whether it overrides equals, public fields and getters.
+ * Fields and getters are bound to properties once, see PropertyFactory.
+ * It's computed once per class and cached in ClassValue, so classes still can be unloaded.
+ */
+public class ClassDescriptor {
+
+    private static final ClassValue<ClassDescriptor> descriptors = new ClassValue<ClassDescriptor>() {
+        @Override
+        protected ClassDescriptor computeValue(Class<?> type) {
+            return new ClassDescriptor(type);
+        }
+    };
+
+    public static ClassDescriptor forClass(Class<?> clazz) {
+        return descriptors.get(clazz);
+    }
+
+    private final Class<?> clazz;
+    private final boolean isValueType;
+    private final boolean overridesEquals;
+    private final boolean overridesHashCode;
+    private final boolean isMap;
+    private final boolean isIterable;
+    private final boolean isArray;
+    private final boolean isPrimitiveArray;
+    private final Field[] fields;
+    private final Method[] getters;
+    private final Property[] properties;
+
+    private ClassDescriptor(Class<?> clazz) {
+        this.clazz = clazz;
+        this.isValueType = isValueType(clazz);
+        this.isMap = Map.class.isAssignableFrom(clazz);
+        this.isIterable = Iterable.class.isAssignableFrom(clazz);
+        this.isArray = clazz.isArray();
+        this.isPrimitiveArray = isArray && clazz.getComponentType().isPrimitive();
+        this.overridesEquals = !isValueType && overridesEquals(clazz, isMap || isIterable);
+        this.overridesHashCode = overridesEquals && declaresMethod(clazz, "hashCode");
+        this.fields = clazz.getFields();
+        this.getters = getGetters(clazz);
+        this.properties = getProperties(fields, getters, getGeneratedProperties(clazz));
+    }
+
+    private static boolean isValueType(Class<?> clazz) {
+        return clazz.isPrimitive() || clazz.isEnum() || clazz == String.class || clazz == Long.class
+                || clazz == Integer.class || clazz == Short.class || clazz == Byte.class || clazz == Double.class
+                || clazz == Float.class || clazz == Boolean.class || clazz == Character.class;
+    }
+
+    private static boolean overridesEquals(Class<?> clazz, boolean isContainer) {
+        if (!declaresMethod(clazz, "equals", Object.class))
+            return false;
+        // JDK collections and maps are compared item-by-item even if they declare equals
+        // (newer JDKs declare it in ArrayList, and it loops infinitely on self-referencing lists)
+        return !(isContainer && clazz.getName().startsWith("java."));
+    }
+
+    private static boolean declaresMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            clazz.getDeclaredMethod(name, parameterTypes); // throws exception if no method
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static Method[] getGetters(Class<?> clazz) {
+        List<Method> res = new ArrayList<Method>();
+        for (Method method : clazz.getMethods()) {
+            // of course, it's some dirty, but for small and medium projects is OK
+            if (!method.getName().startsWith("get") || method.getParameterTypes().length != 0)
+                continue;
+            // classes of compared objects are already checked
+            if (method.getName().equals("getClass"))
+                continue;
+            res.add(method);
+        }
+        return res.toArray(new Method[res.size()]);
+    }
+
+    /**
+     * Properties of comparator generated for class with DeepComparable, by their names
+     */
+    private static Map<String, Property> getGeneratedProperties(Class<?> clazz) {
+        Map<String, Property> res = new HashMap<String, Property>();
+        if (!clazz.isAnnotationPresent(DeepComparable.class))
+            return res;
+        try {
+            Class<?> comparatorClass = Class.forName(clazz.getName() + GeneratedComparator.SUFFIX, true, clazz.getClassLoader());
+            GeneratedComparator comparator = (GeneratedComparator) comparatorClass.getConstructor().newInstance();
+            for (Property property : comparator.getProperties())
+                res.put(property.getName(), property);
+        } catch (ReflectiveOperationException e) {
+            // comparator is not generated, reflection is used
+        }
+        return res;
+    }
+
+    /**
+     * Generated properties are used in the same order as reflective ones would be, so results are the same.
+     * Members which are not generated (e.g. comparator is out of date) are read by reflection.
+     */
+    private static Property[] getProperties(Field[] fields, Method[] getters, Map<String, Property> generated) {
+        Property[] res = new Property[fields.length + getters.length];
+        for (int i = 0; i < fields.length; i++) {
+            Property property = generated.get(fields[i].getName());
+            res[i] = property != null ? property : PropertyFactory.forField(fields[i]);
+        }
+        for (int i = 0; i < getters.length; i++) {
+            Property property = generated.get(getters[i].getName());
+            res[fields.length + i] = property != null ? property : PropertyFactory.forGetter(getters[i]);
+        }
+        return res;
+    }
+
+    public Class<?> getDescribedClass() {
+        return clazz;
+    }
+
+    /**
+     * Primitives, their wrappers, strings and enums - they are compared by equals
+     */
+    public boolean isValueType() {
+        return isValueType;
+    }
+
+    /**
+     * Class declares its own equals, so it's used for comparing instead of fields and getters
+     */
+    public boolean overridesEquals() {
+        return overridesEquals;
+    }
+
+    /**
+     * Class declares both equals and hashCode, so hashCode is consistent with comparing
+     */
+    public boolean overridesHashCode() {
+        return overridesHashCode;
+    }
+
+    public boolean isMap() {
+        return isMap;
+    }
+
+    public boolean isIterable() {
+        return isIterable;
+    }
+
+    public boolean isArray() {
+        return isArray;
+    }
+
+    public boolean isPrimitiveArray() {
+        return isPrimitiveArray;
+    }
+
+    /**
+     * All public fields, in order of Class.getFields()
+     */
+    public Field[] getFields() {
+        return fields;
+    }
+
+    /**
+     * All public "get*" methods without parameters, in order of Class.getMethods()
+     */
+    public Method[] getGetters() {
+        return getters;
+    }
+
+    /**
+     * Fields and then getters, in the order they are compared
+     */
+    public Property[] getProperties() {
+        return properties;
+    }
+}
@@ -0,0 +1,1391 @@
+package npakudin;
+
+import npakudin.common.Arrays2;
+import npakudin.common.IdentityPairMap;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of one comparison: stack of compared pairs, pairs on the current path (for cycle detection)
+ * and, optionally, pairs which are already proven to be equal.
+ * It's not thread-safe, DeepComparer keeps idle comparisons and gives each call its own one,
+ * state is cleared after each call, so compared objects are not kept.
+ *
+ * Comparison is not recursive: it has its own stack of frames, so depth of graph is limited by heap only.
+ * Frames are reused, each depth of the stack has one frame.
+ * Objects are compared in the same order as by recursive algorithm: the first difference is the same.
+ *
+ * If pool is set, children of wide nodes (at least parallelThreshold of them) are split into chunks,
+ * each chunk is compared by its own Comparison in the pool. Chunk engine gets copy of the path above the node,
+ * so cycles and exclude paths are handled as in sequential comparison.
+ * If chunk finds difference, chunks after it are cancelled, chunks before it are finished:
+ * the first difference in order of children is reported, it's the same as sequential one.
+ *
+ * Differences are passed to listener: different node is not compared by its children,
+ * comparison goes on with the next node, until listener stops it.
+ * Only comparison for the first difference can be parallel, with listener it's sequential.
+ *
+ * Unordered iterables are matched before their children are compared: items are split into buckets by DeepHasher,
+ * and item of expected is matched with equal item of actual from its bucket, equality is checked by trial comparison.
+ * Only unmatched items are compared as children.
+ *
+ * Aligned lists are aligned by ListAligner over DeepHasher hashes of items before their children are compared:
+ * aligned items are compared with each other, between them deleted and inserted items are paired up and compared,
+ * the rest are reported as deleted or inserted.
+ *
+ * Sorted maps with the same comparator are compared by merge-join of their entries.
+ * Other maps are compared by lookups of expected keys, if key without equals is not found,
+ * it's matched with equal key of actual in the same way as items of unordered iterables.
+ */
+public class Comparison {
+
+    private static final int EQUAL = 0;
+    private static final int DIFFERENT = 1;
+    private static final int DESCEND = 2;
+    private static final int CANCELLED = 3;
+
+    // each worker gets a few chunks, so workers which finish earlier can steal the rest
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    // comparison whose stack or maps grew larger is not kept idle, as they are not shrunk
+    private static final int MAX_REUSED_DEPTH = 1 << 10;
+    private static final int MAX_REUSED_CAPACITY = 1 << 12;
+
+    // nodesLeft of comparison, which exceeded its budget
+    private static final long STOPPED = -2;
+    // chunks of parallel comparison take nodes from the shared pool by portions
+    private static final long NODES_PORTION = 256;
+
+    // marks item of unordered iterable without pair
+    private static final Object MISSING = new Object();
+
+    // trial comparison stops at the first difference
+    private static final DifferenceListener STOP = new DifferenceListener() {
+        @Override
+        public boolean onDifference(StackEntry entry, DifferenceKind kind, Object expected, Object actual) {
+            return false;
+        }
+    };
+
+    private final DeepComparer settings;
+    private final ExcludeMatcher matcher;
+    private final ExcludeMatcher unorderedMatcher;
+    private final ExcludeMatcher alignedMatcher;
+    private final boolean checkIterableTypesStrictly;
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+    private final long maxNodes;
+    private final int maxDepth;
+    private final long maxNanos;
+    private final int maxValueLength;
+    // null if there are no value comparators
+    private final ValueComparatorRegistry valueComparators;
+    // tolerances of unboxed doubles and floats, null if they are compared exactly or by value comparators
+    private final FloatTolerance doubleTolerance;
+    private final FloatTolerance floatTolerance;
+
+    // split and index of the chunk which is compared by this comparison, null for the main comparison
+    private final Split split;
+    private final int chunk;
+
+    private Frame[] frames = new Frame[16];
+    private int depth;
+    private DifferenceListener listener;
+    // it's set if only the first difference is collected, then children of wide nodes can be compared in parallel
+    private DifferenceCollector firstDifference;
+    private int differenceCount;
+
+    // pairs of objects on the current path, with their depths
+    private final IdentityPairMap ancestors = new IdentityPairMap();
+    // pairs which are already proven to be equal, null if they are not remembered
+    private final IdentityPairMap equalPairs;
+    // pairs which are proven to be equal by previous comparisons, null if there is no cache
+    private final EqualityCache cache;
+    // number of compared pairs
+    private int nodeCount;
+    // the smallest depth of ancestor, which closed a cycle in the current subtree
+    private int minCycleDepth = Integer.MAX_VALUE;
+    // budget of the call, it's shared with trials and chunks
+    private long nodesLeft;
+    private long startNanos;
+    // nodes which are not taken by comparisons yet, it's created for parallel comparison with limited number of nodes
+    private AtomicLong nodePool;
+    // limit which is exceeded, it's null until then
+    private String exceededLimit;
+    private Object exceededValue;
+
+    // shared stats of comparer and counters of this comparison, they are null if stats are not collected
+    private final ComparisonStats stats;
+    private final ComparisonStats counters;
+
+    // comparison for matching items of unordered iterables, it's created when it's necessary
+    private Comparison trials;
+    private Frame trialFrame;
+    private DeepHasher hasher;
+    private ListAligner aligner;
+
+    public Comparison(DeepComparer settings) {
+        this(settings, null, 0);
+    }
+
+    private Comparison(DeepComparer settings, Split split, int chunk) {
+        this.settings = settings;
+        this.matcher = settings.getExcludeMatcher();
+        this.unorderedMatcher = settings.getUnorderedMatcher();
+        this.alignedMatcher = settings.getAlignedMatcher();
+        this.checkIterableTypesStrictly = settings.isCheckIterableTypesStrictly();
+        this.equalPairs = settings.isRememberEqualPairs() ? new IdentityPairMap() : null;
+        this.cache = settings.getEqualityCache();
+        this.pool = settings.getForkJoinPool();
+        this.parallelThreshold = settings.getParallelThreshold();
+        this.maxNodes = settings.getMaxNodes();
+        this.maxDepth = settings.getMaxDepth();
+        this.maxNanos = settings.getMaxTime(TimeUnit.NANOSECONDS);
+        this.maxValueLength = settings.getMaxValueLength();
+        this.valueComparators = settings.getValueComparatorRegistry();
+        this.doubleTolerance = settings.getToleranceFor(double.class);
+        this.floatTolerance = settings.getToleranceFor(float.class);
+        this.stats = settings.getStats();
+        this.counters = stats == null ? null : new ComparisonStats();
+        this.split = split;
+        this.chunk = chunk;
+    }
+
+    /**
+     * @return null if items are equal, otherwise string with error
+     */
+    public String compare(Object expected, Object actual) {
+        DifferenceCollector collector = new DifferenceCollector(1, maxValueLength);
+        firstDifference = collector;
+        compare(expected, actual, collector);
+        Differences res = collector.getDifferences();
+        return res.isEmpty() ? null : res.getItems().get(0).getMessage();
+    }
+
+    /**
+     * Collects differences until their number reaches maxDifferences
+     */
+    public Differences compareAll(Object expected, Object actual, int maxDifferences) {
+        DifferenceCollector collector = new DifferenceCollector(maxDifferences, maxValueLength);
+        compare(expected, actual, collector);
+        return collector.getDifferences();
+    }
+
+    /**
+     * Passes differences to listener until it stops comparison
+     * @return true if objects are equal
+     */
+    public boolean compare(Object expected, Object actual, DifferenceListener listener) {
+        this.listener = listener;
+        Frame root = frame(0);
+        root.set("$root", expected, actual);
+        nodesLeft = maxNodes;
+        startNanos = System.nanoTime();
+        nodePool = null;
+        exceededLimit = null;
+        try {
+            if (enter(root) == DESCEND)
+                run(0);
+            return differenceCount == 0;
+        } finally {
+            if (stats != null) {
+                counters.addCall(System.nanoTime() - startNanos);
+                flushStats();
+            }
+            clear();
+        }
+    }
+
+    /**
+     * Main loop: takes next child of the top frame and compares it.
+     * If child is compared by its children, it's pushed to the stack.
+     * @param bottom depth of the entered frame, loop ends when it's left
+     * @return EQUAL, DIFFERENT or CANCELLED
+     */
+    private int run(int bottom) {
+        depth = bottom + 1;
+        while (depth > bottom) {
+            if (split != null && isCancelled())
+                return CANCELLED;
+
+            Frame frame = frames[depth - 1];
+            Frame child = frame(depth);
+
+            int res = nextChild(frame, child);
+            if (res == DIFFERENT)
+                return res;
+            if (res == EQUAL) {
+                // all children are equal
+                leave(frame);
+                depth--;
+                continue;
+            }
+
+            res = enter(child);
+            if (res == DESCEND)
+                depth++;
+            else if (res != EQUAL)
+                return res;
+        }
+        return EQUAL;
+    }
+
+    /**
+     * Compares pair of the frame without its children.
+     * @return EQUAL or DIFFERENT if result is known, DESCEND if children must be compared,
+     * CANCELLED if children were compared in parallel and comparison is cancelled
+     */
+    private int enter(Frame frame) {
+        nodeCount++;
+        Object expected = frame.getExpected();
+        Object actual = frame.getActual();
+        Frame parent = (Frame) frame.getParent();
+        // time is checked once per 1024 nodes
+        if ((--nodesLeft < 0 && !takeNodes()) || frame.getDepth() > maxDepth ||
+                ((nodesLeft & 1023) == 0 && maxNanos != Long.MAX_VALUE && System.nanoTime() - startNanos > maxNanos))
+            return exceedBudget(frame);
+        if (counters != null) {
+            counters.nodes++;
+            counters.maxDepth = Math.max(counters.maxDepth, frame.getDepth());
+        }
+
+        // do not check this path
+        ExcludeMatcher.State excludeState = step(matcher,
+                parent == null ? matcher.getInitialState() : parent.excludeState, frame);
+        if (excludeState.isExcluded())
+            return EQUAL;
+
+
+        // Obvious checks
+        {
+            if (expected == actual) return EQUAL;
+
+            if (expected == null)
+                return difference(frame, DifferenceKind.EXPECTED_NULL, expected, actual);
+            if (actual == null)
+                return difference(frame, DifferenceKind.ACTUAL_NULL, expected, actual);
+
+            if (expected.getClass() != actual.getClass() &&
+                    (checkIterableTypesStrictly || !(expected instanceof Iterable && actual instanceof Iterable))) {
+                // if expected is Iterable, then we can compare items only, without details of collection type
+                // else - return error
+                return difference(frame, DifferenceKind.TYPE, expected, actual);
+            }
+        }
+        ClassDescriptor descriptor = ClassDescriptor.forClass(expected.getClass());
+        if (counters != null)
+            counters.visit(expected.getClass(), 1);
+
+        // custom comparison of the type goes before equals and properties
+        if (valueComparators != null) {
+            ValueComparator<Object> comparator = valueComparators.get(expected.getClass());
+            if (comparator != null)
+                return comparator.areEqual(expected, actual) ? EQUAL : difference(frame, DifferenceKind.VALUE, expected, actual);
+        }
+
+        // If primitive type
+        if (descriptor.isValueType()) {
+            return expected.equals(actual) ? EQUAL : difference(frame, DifferenceKind.VALUE, expected, actual);
+        }
+
+        // If object A references to A, and object B references to B, then true.
+        int ancestorDepth = ancestors.get(expected, actual);
+        if (ancestorDepth >= 0) {
+            if (counters != null)
+                counters.cycleHits++;
+            minCycleDepth = Math.min(minCycleDepth, ancestorDepth);
+            return EQUAL;
+        }
+
+        // if class overrides method equals - use it
+        if (descriptor.overridesEquals()) {
+            return expected.equals(actual) ? EQUAL : difference(frame, DifferenceKind.VALUE, expected, actual);
+        }
+
+        // equality of pair does not depend on path, if no exclude or unordered path can match below
+        ExcludeMatcher.State unorderedState = step(unorderedMatcher,
+                parent == null ? unorderedMatcher.getInitialState() : parent.unorderedState, frame);
+        boolean memoize = (equalPairs != null || cache != null) && excludeState.isDead() && unorderedState.isDead();
+        if (memoize) {
+            if (equalPairs != null && equalPairs.containsKey(expected, actual))
+                return EQUAL;
+            if (cache != null && cache.contains(expected, actual))
+                return EQUAL;
+        }
+
+        ExcludeMatcher.State alignedState = step(alignedMatcher,
+                parent == null ? alignedMatcher.getInitialState() : parent.alignedState, frame);
+        int res = frame.start(descriptor, excludeState, unorderedState, alignedState);
+        if (res != DESCEND)
+            return res;
+
+        frame.memoize = memoize;
+        frame.nodeCount = nodeCount;
+        frame.differenceCount = differenceCount;
+        frame.parentMinCycleDepth = minCycleDepth;
+        minCycleDepth = Integer.MAX_VALUE;
+        ancestors.put(expected, actual, frame.getDepth());
+
+        if (frame.kind == Frame.UNORDERED) {
+            res = matchUnordered(frame);
+            if (res != DESCEND)
+                return res;
+        }
+
+        // wide node: its children are compared in parallel
+        if (pool != null && firstDifference != null && frame.getChildCount() >= parallelThreshold) {
+            res = compareInParallel(frame);
+            if (res == EQUAL)
+                leave(frame);
+            return res;
+        }
+        return DESCEND;
+    }
+
+    /**
+     * All children of the frame are equal
+     */
+    private void leave(Frame frame) {
+        Object expected = frame.getExpected();
+        Object actual = frame.getActual();
+        ancestors.remove(expected, actual);
+
+        // if some cycle in subtree goes above this frame, its equality depends on pairs which are not checked yet
+        // subtree with collected differences is not equal
+        if (frame.memoize && minCycleDepth >= frame.getDepth() && differenceCount == frame.differenceCount) {
+            if (equalPairs != null)
+                equalPairs.put(expected, actual, frame.getDepth());
+            if (cache != null && nodeCount - frame.nodeCount >= cache.getMinSubtreeSize())
+                cache.put(expected, actual);
+        }
+        minCycleDepth = Math.min(frame.parentMinCycleDepth, minCycleDepth);
+
+        frame.clear();
+    }
+
+    /**
+     * Sets the next pair of children of the frame to child frame.
+     * @return DESCEND if child is set, EQUAL if there are no more children, DIFFERENT if children are different
+     */
+    private int nextChild(Frame frame, Frame child) {
+        Object expected = frame.getExpected();
+        Object actual = frame.getActual();
+
+        switch (frame.kind) {
+            case Frame.PROPERTIES: {
+                // loop at all public fields and getters
+                Property[] properties = frame.properties;
+                while (frame.position < properties.length) {
+                    Property property = properties[frame.position++];
+                    // primitives are compared directly, without boxing
+                    // if they are different, child frame makes error message
+                    if (property.isPrimitive() && frame.excludeState.isDead()) {
+                        countPropertyReads();
+                        if (primitiveEquals(property, expected, actual))
+                            continue;
+                    }
+
+                    countPropertyReads();
+                    child.set(property.getName(), property.get(expected), property.get(actual));
+                    return DESCEND;
+                }
+                return EQUAL;
+            }
+            case Frame.MAP: {
+                // check key-by-key
+                while (frame.expectedIterator.hasNext()) {
+                    Map.Entry entry = (Map.Entry) frame.expectedIterator.next();
+                    Object actualValue = lookup(frame, entry.getKey());
+                    if (actualValue == MISSING) {
+                        // trials can run out of budget before equal key is found
+                        if (exceededLimit != null)
+                            return exceedBudget(frame);
+                        if (difference(frame, DifferenceKind.MISSING_KEY, entry.getKey(), null) == DIFFERENT)
+                            return DIFFERENT;
+                        continue;
+                    }
+
+                    child.setKey(entry.getKey(), entry.getValue(), actualValue);
+                    return DESCEND;
+                }
+                return EQUAL;
+            }
+            case Frame.SORTED_MAP: {
+                // both iterators are in order of keys, actual keys which are less than expected one are extra
+                Comparator comparator = ((SortedMap) expected).comparator();
+                while (frame.expectedIterator.hasNext()) {
+                    Map.Entry entry = (Map.Entry) frame.expectedIterator.next();
+                    int cmp = 1;
+                    while (frame.actualEntry != null
+                            && (cmp = compareKeys(comparator, frame.actualEntry.getKey(), entry.getKey())) < 0)
+                        frame.nextActualEntry();
+
+                    if (cmp != 0) {
+                        if (difference(frame, DifferenceKind.MISSING_KEY, entry.getKey(), null) == DIFFERENT)
+                            return DIFFERENT;
+                        continue;
+                    }
+
+                    child.setKey(entry.getKey(), entry.getValue(), frame.actualEntry.getValue());
+                    frame.nextActualEntry();
+                    return DESCEND;
+                }
+                return EQUAL;
+            }
+            case Frame.ITERABLE: {
+                // check item-by-item
+                boolean expectedMove = frame.expectedIterator.hasNext();
+                boolean actualMove = frame.actualIterator.hasNext();
+                if (expectedMove && actualMove) {
+                    child.setIndex(frame.position++, frame.expectedIterator.next(), frame.actualIterator.next());
+                    return DESCEND;
+                }
+
+                // If there are no items in one collection and there are in other, return false
+                int index = frame.position;
+                if (expectedMove)
+                    return difference(frame, DifferenceKind.EXPECTED_LONGER, index, index);
+                if (actualMove)
+                    return difference(frame, DifferenceKind.ACTUAL_LONGER, index, index);
+                return EQUAL;
+            }
+            case Frame.ARRAY: {
+                // arrays of objects are compared in place, item-by-item
+                Object[] expectedArray = (Object[]) expected;
+                Object[] actualArray = (Object[]) actual;
+                if (frame.position == expectedArray.length)
+                    return EQUAL;
+
+                int index = frame.position++;
+                child.setIndex(index, expectedArray[index], actualArray[index]);
+                return DESCEND;
+            }
+            case Frame.PRIMITIVE_ARRAY: {
+                // equal items are skipped without boxing, only different items are compared by child frames
+                // (child frame makes error message or skips item, if its path is excluded)
+                int index = mismatch(expected, actual, frame.position);
+                if (index < 0)
+                    return EQUAL;
+
+                frame.position = index + 1;
+                child.setIndex(index, Array.get(expected, index), Array.get(actual, index));
+                return DESCEND;
+            }
+            case Frame.ALIGNED: {
+                // position - the next item of expected, actualPosition - the next item of actual
+                Object[] expectedItems = frame.expectedItems;
+                Object[] actualItems = frame.actualItems;
+                int[] alignment = frame.alignment;
+                while (frame.position < expectedItems.length || frame.actualPosition < actualItems.length) {
+                    int i = frame.position;
+                    int j = frame.actualPosition;
+                    if (frame.nextAligned < i) {
+                        frame.nextAligned = i;
+                        while (frame.nextAligned < expectedItems.length && alignment[frame.nextAligned] < 0)
+                            frame.nextAligned++;
+                    }
+                    int deleted = frame.nextAligned - i;
+                    int inserted = (frame.nextAligned < expectedItems.length ? alignment[frame.nextAligned] : actualItems.length) - j;
+
+                    // aligned pair or deleted item replaced by inserted one
+                    if ((deleted > 0) == (inserted > 0)) {
+                        frame.position++;
+                        frame.actualPosition++;
+                        child.setIndex(i, expectedItems[i], actualItems[j]);
+                        return DESCEND;
+                    }
+                    if (deleted > 0) {
+                        frame.position++;
+                        child.setIndex(i, expectedItems[i], null);
+                        if (difference(child, DifferenceKind.ITEM_DELETED, expectedItems[i], null) == DIFFERENT)
+                            return DIFFERENT;
+                    } else {
+                        frame.actualPosition++;
+                        child.setIndex(j, null, actualItems[j]);
+                        if (difference(child, DifferenceKind.ITEM_INSERTED, null, actualItems[j]) == DIFFERENT)
+                            return DIFFERENT;
+                    }
+                }
+                return EQUAL;
+            }
+            case Frame.UNORDERED: {
+                // matched items are equal, each unmatched item is compared with unmatched item of its bucket, if any
+                while (frame.position < frame.pairCount) {
+                    int index = frame.pairIndexes[frame.position];
+                    Object actualItem = frame.pairItems[frame.position++];
+                    if (actualItem != MISSING) {
+                        child.setIndex(index, frame.expectedItems[index], actualItem);
+                        return DESCEND;
+                    }
+
+                    child.setIndex(index, frame.expectedItems[index], null);
+                    if (difference(child, DifferenceKind.MISSING_ITEM, frame.expectedItems[index], null) == DIFFERENT)
+                        return DIFFERENT;
+                }
+                return EQUAL;
+            }
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Aligns items of the frame by their hashes.
+     * If exclude path can match items or there are too many edits, items are aligned by indexes.
+     * @return DESCEND or result of difference(...) if items are aligned by indexes and sizes are different
+     */
+    private int alignItems(Frame frame) {
+        Object[] expectedItems = frame.expectedItems;
+        Object[] actualItems = frame.actualItems;
+        int[] alignment = null;
+        if (frame.excludeState.isDead()) {
+            if (hasher == null)
+                hasher = new DeepHasher(DeepHasher.DEFAULT_MAX_DEPTH, valueComparators);
+            if (aligner == null)
+                aligner = new ListAligner(settings.getMaxAlignmentEdits());
+            alignment = aligner.align(hashes(expectedItems), hashes(actualItems));
+        }
+
+        if (alignment == null) {
+            if (expectedItems.length != actualItems.length)
+                return difference(frame, DifferenceKind.SIZE, expectedItems.length, actualItems.length);
+            alignment = new int[expectedItems.length];
+            for (int i = 0; i < alignment.length; i++)
+                alignment[i] = i;
+        }
+        frame.alignment = alignment;
+        return DESCEND;
+    }
+
+    private int[] hashes(Object[] items) {
+        int[] res = new int[items.length];
+        for (int i = 0; i < items.length; i++)
+            res[i] = hasher.hash(items[i]);
+        return res;
+    }
+
+    /**
+     * Matches items of unordered iterable, unmatched items are set to pairs of the frame
+     * @return DESCEND or result of exceedBudget(...) if trials run out of budget
+     */
+    private int matchUnordered(Frame frame) {
+        Object[] expectedItems = frame.expectedItems;
+        Object[] actualItems = frame.actualItems;
+        int count = expectedItems.length;
+
+        // if exclude path can match items, hashes can be different for equal items, so all items are in one bucket
+        boolean hashed = frame.excludeState.isDead();
+        if (hashed && hasher == null)
+            hasher = new DeepHasher(DeepHasher.DEFAULT_MAX_DEPTH, valueComparators);
+
+        // actual items are sorted by bucket: hash in high bits, index in low bits
+        long[] buckets = new long[count];
+        for (int i = 0; i < count; i++)
+            buckets[i] = ((long) (hashed ? hasher.hash(actualItems[i]) : 0) << 32) | i;
+        Arrays.sort(buckets);
+
+        if (trials == null)
+            trials = new Comparison(settings, null, 0);
+        trials.prepareTrials(frame, this);
+
+        boolean[] matched = new boolean[count];
+        int[] hashes = new int[count];
+        int[] unmatchedIndexes = new int[count];
+        int unmatched = 0;
+        for (int i = 0; i < count && trials.exceededLimit == null; i++) {
+            int hash = hashes[i] = hashed ? hasher.hash(expectedItems[i]) : 0;
+            boolean found = false;
+            for (int j = bucketStart(buckets, hash); j < count && (int) (buckets[j] >> 32) == hash && !found; j++) {
+                if (matched[j])
+                    continue;
+                trials.trialChild().setIndex(i, expectedItems[i], actualItems[(int) buckets[j]]);
+                if (trials.trial() == EQUAL)
+                    found = matched[j] = true;
+            }
+            if (!found)
+                unmatchedIndexes[unmatched++] = i;
+        }
+        minCycleDepth = Math.min(minCycleDepth, trials.minCycleDepth);
+        takeBudget(trials);
+        trials.clear();
+        // items which are not tried can't be paired
+        if (exceededLimit != null)
+            return exceedBudget(frame);
+
+        // unmatched items of expected, in their order
+        frame.pairCount = unmatched;
+        frame.pairIndexes = new int[unmatched];
+        frame.pairItems = new Object[unmatched];
+        for (int k = 0; k < unmatched; k++) {
+            int i = unmatchedIndexes[k];
+            int hash = hashes[i];
+            frame.pairIndexes[k] = i;
+            frame.pairItems[k] = MISSING;
+            for (int j = bucketStart(buckets, hash); j < count && (int) (buckets[j] >> 32) == hash; j++) {
+                if (!matched[j]) {
+                    matched[j] = true;
+                    frame.pairItems[k] = actualItems[(int) buckets[j]];
+                    break;
+                }
+            }
+        }
+        return DESCEND;
+    }
+
+    /**
+     * Finds value of actual map for key of expected one
+     * @return value or MISSING, if key is not found or trials exceeded budget
+     */
+    private Object lookup(Frame frame, Object key) {
+        Map actualMap = (Map) frame.getActual();
+        Object res = actualMap.get(key);
+        if (res != null || actualMap.containsKey(key))
+            return res;
+
+        // key without equals can be found by identity only, so look for equal key
+        if (key == null || !isMatchedByTrials(key))
+            return MISSING;
+        if (frame.keyBuckets == null)
+            indexKeys(frame);
+
+        if (hasher == null)
+            hasher = new DeepHasher(DeepHasher.DEFAULT_MAX_DEPTH, valueComparators);
+        if (trials == null)
+            trials = new Comparison(settings, null, 0);
+
+        int hash = frame.hashedKeys ? hasher.hash(key) : 0;
+        long[] buckets = frame.keyBuckets;
+        // index is shared by chunks of parallel comparison
+        synchronized (frame.matchedKeys) {
+            trials.prepareTrials(frame, this);
+            try {
+                for (int j = bucketStart(buckets, hash); j < buckets.length && (int) (buckets[j] >> 32) == hash
+                        && trials.exceededLimit == null; j++) {
+                    if (frame.matchedKeys[j])
+                        continue;
+                    Object actualKey = frame.actualKeys[(int) buckets[j]];
+                    trials.trialChild().setKey(key, key, actualKey);
+                    if (trials.trial() == EQUAL) {
+                        frame.matchedKeys[j] = true;
+                        return actualMap.get(actualKey);
+                    }
+                }
+                return MISSING;
+            } finally {
+                minCycleDepth = Math.min(minCycleDepth, trials.minCycleDepth);
+                takeBudget(trials);
+                trials.clear();
+            }
+        }
+    }
+
+    /**
+     * State of matcher after the node, steps of live states are counted in stats
+     */
+    private ExcludeMatcher.State step(ExcludeMatcher matcher, ExcludeMatcher.State state, Frame frame) {
+        if (counters != null && !state.isDead())
+            counters.excludeMatches++;
+        return matcher.next(state, frame);
+    }
+
+    /**
+     * Compares values of primitive property without boxing, doubles and floats - with tolerance, if it's set
+     */
+    private boolean primitiveEquals(Property property, Object expected, Object actual) {
+        if (doubleTolerance != null && property instanceof Property.OfDouble) {
+            Property.OfDouble doubleProperty = (Property.OfDouble) property;
+            return doubleTolerance.areEqual(doubleProperty.getDouble(expected), doubleProperty.getDouble(actual));
+        }
+        if (floatTolerance != null && property instanceof Property.OfFloat) {
+            Property.OfFloat floatProperty = (Property.OfFloat) property;
+            return floatTolerance.areEqual(floatProperty.getFloat(expected), floatProperty.getFloat(actual));
+        }
+        return property.primitiveEquals(expected, actual);
+    }
+
+    /**
+     * Index of the first different item of primitive arrays from fromIndex, or -1
+     */
+    private int mismatch(Object expected, Object actual, int fromIndex) {
+        if (doubleTolerance != null && expected instanceof double[])
+            return doubleTolerance.mismatch((double[]) expected, (double[]) actual, fromIndex);
+        if (floatTolerance != null && expected instanceof float[])
+            return floatTolerance.mismatch((float[]) expected, (float[]) actual, fromIndex);
+        return Arrays2.mismatch(expected, actual, fromIndex);
+    }
+
+    /**
+     * Key without equals or with value comparator can't be found by lookup, it's matched by trial comparisons
+     */
+    private boolean isMatchedByTrials(Object value) {
+        if (valueComparators != null && valueComparators.get(value.getClass()) != null)
+            return true;
+        ClassDescriptor descriptor = ClassDescriptor.forClass(value.getClass());
+        return !descriptor.isValueType() && !descriptor.overridesEquals();
+    }
+
+    /**
+     * Splits keys of actual map without equals into buckets by DeepHasher.
+     * Keys which are in expected map too are matched by identity, so they are skipped.
+     */
+    private void indexKeys(Frame frame) {
+        Map expectedMap = (Map) frame.getExpected();
+        List<Object> keys = new ArrayList<Object>();
+        for (Object key : ((Map) frame.getActual()).keySet()) {
+            if (key != null && isMatchedByTrials(key) && !expectedMap.containsKey(key))
+                keys.add(key);
+        }
+
+        frame.hashedKeys = frame.excludeState.isDead();
+        if (hasher == null)
+            hasher = new DeepHasher(DeepHasher.DEFAULT_MAX_DEPTH, valueComparators);
+
+        frame.actualKeys = keys.toArray();
+        frame.keyBuckets = new long[keys.size()];
+        for (int i = 0; i < keys.size(); i++)
+            frame.keyBuckets[i] = ((long) (frame.hashedKeys ? hasher.hash(keys.get(i)) : 0) << 32) | i;
+        Arrays.sort(frame.keyBuckets);
+        frame.matchedKeys = new boolean[keys.size()];
+    }
+
+    private static int compareKeys(Comparator comparator, Object first, Object second) {
+        return comparator != null ? comparator.compare(first, second) : ((Comparable) first).compareTo(second);
+    }
+
+    /**
+     * @return the first position of bucket in sorted array, or position where it would be
+     */
+    static int bucketStart(long[] buckets, int hash) {
+        int res = Arrays.binarySearch(buckets, (long) hash << 32);
+        return res < 0 ? -res - 1 : res;
+    }
+
+    /**
+     * Copies path to the frame with unordered iterable, so items can be compared in its context
+     */
+    private void prepareTrials(Frame source, Comparison owner) {
+        listener = STOP;
+        nodesLeft = owner.nodesLeft;
+        startNanos = owner.startNanos;
+        nodePool = owner.nodePool;
+        exceededLimit = null;
+        minCycleDepth = Integer.MAX_VALUE;
+        trialFrame = seed(source);
+    }
+
+    /**
+     * Child of the prepared frame, it must be set before trial
+     */
+    private Frame trialChild() {
+        return frame(trialFrame.getDepth() + 1);
+    }
+
+    /**
+     * Compares pair of the trial child (items of unordered iterable or keys), state of comparison is restored after it
+     * @return EQUAL or DIFFERENT
+     */
+    private int trial() {
+        int bottom = trialFrame.getDepth() + 1;
+        Frame child = frames[bottom];
+
+        int savedMinCycleDepth = minCycleDepth;
+        int res = enter(child);
+        if (res == DESCEND)
+            res = run(bottom);
+        if (res != EQUAL) {
+            // frames which are not left
+            for (int i = depth - 1; i >= bottom; i--) {
+                ancestors.remove(frames[i].getExpected(), frames[i].getActual());
+                frames[i].clear();
+            }
+            minCycleDepth = savedMinCycleDepth;
+        }
+        depth = 0;
+        return res;
+    }
+
+    /**
+     * Sets the i-th pair of children of the frame to child frame, the frame must be prepared by prepareRandomAccess.
+     * @return DESCEND if child is set, EQUAL if child is equal without comparing, DIFFERENT if children are different
+     */
+    private int childAt(Frame frame, int i, Frame child) {
+        Object expected = frame.getExpected();
+        Object actual = frame.getActual();
+
+        switch (frame.kind) {
+            case Frame.PROPERTIES: {
+                Property property = frame.properties[i];
+                if (property.isPrimitive() && frame.excludeState.isDead()) {
+                    countPropertyReads();
+                    if (primitiveEquals(property, expected, actual))
+                        return EQUAL;
+                }
+
+                countPropertyReads();
+                child.set(property.getName(), property.get(expected), property.get(actual));
+                return DESCEND;
+            }
+            case Frame.MAP: {
+                Map.Entry entry = (Map.Entry) frame.entries[i];
+                Object actualValue = lookup(frame, entry.getKey());
+                if (actualValue == MISSING)
+                    return exceededLimit != null ? exceedBudget(frame)
+                            : difference(frame, DifferenceKind.MISSING_KEY, entry.getKey(), null);
+
+                child.setKey(entry.getKey(), entry.getValue(), actualValue);
+                return DESCEND;
+            }
+            case Frame.ITERABLE:
+            case Frame.ARRAY:
+                child.setIndex(i, frame.expectedItems[i], frame.actualItems[i]);
+                return DESCEND;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Splits children of the frame into chunks and compares them in the pool.
+     * @return EQUAL, DIFFERENT or CANCELLED
+     */
+    private int compareInParallel(Frame frame) {
+        frame.prepareRandomAccess();
+        if (frame.kind == Frame.MAP)
+            indexKeys(frame);
+        int count = frame.getChildCount();
+        int chunkSize = Math.max(1, (count + pool.getParallelism() * CHUNKS_PER_WORKER - 1)
+                / (pool.getParallelism() * CHUNKS_PER_WORKER));
+
+        // chunks take nodes from the pool by portions
+        if (maxNodes != Long.MAX_VALUE) {
+            if (nodePool == null)
+                nodePool = new AtomicLong();
+            nodePool.addAndGet(nodesLeft);
+            nodesLeft = 0;
+        }
+
+        Split split = new Split(this);
+        List<ChunkTask> tasks = new ArrayList<ChunkTask>();
+        for (int from = 0; from < count; from += chunkSize)
+            tasks.add(new ChunkTask(split, tasks.size(), frame, from, Math.min(count, from + chunkSize)));
+
+        if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            final List<ChunkTask> all = tasks;
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(all);
+                }
+            });
+        }
+
+        // chunks before the first different one are not cancelled by this split
+        for (ChunkTask task : tasks) {
+            if (task.result == DIFFERENT) {
+                differenceCount++;
+                firstDifference.add(task.difference);
+                return DIFFERENT;
+            }
+            if (task.result == CANCELLED)
+                return CANCELLED;
+            minCycleDepth = Math.min(minCycleDepth, task.minCycleDepth);
+            nodeCount += task.nodeCount;
+        }
+        return EQUAL;
+    }
+
+    /**
+     * Compares children [from, to) of the frame, which belongs to other comparison.
+     * @return EQUAL, DIFFERENT or CANCELLED
+     */
+    private int compareChildren(Frame source, int from, int to) {
+        Frame frame = seed(source);
+        int bottom = frame.getDepth() + 1;
+        for (int i = from; i < to; i++) {
+            if (isCancelled())
+                return CANCELLED;
+
+            Frame child = frame(bottom);
+            int res = childAt(frame, i, child);
+            if (res == DESCEND) {
+                res = enter(child);
+                if (res == DESCEND)
+                    res = run(bottom);
+            }
+            if (res != EQUAL) {
+                if (res == DIFFERENT)
+                    split.found(chunk);
+                return res;
+            }
+        }
+        return EQUAL;
+    }
+
+    /**
+     * Copies the path from the root to the source frame into this comparison
+     * @return copy of the source frame
+     */
+    private Frame seed(Frame source) {
+        Frame[] path = new Frame[source.getDepth() + 1];
+        for (StackEntry entry = source; entry != null; entry = entry.getParent())
+            path[entry.getDepth()] = (Frame) entry;
+
+        for (int i = 0; i < path.length; i++) {
+            Frame frame = frame(i);
+            frame.copy(path[i]);
+            ancestors.put(frame.getExpected(), frame.getActual(), i);
+        }
+        return frames[source.getDepth()];
+    }
+
+    /**
+     * Chunk is cancelled if difference is found in previous chunk of its split or if the split itself is cancelled
+     */
+    private boolean isCancelled() {
+        for (Comparison comparison = this; comparison.split != null; comparison = comparison.split.owner) {
+            if (comparison.split.firstDifferent.get() < comparison.chunk)
+                return true;
+        }
+        return false;
+    }
+
+    private Frame frame(int depth) {
+        if (depth == frames.length)
+            frames = Arrays.copyOf(frames, depth * 2);
+        Frame res = frames[depth];
+        if (res == null)
+            res = frames[depth] = new Frame(depth == 0 ? null : frames[depth - 1]);
+        return res;
+    }
+
+    /**
+     * Budget is exceeded: comparison is stopped, even if listener goes on
+     * @return DIFFERENT
+     */
+    private int exceedBudget(Frame frame) {
+        if (exceededLimit == null) {
+            if (nodesLeft < 0) {
+                exceededLimit = "number of nodes";
+                exceededValue = maxNodes;
+            } else if (frame.getDepth() > maxDepth) {
+                exceededLimit = "depth";
+                exceededValue = maxDepth;
+            } else {
+                exceededLimit = "time";
+                exceededValue = TimeUnit.NANOSECONDS.toMillis(maxNanos) + " ms";
+            }
+            // the next nodes are not compared, nodes are not taken from the pool
+            nodesLeft = STOPPED;
+        }
+        differenceCount++;
+        listener.onDifference(frame, DifferenceKind.BUDGET_EXCEEDED, exceededLimit, exceededValue);
+        return DIFFERENT;
+    }
+
+    /**
+     * Takes the next portion of nodes from the pool of parallel comparison
+     * @return false if there are no more nodes
+     */
+    private boolean takeNodes() {
+        if (nodePool == null || nodesLeft < -1)
+            return false;
+        while (true) {
+            long available = nodePool.get();
+            if (available <= 0)
+                return false;
+            long portion = Math.min(available, NODES_PORTION);
+            if (nodePool.compareAndSet(available, available - portion)) {
+                nodesLeft += portion;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Budget which is left after trials, if they exceeded it, the next node of this comparison is not compared
+     */
+    private void takeBudget(Comparison trials) {
+        nodesLeft = trials.nodesLeft;
+        if (trials.exceededLimit != null) {
+            exceededLimit = trials.exceededLimit;
+            exceededValue = trials.exceededValue;
+        }
+    }
+
+    private void countPropertyReads() {
+        if (counters != null)
+            counters.propertyReads += 2;
+    }
+
+    /**
+     * Adds counters of this comparison and its trials to stats of comparer
+     */
+    private void flushStats() {
+        stats.add(counters);
+        counters.clear();
+        if (trials != null)
+            trials.flushStats();
+    }
+
+    /**
+     * True if comparison can be kept idle for the next calls: its frames and maps are not grown by large graphs
+     */
+    boolean isReusable() {
+        return frames.length <= MAX_REUSED_DEPTH && ancestors.capacity() <= MAX_REUSED_CAPACITY
+                && (equalPairs == null || equalPairs.capacity() <= MAX_REUSED_CAPACITY)
+                && (trials == null || trials.isReusable());
+    }
+
+    /**
+     * Removes references to compared objects, so they are not kept by frames
+     */
+    private void clear() {
+        for (int i = 0; i < frames.length && frames[i] != null; i++)
+            frames[i].clear();
+        depth = 0;
+        ancestors.clear();
+        if (equalPairs != null)
+            equalPairs.clear();
+        nodeCount = 0;
+        minCycleDepth = Integer.MAX_VALUE;
+        listener = null;
+        firstDifference = null;
+        differenceCount = 0;
+        // seeded frames of trials reference compared objects
+        if (trials != null)
+            trials.clear();
+    }
+
+    /**
+     * Path is not turned into string here, listener does it if it's necessary
+     * @return DIFFERENT if comparison must be stopped, otherwise EQUAL - comparison goes on without children of the entry
+     */
+    private int difference(StackEntry entry, DifferenceKind kind, Object expected, Object actual) {
+        differenceCount++;
+        return listener.onDifference(entry, kind, expected, actual) ? EQUAL : DIFFERENT;
+    }
+
+    /**
+     * Children of one wide node, which are compared in parallel
+     */
+    private static class Split {
+        final Comparison owner;
+        // index of the first chunk, which found difference
+        final AtomicInteger firstDifferent = new AtomicInteger(Integer.MAX_VALUE);
+
+        Split(Comparison owner) {
+            this.owner = owner;
+        }
+
+        void found(int chunk) {
+            int current;
+            while ((current = firstDifferent.get()) > chunk && !firstDifferent.compareAndSet(current, chunk)) {
+                // retry
+            }
+        }
+    }
+
+    /**
+     * Compares range of children by separate comparison
+     */
+    private class ChunkTask extends RecursiveAction {
+        private final Split split;
+        private final int chunk;
+        private final Frame frame;
+        private final int from;
+        private final int to;
+
+        int result;
+        Difference difference;
+        int minCycleDepth;
+        int nodeCount;
+
+        ChunkTask(Split split, int chunk, Frame frame, int from, int to) {
+            this.split = split;
+            this.chunk = chunk;
+            this.frame = frame;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            Comparison comparison = new Comparison(settings, split, chunk);
+            comparison.nodesLeft = nodePool == null ? nodesLeft : 0;
+            comparison.nodePool = nodePool;
+            comparison.startNanos = startNanos;
+            DifferenceCollector collector = new DifferenceCollector(1, maxValueLength);
+            comparison.listener = comparison.firstDifference = collector;
+            result = comparison.compareChildren(frame, from, to);
+            if (result == DIFFERENT)
+                difference = collector.getDifferences().getItems().get(0);
+            minCycleDepth = comparison.minCycleDepth;
+            nodeCount = comparison.nodeCount;
+            if (nodePool != null && comparison.nodesLeft > 0)
+                nodePool.addAndGet(comparison.nodesLeft);
+            if (stats != null)
+                comparison.flushStats();
+        }
+    }
+
+    /**
+     * Entry of the stack with position of the next child to compare
+     */
+    private class Frame extends StackEntry {
+        static final int PROPERTIES = 0;
+        static final int MAP = 1;
+        static final int ITERABLE = 2;
+        static final int ARRAY = 3;
+        static final int PRIMITIVE_ARRAY = 4;
+        static final int UNORDERED = 5;
+        static final int SORTED_MAP = 6;
+        static final int ALIGNED = 7;
+
+        int kind;
+        int position;
+        Property[] properties;
+        Iterator expectedIterator;
+        Iterator actualIterator;
+        Map.Entry actualEntry;
+        // for parallel comparison and unordered iterables
+        Object[] entries;
+        Object[] expectedItems;
+        Object[] actualItems;
+        // aligned list: index of actual item aligned with expected one or -1, the next actual item,
+        // the first aligned expected item from position
+        int[] alignment;
+        int actualPosition;
+        int nextAligned;
+        // unmatched items of unordered iterable: index of expected item and actual item or MISSING
+        int pairCount;
+        int[] pairIndexes;
+        Object[] pairItems;
+        // keys of actual map without equals, which are matched with expected keys by deep comparison
+        Object[] actualKeys;
+        long[] keyBuckets;
+        boolean[] matchedKeys;
+        boolean hashedKeys;
+
+        ExcludeMatcher.State excludeState;
+        ExcludeMatcher.State unorderedState;
+        ExcludeMatcher.State alignedState;
+        boolean memoize;
+        int nodeCount;
+        int differenceCount;
+        int parentMinCycleDepth;
+
+        Frame(Frame parent) {
+            super(parent);
+        }
+
+        /**
+         * Prepares iterating over children
+         * @return DESCEND or result of difference(...) if sizes are different
+         */
+        int start(ClassDescriptor descriptor, ExcludeMatcher.State excludeState, ExcludeMatcher.State unorderedState,
+                  ExcludeMatcher.State alignedState) {
+            Object expected = getExpected();
+            Object actual = getActual();
+            this.excludeState = excludeState;
+            this.unorderedState = unorderedState;
+            this.alignedState = alignedState;
+            this.position = 0;
+
+            // for maps
+            if (descriptor.isMap()) {
+                Map expectedMap = (Map) expected;
+                Map actualMap = (Map) actual;
+                // check sizes
+                if (expectedMap.size() != actualMap.size())
+                    return difference(this, DifferenceKind.SIZE, expectedMap.size(), actualMap.size());
+
+                expectedIterator = expectedMap.entrySet().iterator();
+                if (expected instanceof SortedMap && actual instanceof SortedMap
+                        && Objects.equals(((SortedMap) expected).comparator(), ((SortedMap) actual).comparator())) {
+                    kind = SORTED_MAP;
+                    actualIterator = actualMap.entrySet().iterator();
+                    nextActualEntry();
+                    return DESCEND;
+                }
+
+                kind = MAP;
+                return DESCEND;
+            }
+
+            // for arrays
+            if (descriptor.isArray()) {
+                if (!descriptor.isPrimitiveArray() && alignedState.isExcluded())
+                    return startAligned();
+
+                int expectedLength = Array.getLength(expected);
+                int actualLength = Array.getLength(actual);
+                if (expectedLength != actualLength) {
+                    return difference(this, DifferenceKind.SIZE, expectedLength, actualLength);
+                }
+
+                kind = descriptor.isPrimitiveArray() ? PRIMITIVE_ARRAY : ARRAY;
+                return DESCEND;
+            }
+
+            // for iterables
+            if (descriptor.isIterable()) {
+                boolean unordered = unorderedState.isExcluded() || settings.isUnorderedType(expected.getClass());
+                // sizes of aligned lists can be different
+                if (!unordered && alignedState.isExcluded())
+                    return startAligned();
+
+                // Check sizes of Collection<T>
+                if (expected instanceof Collection && actual instanceof Collection) {
+                    Collection expectedCollection = (Collection)expected;
+                    Collection actualCollection = (Collection)actual;
+
+                    if (expectedCollection.size() != actualCollection.size()) {
+                        return difference(this, DifferenceKind.SIZE, expectedCollection.size(), actualCollection.size());
+                    }
+                }
+
+                if (unordered)
+                    return startUnordered();
+
+                kind = ITERABLE;
+                expectedIterator = ((Iterable) expected).iterator();
+                actualIterator = ((Iterable) actual).iterator();
+                return DESCEND;
+            }
+
+            kind = PROPERTIES;
+            properties = descriptor.getProperties();
+            return DESCEND;
+        }
+
+        void nextActualEntry() {
+            actualEntry = actualIterator.hasNext() ? (Map.Entry) actualIterator.next() : null;
+        }
+
+        private int startUnordered() {
+            expectedItems = toArray((Iterable) getExpected());
+            actualItems = toArray((Iterable) getActual());
+            if (expectedItems.length != actualItems.length)
+                return difference(this, DifferenceKind.SIZE, expectedItems.length, actualItems.length);
+
+            kind = UNORDERED;
+            return DESCEND;
+        }
+
+        private int startAligned() {
+            expectedItems = toArray(getExpected());
+            actualItems = toArray(getActual());
+            actualPosition = 0;
+            nextAligned = -1;
+            kind = ALIGNED;
+            return alignItems(this);
+        }
+
+        private Object[] toArray(Object value) {
+            return value instanceof Object[] ? (Object[]) value : toArray((Iterable) value);
+        }
+
+        private Object[] toArray(Iterable iterable) {
+            if (iterable instanceof Collection)
+                return ((Collection) iterable).toArray();
+            List<Object> res = new ArrayList<Object>();
+            for (Object item : iterable)
+                res.add(item);
+            return res.toArray();
+        }
+
+        /**
+         * Number of children, if it's known without iterating, otherwise -1
+         */
+        int getChildCount() {
+            switch (kind) {
+                case PROPERTIES:
+                    return properties.length;
+                case MAP:
+                    return ((Map) getExpected()).size();
+                case ARRAY:
+                    return ((Object[]) getExpected()).length;
+                case ITERABLE:
+                    return getExpected() instanceof Collection && getActual() instanceof Collection
+                            ? ((Collection) getExpected()).size() : -1;
+                default:
+                    // items of primitive arrays are compared by Arrays.mismatch, unordered items are matched,
+                    // sorted maps are merged
+                    return -1;
+            }
+        }
+
+        /**
+         * Makes children available by index
+         */
+        void prepareRandomAccess() {
+            switch (kind) {
+                case MAP:
+                    entries = ((Map) getExpected()).entrySet().toArray();
+                    break;
+                case ARRAY:
+                    expectedItems = (Object[]) getExpected();
+                    actualItems = (Object[]) getActual();
+                    break;
+                case ITERABLE:
+                    expectedItems = ((Collection) getExpected()).toArray();
+                    actualItems = ((Collection) getActual()).toArray();
+                    break;
+            }
+        }
+
+        /**
+         * Copies frame of other comparison, without position of the next child
+         */
+        void copy(Frame source) {
+            if (source.isKey())
+                setKey(source.getKey(), source.getExpected(), source.getActual());
+            else if (source.isIndex())
+                setIndex(source.getIndex(), source.getExpected(), source.getActual());
+            else
+                set(source.getName(), source.getExpected(), source.getActual());
+            kind = source.kind;
+            properties = source.properties;
+            entries = source.entries;
+            actualKeys = source.actualKeys;
+            keyBuckets = source.keyBuckets;
+            matchedKeys = source.matchedKeys;
+            hashedKeys = source.hashedKeys;
+            expectedItems = source.expectedItems;
+            actualItems = source.actualItems;
+            excludeState = source.excludeState;
+            unorderedState = source.unorderedState;
+            alignedState = source.alignedState;
+            alignment = source.alignment;
+        }
+
+        void clear() {
+            set(null, null, null);
+            properties = null;
+            expectedIterator = null;
+            actualIterator = null;
+            actualEntry = null;
+            entries = null;
+            expectedItems = null;
+            actualItems = null;
+            pairIndexes = null;
+            pairItems = null;
+            actualKeys = null;
+            keyBuckets = null;
+            matchedKeys = null;
+            excludeState = null;
+            unorderedState = null;
+            alignedState = null;
+            alignment = null;
+        }
+    }
+}
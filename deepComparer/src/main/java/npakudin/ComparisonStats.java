@@ -0,0 +1,169 @@
+package npakudin;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counters of comparisons of one comparer, e.g. to find which class or collection makes comparison slow.
+ * Comparison counts into its own instance without locks, it's added to the shared one after each call,
+ * so getters show totals of finished calls.
+ * Usage:
+ *
+ *   ComparisonStats stats = new ComparisonStats();
+ *   DeepComparer comparer = DeepComparer.builder().stats(stats).build();
+ *   ...
+ *   System.out.println(stats);
+ */
+public class ComparisonStats {
+
+    // counters are not synchronized, they are updated by one comparison
+    long calls;
+    long nodes;
+    int maxDepth;
+    long propertyReads;
+    long cycleHits;
+    long excludeMatches;
+    long totalNanos;
+    long maxNanos;
+    // by class name, so stats which live long don't keep classes and their class loaders
+    private Map<String, long[]> classVisits;
+
+    void visit(Class<?> clazz, long visits) {
+        visit(clazz.getName(), visits);
+    }
+
+    private void visit(String className, long visits) {
+        if (classVisits == null)
+            classVisits = new HashMap<String, long[]>();
+        long[] count = classVisits.get(className);
+        if (count == null)
+            classVisits.put(className, count = new long[1]);
+        count[0] += visits;
+    }
+
+    void addCall(long nanos) {
+        calls++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    synchronized void add(ComparisonStats other) {
+        calls += other.calls;
+        nodes += other.nodes;
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        propertyReads += other.propertyReads;
+        cycleHits += other.cycleHits;
+        excludeMatches += other.excludeMatches;
+        totalNanos += other.totalNanos;
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+        if (other.classVisits != null) {
+            for (Map.Entry<String, long[]> entry : other.classVisits.entrySet())
+                visit(entry.getKey(), entry.getValue()[0]);
+        }
+    }
+
+    public synchronized void clear() {
+        calls = 0;
+        nodes = 0;
+        maxDepth = 0;
+        propertyReads = 0;
+        cycleHits = 0;
+        excludeMatches = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+        classVisits = null;
+    }
+
+    /**
+     * Number of top-level calls of comparer
+     */
+    public synchronized long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Number of compared pairs, including excluded ones and trial comparisons of unordered items and keys
+     */
+    public synchronized long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * The largest depth of compared pair, the root has depth 0
+     */
+    public synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Number of reads of public fields and calls of getters, by reflection or by method handles
+     */
+    public synchronized long getPropertyReads() {
+        return propertyReads;
+    }
+
+    /**
+     * Number of pairs which are equal because they are already compared on the current path
+     */
+    public synchronized long getCycleHits() {
+        return cycleHits;
+    }
+
+    /**
+     * Number of steps of exclude, unordered and aligned patterns by nodes.
+     * Nodes, below which none of patterns can match, are not counted.
+     */
+    public synchronized long getExcludeMatches() {
+        return excludeMatches;
+    }
+
+    public synchronized long getTotalTime(TimeUnit unit) {
+        return unit.convert(totalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time of the slowest call
+     */
+    public synchronized long getMaxTime(TimeUnit unit) {
+        return unit.convert(maxNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Number of compared pairs by name of class of expected object, the most visited classes are the first
+     */
+    public synchronized Map<String, Long> getClassVisits() {
+        List<Map.Entry<String, long[]>> entries = new ArrayList<Map.Entry<String, long[]>>();
+        if (classVisits != null)
+            entries.addAll(classVisits.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+            @Override
+            public int compare(Map.Entry<String, long[]> o1, Map.Entry<String, long[]> o2) {
+                return Long.compare(o2.getValue()[0], o1.getValue()[0]);
+            }
+        });
+        Map<String, Long> res = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, long[]> entry : entries)
+            res.put(entry.getKey(), entry.getValue()[0]);
+        return res;
+    }
+
+    /**
+     * Summary with 10 the most visited classes
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("calls: %d; nodes: %d; max depth: %d; property reads: %d; cycle hits: %d; " +
+                        "exclude matches: %d; total time: %d ms; max time: %d ms.",
+                calls, nodes, maxDepth, propertyReads, cycleHits, excludeMatches,
+                TimeUnit.NANOSECONDS.toMillis(totalNanos), TimeUnit.NANOSECONDS.toMillis(maxNanos)));
+        int count = 0;
+        for (Map.Entry<String, Long> entry : getClassVisits().entrySet()) {
+            if (count++ == 10)
+                break;
+            sb.append(count == 1 ? " Classes: " : ", ");
+            sb.append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,15 @@
+package npakudin;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks class, for which annotation processor of module deepComparer-processor generates
+ * class [binary name]_DeepComparator at build time. Its properties read public fields and call getters directly,
+ * so ClassDescriptor uses them instead of reflection and MethodHandles.
+ * If comparator is not generated (processor is not on the path), class is compared by reflection as usual.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface DeepComparable {
+}
@@ -0,0 +1,851 @@
+package npakudin;
+
+import npakudin.common.Action2;
+import npakudin.common.Collections2;
+import npakudin.common.Function;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class for helping with Assert.areEqual for objects with deep graph in fields and properties.
+ * ATTENTION! Before using methods assertAreEqual(...) you must set assertAction.
+ * Static methods use default settings, other settings are set by builder(): comparer is immutable and thread-safe.
+ * If object overrides method equals, this method id used for comparing.
+ * If not - all public fields and results of get methods are used for comparing.
+ */
+public class DeepComparer
+{
+    private static volatile Action2<Boolean, String> assertAction;
+    public static Action2<Boolean, String>  getAssertAction() {
+        return assertAction;
+    }
+    /**
+     * Method for assert.
+     * Necessary for different unit test frameworks.
+     * Usage:
+     *
+     *   @ BeforeClass
+     *   public static void setUpClass() throws Exception {
+     *       DeepComparer.setAssertAction(new Action2<Boolean, String>() {
+     *           @ Override
+     *           public void apply(Boolean aBoolean, String s) {
+     *               Assert.assertTrue(s, aBoolean);
+     *           }
+     *       });
+     *   }
+     */
+    public static void setAssertAction(Action2<Boolean, String> action) {
+        assertAction = action;
+    }
+
+
+    /**
+     * Checks all public fields and getters recursively.
+     * It checks iterables and maps item-by-item.
+     *
+     * Checks cycle reference correctly.
+     * For tests only because of using reflection.
+     * Excludes excludePaths from equation.
+     * Exact type of iterables is not checked.
+     *
+     * Fails if not equal.
+     */
+    public static <T> void assertAreEqual(T expected, T actual, String... excludePaths) {
+        assertAreEqual(expected, actual, false, excludePaths);
+    }
+    /**
+     * Checks all public fields and getters recursively.
+     * It checks iterables and maps item-by-item.
+     *
+     * Checks cycle reference correctly.
+     * For tests only because of using reflection.
+     * Excludes excludePaths from equation.
+     *
+     * @param checkIterableTypesStrictly if true, check exact type of iterables, otherwise - not check
+     * Fails if not equal.
+     */
+    public static <T> void assertAreEqual(T expected, T actual, boolean checkIterableTypesStrictly,  String... excludePaths) {
+        String res = getNotEqualPath(expected, actual, checkIterableTypesStrictly, excludePaths);
+        assertAction.apply(res == null, res);
+    }
+
+
+
+    /**
+     * Checks all public fields and getters recursively.
+     * It checks iterables and maps item-by-item.
+     *
+     * Checks cycle reference correctly.
+     * For tests only because of using reflection.
+     * Excludes excludePaths from equation.
+     * Exact type of iterables is not checked.
+     *
+     * @return null if items are equal, otherwise string with error
+     */
+    public static <T> boolean areEqual(T expected, T actual, String... excludePaths) {
+        return areEqual(expected, actual, false, excludePaths);
+    }
+    /**
+     * Checks all public fields and getters recursively.
+     * It checks iterables and maps item-by-item.
+     *
+     * Checks cycle reference correctly.
+     * For tests only because of using reflection.
+     * Excludes excludePaths from equation.
+     *
+     * @param checkIterableTypesStrictly if true, check exact type of iterables, otherwise - not check
+     * @return null if items are equal, otherwise string with error
+     */
+    public static <T> boolean areEqual(T expected, T actual, boolean checkIterableTypesStrictly, String... excludePaths) {
+        return getNotEqualPath(expected, actual, checkIterableTypesStrictly, excludePaths) == null;
+    }
+
+    /**
+     * Checks all public fields and getters recursively.
+     * It checks iterables and maps item-by-item.
+     *
+     * Checks cycle reference correctly.
+     * For tests only because of using reflection.
+     * Excludes excludePaths from equation.
+     * Exact type of iterables is not checked.
+     *
+     * @return null if items are equal, otherwise string with error
+     */
+    public static <T> String getNotEqualPath(T expected, T actual, String... excludePath) {
+        return getNotEqualPath(expected, actual, false, excludePath);
+    }
+    /**
+     * Checks all public fields and getters recursively.
+     * It checks iterables and maps item-by-item.
+     *
+     * Checks cycle reference correctly.
+     * For tests only because of using reflection.
+     * Excludes excludePaths from equation.
+     *
+     * @param checkIterableTypesStrictly if true, check exact type of iterables, otherwise - not check
+     * @return null if items are equal, otherwise string with error
+     */
+    public static <T> String getNotEqualPath(T expected, T actual, boolean checkIterableTypesStrictly, String... excludePath) {
+        return forPaths(checkIterableTypesStrictly, excludePath).findDifference(expected, actual);
+    }
+
+    /**
+     * Checks all public fields and getters recursively and passes differences to listener,
+     * until it returns false.
+     * Exact type of iterables is not checked.
+     *
+     * @return true if objects are equal
+     */
+    public static <T> boolean getDifferences(T expected, T actual, DifferenceListener listener, String... excludePaths) {
+        return forPaths(false, excludePaths).findDifferences(expected, actual, listener);
+    }
+
+
+    /**
+     * Structural hash of all public fields and getters, see getFingerprint.
+     * Excludes excludePaths from hash.
+     */
+    public static Fingerprint fingerprint(Object value, String... excludePaths) {
+        return forPaths(false, excludePaths).getFingerprint(value);
+    }
+
+
+    private static final DeepComparer DEFAULT = new DeepComparer();
+    private static final DeepComparer STRICT = builder().checkIterableTypesStrictly(true).build();
+
+    // comparers of static methods by their exclude paths, so the same paths are not compiled on each call
+    private static final int MAX_CACHED_COMPARERS = 64;
+    private static final Map<List<Object>, DeepComparer> comparersByPaths =
+            new LinkedHashMap<List<Object>, DeepComparer>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, DeepComparer> eldest) {
+                    return size() > MAX_CACHED_COMPARERS;
+                }
+            };
+
+    // idle comparisons kept by each comparer
+    private static final int MAX_IDLE_COMPARISONS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Comparer for static methods, it's shared if there are no exclude paths and cached by the paths otherwise
+     */
+    static DeepComparer forPaths(boolean checkIterableTypesStrictly, String... excludePaths) {
+        if (excludePaths.length == 0)
+            return checkIterableTypesStrictly ? STRICT : DEFAULT;
+        List<Object> key = new ArrayList<Object>(excludePaths.length + 1);
+        key.add(checkIterableTypesStrictly);
+        Collections.addAll(key, excludePaths);
+        synchronized (comparersByPaths) {
+            DeepComparer res = comparersByPaths.get(key);
+            if (res != null)
+                return res;
+        }
+        // built out of the lock, another thread may build the same comparer meanwhile, any of them is fine
+        DeepComparer res = builder().checkIterableTypesStrictly(checkIterableTypesStrictly).excludePaths(excludePaths).build();
+        synchronized (comparersByPaths) {
+            comparersByPaths.put(key, res);
+        }
+        return res;
+    }
+
+
+
+    private final boolean checkIterableTypesStrictly;
+    private final String[] excludePaths;
+    private final ExcludeMatcher excludeMatcher;
+    private final String[] unorderedPaths;
+    private final ExcludeMatcher unorderedMatcher;
+    private final Class<?>[] unorderedTypes;
+    private final String[] alignedPaths;
+    private final ExcludeMatcher alignedMatcher;
+    private final int maxAlignmentEdits;
+    private final boolean rememberEqualPairs;
+    private final ForkJoinPool forkJoinPool;
+    private final int parallelThreshold;
+    private final int maxDifferences;
+    private final EqualityCache equalityCache;
+    // comparisons which are not used now, they are reused by the next calls of any thread.
+    // They are kept by the comparer, not by threads, so they are not kept with its settings after it.
+    private final Queue<Comparison> idleComparisons = new ConcurrentLinkedQueue<Comparison>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final ComparisonStats stats;
+    private final long maxNodes;
+    private final int maxDepth;
+    private final long maxNanos;
+    private final int maxValueLength;
+    private final Map<Class<?>, ValueComparator<?>> valueComparators;
+    private final FloatTolerance floatTolerance;
+    // null if there are no value comparators
+    private final ValueComparatorRegistry valueComparatorRegistry;
+    private final Action2<Boolean, String> instanceAssertAction;
+
+    /**
+     * Comparer with default settings
+     */
+    public DeepComparer() {
+        this(new Builder());
+    }
+
+    private DeepComparer(Builder builder) {
+        this.checkIterableTypesStrictly = builder.checkIterableTypesStrictly;
+        this.excludePaths = builder.excludePaths;
+        this.excludeMatcher = compile(excludePaths);
+        this.unorderedPaths = builder.unorderedPaths;
+        this.unorderedMatcher = compile(unorderedPaths);
+        this.unorderedTypes = builder.unorderedTypes;
+        this.alignedPaths = builder.alignedPaths;
+        this.alignedMatcher = compile(alignedPaths);
+        this.maxAlignmentEdits = builder.maxAlignmentEdits;
+        this.rememberEqualPairs = builder.rememberEqualPairs;
+        this.forkJoinPool = builder.forkJoinPool;
+        this.parallelThreshold = builder.parallelThreshold;
+        this.maxDifferences = builder.maxDifferences;
+        this.equalityCache = builder.equalityCache;
+        this.stats = builder.stats;
+        this.maxNodes = builder.maxNodes;
+        this.maxDepth = builder.maxDepth;
+        this.maxNanos = builder.maxNanos;
+        this.maxValueLength = builder.maxValueLength;
+        this.valueComparators = Collections.unmodifiableMap(new LinkedHashMap<Class<?>, ValueComparator<?>>(builder.valueComparators));
+        this.floatTolerance = builder.floatTolerance;
+        this.valueComparatorRegistry = createRegistry(valueComparators, floatTolerance);
+        this.instanceAssertAction = builder.assertAction;
+    }
+
+    /**
+     * Boxed doubles and floats are compared by tolerance, unless comparators are registered for them
+     */
+    private static ValueComparatorRegistry createRegistry(Map<Class<?>, ValueComparator<?>> valueComparators,
+                                                          FloatTolerance floatTolerance) {
+        Map<Class<?>, ValueComparator<?>> res = new HashMap<Class<?>, ValueComparator<?>>(valueComparators);
+        if (floatTolerance != null) {
+            if (!res.containsKey(Double.class))
+                res.put(Double.class, floatTolerance.forDoubles());
+            if (!res.containsKey(Float.class))
+                res.put(Float.class, floatTolerance.forFloats());
+        }
+        return res.isEmpty() ? null : new ValueComparatorRegistry(res);
+    }
+
+    /**
+     * Settings of comparer. Comparer is immutable and thread-safe: its settings are compiled once,
+     * and it can be used by many threads at once.
+     * Usage:
+     *
+     *   DeepComparer comparer = DeepComparer.builder()
+     *           .excludePaths("$root.getChildren.[*].getParent")
+     *           .rememberEqualPairs(true)
+     *           .build();
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder with settings of this comparer. Equality cache is not shared with the new comparer:
+     * its pairs are proven with these settings, so the builder gets an empty cache of the same size.
+     */
+    public Builder toBuilder() {
+        Builder res = new Builder();
+        res.checkIterableTypesStrictly = checkIterableTypesStrictly;
+        res.excludePaths = excludePaths;
+        res.unorderedPaths = unorderedPaths;
+        res.unorderedTypes = unorderedTypes;
+        res.alignedPaths = alignedPaths;
+        res.maxAlignmentEdits = maxAlignmentEdits;
+        res.rememberEqualPairs = rememberEqualPairs;
+        res.forkJoinPool = forkJoinPool;
+        res.parallelThreshold = parallelThreshold;
+        res.maxDifferences = maxDifferences;
+        if (equalityCache != null)
+            res.equalityCache = new EqualityCache(equalityCache.getCapacity(), equalityCache.getMinSubtreeSize());
+        res.stats = stats;
+        res.maxNodes = maxNodes;
+        res.maxDepth = maxDepth;
+        res.maxNanos = maxNanos;
+        res.maxValueLength = maxValueLength;
+        res.valueComparators.putAll(valueComparators);
+        res.floatTolerance = floatTolerance;
+        res.assertAction = instanceAssertAction;
+        return res;
+    }
+
+    public static class Builder {
+        private boolean checkIterableTypesStrictly;
+        private String[] excludePaths = new String[0];
+        private String[] unorderedPaths = new String[0];
+        private Class<?>[] unorderedTypes = new Class<?>[0];
+        private String[] alignedPaths = new String[0];
+        private int maxAlignmentEdits = 1000;
+        private boolean rememberEqualPairs;
+        private ForkJoinPool forkJoinPool;
+        private int parallelThreshold = 1000;
+        private int maxDifferences = 100;
+        private EqualityCache equalityCache;
+        private ComparisonStats stats;
+        private long maxNodes = Long.MAX_VALUE;
+        private int maxDepth = Integer.MAX_VALUE;
+        private long maxNanos = Long.MAX_VALUE;
+        private int maxValueLength = 1000;
+        private final Map<Class<?>, ValueComparator<?>> valueComparators = new LinkedHashMap<Class<?>, ValueComparator<?>>();
+        private FloatTolerance floatTolerance;
+        private Action2<Boolean, String> assertAction;
+
+        private Builder() {
+        }
+
+        /**
+         * If true, check exact type of iterables, otherwise - not check
+         */
+        public Builder checkIterableTypesStrictly(boolean checkIterableTypesStrictly) {
+            this.checkIterableTypesStrictly = checkIterableTypesStrictly;
+            return this;
+        }
+
+        /**
+         * Paths or glob patterns (* and ?) which are excluded from equation, e.g. "$root.getChildren.[*].getParent"
+         */
+        public Builder excludePaths(String... excludePaths) {
+            this.excludePaths = excludePaths.clone();
+            return this;
+        }
+
+        /**
+         * Paths or glob patterns (* and ?) of iterables, which are compared regardless of order of items,
+         * e.g. "$root.getOrders.[*].getItems"
+         */
+        public Builder unorderedPaths(String... unorderedPaths) {
+            this.unorderedPaths = unorderedPaths.clone();
+            return this;
+        }
+
+        /**
+         * Iterables of these types (or their subtypes) are compared regardless of order of items, e.g. Set.class.
+         * Items are split into buckets by DeepHasher, and only items of the same bucket are compared with each other.
+         */
+        public Builder unorderedTypes(Class<?>... unorderedTypes) {
+            this.unorderedTypes = unorderedTypes.clone();
+            return this;
+        }
+
+        /**
+         * Paths or glob patterns (* and ?) of iterables and arrays of objects, which are aligned before their items
+         * are compared, e.g. "$root.getLines". Alignment is found by ListAligner over DeepHasher hashes of items:
+         * inserted and deleted items are reported as ITEM_INSERTED and ITEM_DELETED, aligned and replaced items
+         * are compared as usual, at indexes of expected. So one item inserted into a long list is one difference,
+         * not a difference at each index after it. Unordered paths and types go before aligned ones.
+         */
+        public Builder alignedPaths(String... alignedPaths) {
+            this.alignedPaths = alignedPaths.clone();
+            return this;
+        }
+
+        /**
+         * Maximal number of inserted and deleted items of aligned list, 1000 by default.
+         * Time of alignment is proportional to it; if it's exceeded, items are compared by indexes as usual.
+         */
+        public Builder maxAlignmentEdits(int maxAlignmentEdits) {
+            if (maxAlignmentEdits < 0)
+                throw new IllegalArgumentException("maxAlignmentEdits");
+            this.maxAlignmentEdits = maxAlignmentEdits;
+            return this;
+        }
+
+        /**
+         * If true, pairs of objects which are proven to be equal are remembered during the comparison,
+         * and they are not compared again if they are referenced from other branches.
+         * It's useful for graphs with many shared objects, e.g. many orders referencing the same customer.
+         */
+        public Builder rememberEqualPairs(boolean rememberEqualPairs) {
+            this.rememberEqualPairs = rememberEqualPairs;
+            return this;
+        }
+
+        /**
+         * If true, large collections, maps and objects are compared in parallel in the common ForkJoinPool.
+         * The first difference is the same as in sequential comparison.
+         */
+        public Builder parallel(boolean parallel) {
+            this.forkJoinPool = parallel ? ForkJoinPool.commonPool() : null;
+            return this;
+        }
+
+        /**
+         * Pool for parallel comparison, null if comparison is sequential
+         */
+        public Builder forkJoinPool(ForkJoinPool forkJoinPool) {
+            this.forkJoinPool = forkJoinPool;
+            return this;
+        }
+
+        /**
+         * Minimal number of children (items, entries or properties) of one node to compare them in parallel, 1000 by default.
+         * Smaller nodes are compared sequentially.
+         */
+        public Builder parallelThreshold(int parallelThreshold) {
+            if (parallelThreshold < 1)
+                throw new IllegalArgumentException("parallelThreshold");
+            this.parallelThreshold = parallelThreshold;
+            return this;
+        }
+
+        /**
+         * Maximal number of differences collected by findAllDifferences, 100 by default.
+         * When it's reached, comparison is stopped.
+         */
+        public Builder maxDifferences(int maxDifferences) {
+            if (maxDifferences < 1)
+                throw new IllegalArgumentException("maxDifferences");
+            this.maxDifferences = maxDifferences;
+            return this;
+        }
+
+        /**
+         * Cache of pairs which are proven to be equal, it's used by all comparisons of this comparer,
+         * so shared subgraphs (e.g. reference data) are compared once. Null by default.
+         * Pairs are cached only if exclude and unordered paths can not match below them,
+         * so the cache must not be shared by comparers with other settings.
+         */
+        public Builder equalityCache(EqualityCache equalityCache) {
+            this.equalityCache = equalityCache;
+            return this;
+        }
+
+        /**
+         * Counters of comparisons (nodes, property reads, time, visits of classes etc.), they are added to stats after each call.
+         * Null by default: then nothing is counted.
+         */
+        public Builder stats(ComparisonStats stats) {
+            this.stats = stats;
+            return this;
+        }
+
+        /**
+         * Maximal number of compared pairs in one call (including trial comparisons of unordered items and keys).
+         * When it's exceeded, comparison is stopped with difference BUDGET_EXCEEDED at the current path,
+         * so objects are not equal. Unlimited by default.
+         * In parallel comparison chunks take nodes from the shared budget by portions.
+         */
+        public Builder maxNodes(long maxNodes) {
+            if (maxNodes < 1)
+                throw new IllegalArgumentException("maxNodes");
+            this.maxNodes = maxNodes;
+            return this;
+        }
+
+        /**
+         * Maximal depth of compared pair (the root has depth 0), deeper pair stops comparison with BUDGET_EXCEEDED.
+         * Unlimited by default.
+         */
+        public Builder maxDepth(int maxDepth) {
+            if (maxDepth < 0)
+                throw new IllegalArgumentException("maxDepth");
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * Maximal time of one call, it's checked once per 1024 compared pairs, comparison is stopped with BUDGET_EXCEEDED.
+         * Unlimited by default.
+         */
+        public Builder maxTime(long maxTime, TimeUnit unit) {
+            if (maxTime < 1)
+                throw new IllegalArgumentException("maxTime");
+            this.maxNanos = unit.toNanos(maxTime);
+            return this;
+        }
+
+        /**
+         * Maximal length of values in messages of differences, 1000 by default, longer values are truncated.
+         * Collections and maps are rendered only up to this length, so big graphs are not turned into strings.
+         */
+        public Builder maxValueLength(int maxValueLength) {
+            if (maxValueLength < 1)
+                throw new IllegalArgumentException("maxValueLength");
+            this.maxValueLength = maxValueLength;
+            return this;
+        }
+
+        /**
+         * Values of the type (or its subtypes) are compared by comparator instead of equals or their properties,
+         * e.g. valueComparator(BigDecimal.class, ValueComparators.bigDecimalIgnoringScale()).
+         * Comparator of the nearest type is used, superclasses go before interfaces. Null comparator removes registration.
+         */
+        public <T> Builder valueComparator(Class<T> type, ValueComparator<? super T> comparator) {
+            if (type.isPrimitive())
+                throw new IllegalArgumentException("Values of primitive types are boxed, use wrapper type.");
+            if (comparator == null)
+                this.valueComparators.remove(type);
+            else
+                this.valueComparators.put(type, comparator);
+            return this;
+        }
+
+        /**
+         * Tolerance of comparison of doubles and floats, e.g. FloatTolerance.ulps(4). Null by default: values must be equal exactly.
+         * Primitive properties and items of double[] and float[] are compared without boxing.
+         * Value comparators registered for Double or Float go before it.
+         */
+        public Builder floatTolerance(FloatTolerance floatTolerance) {
+            this.floatTolerance = floatTolerance;
+            return this;
+        }
+
+        /**
+         * Method for assertEqual of this comparer, if it's null, static assertAction is used
+         */
+        public Builder assertAction(Action2<Boolean, String> assertAction) {
+            this.assertAction = assertAction;
+            return this;
+        }
+
+        public DeepComparer build() {
+            return new DeepComparer(this);
+        }
+    }
+
+    public boolean isCheckIterableTypesStrictly() {
+        return checkIterableTypesStrictly;
+    }
+
+    public String[] getExcludePaths() {
+        return excludePaths.clone();
+    }
+
+    ExcludeMatcher getExcludeMatcher() {
+        return excludeMatcher;
+    }
+
+    public String[] getUnorderedPaths() {
+        return unorderedPaths.clone();
+    }
+
+    ExcludeMatcher getUnorderedMatcher() {
+        return unorderedMatcher;
+    }
+
+    public String[] getAlignedPaths() {
+        return alignedPaths.clone();
+    }
+
+    ExcludeMatcher getAlignedMatcher() {
+        return alignedMatcher;
+    }
+
+    public int getMaxAlignmentEdits() {
+        return maxAlignmentEdits;
+    }
+
+    /**
+     * Value comparators by their registered types
+     */
+    public Map<Class<?>, ValueComparator<?>> getValueComparators() {
+        return valueComparators;
+    }
+
+    /**
+     * Comparator which compares values of the class, or null
+     */
+    public ValueComparator<Object> getValueComparator(Class<?> clazz) {
+        return valueComparatorRegistry == null ? null : valueComparatorRegistry.get(clazz);
+    }
+
+    public FloatTolerance getFloatTolerance() {
+        return floatTolerance;
+    }
+
+    /**
+     * Tolerance for unboxed values of the primitive type (double or float), or null if they are compared exactly
+     * or by value comparator
+     */
+    FloatTolerance getToleranceFor(Class<?> primitiveType) {
+        Class<?> boxed = primitiveType == double.class ? Double.class : primitiveType == float.class ? Float.class : null;
+        return boxed == null || valueComparators.containsKey(boxed) ? null : floatTolerance;
+    }
+
+    ValueComparatorRegistry getValueComparatorRegistry() {
+        return valueComparatorRegistry;
+    }
+
+    public Class<?>[] getUnorderedTypes() {
+        return unorderedTypes.clone();
+    }
+
+    boolean isUnorderedType(Class<?> clazz) {
+        for (Class<?> type : unorderedTypes) {
+            if (type.isAssignableFrom(clazz))
+                return true;
+        }
+        return false;
+    }
+
+    private static ExcludeMatcher compile(String... paths) {
+        return new ExcludeMatcher(
+                Collections2.transform(Arrays.asList(paths), new Function<String, ExcludePath>() {
+                    @Override
+                    public ExcludePath apply(String item) {
+                        return new ExcludePath(item);
+                    }
+                }));
+    }
+
+    public boolean isRememberEqualPairs() {
+        return rememberEqualPairs;
+    }
+
+    public boolean isParallel() {
+        return forkJoinPool != null;
+    }
+
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public EqualityCache getEqualityCache() {
+        return equalityCache;
+    }
+
+    public int getMaxDifferences() {
+        return maxDifferences;
+    }
+
+    public ComparisonStats getStats() {
+        return stats;
+    }
+
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxValueLength() {
+        return maxValueLength;
+    }
+
+    /**
+     * Long.MAX_VALUE nanoseconds if time is unlimited
+     */
+    public long getMaxTime(TimeUnit unit) {
+        return unit.convert(maxNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Method for assertEqual of this comparer, static assertAction if it's not set
+     */
+    private Action2<Boolean, String> getInstanceAssertAction() {
+        return instanceAssertAction != null ? instanceAssertAction : assertAction;
+    }
+
+    /**
+     * Checks all public fields and getters recursively with settings of this comparer.
+     *
+     * @return null if items are equal, otherwise string with error
+     */
+    public String findDifference(Object expected, Object actual) {
+        Comparison comparison = acquireComparison();
+        try {
+            return comparison.compare(expected, actual);
+        } finally {
+            releaseComparison(comparison);
+        }
+    }
+
+    /**
+     * Idle comparison of this comparer, or the new one.
+     * It's taken from the queue while it's used, so other threads and nested calls (e.g. from getters or listeners)
+     * get their own one.
+     */
+    private Comparison acquireComparison() {
+        Comparison res = idleComparisons.poll();
+        if (res == null)
+            return new Comparison(this);
+        idleCount.decrementAndGet();
+        return res;
+    }
+
+    /**
+     * Keeps comparison idle, unless there are enough idle ones or it's grown by a large graph
+     */
+    private void releaseComparison(Comparison comparison) {
+        if (!comparison.isReusable())
+            return;
+        if (idleCount.incrementAndGet() > MAX_IDLE_COMPARISONS) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        idleComparisons.offer(comparison);
+    }
+
+    int getIdleComparisonCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * Collects all differences in one pass (but not more than maxDifferences).
+     * Different objects are not compared by their children: e.g. if sizes of lists are different, their items are not compared.
+     * Comparison is sequential, even if parallel is set.
+     */
+    public Differences findAllDifferences(Object expected, Object actual) {
+        Comparison comparison = acquireComparison();
+        try {
+            return comparison.compareAll(expected, actual, maxDifferences);
+        } finally {
+            releaseComparison(comparison);
+        }
+    }
+
+    /**
+     * Passes differences to listener, until it returns false.
+     * Different objects are not compared by their children. Comparison is sequential, even if parallel is set.
+     *
+     * @return true if objects are equal
+     */
+    public boolean findDifferences(Object expected, Object actual, DifferenceListener listener) {
+        Comparison comparison = acquireComparison();
+        try {
+            return comparison.compare(expected, actual, listener);
+        } finally {
+            releaseComparison(comparison);
+        }
+    }
+
+    /**
+     * Compares actual graph with snapshot of expected one (see Snapshot), expected graph is not loaded:
+     * snapshot is read from the mapped file, as it's compared.
+     * Unordered and aligned paths and types, limits of nodes, depth and time are not applied to snapshots.
+     *
+     * @return null if graph is equal to snapshot, otherwise string with error
+     */
+    public String findSnapshotDifference(Snapshot expected, Object actual) {
+        return new SnapshotComparison(this, expected).compare(actual);
+    }
+
+    /**
+     * Collects all differences of actual graph from snapshot in one pass (but not more than maxDifferences)
+     */
+    public Differences findAllSnapshotDifferences(Snapshot expected, Object actual) {
+        return new SnapshotComparison(this, expected).compareAll(actual, maxDifferences);
+    }
+
+    /**
+     * Passes differences of actual graph from snapshot to listener, until it returns false.
+     *
+     * @return true if graph is equal to snapshot
+     */
+    public boolean findSnapshotDifferences(Snapshot expected, Object actual, DifferenceListener listener) {
+        return new SnapshotComparison(this, expected).compare(actual, listener);
+    }
+
+    /**
+     * Compares two snapshots, e.g. outputs of two runs, without loading either graph: both files are read
+     * side by side, so memory depends on depth of graphs and sizes of maps on the path only.
+     * Paths of differences are the same as for objects, classes are matched by names
+     * and objects are not created (except values for value comparators).
+     *
+     * @return null if snapshots are equal, otherwise string with error
+     */
+    public String findDifferenceOfSnapshots(Snapshot expected, Snapshot actual) {
+        return new SnapshotPairComparison(this, expected, actual).compare();
+    }
+
+    /**
+     * Collects all differences of two snapshots in one pass (but not more than maxDifferences)
+     */
+    public Differences findAllDifferencesOfSnapshots(Snapshot expected, Snapshot actual) {
+        return new SnapshotPairComparison(this, expected, actual).compareAll(maxDifferences);
+    }
+
+    /**
+     * Passes differences of two snapshots to listener, until it returns false.
+     *
+     * @return true if snapshots are equal
+     */
+    public boolean findDifferencesOfSnapshots(Snapshot expected, Snapshot actual, DifferenceListener listener) {
+        return new SnapshotPairComparison(this, expected, actual).compare(listener);
+    }
+
+    /**
+     * 128-bit structural hash of all public fields and getters, with settings of this comparer.
+     * If objects are equal, their fingerprints are equal (except graphs with cycles of different lengths),
+     * so fingerprint of expected graph can be stored instead of the graph itself.
+     * If fingerprints are different, objects are different.
+     */
+    public Fingerprint getFingerprint(Object value) {
+        return new Fingerprinter(this).fingerprint(value);
+    }
+
+    /**
+     * Fingerprints of the graph and its subtrees up to maxDepth (the root has depth 0).
+     * Use FingerprintNode.findDifferentPaths to find subtrees which are changed.
+     */
+    public FingerprintNode getFingerprintTree(Object value, int maxDepth) {
+        return new Fingerprinter(this).fingerprintTree(value, maxDepth);
+    }
+
+    /**
+     * Checks all public fields and getters recursively with settings of this comparer.
+     */
+    public boolean isEqual(Object expected, Object actual) {
+        return findDifference(expected, actual) == null;
+    }
+
+    /**
+     * Checks all public fields and getters recursively with settings of this comparer.
+     * Fails by assertAction if not equal.
+     */
+    public void assertEqual(Object expected, Object actual) {
+        String res = findDifference(expected, actual);
+        getInstanceAssertAction().apply(res == null, res);
+    }
+}
@@ -0,0 +1,129 @@
+package npakudin;
+
+import npakudin.common.Arrays2;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Structural hash of object graph, consistent with DeepComparer:
+ * if objects are equal by comparer (without exclude paths), their hashes are equal.
+ * It's used to split items of collections into buckets, so only items of the same bucket are compared.
+ *
+ * Hash is computed up to maxDepth levels, deeper objects give only their class or size.
+ * Items of iterables and entries of maps are combined by sum, so hash does not depend on their order.
+ * Objects with equals are hashed by hashCode only if class declares it too, otherwise by class.
+ * Values with value comparator are hashed by class, primitive arrays with comparator of items - by class and length.
+ */
+public class DeepHasher {
+
+    public static final int DEFAULT_MAX_DEPTH = 3;
+
+    private final int maxDepth;
+    // null if there are no value comparators
+    private final ValueComparatorRegistry valueComparators;
+
+    public DeepHasher() {
+        this(DEFAULT_MAX_DEPTH);
+    }
+
+    public DeepHasher(int maxDepth) {
+        this(maxDepth, null);
+    }
+
+    DeepHasher(int maxDepth, ValueComparatorRegistry valueComparators) {
+        if (maxDepth < 0)
+            throw new IllegalArgumentException("maxDepth");
+        this.maxDepth = maxDepth;
+        this.valueComparators = valueComparators;
+    }
+
+    public int hash(Object value) {
+        return hash(value, 0);
+    }
+
+    /**
+     * Recursion is limited by maxDepth, so cycles are not tracked
+     */
+    private int hash(Object value, int depth) {
+        if (value == null)
+            return 0;
+
+        Class<?> clazz = value.getClass();
+        if (valueComparators != null && valueComparators.get(clazz) != null)
+            return classHash(clazz);
+        ClassDescriptor descriptor = ClassDescriptor.forClass(clazz);
+        if (descriptor.isValueType())
+            return value.hashCode();
+        if (descriptor.overridesEquals())
+            return descriptor.overridesHashCode() ? value.hashCode() : classHash(clazz);
+
+        // type of iterable is not necessarily checked, so it's not hashed
+        if (descriptor.isMap()) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            int res = map.size();
+            if (depth == maxDepth)
+                return res;
+            for (Map.Entry<?, ?> entry : map.entrySet())
+                res += mix(31 * keyHash(entry.getKey(), depth) + hash(entry.getValue(), depth + 1));
+            return res;
+        }
+        if (descriptor.isIterable()) {
+            if (depth == maxDepth)
+                return value instanceof Collection ? ((Collection<?>) value).size() : 0;
+            int res = 0;
+            for (Object item : (Iterable<?>) value)
+                res += mix(hash(item, depth + 1));
+            return res;
+        }
+        if (descriptor.isPrimitiveArray()) {
+            // items equal by comparator (e.g. with tolerance) can have different hashes
+            if (valueComparators != null && valueComparators.hasItemComparator(clazz))
+                return 31 * classHash(clazz) + Array.getLength(value);
+            return Arrays2.hashCode(value);
+        }
+        if (descriptor.isArray()) {
+            Object[] array = (Object[]) value;
+            int res = array.length;
+            if (depth == maxDepth)
+                return res;
+            for (Object item : array)
+                res += mix(hash(item, depth + 1));
+            return res;
+        }
+
+        int res = classHash(clazz);
+        if (depth == maxDepth)
+            return res;
+        for (Property property : descriptor.getProperties())
+            res = 31 * res + hash(property.get(value), depth + 1);
+        return res;
+    }
+
+    /**
+     * Keys with equals are compared by equals, keys without it are matched by comparison, so they are hashed by structure
+     */
+    private int keyHash(Object key, int depth) {
+        if (key == null)
+            return 0;
+        if (valueComparators != null && valueComparators.get(key.getClass()) != null)
+            return classHash(key.getClass());
+        ClassDescriptor descriptor = ClassDescriptor.forClass(key.getClass());
+        if (!descriptor.isValueType() && !descriptor.overridesEquals())
+            return hash(key, depth + 1);
+        return key.hashCode();
+    }
+
+    private static int classHash(Class<?> clazz) {
+        return clazz.getName().hashCode();
+    }
+
+    /**
+     * Spreads bits, so sum of hashes of items is not dominated by low bits
+     */
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,59 @@
+package npakudin;
+
+/**
+ * One difference of compared graphs: path, reason and values (see DifferenceKind).
+ * Message is made only if it's requested, values are referenced until then.
+ */
+public class Difference {
+    private final String path;
+    private final DifferenceKind kind;
+    private final Object expected;
+    private final Object actual;
+    private final int maxValueLength;
+
+    public Difference(String path, DifferenceKind kind, Object expected, Object actual) {
+        this(path, kind, expected, actual, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxValueLength values in message are truncated to this length
+     */
+    public Difference(String path, DifferenceKind kind, Object expected, Object actual, int maxValueLength) {
+        this.path = path;
+        this.kind = kind;
+        this.expected = expected;
+        this.actual = actual;
+        this.maxValueLength = maxValueLength;
+    }
+
+    /**
+     * Path to the different objects, e.g. "$root.getChildren.[0]"
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public DifferenceKind getKind() {
+        return kind;
+    }
+
+    public Object getExpected() {
+        return expected;
+    }
+
+    public Object getActual() {
+        return actual;
+    }
+
+    /**
+     * The same message as getNotEqualPath returns, e.g. "$root.x; Expected value: "1"; actual value: "2"."
+     */
+    public String getMessage() {
+        return path + "; " + kind.describe(expected, actual, maxValueLength);
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
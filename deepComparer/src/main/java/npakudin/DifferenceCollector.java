@@ -0,0 +1,48 @@
+package npakudin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Listener which collects differences until their number reaches the limit
+ */
+public class DifferenceCollector implements DifferenceListener {
+    private final int maxDifferences;
+    private final int maxValueLength;
+    private final List<Difference> items = new ArrayList<Difference>();
+
+    public DifferenceCollector(int maxDifferences) {
+        this(maxDifferences, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxValueLength values in messages of differences are truncated to this length
+     */
+    public DifferenceCollector(int maxDifferences, int maxValueLength) {
+        if (maxDifferences < 1)
+            throw new IllegalArgumentException("maxDifferences");
+        this.maxDifferences = maxDifferences;
+        this.maxValueLength = maxValueLength;
+    }
+
+    @Override
+    public boolean onDifference(StackEntry entry, DifferenceKind kind, Object expected, Object actual) {
+        return add(new Difference(entry.getPath(), kind, expected, actual, maxValueLength));
+    }
+
+    boolean add(Difference difference) {
+        items.add(difference);
+        return items.size() < maxDifferences;
+    }
+
+    public int getMaxDifferences() {
+        return maxDifferences;
+    }
+
+    /**
+     * Collected differences, they are truncated if the limit is reached
+     */
+    public Differences getDifferences() {
+        return new Differences(new ArrayList<Difference>(items), items.size() >= maxDifferences);
+    }
+}
@@ -0,0 +1,75 @@
+package npakudin;
+
+/**
+ * Reason of difference, it makes the message of difference from expected and actual values.
+ * Values are objects at the path, except:
+ * SIZE - sizes of collections, EXPECTED_LONGER and ACTUAL_LONGER - number of items of the shorter iterable,
+ * MISSING_KEY - key of expected map (actual is null),
+ * MISSING_ITEM - item of expected unordered iterable without pair in actual (actual is null),
+ * ITEM_DELETED - item of expected aligned list, which is deleted in actual (actual is null, index is of expected),
+ * ITEM_INSERTED - item of actual aligned list, which is inserted (expected is null, index is of actual),
+ * BUDGET_EXCEEDED - name of exceeded limit and its value, comparison is stopped at the path.
+ */
+public enum DifferenceKind {
+    EXPECTED_NULL,
+    ACTUAL_NULL,
+    TYPE,
+    VALUE,
+    SIZE,
+    EXPECTED_LONGER,
+    ACTUAL_LONGER,
+    MISSING_KEY,
+    MISSING_ITEM,
+    ITEM_DELETED,
+    ITEM_INSERTED,
+    BUDGET_EXCEEDED;
+
+    /**
+     * Message of difference without path, e.g. "Expected value: "1"; actual value: "2"."
+     */
+    public String describe(Object expected, Object actual) {
+        return describe(expected, actual, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Message of difference without path, values are truncated to maxValueLength chars (see ValueRenderer)
+     */
+    public String describe(Object expected, Object actual, int maxValueLength) {
+        switch (this) {
+            case EXPECTED_NULL:
+                return String.format("expected is null, actual is \"%s\".", ValueRenderer.render(actual, maxValueLength));
+            case ACTUAL_NULL:
+                return String.format("actual is null, expected is \"%s\".", ValueRenderer.render(expected, maxValueLength));
+            case TYPE:
+                return String.format("Expected type: %s; actual type: %s.", typeOf(expected), typeOf(actual));
+            case VALUE:
+                return String.format("Expected value: \"%s\"; actual value: \"%s\".",
+                        ValueRenderer.render(expected, maxValueLength), ValueRenderer.render(actual, maxValueLength));
+            case SIZE:
+                return String.format("Size of expected: %d; size of actual: %d.", expected, actual);
+            case EXPECTED_LONGER:
+                return String.format("Sizes are different. Size of expected: >%d; size of actual: =%d.", expected, actual);
+            case ACTUAL_LONGER:
+                return String.format("Sizes are different. Size of expected: =%d; size of actual: >%d.", expected, actual);
+            case MISSING_KEY:
+                return String.format("actual object does not contain key %s.", ValueRenderer.render(expected, maxValueLength));
+            case MISSING_ITEM:
+                return String.format("actual object does not contain item \"%s\".", ValueRenderer.render(expected, maxValueLength));
+            case ITEM_DELETED:
+                return String.format("Item \"%s\" of expected is deleted in actual.", ValueRenderer.render(expected, maxValueLength));
+            case ITEM_INSERTED:
+                return String.format("Item \"%s\" is inserted into actual.", ValueRenderer.render(actual, maxValueLength));
+            case BUDGET_EXCEEDED:
+                return String.format("Comparison is stopped: %s exceeds %s.", expected, actual);
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Objects of snapshots are not restored, they keep names of their classes
+     */
+    private static Object typeOf(Object value) {
+        return value instanceof SnapshotValue ? "class " + ((SnapshotValue) value).getClassName() : value.getClass();
+    }
+}
@@ -0,0 +1,18 @@
+package npakudin;
+
+/**
+ * Receives differences while graphs are compared, in order of traversal.
+ * Path and message are not built by comparer, so listener can do it only for differences it needs.
+ */
+public interface DifferenceListener {
+    /**
+     * @param entry the last segment of path to different objects, its parents are other segments.
+     *              Entries are reused by comparer, so they are valid during this call only
+     *              (use entry.getPath() to keep the path)
+     * @param kind reason of difference, DifferenceKind.describe(expected, actual) makes message
+     * @param expected see DifferenceKind
+     * @param actual see DifferenceKind
+     * @return true to continue comparison, false to stop it
+     */
+    boolean onDifference(StackEntry entry, DifferenceKind kind, Object expected, Object actual);
+}
@@ -0,0 +1,59 @@
+package npakudin;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * All differences found by one comparison, in order of traversal.
+ * If their number reached the limit, comparison was stopped, and there can be more differences.
+ */
+public class Differences implements Iterable<Difference> {
+    private final List<Difference> items;
+    private final boolean truncated;
+
+    public Differences(List<Difference> items, boolean truncated) {
+        this.items = Collections.unmodifiableList(items);
+        this.truncated = truncated;
+    }
+
+    public List<Difference> getItems() {
+        return items;
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /**
+     * True if comparison was stopped by limit of differences
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public Iterator<Difference> iterator() {
+        return items.iterator();
+    }
+
+    /**
+     * Messages of differences, one per line
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Difference item : items) {
+            if (sb.length() > 0)
+                sb.append('\n');
+            sb.append(item.getMessage());
+        }
+        if (truncated)
+            sb.append("\n...");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package npakudin;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pairs of objects which are proven to be deeply equal, it's kept between comparisons of one DeepComparer.
+ * Objects are compared by identity and referenced weakly, so cache does not keep them alive.
+ * Cached objects must not be changed, cache does not notice it and returns outdated result,
+ * so it's useful for immutable data shared between compared graphs (e.g. reference data).
+ *
+ * Cache is bounded: it's a 2-way set-associative table, new pair replaces the older pair of its set.
+ * It's thread-safe without locks: pair can be lost by concurrent put, but it's only a cache.
+ * Only subtrees of at least minSubtreeSize nodes are put, small subtrees are compared faster than cached.
+ */
+public class EqualityCache {
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    private final int minSubtreeSize;
+
+    public EqualityCache(int capacity) {
+        this(capacity, 32);
+    }
+
+    /**
+     * @param capacity maximal number of pairs, it's rounded up to power of 2
+     * @param minSubtreeSize minimal number of compared nodes in subtree to put it to cache
+     */
+    public EqualityCache(int capacity, int minSubtreeSize) {
+        if (capacity < 2)
+            throw new IllegalArgumentException("capacity");
+        int size = 2;
+        while (size < capacity)
+            size *= 2;
+        this.entries = new AtomicReferenceArray<Entry>(size);
+        this.mask = size - 1;
+        this.minSubtreeSize = Math.max(1, minSubtreeSize);
+    }
+
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    public int getMinSubtreeSize() {
+        return minSubtreeSize;
+    }
+
+    public boolean contains(Object expected, Object actual) {
+        int hash = hash(expected, actual);
+        int slot = hash & mask & ~1;
+        return matches(entries.get(slot), hash, expected, actual) || matches(entries.get(slot + 1), hash, expected, actual);
+    }
+
+    /**
+     * Puts pair to the first way of its set, pair from the first way is moved to the second one
+     */
+    public void put(Object expected, Object actual) {
+        int hash = hash(expected, actual);
+        int slot = hash & mask & ~1;
+        Entry first = entries.get(slot);
+        if (matches(first, hash, expected, actual) || matches(entries.get(slot + 1), hash, expected, actual))
+            return;
+
+        if (first != null && first.get() != null)
+            entries.set(slot + 1, first);
+        entries.set(slot, new Entry(hash, expected, actual));
+    }
+
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++)
+            entries.set(i, null);
+    }
+
+    private static boolean matches(Entry entry, int hash, Object expected, Object actual) {
+        return entry != null && entry.hash == hash && entry.get() == expected && entry.actual.get() == actual;
+    }
+
+    private static int hash(Object expected, Object actual) {
+        int h = System.identityHashCode(expected) * 31 + System.identityHashCode(actual);
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static class Entry extends WeakReference<Object> {
+        final int hash;
+        final WeakReference<Object> actual;
+
+        Entry(int hash, Object expected, Object actual) {
+            super(expected);
+            this.hash = hash;
+            this.actual = new WeakReference<Object>(actual);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package npakudin;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * All exclude paths compiled into one automaton (glob NFA, which is turned into DFA lazily).
+ * Comparer feeds it with path segments while it goes down the graph, so path strings are not built.
+ * If no pattern can match the current path or any path below it, state is dead
+ * and children are not checked at all.
+ *
+ * Matcher is thread-safe: states are immutable except cache of transitions,
+ * which is filled under lock and can be read without it.
+ */
+public class ExcludeMatcher {
+
+    private final char[][] patterns;
+    // NFA position p belongs to pattern patternOf[p] and points to char p - offsets[pattern] of it,
+    // position after the last char of pattern is accepting
+    private final int[] offsets;
+    private final int[] patternOf;
+    // each char used in patterns has its own class, all other chars are in class 0
+    private final int[] charClasses = new int[128];
+    private final int classCount;
+
+    private final Map<BitSet, State> states = new HashMap<BitSet, State>();
+    private final State initialState;
+
+    public ExcludeMatcher(Collection<ExcludePath> excludePaths) {
+        patterns = new char[excludePaths.size()][];
+        offsets = new int[patterns.length];
+
+        int positions = 0;
+        int classes = 1;
+        int i = 0;
+        for (ExcludePath excludePath : excludePaths) {
+            char[] chars = excludePath.getPath().toCharArray();
+            for (char c : chars) {
+                if (c != '*' && c != '?' && charClasses[c] == 0)
+                    charClasses[c] = classes++;
+            }
+            patterns[i] = chars;
+            offsets[i] = positions;
+            positions += chars.length + 1;
+            i++;
+        }
+        classCount = classes;
+
+        patternOf = new int[positions];
+        for (i = 0; i < patterns.length; i++) {
+            for (int j = 0; j <= patterns[i].length; j++)
+                patternOf[offsets[i] + j] = i;
+        }
+
+        BitSet initial = new BitSet(positions);
+        for (i = 0; i < patterns.length; i++)
+            initial.set(offsets[i]);
+        synchronized (this) {
+            initialState = intern(closure(initial));
+        }
+    }
+
+    /**
+     * State before the root segment
+     */
+    public State getInitialState() {
+        return initialState;
+    }
+
+    /**
+     * State after segment of the entry.
+     * Segments are separated by '.', as in the path string.
+     */
+    public State next(State state, StackEntry entry) {
+        if (state.isDead())
+            return state;
+
+        if (entry.getParent() != null)
+            state = next(state, '.');
+
+        if (entry.isIndex()) {
+            state = next(state, '[');
+            state = nextDigits(state, entry.getIndex());
+            return next(state, ']');
+        }
+        if (entry.isKey()) {
+            state = next(state, '[');
+            state = next(state, String.valueOf(entry.getKey()));
+            return next(state, ']');
+        }
+        return next(state, entry.getName());
+    }
+
+    /**
+     * Checks the whole path at once
+     */
+    public boolean matches(String path) {
+        return next(initialState, path).isExcluded();
+    }
+
+    private State next(State state, String chars) {
+        for (int i = 0; i < chars.length() && !state.isDead(); i++)
+            state = next(state, chars.charAt(i));
+        return state;
+    }
+
+    private State nextDigits(State state, int value) {
+        if (value >= 10)
+            state = nextDigits(state, value / 10);
+        return next(state, (char) ('0' + value % 10));
+    }
+
+    private State next(State state, char c) {
+        int charClass = c < 128 ? charClasses[c] : 0;
+        State res = state.transitions[charClass];
+        if (res == null)
+            res = computeTransition(state, charClass, c);
+        return res;
+    }
+
+    private synchronized State computeTransition(State state, int charClass, char c) {
+        State res = state.transitions[charClass];
+        if (res != null)
+            return res;
+
+        BitSet positions = new BitSet(patternOf.length);
+        for (int p = state.positions.nextSetBit(0); p >= 0; p = state.positions.nextSetBit(p + 1)) {
+            char[] pattern = patterns[patternOf[p]];
+            int i = p - offsets[patternOf[p]];
+            if (i == pattern.length)
+                continue;
+
+            if (pattern[i] == '*')
+                positions.set(p);
+            else if (pattern[i] == '?' || pattern[i] == c)
+                positions.set(p + 1);
+        }
+
+        res = intern(closure(positions));
+        state.transitions[charClass] = res;
+        return res;
+    }
+
+    /**
+     * '*' can match empty string, so position after it is reachable without consuming chars
+     */
+    private BitSet closure(BitSet positions) {
+        for (int p = positions.nextSetBit(0); p >= 0; p = positions.nextSetBit(p + 1)) {
+            char[] pattern = patterns[patternOf[p]];
+            int i = p - offsets[patternOf[p]];
+            if (i < pattern.length && pattern[i] == '*')
+                positions.set(p + 1);
+        }
+        return positions;
+    }
+
+    private State intern(BitSet positions) {
+        State res = states.get(positions);
+        if (res == null) {
+            boolean excluded = false;
+            for (int i = 0; i < patterns.length; i++)
+                excluded |= positions.get(offsets[i] + patterns[i].length);
+
+            res = new State(positions, excluded, classCount);
+            states.put(positions, res);
+        }
+        return res;
+    }
+
+
+    /**
+     * State of the automaton after some path
+     */
+    public static class State {
+        private final BitSet positions;
+        private final boolean excluded;
+        private final State[] transitions;
+
+        private State(BitSet positions, boolean excluded, int classCount) {
+            this.positions = positions;
+            this.excluded = excluded;
+            this.transitions = new State[classCount];
+        }
+
+        /**
+         * Path matches one of exclude paths
+         */
+        public boolean isExcluded() {
+            return excluded;
+        }
+
+        /**
+         * Neither this path, nor any path below it matches exclude paths
+         */
+        public boolean isDead() {
+            return positions.isEmpty();
+        }
+    }
+}
@@ -1,18 +1,19 @@
 package npakudin;
 
+import java.util.Collections;
 import java.util.regex.Pattern;
 
 /**
  * Matches string to other string or glob pattern (* and ?).
  * Allows chars: A-Z a-z 0-9 _ * ? . $ []
+ * To check many paths at once use ExcludeMatcher.
  */
 public class ExcludePath {
 
     private static Pattern patternForPattern = Pattern.compile("[A-Za-z0-9_\\*\\?\\.\\[\\]$]*");
 
-    private Pattern pattern;
     private String path;
-    private boolean isGlob;
+    private ExcludeMatcher matcher;
 
     public ExcludePath(String path)
     {
@@ -20,18 +21,16 @@ public class ExcludePath {
             throw new IllegalArgumentException("path");
 
         this.path = path;
-        if (path.contains("*") || path.contains("?"))
-        {
-            isGlob = true;
-            pattern = Pattern.compile(String.format("^%s$", path.replace("[", "\\[").replace("]", "\\]")
-                    .replace("$", "\\$").replace(".", "\\.").replace("*", ".*").replace("?", ".")));
-        }
+    }
+
+    public String getPath() {
+        return path;
     }
 
     public boolean needExcludePath(String input)
     {
-        if (!isGlob)
-            return path.equals(input);
-        return pattern.matcher(input).matches();
+        if (matcher == null)
+            matcher = new ExcludeMatcher(Collections.singletonList(this));
+        return matcher.matches(input);
     }
 }
@@ -0,0 +1,57 @@
+package npakudin;
+
+/**
+ * 128-bit structural hash of object graph, see DeepComparer.getFingerprint.
+ * It's stable between runs, so it can be stored as string and parsed later.
+ */
+public class Fingerprint {
+    private final long high;
+    private final long low;
+
+    public Fingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Parses string made by toString: 32 hex digits
+     */
+    public static Fingerprint parse(String value) {
+        if (value == null || value.length() != 32)
+            throw new IllegalArgumentException("value");
+        return new Fingerprint(Long.parseUnsignedLong(value.substring(0, 16), 16),
+                Long.parseUnsignedLong(value.substring(16), 16));
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Fingerprint that = (Fingerprint) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return hex(high) + hex(low);
+    }
+
+    private static String hex(long value) {
+        String res = Long.toHexString(value);
+        return "0000000000000000".substring(res.length()) + res;
+    }
+}
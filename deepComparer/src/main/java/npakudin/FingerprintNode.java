@@ -0,0 +1,74 @@
+package npakudin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fingerprint of subtree with fingerprints of its children (Merkle tree), up to some depth.
+ * Trees of two graphs are compared from the root, descending only into subtrees with different fingerprints.
+ */
+public class FingerprintNode {
+    private final String path;
+    private final Fingerprint fingerprint;
+    private final List<FingerprintNode> children;
+
+    public FingerprintNode(String path, Fingerprint fingerprint, List<FingerprintNode> children) {
+        this.path = path;
+        this.fingerprint = fingerprint;
+        this.children = Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Path of the subtree, e.g. "$root.getChildren.[0]"
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public Fingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Children in order of traversal, empty for leaves and for nodes at the maximal depth
+     */
+    public List<FingerprintNode> getChildren() {
+        return children;
+    }
+
+    /**
+     * The deepest paths where fingerprints are different.
+     * If children of different nodes do not correspond to each other (by count and paths), the node itself is returned.
+     */
+    public List<String> findDifferentPaths(FingerprintNode other) {
+        List<String> res = new ArrayList<String>();
+        findDifferentPaths(other, res);
+        return res;
+    }
+
+    private void findDifferentPaths(FingerprintNode other, List<String> res) {
+        if (fingerprint.equals(other.fingerprint))
+            return;
+
+        boolean sameChildren = !children.isEmpty() && children.size() == other.children.size();
+        for (int i = 0; i < children.size() && sameChildren; i++)
+            sameChildren = children.get(i).path.equals(other.children.get(i).path);
+        if (!sameChildren) {
+            res.add(path);
+            return;
+        }
+
+        int size = res.size();
+        for (int i = 0; i < children.size(); i++)
+            children.get(i).findDifferentPaths(other.children.get(i), res);
+        // children are the same, so node itself is different (e.g. its type)
+        if (res.size() == size)
+            res.add(path);
+    }
+
+    @Override
+    public String toString() {
+        return path + " " + fingerprint;
+    }
+}
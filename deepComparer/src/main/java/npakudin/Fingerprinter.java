@@ -0,0 +1,519 @@
+package npakudin;
+
+import npakudin.common.IdentityPairMap;
+
+import java.lang.reflect.Array;
+import java.util.*;
+
+/**
+ * Computes Fingerprint of object graph: it visits the same fields, getters, items and entries as Comparison,
+ * with the same exclude paths, so equal graphs have equal fingerprints.
+ * Fingerprint is stable between runs: classes are hashed by names, enums by names, strings by chars.
+ * Objects which override equals are hashed by their class and hashCode (if they override it too),
+ * so their fingerprints are as stable as their hashCode. Values with value comparator are hashed by their class only.
+ *
+ * Traversal is not recursive, as in Comparison. Cycle is hashed as reference to ancestor by distance to it
+ * (so graphs with cycles of different lengths have different fingerprints, even if comparer finds them equal).
+ * Subtrees without references above them are remembered by identity, so shared objects are hashed once.
+ * Items of unordered iterables and entries of maps are combined by sum, so their order does not matter.
+ */
+public class Fingerprinter {
+
+    private static final int SKIP = 0;
+    private static final int LEAF = 1;
+    private static final int DESCEND = 2;
+
+    // tags of kinds of nodes
+    private static final long NULL = 1;
+    private static final long REF = 2;
+    private static final long VALUE = 3;
+    private static final long EQUALS = 4;
+    private static final long ARRAY = 5;
+    private static final long ITERABLE = 6;
+    private static final long MAP = 7;
+    private static final long OBJECT = 8;
+
+    private static final long SEED_LOW = 0x9E3779B97F4A7C15L;
+    private static final long SEED_HIGH = 0xC2B2AE3D27D4EB4FL;
+
+    private static final long[] NO_CLASS = new long[2];
+
+    private static final ClassValue<long[]> classHashes = new ClassValue<long[]>() {
+        @Override
+        protected long[] computeValue(Class<?> type) {
+            return hashString(type.getName());
+        }
+    };
+
+    private final DeepComparer settings;
+    private final ExcludeMatcher matcher;
+    private final ExcludeMatcher unorderedMatcher;
+    private final boolean checkIterableTypesStrictly;
+    // null if there are no value comparators
+    private final ValueComparatorRegistry valueComparators;
+
+    private Frame[] frames = new Frame[16];
+    private int depth;
+
+    // objects on the current path, with their depths
+    private final IdentityPairMap ancestors = new IdentityPairMap();
+    // hashes of subtrees without references above them
+    private final IdentityHashMap<Object, long[]> memo = new IdentityHashMap<Object, long[]>();
+    // the smallest depth of ancestor, which is referenced from the current subtree
+    private int minRefDepth = Integer.MAX_VALUE;
+    // nodes of tree are made up to this depth, -1 if tree is not necessary
+    private int treeDepth = -1;
+    private FingerprintNode root;
+    // for keys of maps
+    private Fingerprinter keys;
+
+    // hash of the last node
+    private long low;
+    private long high;
+
+    public Fingerprinter(DeepComparer settings) {
+        this(settings, settings.getExcludeMatcher(), settings.getUnorderedMatcher());
+    }
+
+    private Fingerprinter(DeepComparer settings, ExcludeMatcher matcher, ExcludeMatcher unorderedMatcher) {
+        this.settings = settings;
+        this.matcher = matcher;
+        this.unorderedMatcher = unorderedMatcher;
+        this.checkIterableTypesStrictly = settings.isCheckIterableTypesStrictly();
+        this.valueComparators = settings.getValueComparatorRegistry();
+    }
+
+    public Fingerprint fingerprint(Object value) {
+        run(value, -1);
+        return new Fingerprint(high, low);
+    }
+
+    /**
+     * Fingerprints of the graph and its subtrees up to maxDepth (the root has depth 0)
+     */
+    public FingerprintNode fingerprintTree(Object value, int maxDepth) {
+        if (maxDepth < 0)
+            throw new IllegalArgumentException("maxDepth");
+        run(value, maxDepth);
+        FingerprintNode res = root;
+        root = null;
+        return res;
+    }
+
+    private void run(Object value, int treeDepth) {
+        this.treeDepth = treeDepth;
+        Frame rootFrame = frame(0);
+        rootFrame.set("$root", value, null);
+        try {
+            int res = enter(rootFrame);
+            if (res == SKIP)
+                result(NULL, 0);
+            if (res != DESCEND) {
+                if (treeDepth >= 0)
+                    root = new FingerprintNode("$root", new Fingerprint(high, low), Collections.<FingerprintNode>emptyList());
+                return;
+            }
+
+            depth = 1;
+            while (depth > 0) {
+                Frame frame = frames[depth - 1];
+                Frame child = frame(depth);
+
+                if (!frame.nextChild(child)) {
+                    // hash of the frame is in low and high after it
+                    leave(frame);
+                    depth--;
+                    if (depth > 0)
+                        frames[depth - 1].accept(low, high);
+                    continue;
+                }
+
+                res = enter(child);
+                if (res == DESCEND) {
+                    depth++;
+                } else if (res == LEAF) {
+                    if (child.getDepth() <= treeDepth)
+                        frame.nodes.add(new FingerprintNode(child.getPath(), new Fingerprint(high, low),
+                                Collections.<FingerprintNode>emptyList()));
+                    frame.accept(low, high);
+                }
+            }
+        } finally {
+            clear();
+        }
+    }
+
+    /**
+     * Hashes node, if it has no children
+     * @return LEAF if hash is in low and high, DESCEND if children must be hashed, SKIP if path is excluded
+     */
+    private int enter(Frame frame) {
+        Frame parent = (Frame) frame.getParent();
+        ExcludeMatcher.State excludeState = matcher.next(
+                parent == null ? matcher.getInitialState() : parent.excludeState, frame);
+        if (excludeState.isExcluded())
+            return SKIP;
+
+        Object value = frame.getExpected();
+        if (value == null) {
+            result(NULL, 0);
+            return LEAF;
+        }
+
+        Class<?> clazz = value.getClass();
+        if (hasValueComparator(clazz)) {
+            comparedValueHash(clazz);
+            return LEAF;
+        }
+        ClassDescriptor descriptor = ClassDescriptor.forClass(clazz);
+        if (descriptor.isValueType()) {
+            valueHash(value);
+            return LEAF;
+        }
+
+        int ancestorDepth = ancestors.get(value, value);
+        if (ancestorDepth >= 0) {
+            minRefDepth = Math.min(minRefDepth, ancestorDepth);
+            result(REF, frame.getDepth() - ancestorDepth);
+            return LEAF;
+        }
+
+        if (descriptor.overridesEquals()) {
+            long[] classHash = classHashes.get(clazz);
+            long hashCode = descriptor.overridesHashCode() ? value.hashCode() : 0;
+            low = mix(classHash[0] ^ EQUALS) + hashCode;
+            high = mix(classHash[1] + EQUALS) ^ hashCode;
+            return LEAF;
+        }
+
+        if (descriptor.isPrimitiveArray()) {
+            primitiveArrayHash(value);
+            return LEAF;
+        }
+
+        ExcludeMatcher.State unorderedState = unorderedMatcher.next(
+                parent == null ? unorderedMatcher.getInitialState() : parent.unorderedState, frame);
+        // hash of subtree does not depend on its path, if no pattern can match below, and tree is not built
+        boolean memoize = excludeState.isDead() && unorderedState.isDead() && frame.getDepth() >= treeDepth;
+        if (memoize) {
+            long[] res = memo.get(value);
+            if (res != null) {
+                low = res[0];
+                high = res[1];
+                return LEAF;
+            }
+        }
+
+        frame.start(descriptor, excludeState, unorderedState);
+        frame.memoize = memoize;
+        frame.parentMinRefDepth = minRefDepth;
+        minRefDepth = Integer.MAX_VALUE;
+        ancestors.put(value, value, frame.getDepth());
+        return DESCEND;
+    }
+
+    /**
+     * All children are hashed, puts hash of the frame to low and high
+     */
+    private void leave(Frame frame) {
+        Object value = frame.getExpected();
+        frame.finish();
+        ancestors.remove(value, value);
+
+        if (frame.memoize && minRefDepth >= frame.getDepth())
+            memo.put(value, new long[] { low, high });
+        minRefDepth = Math.min(frame.parentMinRefDepth, minRefDepth);
+
+        if (frame.getDepth() <= treeDepth) {
+            FingerprintNode node = new FingerprintNode(frame.getPath(), new Fingerprint(high, low),
+                    new ArrayList<FingerprintNode>(frame.nodes));
+            if (frame.getDepth() == 0)
+                root = node;
+            else
+                frames[frame.getDepth() - 1].nodes.add(node);
+        }
+        frame.clear();
+    }
+
+    private void result(long tag, long value) {
+        low = mix(SEED_LOW ^ tag) + mix(value);
+        high = mix(SEED_HIGH + tag) ^ mix(value + SEED_LOW);
+    }
+
+    /**
+     * Values are hashed with their class, because values of different classes are different
+     */
+    private void valueHash(Object value) {
+        long[] classHash = classHashes.get(value.getClass());
+        long bits;
+        if (value instanceof String || value instanceof Enum) {
+            long[] res = hashString(value instanceof Enum ? ((Enum) value).name() : (String) value);
+            low = mix(classHash[0] ^ res[0]);
+            high = mix(classHash[1] ^ res[1]);
+            return;
+        }
+        if (value instanceof Double)
+            bits = Double.doubleToLongBits((Double) value);
+        else if (value instanceof Float)
+            bits = Float.floatToIntBits((Float) value);
+        else if (value instanceof Boolean)
+            bits = (Boolean) value ? 1 : 0;
+        else if (value instanceof Character)
+            bits = (Character) value;
+        else
+            bits = ((Number) value).longValue();
+        low = mix(classHash[0] ^ VALUE) + mix(bits);
+        high = mix(classHash[1] + VALUE) ^ mix(bits + SEED_HIGH);
+    }
+
+    private void primitiveArrayHash(Object array) {
+        long[] classHash = classHashes.get(array.getClass());
+        int length = Array.getLength(array);
+        long lo = classHash[0] ^ length;
+        long hi = classHash[1] + length;
+        // items equal by comparator (e.g. with tolerance) can have different bits, so only length is hashed
+        int hashedItems = valueComparators != null && valueComparators.hasItemComparator(array.getClass()) ? 0 : length;
+        for (int i = 0; i < hashedItems; i++) {
+            long bits;
+            if (array instanceof int[])
+                bits = ((int[]) array)[i];
+            else if (array instanceof long[])
+                bits = ((long[]) array)[i];
+            else if (array instanceof double[])
+                bits = Double.doubleToLongBits(((double[]) array)[i]);
+            else if (array instanceof byte[])
+                bits = ((byte[]) array)[i];
+            else if (array instanceof char[])
+                bits = ((char[]) array)[i];
+            else if (array instanceof float[])
+                bits = Float.floatToIntBits(((float[]) array)[i]);
+            else if (array instanceof short[])
+                bits = ((short[]) array)[i];
+            else
+                bits = ((boolean[]) array)[i] ? 1 : 0;
+            lo = (lo ^ bits) * 0x100000001B3L;
+            hi = (hi + bits) * SEED_LOW;
+        }
+        low = mix(lo);
+        high = mix(hi ^ (hi >>> 29));
+    }
+
+    private boolean hasValueComparator(Class<?> clazz) {
+        return valueComparators != null && valueComparators.get(clazz) != null;
+    }
+
+    /**
+     * Values equal by value comparator can have different hashCode, so only class is hashed
+     */
+    private void comparedValueHash(Class<?> clazz) {
+        long[] classHash = classHashes.get(clazz);
+        low = mix(classHash[0] ^ VALUE);
+        high = mix(classHash[1] + VALUE);
+    }
+
+    /**
+     * Keys are hashed as separate graphs, without exclude paths
+     */
+    private void keyHash(Object key) {
+        if (key == null) {
+            result(NULL, 0);
+        } else if (hasValueComparator(key.getClass())) {
+            comparedValueHash(key.getClass());
+        } else if (ClassDescriptor.forClass(key.getClass()).isValueType()) {
+            valueHash(key);
+        } else {
+            if (keys == null) {
+                ExcludeMatcher none = new ExcludeMatcher(Collections.<ExcludePath>emptyList());
+                keys = new Fingerprinter(settings, none, none);
+            }
+            Fingerprint res = keys.fingerprint(key);
+            low = res.getLow();
+            high = res.getHigh();
+        }
+    }
+
+    private static long[] hashString(String value) {
+        long lo = SEED_LOW ^ value.length();
+        long hi = SEED_HIGH + value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            lo = (lo ^ c) * 0x100000001B3L;
+            hi = (hi + c) * SEED_LOW;
+        }
+        return new long[] { mix(lo), mix(hi ^ (hi >>> 29)) };
+    }
+
+    /**
+     * Finalizer of MurmurHash3
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    private Frame frame(int depth) {
+        if (depth == frames.length)
+            frames = Arrays.copyOf(frames, depth * 2);
+        Frame res = frames[depth];
+        if (res == null)
+            res = frames[depth] = new Frame(depth == 0 ? null : frames[depth - 1]);
+        return res;
+    }
+
+    private void clear() {
+        for (int i = 0; i < frames.length && frames[i] != null; i++)
+            frames[i].clear();
+        depth = 0;
+        ancestors.clear();
+        memo.clear();
+        minRefDepth = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Node with children and hash of children hashed so far
+     */
+    private class Frame extends StackEntry {
+        static final int PROPERTIES = 0;
+        static final int MAP = 1;
+        static final int ITERABLE = 2;
+        static final int ARRAY = 3;
+
+        int kind;
+        int position;
+        Property[] properties;
+        Iterator iterator;
+        // children are combined by sum
+        boolean unordered;
+        // hash of key of the current entry
+        long keyLow;
+        long keyHigh;
+
+        long orderedLow;
+        long orderedHigh;
+        long sumLow;
+        long sumHigh;
+        int count;
+
+        ExcludeMatcher.State excludeState;
+        ExcludeMatcher.State unorderedState;
+        boolean memoize;
+        int parentMinRefDepth;
+        final List<FingerprintNode> nodes = new ArrayList<FingerprintNode>();
+
+        Frame(Frame parent) {
+            super(parent);
+        }
+
+        void start(ClassDescriptor descriptor, ExcludeMatcher.State excludeState, ExcludeMatcher.State unorderedState) {
+            Object value = getExpected();
+            this.excludeState = excludeState;
+            this.unorderedState = unorderedState;
+            position = 0;
+            count = 0;
+            sumLow = 0;
+            sumHigh = 0;
+            nodes.clear();
+
+            long tag;
+            if (descriptor.isMap()) {
+                tag = Fingerprinter.MAP;
+                kind = MAP;
+                unordered = true;
+                iterator = ((Map) value).entrySet().iterator();
+            } else if (descriptor.isArray()) {
+                tag = Fingerprinter.ARRAY;
+                kind = ARRAY;
+                unordered = false;
+            } else if (descriptor.isIterable()) {
+                tag = Fingerprinter.ITERABLE;
+                kind = ITERABLE;
+                unordered = unorderedState.isExcluded() || settings.isUnorderedType(value.getClass());
+                iterator = ((Iterable) value).iterator();
+            } else {
+                tag = OBJECT;
+                kind = PROPERTIES;
+                unordered = false;
+                properties = descriptor.getProperties();
+            }
+
+            // type of iterable is checked only if it's set
+            long[] classHash = kind == ITERABLE && !checkIterableTypesStrictly ? NO_CLASS : classHashes.get(value.getClass());
+            orderedLow = mix(SEED_LOW ^ tag) ^ classHash[0];
+            orderedHigh = mix(SEED_HIGH + tag) ^ classHash[1];
+        }
+
+        /**
+         * Sets the next child
+         * @return false if there are no more children
+         */
+        boolean nextChild(Frame child) {
+            Object value = getExpected();
+            switch (kind) {
+                case PROPERTIES:
+                    if (position == properties.length)
+                        return false;
+                    Property property = properties[position++];
+                    child.set(property.getName(), property.get(value), null);
+                    return true;
+                case MAP:
+                    if (!iterator.hasNext())
+                        return false;
+                    Map.Entry entry = (Map.Entry) iterator.next();
+                    keyHash(entry.getKey());
+                    keyLow = low;
+                    keyHigh = high;
+                    child.setKey(entry.getKey(), entry.getValue(), null);
+                    return true;
+                case ITERABLE:
+                    if (!iterator.hasNext())
+                        return false;
+                    child.setIndex(position++, iterator.next(), null);
+                    return true;
+                case ARRAY:
+                    Object[] array = (Object[]) value;
+                    if (position == array.length)
+                        return false;
+                    child.setIndex(position, array[position++], null);
+                    return true;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+
+        /**
+         * Adds hash of child
+         */
+        void accept(long childLow, long childHigh) {
+            count++;
+            if (kind == MAP) {
+                childLow = mix(keyLow * 31 + childLow);
+                childHigh = mix(keyHigh * 37 + childHigh);
+            }
+            if (unordered) {
+                sumLow += mix(childLow);
+                sumHigh += mix(childHigh);
+            } else {
+                orderedLow = mix(orderedLow * 31 + childLow);
+                orderedHigh = mix(orderedHigh * 37 + childHigh);
+            }
+        }
+
+        /**
+         * Puts hash of the frame to low and high
+         */
+        void finish() {
+            low = mix(orderedLow ^ mix(sumLow + count));
+            high = mix(orderedHigh + mix(sumHigh ^ count));
+        }
+
+        void clear() {
+            set(null, null, null);
+            properties = null;
+            iterator = null;
+            excludeState = null;
+            unorderedState = null;
+            nodes.clear();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package npakudin;
+
+import java.util.Arrays;
+
+/**
+ * Tolerance of comparison of doubles and floats: absolute, relative or in ULPs (units in the last place).
+ * It's set by DeepComparer.Builder.floatTolerance, then primitive properties and items of double[] and float[]
+ * are compared by it without boxing, boxed Double and Float - as by value comparator.
+ *
+ * Values with equal bits are always equal (so NaN is equal to NaN), otherwise NaN and infinities are not equal
+ * to anything else. 0.0 and -0.0 are equal in all modes.
+ */
+public final class FloatTolerance {
+
+    private static final int ABSOLUTE = 0;
+    private static final int RELATIVE = 1;
+    private static final int ULPS = 2;
+
+    // arrays are checked by blocks: maximum of differences of block is computed by vectorized loop,
+    // block is scanned item by item only if maximum exceeds tolerance
+    private static final int BLOCK = 256;
+
+    private final int mode;
+    private final double epsilon;
+    private final long maxUlps;
+
+    private FloatTolerance(int mode, double epsilon, long maxUlps) {
+        this.mode = mode;
+        this.epsilon = epsilon;
+        this.maxUlps = maxUlps;
+    }
+
+    /**
+     * Values are equal if |expected - actual| &lt;= epsilon
+     */
+    public static FloatTolerance absolute(double epsilon) {
+        if (!(epsilon >= 0) || Double.isInfinite(epsilon))
+            throw new IllegalArgumentException("epsilon");
+        return new FloatTolerance(ABSOLUTE, epsilon, 0);
+    }
+
+    /**
+     * Values are equal if |expected - actual| &lt;= epsilon * max(|expected|, |actual|)
+     */
+    public static FloatTolerance relative(double epsilon) {
+        if (!(epsilon >= 0) || Double.isInfinite(epsilon))
+            throw new IllegalArgumentException("epsilon");
+        return new FloatTolerance(RELATIVE, epsilon, 0);
+    }
+
+    /**
+     * Values are equal if there are at most maxUlps representable values between them
+     * (of double for doubles, of float for floats)
+     */
+    public static FloatTolerance ulps(long maxUlps) {
+        if (maxUlps < 0)
+            throw new IllegalArgumentException("maxUlps");
+        return new FloatTolerance(ULPS, 0, maxUlps);
+    }
+
+    public boolean areEqual(double expected, double actual) {
+        if (Double.doubleToLongBits(expected) == Double.doubleToLongBits(actual))
+            return true;
+        if (Double.isNaN(expected) || Double.isNaN(actual) || Double.isInfinite(expected) || Double.isInfinite(actual))
+            return false;
+
+        switch (mode) {
+            case ABSOLUTE:
+                return Math.abs(expected - actual) <= epsilon;
+            case RELATIVE:
+                return Math.abs(expected - actual) <= epsilon * Math.max(Math.abs(expected), Math.abs(actual));
+            default:
+                return ulpDistance(ordered(Double.doubleToRawLongBits(expected)), ordered(Double.doubleToRawLongBits(actual)));
+        }
+    }
+
+    public boolean areEqual(float expected, float actual) {
+        if (Float.floatToIntBits(expected) == Float.floatToIntBits(actual))
+            return true;
+        if (Float.isNaN(expected) || Float.isNaN(actual) || Float.isInfinite(expected) || Float.isInfinite(actual))
+            return false;
+
+        if (mode == ULPS)
+            return ulpDistance(ordered(Float.floatToRawIntBits(expected)), ordered(Float.floatToRawIntBits(actual)));
+        // floats are exactly representable as doubles
+        return areEqual((double) expected, (double) actual);
+    }
+
+    /**
+     * Bits of value mapped to long, so order of longs is the same as order of values, and -0.0 is 0
+     */
+    private static long ordered(long bits) {
+        return bits < 0 ? Long.MIN_VALUE - bits : bits;
+    }
+
+    private static long ordered(int bits) {
+        return bits < 0 ? Integer.MIN_VALUE - (long) bits : bits;
+    }
+
+    private boolean ulpDistance(long expected, long actual) {
+        // finite values are less than 2^63 / 2 by absolute value, so sum of them fits into unsigned long
+        long distance = (expected ^ actual) < 0 ? Math.abs(expected) + Math.abs(actual) : Math.abs(expected - actual);
+        return Long.compareUnsigned(distance, maxUlps) <= 0;
+    }
+
+    /**
+     * Finds the first index from fromIndex, where items are not equal with this tolerance.
+     * Equal ranges are skipped by Arrays.mismatch, absolute and relative tolerances are checked by blocks.
+     * @return index or -1 if all items are equal, length of arrays must be the same
+     */
+    public int mismatch(double[] expected, double[] actual, int fromIndex) {
+        return mismatch(expected, actual, fromIndex, expected.length);
+    }
+
+    /**
+     * The same in range of indexes, arrays can be longer
+     */
+    public int mismatch(double[] expected, double[] actual, int fromIndex, int toIndex) {
+        int length = toIndex;
+        int i = fromIndex;
+        while (i < length) {
+            int res = Arrays.mismatch(expected, i, length, actual, i, length);
+            if (res < 0)
+                return -1;
+            i += res;
+
+            int end = Math.min(length, i + BLOCK);
+            if (mode != ULPS && blockDifference(expected, actual, i, end) <= 0) {
+                i = end;
+                continue;
+            }
+            for (; i < end; i++) {
+                if (!areEqual(expected[i], actual[i]))
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    public int mismatch(float[] expected, float[] actual, int fromIndex) {
+        return mismatch(expected, actual, fromIndex, expected.length);
+    }
+
+    public int mismatch(float[] expected, float[] actual, int fromIndex, int toIndex) {
+        int length = toIndex;
+        int i = fromIndex;
+        while (i < length) {
+            int res = Arrays.mismatch(expected, i, length, actual, i, length);
+            if (res < 0)
+                return -1;
+            i += res;
+
+            int end = Math.min(length, i + BLOCK);
+            if (mode != ULPS && blockDifference(expected, actual, i, end) <= 0) {
+                i = end;
+                continue;
+            }
+            for (; i < end; i++) {
+                if (!areEqual(expected[i], actual[i]))
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Maximum of differences minus tolerances of items, it's positive or NaN if some item can be not equal.
+     * Loop has no branches, so it's vectorized by JIT.
+     */
+    private double blockDifference(double[] expected, double[] actual, int from, int to) {
+        double res = Double.NEGATIVE_INFINITY;
+        if (mode == ABSOLUTE) {
+            for (int i = from; i < to; i++)
+                res = Math.max(res, Math.abs(expected[i] - actual[i]));
+            return res - epsilon;
+        }
+        for (int i = from; i < to; i++)
+            res = Math.max(res, Math.abs(expected[i] - actual[i]) - epsilon * Math.max(Math.abs(expected[i]), Math.abs(actual[i])));
+        return res;
+    }
+
+    private double blockDifference(float[] expected, float[] actual, int from, int to) {
+        double res = Double.NEGATIVE_INFINITY;
+        if (mode == ABSOLUTE) {
+            for (int i = from; i < to; i++)
+                res = Math.max(res, Math.abs((double) expected[i] - actual[i]));
+            return res - epsilon;
+        }
+        for (int i = from; i < to; i++)
+            res = Math.max(res, Math.abs((double) expected[i] - actual[i]) - epsilon * Math.max(Math.abs(expected[i]), Math.abs(actual[i])));
+        return res;
+    }
+
+    /**
+     * Comparator of boxed doubles with this tolerance
+     */
+    public ValueComparator<Double> forDoubles() {
+        return new ValueComparator<Double>() {
+            @Override
+            public boolean areEqual(Double expected, Double actual) {
+                return FloatTolerance.this.areEqual(expected.doubleValue(), actual.doubleValue());
+            }
+        };
+    }
+
+    /**
+     * Comparator of boxed floats with this tolerance
+     */
+    public ValueComparator<Float> forFloats() {
+        return new ValueComparator<Float>() {
+            @Override
+            public boolean areEqual(Float expected, Float actual) {
+                return FloatTolerance.this.areEqual(expected.floatValue(), actual.floatValue());
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        switch (mode) {
+            case ABSOLUTE:
+                return "absolute " + epsilon;
+            case RELATIVE:
+                return "relative " + epsilon;
+            default:
+                return maxUlps + " ulps";
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package npakudin;
+
+/**
+ * Comparator generated for class marked with DeepComparable, see deepComparer-processor
+ */
+public interface GeneratedComparator {
+
+    /**
+     * Suffix of name of generated class, e.g. comparator of a.b.Outer$Inner is a.b.Outer$Inner_DeepComparator
+     */
+    String SUFFIX = "_DeepComparator";
+
+    /**
+     * Properties for public fields and getters of the class, they are named as fields and getters
+     */
+    Property[] getProperties();
+}
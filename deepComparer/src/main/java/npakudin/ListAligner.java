@@ -0,0 +1,171 @@
+package npakudin;
+
+import java.util.Arrays;
+
+/**
+ * Aligns two sequences of hashes by Myers diff in linear space: it finds the longest common subsequence,
+ * i.e. the minimal number of inserts and deletes, which turn the first sequence into the second one.
+ * Common prefix and suffix are skipped, the rest is split by the middle snake of the edit path,
+ * parts are aligned in the same way. It takes O((N + M) * D) time and O(N + M) memory,
+ * where D is the number of edits, so D is limited: if it exceeds maxEdits, alignment is not found.
+ *
+ * Aligner is not recursive, parts are kept in its own stack.
+ */
+public class ListAligner {
+
+    private final int maxEdits;
+
+    public ListAligner(int maxEdits) {
+        if (maxEdits < 0)
+            throw new IllegalArgumentException("maxEdits");
+        this.maxEdits = maxEdits;
+    }
+
+    /**
+     * @return array of length of expected: index of the aligned item of actual or -1 if item is deleted;
+     * null if number of edits exceeds maxEdits
+     */
+    public int[] align(int[] expected, int[] actual) {
+        int[] res = new int[expected.length];
+        Arrays.fill(res, -1);
+
+        // parts of sequences to align: aLo, aHi, bLo, bHi
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = 0;
+        stack[size++] = expected.length;
+        stack[size++] = 0;
+        stack[size++] = actual.length;
+        int matched = 0;
+        while (size > 0) {
+            int bHi = stack[--size];
+            int bLo = stack[--size];
+            int aHi = stack[--size];
+            int aLo = stack[--size];
+
+            // common prefix and suffix
+            while (aLo < aHi && bLo < bHi && expected[aLo] == actual[bLo]) {
+                res[aLo++] = bLo++;
+                matched++;
+            }
+            while (aLo < aHi && bLo < bHi && expected[aHi - 1] == actual[bHi - 1]) {
+                res[--aHi] = --bHi;
+                matched++;
+            }
+            if (aLo == aHi || bLo == bHi)
+                continue;
+
+            long split = middleSnake(expected, aLo, aHi, actual, bLo, bHi);
+            if (split == -1)
+                return null;
+            if (split == -2)
+                continue;   // nothing in common
+
+            int x = (int) (split >>> 32);
+            int y = (int) split;
+            if (size + 8 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[size++] = aLo;
+            stack[size++] = x;
+            stack[size++] = bLo;
+            stack[size++] = y;
+            stack[size++] = x;
+            stack[size++] = aHi;
+            stack[size++] = y;
+            stack[size++] = bHi;
+        }
+
+        long edits = (long) expected.length + actual.length - 2L * matched;
+        return edits > maxEdits ? null : res;
+    }
+
+    /**
+     * Goes from both corners of the part at once, until paths overlap.
+     * Forward path goes from the top-left corner, reverse one - from the bottom-right, both by d edits.
+     * Diagonal k of forward path holds the farthest x, where y = x - k.
+     * @return point where paths overlap (x in high bits, y in low bits, both absolute),
+     * -1 if the number of edits exceeds maxEdits, -2 if parts have no common items
+     */
+    private long middleSnake(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        // each step of both paths adds 2 edits at most, odd number of edits is found by forward path one step later
+        int limit = Math.min(maxD, (maxEdits + 1) / 2 + 1);
+        int offset = limit;
+        int length = 2 * limit + 2;
+        int[] forward = new int[length];
+        int[] reverse = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(reverse, -1);
+        forward[offset + 1] = 0;
+        reverse[offset + 1] = 0;
+
+        int delta = n - m;
+        // if delta is odd, forward path overlaps reverse one, otherwise vice versa
+        boolean front = (delta & 1) != 0;
+        // diagonals which went out of the part are skipped
+        int k1start = 0;
+        int k1end = 0;
+        int k2start = 0;
+        int k2end = 0;
+        for (int d = 0; d < limit; d++) {
+            for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                int k1offset = offset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d && forward[k1offset - 1] < forward[k1offset + 1]))
+                    x1 = forward[k1offset + 1];
+                else
+                    x1 = forward[k1offset - 1] + 1;
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && a[aLo + x1] == b[bLo + y1]) {
+                    x1++;
+                    y1++;
+                }
+                forward[k1offset] = x1;
+                if (x1 > n) {
+                    k1end += 2;
+                } else if (y1 > m) {
+                    k1start += 2;
+                } else if (front) {
+                    int k2offset = offset + delta - k1;
+                    if (k2offset >= 0 && k2offset < length && reverse[k2offset] != -1 && x1 >= n - reverse[k2offset])
+                        return point(aLo + x1, bLo + y1);
+                }
+            }
+
+            for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                int k2offset = offset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d && reverse[k2offset - 1] < reverse[k2offset + 1]))
+                    x2 = reverse[k2offset + 1];
+                else
+                    x2 = reverse[k2offset - 1] + 1;
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m && a[aHi - x2 - 1] == b[bHi - y2 - 1]) {
+                    x2++;
+                    y2++;
+                }
+                reverse[k2offset] = x2;
+                if (x2 > n) {
+                    k2end += 2;
+                } else if (y2 > m) {
+                    k2start += 2;
+                } else if (!front) {
+                    int k1offset = offset + delta - k2;
+                    if (k1offset >= 0 && k1offset < length && forward[k1offset] != -1) {
+                        int x1 = forward[k1offset];
+                        int y1 = offset + x1 - k1offset;
+                        if (x1 >= n - x2)
+                            return point(aLo + x1, bLo + y1);
+                    }
+                }
+            }
+        }
+        return limit < maxD ? -1 : -2;
+    }
+
+    private static long point(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,184 @@
+package npakudin;
+
+/**
+ * Public field or getter of a class, compared by DeepComparer.
+ * Values of primitive properties can be compared directly, without boxing.
+ */
+public abstract class Property {
+
+    private final String name;
+    private final Class<?> type;
+
+    protected Property(String name, Class<?> type) {
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * Name of field or getter, it's used in paths
+     */
+    public String getName() {
+        return name;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public boolean isPrimitive() {
+        return type.isPrimitive();
+    }
+
+    /**
+     * Returns value of the property. Values of primitive properties are boxed.
+     */
+    public abstract Object get(Object owner);
+
+    /**
+     * Compares values of primitive property without boxing.
+     * Result is the same as of get(expected).equals(get(actual)).
+     */
+    public boolean primitiveEquals(Object expected, Object actual) {
+        throw new UnsupportedOperationException(String.format("Property %s is not primitive.", name));
+    }
+
+    /**
+     * Wraps exception thrown by field or getter the same way for all kinds of properties
+     */
+    protected static RuntimeException wrap(Throwable e) {
+        if (e instanceof Error)
+            throw (Error) e;
+        return new RuntimeException(e);
+    }
+
+
+    public abstract static class OfBoolean extends Property {
+        protected OfBoolean(String name) {
+            super(name, boolean.class);
+        }
+        public abstract boolean getBoolean(Object owner);
+
+        @Override
+        public Object get(Object owner) {
+            return getBoolean(owner);
+        }
+        @Override
+        public boolean primitiveEquals(Object expected, Object actual) {
+            return getBoolean(expected) == getBoolean(actual);
+        }
+    }
+
+    public abstract static class OfByte extends Property {
+        protected OfByte(String name) {
+            super(name, byte.class);
+        }
+        public abstract byte getByte(Object owner);
+
+        @Override
+        public Object get(Object owner) {
+            return getByte(owner);
+        }
+        @Override
+        public boolean primitiveEquals(Object expected, Object actual) {
+            return getByte(expected) == getByte(actual);
+        }
+    }
+
+    public abstract static class OfShort extends Property {
+        protected OfShort(String name) {
+            super(name, short.class);
+        }
+        public abstract short getShort(Object owner);
+
+        @Override
+        public Object get(Object owner) {
+            return getShort(owner);
+        }
+        @Override
+        public boolean primitiveEquals(Object expected, Object actual) {
+            return getShort(expected) == getShort(actual);
+        }
+    }
+
+    public abstract static class OfChar extends Property {
+        protected OfChar(String name) {
+            super(name, char.class);
+        }
+        public abstract char getChar(Object owner);
+
+        @Override
+        public Object get(Object owner) {
+            return getChar(owner);
+        }
+        @Override
+        public boolean primitiveEquals(Object expected, Object actual) {
+            return getChar(expected) == getChar(actual);
+        }
+    }
+
+    public abstract static class OfInt extends Property {
+        protected OfInt(String name) {
+            super(name, int.class);
+        }
+        public abstract int getInt(Object owner);
+
+        @Override
+        public Object get(Object owner) {
+            return getInt(owner);
+        }
+        @Override
+        public boolean primitiveEquals(Object expected, Object actual) {
+            return getInt(expected) == getInt(actual);
+        }
+    }
+
+    public abstract static class OfLong extends Property {
+        protected OfLong(String name) {
+            super(name, long.class);
+        }
+        public abstract long getLong(Object owner);
+
+        @Override
+        public Object get(Object owner) {
+            return getLong(owner);
+        }
+        @Override
+        public boolean primitiveEquals(Object expected, Object actual) {
+            return getLong(expected) == getLong(actual);
+        }
+    }
+
+    public abstract static class OfFloat extends Property {
+        protected OfFloat(String name) {
+            super(name, float.class);
+        }
+        public abstract float getFloat(Object owner);
+
+        @Override
+        public Object get(Object owner) {
+            return getFloat(owner);
+        }
+        @Override
+        public boolean primitiveEquals(Object expected, Object actual) {
+            // the same as Float.equals: NaN is equal to NaN, 0.0 is not equal to -0.0
+            return Float.floatToIntBits(getFloat(expected)) == Float.floatToIntBits(getFloat(actual));
+        }
+    }
+
+    public abstract static class OfDouble extends Property {
+        protected OfDouble(String name) {
+            super(name, double.class);
+        }
+        public abstract double getDouble(Object owner);
+
+        @Override
+        public Object get(Object owner) {
+            return getDouble(owner);
+        }
+        @Override
+        public boolean primitiveEquals(Object expected, Object actual) {
+            // the same as Double.equals: NaN is equal to NaN, 0.0 is not equal to -0.0
+            return Double.doubleToLongBits(getDouble(expected)) == Double.doubleToLongBits(getDouble(actual));
+        }
+    }
+}
@@ -0,0 +1,530 @@
+package npakudin;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Creates properties for public fields and getters.
+ * Each getter gets its own accessor class spun by LambdaMetafactory, which calls the getter directly,
+ * so the call site in it is monomorphic and JIT inlines the getter there; primitives are read without boxing.
+ * LambdaMetafactory can't read fields, so fields (and static getters, or getters of classes which are not visible
+ * from the class loader of the library) are read through MethodHandle with exact signature (Object)T.
+ * If MethodHandle can't be created (e.g. class is not accessible), Field.get and Method.invoke are used.
+ */
+public class PropertyFactory {
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    public static Property forField(Field field) {
+        try {
+            return forHandle(field.getName(), field.getType(), lookup.unreflectGetter(field), field);
+        } catch (IllegalAccessException e) {
+            return new ReflectiveField(field);
+        }
+    }
+
+    public static Property forGetter(Method method) {
+        MethodHandle handle;
+        try {
+            handle = lookup.unreflect(method);
+        } catch (IllegalAccessException e) {
+            return new ReflectiveGetter(method);
+        }
+        Property res = forAccessor(method, handle);
+        return res != null ? res : forHandle(method.getName(), method.getReturnType(), handle, method);
+    }
+
+    /**
+     * Property with accessor spun for the getter, or null if it can't be spun
+     */
+    private static Property forAccessor(Method method, MethodHandle handle) {
+        String name = method.getName();
+        Class<?> type = method.getReturnType();
+        // the accessor is defined in the class loader of the library, it must see classes of the getter
+        if (Modifier.isStatic(method.getModifiers()) || !isVisible(method.getDeclaringClass()) || !isVisible(type))
+            return null;
+
+        Class<?> resultType = type.isPrimitive() ? type : Object.class;
+        Object accessor;
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(accessorType(type)),
+                    MethodType.methodType(resultType, Object.class), handle,
+                    MethodType.methodType(resultType, method.getDeclaringClass()));
+            accessor = site.getTarget().invoke();
+        } catch (Throwable e) {
+            return null;
+        }
+
+        if (type == boolean.class)
+            return new BooleanGetter(name, (BooleanAccessor) accessor);
+        if (type == byte.class)
+            return new ByteGetter(name, (ByteAccessor) accessor);
+        if (type == short.class)
+            return new ShortGetter(name, (ShortAccessor) accessor);
+        if (type == char.class)
+            return new CharGetter(name, (CharAccessor) accessor);
+        if (type == int.class)
+            return new IntGetter(name, (IntAccessor) accessor);
+        if (type == long.class)
+            return new LongGetter(name, (LongAccessor) accessor);
+        if (type == float.class)
+            return new FloatGetter(name, (FloatAccessor) accessor);
+        if (type == double.class)
+            return new DoubleGetter(name, (DoubleAccessor) accessor);
+        return new ObjectGetter(name, type, (ObjectAccessor) accessor);
+    }
+
+    private static Class<?> accessorType(Class<?> type) {
+        if (type == boolean.class)
+            return BooleanAccessor.class;
+        if (type == byte.class)
+            return ByteAccessor.class;
+        if (type == short.class)
+            return ShortAccessor.class;
+        if (type == char.class)
+            return CharAccessor.class;
+        if (type == int.class)
+            return IntAccessor.class;
+        if (type == long.class)
+            return LongAccessor.class;
+        if (type == float.class)
+            return FloatAccessor.class;
+        if (type == double.class)
+            return DoubleAccessor.class;
+        return ObjectAccessor.class;
+    }
+
+    private static boolean isVisible(Class<?> clazz) {
+        while (clazz.isArray())
+            clazz = clazz.getComponentType();
+        if (clazz.isPrimitive())
+            return true;
+        try {
+            return Class.forName(clazz.getName(), false, PropertyFactory.class.getClassLoader()) == clazz;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static Property forHandle(String name, Class<?> type, MethodHandle handle, Member member) {
+        if (Modifier.isStatic(member.getModifiers())) {
+            // static members are read with ignored owner, the same as Field.get(owner)
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        handle = handle.asType(MethodType.methodType(type.isPrimitive() ? type : Object.class, Object.class));
+
+        if (type == boolean.class)
+            return new BooleanHandle(name, handle);
+        if (type == byte.class)
+            return new ByteHandle(name, handle);
+        if (type == short.class)
+            return new ShortHandle(name, handle);
+        if (type == char.class)
+            return new CharHandle(name, handle);
+        if (type == int.class)
+            return new IntHandle(name, handle);
+        if (type == long.class)
+            return new LongHandle(name, handle);
+        if (type == float.class)
+            return new FloatHandle(name, handle);
+        if (type == double.class)
+            return new DoubleHandle(name, handle);
+        return new ObjectHandle(name, type, handle);
+    }
+
+
+    // accessors of getters, LambdaMetafactory spins a class for each getter
+    interface ObjectAccessor {
+        Object get(Object owner);
+    }
+    interface BooleanAccessor {
+        boolean get(Object owner);
+    }
+    interface ByteAccessor {
+        byte get(Object owner);
+    }
+    interface ShortAccessor {
+        short get(Object owner);
+    }
+    interface CharAccessor {
+        char get(Object owner);
+    }
+    interface IntAccessor {
+        int get(Object owner);
+    }
+    interface LongAccessor {
+        long get(Object owner);
+    }
+    interface FloatAccessor {
+        float get(Object owner);
+    }
+    interface DoubleAccessor {
+        double get(Object owner);
+    }
+
+    private static class ObjectGetter extends Property {
+        private final ObjectAccessor accessor;
+
+        ObjectGetter(String name, Class<?> type, ObjectAccessor accessor) {
+            super(name, type);
+            this.accessor = accessor;
+        }
+        @Override
+        public Object get(Object owner) {
+            try {
+                return accessor.get(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class BooleanGetter extends Property.OfBoolean {
+        private final BooleanAccessor accessor;
+
+        BooleanGetter(String name, BooleanAccessor accessor) {
+            super(name);
+            this.accessor = accessor;
+        }
+        @Override
+        public boolean getBoolean(Object owner) {
+            try {
+                return accessor.get(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class ByteGetter extends Property.OfByte {
+        private final ByteAccessor accessor;
+
+        ByteGetter(String name, ByteAccessor accessor) {
+            super(name);
+            this.accessor = accessor;
+        }
+        @Override
+        public byte getByte(Object owner) {
+            try {
+                return accessor.get(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class ShortGetter extends Property.OfShort {
+        private final ShortAccessor accessor;
+
+        ShortGetter(String name, ShortAccessor accessor) {
+            super(name);
+            this.accessor = accessor;
+        }
+        @Override
+        public short getShort(Object owner) {
+            try {
+                return accessor.get(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class CharGetter extends Property.OfChar {
+        private final CharAccessor accessor;
+
+        CharGetter(String name, CharAccessor accessor) {
+            super(name);
+            this.accessor = accessor;
+        }
+        @Override
+        public char getChar(Object owner) {
+            try {
+                return accessor.get(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class IntGetter extends Property.OfInt {
+        private final IntAccessor accessor;
+
+        IntGetter(String name, IntAccessor accessor) {
+            super(name);
+            this.accessor = accessor;
+        }
+        @Override
+        public int getInt(Object owner) {
+            try {
+                return accessor.get(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class LongGetter extends Property.OfLong {
+        private final LongAccessor accessor;
+
+        LongGetter(String name, LongAccessor accessor) {
+            super(name);
+            this.accessor = accessor;
+        }
+        @Override
+        public long getLong(Object owner) {
+            try {
+                return accessor.get(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class FloatGetter extends Property.OfFloat {
+        private final FloatAccessor accessor;
+
+        FloatGetter(String name, FloatAccessor accessor) {
+            super(name);
+            this.accessor = accessor;
+        }
+        @Override
+        public float getFloat(Object owner) {
+            try {
+                return accessor.get(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class DoubleGetter extends Property.OfDouble {
+        private final DoubleAccessor accessor;
+
+        DoubleGetter(String name, DoubleAccessor accessor) {
+            super(name);
+            this.accessor = accessor;
+        }
+        @Override
+        public double getDouble(Object owner) {
+            try {
+                return accessor.get(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+
+    private static class ObjectHandle extends Property {
+        private final MethodHandle handle;
+
+        ObjectHandle(String name, Class<?> type, MethodHandle handle) {
+            super(name, type);
+            this.handle = handle;
+        }
+        @Override
+        public Object get(Object owner) {
+            try {
+                return (Object) handle.invokeExact(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class BooleanHandle extends Property.OfBoolean {
+        private final MethodHandle handle;
+
+        BooleanHandle(String name, MethodHandle handle) {
+            super(name);
+            this.handle = handle;
+        }
+        @Override
+        public boolean getBoolean(Object owner) {
+            try {
+                return (boolean) handle.invokeExact(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class ByteHandle extends Property.OfByte {
+        private final MethodHandle handle;
+
+        ByteHandle(String name, MethodHandle handle) {
+            super(name);
+            this.handle = handle;
+        }
+        @Override
+        public byte getByte(Object owner) {
+            try {
+                return (byte) handle.invokeExact(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class ShortHandle extends Property.OfShort {
+        private final MethodHandle handle;
+
+        ShortHandle(String name, MethodHandle handle) {
+            super(name);
+            this.handle = handle;
+        }
+        @Override
+        public short getShort(Object owner) {
+            try {
+                return (short) handle.invokeExact(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class CharHandle extends Property.OfChar {
+        private final MethodHandle handle;
+
+        CharHandle(String name, MethodHandle handle) {
+            super(name);
+            this.handle = handle;
+        }
+        @Override
+        public char getChar(Object owner) {
+            try {
+                return (char) handle.invokeExact(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class IntHandle extends Property.OfInt {
+        private final MethodHandle handle;
+
+        IntHandle(String name, MethodHandle handle) {
+            super(name);
+            this.handle = handle;
+        }
+        @Override
+        public int getInt(Object owner) {
+            try {
+                return (int) handle.invokeExact(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class LongHandle extends Property.OfLong {
+        private final MethodHandle handle;
+
+        LongHandle(String name, MethodHandle handle) {
+            super(name);
+            this.handle = handle;
+        }
+        @Override
+        public long getLong(Object owner) {
+            try {
+                return (long) handle.invokeExact(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class FloatHandle extends Property.OfFloat {
+        private final MethodHandle handle;
+
+        FloatHandle(String name, MethodHandle handle) {
+            super(name);
+            this.handle = handle;
+        }
+        @Override
+        public float getFloat(Object owner) {
+            try {
+                return (float) handle.invokeExact(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+    private static class DoubleHandle extends Property.OfDouble {
+        private final MethodHandle handle;
+
+        DoubleHandle(String name, MethodHandle handle) {
+            super(name);
+            this.handle = handle;
+        }
+        @Override
+        public double getDouble(Object owner) {
+            try {
+                return (double) handle.invokeExact(owner);
+            } catch (Throwable e) {
+                throw wrap(e);
+            }
+        }
+    }
+
+
+    /**
+     * Fallback for fields which are not accessible through MethodHandle
+     */
+    private static class ReflectiveField extends Property {
+        private final Field field;
+
+        ReflectiveField(Field field) {
+            super(field.getName(), field.getType());
+            this.field = field;
+        }
+        @Override
+        public Object get(Object owner) {
+            try {
+                return field.get(owner);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        @Override
+        public boolean primitiveEquals(Object expected, Object actual) {
+            return get(expected).equals(get(actual));
+        }
+    }
+
+    /**
+     * Fallback for getters which are not accessible through MethodHandle
+     */
+    private static class ReflectiveGetter extends Property {
+        private final Method method;
+
+        ReflectiveGetter(Method method) {
+            super(method.getName(), method.getReturnType());
+            this.method = method;
+        }
+        @Override
+        public Object get(Object owner) {
+            try {
+                return method.invoke(owner);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            } catch (InvocationTargetException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        @Override
+        public boolean primitiveEquals(Object expected, Object actual) {
+            return get(expected).equals(get(actual));
+        }
+    }
+}
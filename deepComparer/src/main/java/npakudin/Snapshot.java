@@ -0,0 +1,281 @@
+package npakudin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Graph saved to file in compact binary format, as comparer sees it: public fields and getters, items of iterables
+ * and arrays, entries of maps. Expected graph can be saved once, then actual graphs are compared with the file
+ * (see DeepComparer.findSnapshotDifference), so expected objects are not kept in memory:
+ * the file is mapped to memory and read as it's traversed.
+ *
+ *   Snapshot.write(expected, file);
+ *   try (Snapshot snapshot = Snapshot.open(file)) {
+ *       String res = comparer.findSnapshotDifference(snapshot, actual);
+ *   }
+ *
+ * Values (primitives, their wrappers, strings, enums) are saved as is. Objects which override equals and toString
+ * are saved as strings, and they are equal if their toString are equal (or if their value comparator finds them equal,
+ * when they can be restored from string by constructor or static parse, valueOf or fromString).
+ * Objects which override equals, but not toString, can't be saved: comparer compares them by equals, which needs
+ * both objects, so write throws IllegalArgumentException for them (override toString to save them as strings).
+ * Objects which are met again (shared objects and cycles) are saved as references to their first record.
+ *
+ * Snapshot is compared with the settings of comparer, except unordered and aligned paths and types
+ * (items are compared in order) and limits of nodes, depth and time.
+ * Classes are matched by names, properties - by names too, so snapshot can be made by older version of classes:
+ * property of snapshot, which actual class does not have, is reported as missing key.
+ *
+ * Format: header (magic, version, offset of class table), root node, class table (names of classes
+ * and their properties). Node is a tag and its data, containers keep offset of their end, so they are skipped at once.
+ */
+public final class Snapshot implements Closeable {
+
+    static final int MAGIC = 0x44435350; // "DCSP"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 13;
+
+    // tags of nodes, tags of values go first
+    static final int NULL = 0;
+    static final int FALSE = 1;
+    static final int TRUE = 2;
+    static final int BYTE = 3;
+    static final int SHORT = 4;
+    static final int CHAR = 5;
+    static final int INT = 6;
+    static final int LONG = 7;
+    static final int FLOAT = 8;
+    static final int DOUBLE = 9;
+    static final int STRING = 10;
+    static final int ENUM = 11;
+    static final int TEXT = 12;
+    static final int REF = 13;
+    static final int OBJECT = 14;
+    static final int ITERABLE = 15;
+    static final int ARRAY = 16;
+    static final int MAP = 17;
+    static final int PRIMITIVE_ARRAY = 18;
+
+    // true if class overrides toString, so its objects which override equals are saved as strings
+    private static final ClassValue<Boolean> hasToString = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("toString").getDeclaringClass() != Object.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    private final Path file;
+    private final FileChannel channel;
+    private final SnapshotInput input;
+    private final String[] classNames;
+    private final String[][] propertyNames;
+
+    private Snapshot(Path file, FileChannel channel, SnapshotInput input) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.input = input;
+        if (input.size() < HEADER_SIZE || input.getInt(0) != MAGIC)
+            throw new IOException(String.format("%s is not a snapshot.", file));
+        if (input.get(4) != VERSION)
+            throw new IOException(String.format("Version %d of snapshot %s is not supported.", input.get(4), file));
+
+        SnapshotReader reader = new SnapshotReader(input, null);
+        reader.position = input.getLong(5);
+        int count = reader.readVarInt();
+        classNames = new String[count];
+        propertyNames = new String[count][];
+        for (int i = 0; i < count; i++) {
+            classNames[i] = reader.readString();
+            propertyNames[i] = new String[reader.readVarInt()];
+            for (int j = 0; j < propertyNames[i].length; j++)
+                propertyNames[i][j] = reader.readString();
+        }
+    }
+
+    /**
+     * Saves graph to file, the file is overwritten
+     * @throws IllegalArgumentException if graph has object which overrides equals, but not toString,
+     * the file is left empty then
+     */
+    public static void write(Object value, Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            new SnapshotWriter(channel).write(value);
+        } catch (IllegalArgumentException e) {
+            channel.truncate(0);
+            throw e;
+        } finally {
+            channel.close();
+        }
+    }
+
+    public static Snapshot open(Path file) throws IOException {
+        return open(file, SnapshotInput.SEGMENT_BITS, SnapshotInput.MAX_SLICE);
+    }
+
+    /**
+     * Opens snapshot mapped by segments of 2^segmentBits bytes (tests use small segments)
+     */
+    static Snapshot open(Path file, int segmentBits, int maxSlice) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new Snapshot(file, channel, new SnapshotInput(channel, segmentBits, maxSlice));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Size of the file in bytes
+     */
+    public long getSize() {
+        return input.size();
+    }
+
+    /**
+     * Closes the file. Mapped memory is released by GC, when the snapshot is not referenced.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    SnapshotInput getInput() {
+        return input;
+    }
+
+    long getRootPosition() {
+        return HEADER_SIZE;
+    }
+
+    int getClassCount() {
+        return classNames.length;
+    }
+
+    String getClassName(int classId) {
+        return classNames[classId];
+    }
+
+    String[] getPropertyNames(int classId) {
+        return propertyNames[classId];
+    }
+
+    static boolean isSavedAsText(ClassDescriptor descriptor, Class<?> clazz) {
+        return descriptor.overridesEquals() && hasToString.get(clazz);
+    }
+
+    /**
+     * Objects of class are compared by equals only, they can't be saved as strings or by properties
+     */
+    static boolean isNotSaved(ClassDescriptor descriptor, Class<?> clazz) {
+        return descriptor.overridesEquals() && !hasToString.get(clazz);
+    }
+
+    /**
+     * Wrapper type of value of the tag, or null if it's not a tag of value
+     */
+    static Class<?> valueType(int tag) {
+        switch (tag) {
+            case FALSE:
+            case TRUE:
+                return Boolean.class;
+            case BYTE:
+                return Byte.class;
+            case SHORT:
+                return Short.class;
+            case CHAR:
+                return Character.class;
+            case INT:
+                return Integer.class;
+            case LONG:
+                return Long.class;
+            case FLOAT:
+                return Float.class;
+            case DOUBLE:
+                return Double.class;
+            case STRING:
+                return String.class;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Tag of items of primitive array
+     */
+    static int itemTag(Class<?> componentType) {
+        if (componentType == boolean.class)
+            return TRUE;
+        if (componentType == byte.class)
+            return BYTE;
+        if (componentType == short.class)
+            return SHORT;
+        if (componentType == char.class)
+            return CHAR;
+        if (componentType == int.class)
+            return INT;
+        if (componentType == long.class)
+            return LONG;
+        if (componentType == float.class)
+            return FLOAT;
+        return DOUBLE;
+    }
+
+    static Class<?> primitiveArrayClass(int itemTag) {
+        switch (itemTag) {
+            case TRUE:
+                return boolean[].class;
+            case BYTE:
+                return byte[].class;
+            case SHORT:
+                return short[].class;
+            case CHAR:
+                return char[].class;
+            case INT:
+                return int[].class;
+            case LONG:
+                return long[].class;
+            case FLOAT:
+                return float[].class;
+            default:
+                return double[].class;
+        }
+    }
+
+    /**
+     * Size of item of primitive array in bytes
+     */
+    static int itemSize(int itemTag) {
+        switch (itemTag) {
+            case TRUE:
+            case BYTE:
+                return 1;
+            case SHORT:
+            case CHAR:
+                return 2;
+            case INT:
+            case FLOAT:
+                return 4;
+            default:
+                return 8;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+}
@@ -0,0 +1,807 @@
+package npakudin;
+
+import npakudin.common.Arrays2;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * Compares snapshot of expected graph with actual graph: nodes of snapshot are read from the mapped file
+ * as they are compared, expected objects are not created (except values and keys of maps).
+ * It goes the same way as Comparison: properties, items and entries, with exclude paths, value comparators
+ * and tolerance of floats. Traversal is not recursive, frames are kept in its own stack.
+ *
+ * Object which is met again is saved as reference to its first record, so the record is compared again.
+ * Pair of record and actual object, which are on the current path, is equal, as pair of ancestors in Comparison.
+ */
+class SnapshotComparison {
+
+    private static final int EQUAL = 0;
+    private static final int DIFFERENT = 1;
+    private static final int DESCEND = 2;
+
+    // result of lookup, if actual map does not contain the key
+    private static final Object MISSING = new Object();
+
+    private static final DifferenceListener FIRST_DIFFERENCE = new DifferenceListener() {
+        @Override
+        public boolean onDifference(StackEntry entry, DifferenceKind kind, Object expected, Object actual) {
+            return false;
+        }
+    };
+
+    // constructor or static method which restores value from string, null if class has no such one
+    private static final ClassValue<Executable> parsers = new ClassValue<Executable>() {
+        @Override
+        protected Executable computeValue(Class<?> type) {
+            try {
+                return type.getConstructor(String.class);
+            } catch (NoSuchMethodException e) {
+                // try static methods
+            }
+            for (String name : new String[] { "parse", "valueOf", "fromString" }) {
+                for (Class<?> parameterType : new Class<?>[] { CharSequence.class, String.class }) {
+                    try {
+                        Method method = type.getMethod(name, parameterType);
+                        if (Modifier.isStatic(method.getModifiers()) && type.isAssignableFrom(method.getReturnType()))
+                            return method;
+                    } catch (NoSuchMethodException e) {
+                        // try the next one
+                    }
+                }
+            }
+            return null;
+        }
+    };
+
+    private final DeepComparer settings;
+    private final Snapshot snapshot;
+    private final SnapshotReader reader;
+    private final ExcludeMatcher matcher;
+    private final boolean checkIterableTypesStrictly;
+    private final int maxValueLength;
+    // null if there are no value comparators
+    private final ValueComparatorRegistry valueComparators;
+    // null if doubles and floats are compared exactly
+    private final FloatTolerance doubleTolerance;
+    private final FloatTolerance floatTolerance;
+
+    // actual classes, which are matched with classes of snapshot by names
+    private final Class<?>[] classes;
+    // properties of actual classes by names of properties of snapshot, null if actual class has no such property
+    private final Property[][] properties;
+
+    private DifferenceListener listener;
+    private int differenceCount;
+    private Frame[] frames = new Frame[16];
+    private int depth;
+    // actual objects on the current path, frame of object links to the frame above it with the same object
+    private final IdentityHashMap<Object, Frame> ancestors = new IdentityHashMap<Object, Frame>();
+    // comparison of keys of maps, it's created when it's necessary
+    private SnapshotComparison keys;
+    // ids of classes of snapshot by names, -1 if name is not unique, it's created when keys are hashed
+    private Map<String, Integer> classIds;
+    // items of primitive arrays are compared by chunks
+    private Object expectedChunk;
+    private Object actualChunk;
+
+    public SnapshotComparison(DeepComparer settings, Snapshot snapshot) {
+        this(settings, snapshot, settings.getExcludeMatcher());
+    }
+
+    private SnapshotComparison(DeepComparer settings, Snapshot snapshot, ExcludeMatcher matcher) {
+        this.settings = settings;
+        this.snapshot = snapshot;
+        this.reader = new SnapshotReader(snapshot.getInput(), snapshot);
+        this.matcher = matcher;
+        this.checkIterableTypesStrictly = settings.isCheckIterableTypesStrictly();
+        this.maxValueLength = settings.getMaxValueLength();
+        this.valueComparators = settings.getValueComparatorRegistry();
+        this.doubleTolerance = settings.getToleranceFor(double.class);
+        this.floatTolerance = settings.getToleranceFor(float.class);
+        this.classes = new Class<?>[snapshot.getClassCount()];
+        this.properties = new Property[snapshot.getClassCount()][];
+    }
+
+    /**
+     * @return null if graph is equal to snapshot, otherwise string with error
+     */
+    public String compare(Object actual) {
+        DifferenceCollector collector = new DifferenceCollector(1, maxValueLength);
+        compare(actual, collector);
+        Differences res = collector.getDifferences();
+        return res.isEmpty() ? null : res.getItems().get(0).getMessage();
+    }
+
+    /**
+     * Collects differences until their number reaches maxDifferences
+     */
+    public Differences compareAll(Object actual, int maxDifferences) {
+        DifferenceCollector collector = new DifferenceCollector(maxDifferences, maxValueLength);
+        compare(actual, collector);
+        return collector.getDifferences();
+    }
+
+    /**
+     * Passes differences to listener until it stops comparison
+     * @return true if graph is equal to snapshot
+     */
+    public boolean compare(Object actual, DifferenceListener listener) {
+        return compare(snapshot.getRootPosition(), actual, listener);
+    }
+
+    private boolean compare(long position, Object actual, DifferenceListener listener) {
+        this.listener = listener;
+        differenceCount = 0;
+        Frame root = frame(0);
+        root.start = position;
+        root.set("$root", null, actual);
+        try {
+            if (enter(root) == DESCEND)
+                run();
+            return differenceCount == 0;
+        } finally {
+            clear();
+        }
+    }
+
+    /**
+     * Main loop: takes next child of the top frame and compares it, as in Comparison
+     */
+    private void run() {
+        depth = 1;
+        while (depth > 0) {
+            Frame frame = frames[depth - 1];
+            Frame child = frame(depth);
+
+            int res = nextChild(frame, child);
+            if (res == DIFFERENT)
+                return;
+            if (res == EQUAL) {
+                leave(frame);
+                depth--;
+                continue;
+            }
+
+            res = enter(child);
+            if (res == DESCEND)
+                depth++;
+            else if (res == DIFFERENT)
+                return;
+        }
+    }
+
+    /**
+     * Compares node of snapshot with actual object without its children
+     * @return EQUAL or DIFFERENT if result is known, DESCEND if children must be compared
+     */
+    private int enter(Frame frame) {
+        Frame parent = (Frame) frame.getParent();
+        ExcludeMatcher.State excludeState = matcher.next(
+                parent == null ? matcher.getInitialState() : parent.excludeState, frame);
+        if (excludeState.isExcluded())
+            return EQUAL;
+
+        Object actual = frame.getActual();
+        long position = frame.start;
+        reader.position = position;
+        int tag = reader.readByte();
+        if (tag == Snapshot.REF) {
+            position = reader.readVarLong();
+            reader.position = position;
+            tag = reader.readByte();
+        }
+
+        if (tag == Snapshot.NULL)
+            return actual == null ? EQUAL : difference(frame, DifferenceKind.EXPECTED_NULL, null, actual);
+        if (actual == null)
+            return difference(frame, DifferenceKind.ACTUAL_NULL, reader.describe(position), null);
+
+        if (tag <= Snapshot.STRING)
+            return compareValue(frame, position, tag, actual);
+        if (tag == Snapshot.PRIMITIVE_ARRAY)
+            return comparePrimitiveArray(frame, position, excludeState, actual);
+
+        int classId = reader.readVarInt();
+        if (!isClass(classId, actual.getClass()) &&
+                (checkIterableTypesStrictly || !(tag == Snapshot.ITERABLE && actual instanceof Iterable)))
+            return difference(frame, DifferenceKind.TYPE, reader.describe(position), actual);
+
+        if (tag == Snapshot.ENUM || tag == Snapshot.TEXT)
+            return compareText(frame, position, tag, actual);
+
+        // record which is on the current path with the same actual object closes the cycle
+        for (Frame ancestor = ancestors.get(actual); ancestor != null; ancestor = ancestor.sameActual) {
+            if (ancestor.node == position)
+                return EQUAL;
+        }
+        return start(frame, position, tag, classId, excludeState);
+    }
+
+    /**
+     * Reads header of container, reader is at the end of its class
+     */
+    private int start(Frame frame, long position, int tag, int classId, ExcludeMatcher.State excludeState) {
+        Object actual = frame.getActual();
+        frame.kind = tag;
+        frame.node = position;
+        frame.excludeState = excludeState;
+        frame.index = 0;
+
+        // end of container
+        reader.readLong();
+        if (tag == Snapshot.OBJECT) {
+            frame.names = snapshot.getPropertyNames(classId);
+            frame.properties = properties(classId, actual.getClass());
+            frame.count = frame.names.length;
+        } else {
+            frame.count = reader.readInt();
+            int size = -1;
+            if (tag == Snapshot.MAP)
+                size = ((Map) actual).size();
+            else if (tag == Snapshot.ARRAY)
+                size = ((Object[]) actual).length;
+            else if (actual instanceof Collection)
+                size = ((Collection) actual).size();
+            if (size >= 0 && size != frame.count)
+                return difference(frame, DifferenceKind.SIZE, frame.count, size);
+            if (tag == Snapshot.ITERABLE)
+                frame.iterator = ((Iterable) actual).iterator();
+        }
+        frame.next = reader.position;
+        frame.sameActual = ancestors.put(actual, frame);
+        return DESCEND;
+    }
+
+    /**
+     * All children of the frame are equal
+     */
+    private void leave(Frame frame) {
+        Object actual = frame.getActual();
+        if (frame.sameActual == null)
+            ancestors.remove(actual);
+        else
+            ancestors.put(actual, frame.sameActual);
+        frame.clear();
+    }
+
+    /**
+     * Sets the next pair of children of the frame to child frame.
+     * @return DESCEND if child is set, EQUAL if there are no more children, DIFFERENT if comparison is stopped
+     */
+    private int nextChild(Frame frame, Frame child) {
+        Object actual = frame.getActual();
+        switch (frame.kind) {
+            case Snapshot.OBJECT: {
+                while (frame.index < frame.count) {
+                    int i = frame.index++;
+                    long start = frame.next;
+                    frame.next = reader.skip(start);
+                    Property property = frame.properties[i];
+                    if (property == null) {
+                        if (difference(frame, DifferenceKind.MISSING_KEY, frame.names[i], null) == DIFFERENT)
+                            return DIFFERENT;
+                        continue;
+                    }
+                    // primitives are compared directly, without boxing
+                    // if they are different, child frame makes error message
+                    if (property.isPrimitive() && frame.excludeState.isDead() && primitiveEquals(property, start, actual))
+                        continue;
+
+                    child.start = start;
+                    child.set(property.getName(), null, property.get(actual));
+                    return DESCEND;
+                }
+                return EQUAL;
+            }
+            case Snapshot.MAP: {
+                while (frame.index < frame.count) {
+                    frame.index++;
+                    long key = frame.next;
+                    long value = reader.skip(key);
+                    frame.next = reader.skip(value);
+                    Object actualValue = lookup(frame, key);
+                    if (actualValue == MISSING) {
+                        if (difference(frame, DifferenceKind.MISSING_KEY, reader.describe(key), null) == DIFFERENT)
+                            return DIFFERENT;
+                        continue;
+                    }
+
+                    child.start = value;
+                    child.setKey(frame.key, null, actualValue);
+                    return DESCEND;
+                }
+                return EQUAL;
+            }
+            case Snapshot.ITERABLE: {
+                int index = frame.index;
+                boolean expectedMove = index < frame.count;
+                boolean actualMove = frame.iterator.hasNext();
+                if (expectedMove && actualMove) {
+                    frame.index++;
+                    child.start = frame.next;
+                    frame.next = reader.skip(child.start);
+                    child.setIndex(index, null, frame.iterator.next());
+                    return DESCEND;
+                }
+
+                if (expectedMove)
+                    return difference(frame, DifferenceKind.EXPECTED_LONGER, index, index);
+                if (actualMove)
+                    return difference(frame, DifferenceKind.ACTUAL_LONGER, index, index);
+                return EQUAL;
+            }
+            case Snapshot.ARRAY: {
+                if (frame.index == frame.count)
+                    return EQUAL;
+                int index = frame.index++;
+                child.start = frame.next;
+                frame.next = reader.skip(child.start);
+                child.setIndex(index, null, ((Object[]) actual)[index]);
+                return DESCEND;
+            }
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Primitives, their wrappers and strings, reader is after the tag
+     */
+    private int compareValue(Frame frame, long position, int tag, Object actual) {
+        Class<?> type = Snapshot.valueType(tag);
+        if (actual.getClass() != type)
+            return difference(frame, DifferenceKind.TYPE, reader.describe(position), actual);
+
+        ValueComparator<Object> comparator = valueComparators == null ? null : valueComparators.get(type);
+        boolean equal;
+        if (comparator == null && tag == Snapshot.STRING) {
+            equal = reader.stringEquals((String) actual);
+        } else {
+            Object expected = reader.readValue(tag);
+            equal = comparator != null ? comparator.areEqual(expected, actual) : expected.equals(actual);
+        }
+        return equal ? EQUAL : difference(frame, DifferenceKind.VALUE, reader.describe(position), actual);
+    }
+
+    /**
+     * Enums and values saved as strings, reader is after the class
+     */
+    private int compareText(Frame frame, long position, int tag, Object actual) {
+        ValueComparator<Object> comparator = valueComparators == null ? null : valueComparators.get(actual.getClass());
+        long text = reader.position;
+        Object expected = comparator == null ? null : restore(tag, actual.getClass(), reader.readString());
+        boolean equal;
+        if (expected != null) {
+            equal = comparator.areEqual(expected, actual);
+        } else {
+            reader.position = text;
+            equal = reader.stringEquals(actual instanceof Enum ? ((Enum) actual).name() : actual.toString());
+        }
+        return equal ? EQUAL : difference(frame, DifferenceKind.VALUE, reader.describe(position), actual);
+    }
+
+    /**
+     * Items are read by chunks, equal items are skipped without boxing, as in Comparison
+     */
+    private int comparePrimitiveArray(Frame frame, long position, ExcludeMatcher.State excludeState, Object actual) {
+        int itemTag = reader.readByte();
+        Class<?> arrayClass = Snapshot.primitiveArrayClass(itemTag);
+        if (actual.getClass() != arrayClass)
+            return difference(frame, DifferenceKind.TYPE, reader.describe(position), actual);
+        int length = reader.readVarInt();
+        int actualLength = Array.getLength(actual);
+        if (length != actualLength)
+            return difference(frame, DifferenceKind.SIZE, length, actualLength);
+
+        long data = reader.position;
+        int itemSize = Snapshot.itemSize(itemTag);
+        int chunk = snapshot.getInput().getMaxSlice() / itemSize;
+        if (expectedChunk == null || expectedChunk.getClass() != arrayClass || Array.getLength(expectedChunk) != chunk) {
+            expectedChunk = Array.newInstance(arrayClass.getComponentType(), chunk);
+            actualChunk = Array.newInstance(arrayClass.getComponentType(), chunk);
+        }
+        ValueComparator<Object> comparator = valueComparators == null ? null : valueComparators.get(Snapshot.valueType(itemTag));
+        Frame child = frame(frame.getDepth() + 1);
+
+        for (int from = 0; from < length; from += chunk) {
+            int count = Math.min(chunk, length - from);
+            snapshot.getInput().readItems(itemTag, data + (long) from * itemSize, expectedChunk, count);
+            System.arraycopy(actual, from, actualChunk, 0, count);
+
+            for (int i = mismatch(0, count); i >= 0; i = mismatch(i + 1, count)) {
+                Object expectedItem = Array.get(expectedChunk, i);
+                Object actualItem = Array.get(actualChunk, i);
+                child.setIndex(from + i, null, actualItem);
+                if (matcher.next(excludeState, child).isExcluded())
+                    continue;
+                if (comparator != null && comparator.areEqual(expectedItem, actualItem))
+                    continue;
+                if (difference(child, DifferenceKind.VALUE, expectedItem, actualItem) == DIFFERENT)
+                    return DIFFERENT;
+            }
+        }
+        return EQUAL;
+    }
+
+    /**
+     * Index of the first different item of chunks from fromIndex to count, or -1
+     */
+    private int mismatch(int fromIndex, int count) {
+        if (doubleTolerance != null && expectedChunk instanceof double[])
+            return doubleTolerance.mismatch((double[]) expectedChunk, (double[]) actualChunk, fromIndex, count);
+        if (floatTolerance != null && expectedChunk instanceof float[])
+            return floatTolerance.mismatch((float[]) expectedChunk, (float[]) actualChunk, fromIndex, count);
+        return Arrays2.mismatch(expectedChunk, actualChunk, fromIndex, count);
+    }
+
+    /**
+     * Compares primitive property with its record without boxing
+     */
+    private boolean primitiveEquals(Property property, long position, Object owner) {
+        reader.position = position;
+        int tag = reader.readByte();
+        if (property instanceof Property.OfInt)
+            return tag == Snapshot.INT && reader.readSignedVarLong() == ((Property.OfInt) property).getInt(owner);
+        if (property instanceof Property.OfLong)
+            return tag == Snapshot.LONG && reader.readSignedVarLong() == ((Property.OfLong) property).getLong(owner);
+        if (property instanceof Property.OfDouble) {
+            if (tag != Snapshot.DOUBLE)
+                return false;
+            double expected = Double.longBitsToDouble(reader.readLong());
+            double actual = ((Property.OfDouble) property).getDouble(owner);
+            return doubleTolerance != null ? doubleTolerance.areEqual(expected, actual)
+                    : Double.doubleToLongBits(expected) == Double.doubleToLongBits(actual);
+        }
+        if (property instanceof Property.OfFloat) {
+            if (tag != Snapshot.FLOAT)
+                return false;
+            float expected = Float.intBitsToFloat(reader.readInt());
+            float actual = ((Property.OfFloat) property).getFloat(owner);
+            return floatTolerance != null ? floatTolerance.areEqual(expected, actual)
+                    : Float.floatToIntBits(expected) == Float.floatToIntBits(actual);
+        }
+        if (property instanceof Property.OfBoolean)
+            return (tag == Snapshot.TRUE || tag == Snapshot.FALSE)
+                    && (tag == Snapshot.TRUE) == ((Property.OfBoolean) property).getBoolean(owner);
+        if (tag > Snapshot.CHAR || tag < Snapshot.BYTE)
+            return false;
+        Object expected = reader.readValue(tag);
+        if (property instanceof Property.OfByte)
+            return expected instanceof Byte && (Byte) expected == ((Property.OfByte) property).getByte(owner);
+        if (property instanceof Property.OfShort)
+            return expected instanceof Short && (Short) expected == ((Property.OfShort) property).getShort(owner);
+        if (property instanceof Property.OfChar)
+            return expected instanceof Character && (Character) expected == ((Property.OfChar) property).getChar(owner);
+        return false;
+    }
+
+    /**
+     * Value of actual map for the key of snapshot. Values and keys which are restored from strings
+     * are looked up, others are compared with keys of actual map which have the same hash.
+     * @return value or MISSING, matched key is set to frame.key
+     */
+    private Object lookup(Frame frame, long key) {
+        Map actualMap = (Map) frame.getActual();
+        reader.position = key;
+        int tag = reader.readByte();
+        Object expectedKey = MISSING;
+        if (tag <= Snapshot.STRING) {
+            if (tag == Snapshot.NULL || valueComparators == null || valueComparators.get(Snapshot.valueType(tag)) == null) {
+                expectedKey = reader.readValue(tag);
+                Object res = actualMap.get(expectedKey);
+                if (res == null && !actualMap.containsKey(expectedKey))
+                    return MISSING;
+                frame.key = expectedKey;
+                return res;
+            }
+        } else if (tag == Snapshot.ENUM || tag == Snapshot.TEXT) {
+            Class<?> clazz = loadClass(reader.readVarInt());
+            if (clazz != null && (valueComparators == null || valueComparators.get(clazz) == null)) {
+                expectedKey = restore(tag, clazz, reader.readString());
+                Object res = expectedKey == null ? null : actualMap.get(expectedKey);
+                if (res != null || (expectedKey != null && actualMap.containsKey(expectedKey))) {
+                    frame.key = expectedKey;
+                    return res;
+                }
+            }
+        }
+
+        if (keys == null)
+            keys = new SnapshotComparison(settings, snapshot, new ExcludeMatcher(Collections.<ExcludePath>emptyList()));
+        if (frame.keyBuckets == null)
+            indexKeys(frame);
+
+        // actual key is matched with one key of snapshot only, as in Comparison
+        int hash = recordHash(key, 0);
+        long[] buckets = frame.keyBuckets;
+        for (int j = Comparison.bucketStart(buckets, hash); j < buckets.length && (int) (buckets[j] >> 32) == hash; j++) {
+            int i = (int) buckets[j];
+            if (!frame.matchedKeys[j] && keys.compare(key, frame.actualKeys[i], FIRST_DIFFERENCE)) {
+                frame.matchedKeys[j] = true;
+                frame.key = frame.actualKeys[i];
+                return frame.actualValues[i];
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * Sorts entries of actual map by hashes of keys, it's done once, when the first key is not found by lookup
+     */
+    private void indexKeys(Frame frame) {
+        Map actualMap = (Map) frame.getActual();
+        int count = actualMap.size();
+        frame.actualKeys = new Object[count];
+        frame.actualValues = new Object[count];
+        frame.keyBuckets = new long[count];
+        frame.matchedKeys = new boolean[count];
+        int i = 0;
+        for (Object item : actualMap.entrySet()) {
+            Map.Entry entry = (Map.Entry) item;
+            frame.actualKeys[i] = entry.getKey();
+            frame.actualValues[i] = entry.getValue();
+            frame.keyBuckets[i] = ((long) hash(entry.getKey(), 0) << 32) | i;
+            i++;
+        }
+        Arrays.sort(frame.keyBuckets);
+    }
+
+    /**
+     * Hash of record of snapshot, it's equal to hash of actual object, which is equal to the record
+     * (see hash(Object, int)). Records are read as they are written: values by hashCode, objects by class
+     * and properties, containers by size and items (maps by size only), up to DeepHasher.DEFAULT_MAX_DEPTH levels.
+     */
+    private int recordHash(long position, int depth) {
+        reader.position = position;
+        int tag = reader.readByte();
+        if (tag == Snapshot.REF) {
+            reader.position = reader.readVarLong();
+            tag = reader.readByte();
+        }
+        if (tag == Snapshot.NULL)
+            return 0;
+        if (tag <= Snapshot.STRING) {
+            Class<?> type = Snapshot.valueType(tag);
+            return isHashedByClass(type) ? type.getName().hashCode() : reader.readValue(tag).hashCode();
+        }
+        if (tag == Snapshot.PRIMITIVE_ARRAY) {
+            reader.readByte();
+            return reader.readVarInt();
+        }
+
+        int classId = reader.readVarInt();
+        String className = snapshot.getClassName(classId);
+        if (tag == Snapshot.ENUM || tag == Snapshot.TEXT)
+            return textHash(className, reader.readString());
+        // end of container
+        reader.readLong();
+        if (tag == Snapshot.OBJECT && (depth == DeepHasher.DEFAULT_MAX_DEPTH || classId(className) != classId))
+            return className.hashCode();
+        int count = tag == Snapshot.OBJECT ? snapshot.getPropertyNames(classId).length : reader.readInt();
+        if (tag != Snapshot.OBJECT && (depth == DeepHasher.DEFAULT_MAX_DEPTH || tag == Snapshot.MAP))
+            return count;
+
+        int res = 0;
+        long child = reader.position;
+        for (int i = 0; i < count; i++) {
+            long next = reader.skip(child);
+            res = 31 * res + recordHash(child, depth + 1);
+            child = next;
+        }
+        return tag == Snapshot.OBJECT ? 31 * className.hashCode() + res : 31 * res + count;
+    }
+
+    /**
+     * Hash of actual object, it goes as the object is written to snapshot (see SnapshotWriter)
+     */
+    private int hash(Object value, int depth) {
+        if (value == null)
+            return 0;
+        Class<?> clazz = value.getClass();
+        if (value instanceof Enum)
+            return textHash(clazz.getName(), ((Enum) value).name());
+        ClassDescriptor descriptor = ClassDescriptor.forClass(clazz);
+        if (descriptor.isValueType())
+            return isHashedByClass(clazz) ? clazz.getName().hashCode() : value.hashCode();
+        if (Snapshot.isSavedAsText(descriptor, clazz))
+            return textHash(clazz.getName(), value.toString());
+        if (descriptor.isPrimitiveArray())
+            return Array.getLength(value);
+        if (descriptor.isMap())
+            return ((Map) value).size();
+
+        if (descriptor.isArray() || descriptor.isIterable()) {
+            if (depth == DeepHasher.DEFAULT_MAX_DEPTH && value instanceof Collection)
+                return ((Collection) value).size();
+            int res = 0;
+            int count = 0;
+            for (Object item : descriptor.isArray() ? Arrays.asList((Object[]) value) : (Iterable) value) {
+                if (depth < DeepHasher.DEFAULT_MAX_DEPTH)
+                    res = 31 * res + hash(item, depth + 1);
+                count++;
+            }
+            return depth == DeepHasher.DEFAULT_MAX_DEPTH ? count : 31 * res + count;
+        }
+
+        // properties are taken by names of snapshot, object without some of them is not equal to any record
+        int classId = classId(clazz.getName());
+        if (depth == DeepHasher.DEFAULT_MAX_DEPTH || classId < 0)
+            return clazz.getName().hashCode();
+        Property[] properties = properties(classId, clazz);
+        int res = 0;
+        for (Property property : properties) {
+            if (property == null)
+                return clazz.getName().hashCode();
+            res = 31 * res + hash(property.get(value), depth + 1);
+        }
+        return 31 * clazz.getName().hashCode() + res;
+    }
+
+    /**
+     * Values with comparators (or with tolerance) can be equal with different hashCode
+     */
+    private boolean isHashedByClass(Class<?> type) {
+        return (valueComparators != null && valueComparators.get(type) != null)
+                || (type == Double.class && doubleTolerance != null) || (type == Float.class && floatTolerance != null);
+    }
+
+    private int textHash(String className, String text) {
+        // value comparators are taken by actual classes, which may be not found by names of snapshot
+        return valueComparators != null ? className.hashCode() : 31 * className.hashCode() + text.hashCode();
+    }
+
+    /**
+     * Id of class of snapshot by name, -1 if snapshot has no such class or several ones
+     */
+    private int classId(String className) {
+        if (classIds == null) {
+            classIds = new HashMap<String, Integer>();
+            for (int i = 0; i < snapshot.getClassCount(); i++) {
+                String name = snapshot.getClassName(i);
+                classIds.put(name, classIds.containsKey(name) ? -1 : i);
+            }
+        }
+        Integer res = classIds.get(className);
+        return res == null ? -1 : res;
+    }
+
+    /**
+     * Value of the class from string of snapshot, or null if it can't be restored
+     */
+    static Object restore(int tag, Class<?> clazz, String text) {
+        if (tag == Snapshot.ENUM) {
+            Class<?> enumClass = clazz.isEnum() ? clazz : clazz.getSuperclass();
+            try {
+                return Enum.valueOf(enumClass.asSubclass(Enum.class), text);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+        Executable parser = parsers.get(clazz);
+        if (parser == null)
+            return null;
+        try {
+            if (parser instanceof Constructor)
+                return ((Constructor) parser).newInstance(text);
+            return ((Method) parser).invoke(null, text);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * True if actual class has name of the class of snapshot
+     */
+    private boolean isClass(int classId, Class<?> clazz) {
+        if (classes[classId] == clazz)
+            return true;
+        if (!clazz.getName().equals(snapshot.getClassName(classId)))
+            return false;
+        classes[classId] = clazz;
+        return true;
+    }
+
+    /**
+     * Class of snapshot for keys of maps, or null if it's not found
+     */
+    private Class<?> loadClass(int classId) {
+        if (classes[classId] == null)
+            classes[classId] = forName(snapshot.getClassName(classId));
+        return classes[classId];
+    }
+
+    /**
+     * Class by name from the context class loader, or null if it's not found
+     */
+    static Class<?> forName(String name) {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        try {
+            return Class.forName(name, false, loader != null ? loader : SnapshotComparison.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private Property[] properties(int classId, Class<?> clazz) {
+        Property[] res = properties[classId];
+        if (res == null) {
+            Map<String, Property> byName = new HashMap<String, Property>();
+            for (Property property : ClassDescriptor.forClass(clazz).getProperties())
+                byName.put(property.getName(), property);
+            String[] names = snapshot.getPropertyNames(classId);
+            res = new Property[names.length];
+            for (int i = 0; i < names.length; i++)
+                res[i] = byName.get(names[i]);
+            properties[classId] = res;
+        }
+        return res;
+    }
+
+    private int difference(StackEntry entry, DifferenceKind kind, Object expected, Object actual) {
+        differenceCount++;
+        return listener.onDifference(entry, kind, expected, actual) ? EQUAL : DIFFERENT;
+    }
+
+    private Frame frame(int depth) {
+        if (depth == frames.length)
+            frames = Arrays.copyOf(frames, depth * 2);
+        Frame res = frames[depth];
+        if (res == null)
+            res = frames[depth] = new Frame(depth == 0 ? null : frames[depth - 1]);
+        return res;
+    }
+
+    private void clear() {
+        for (int i = 0; i < frames.length && frames[i] != null; i++)
+            frames[i].clear();
+        depth = 0;
+        ancestors.clear();
+        listener = null;
+    }
+
+    /**
+     * Node of snapshot and actual object, whose children are compared
+     */
+    private static class Frame extends StackEntry {
+        int kind;
+        // record of the node (it can be a reference), record which is compared, record of the next child
+        long start;
+        long node;
+        long next;
+        int index;
+        int count;
+        String[] names;
+        Property[] properties;
+        Iterator iterator;
+        // key of actual map, which is matched with key of snapshot
+        Object key;
+        // entries of actual map sorted by hashes of keys, they are created when key is not found by lookup
+        Object[] actualKeys;
+        Object[] actualValues;
+        long[] keyBuckets;
+        // matched entries by their indexes in keyBuckets
+        boolean[] matchedKeys;
+        ExcludeMatcher.State excludeState;
+        // frame above with the same actual object
+        Frame sameActual;
+
+        Frame(Frame parent) {
+            super(parent);
+        }
+
+        void clear() {
+            set(null, null, null);
+            names = null;
+            properties = null;
+            iterator = null;
+            key = null;
+            actualKeys = null;
+            actualValues = null;
+            keyBuckets = null;
+            matchedKeys = null;
+            excludeState = null;
+            sameActual = null;
+        }
+    }
+}
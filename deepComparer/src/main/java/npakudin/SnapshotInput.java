@@ -0,0 +1,111 @@
+package npakudin;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * File of snapshot mapped to memory. One mapped buffer can't be larger than 2 GB, so the file is mapped by segments.
+ * Each segment overlaps the next one by maxSlice bytes, so any read not longer than maxSlice is inside one segment.
+ * Reads are absolute, so one input is shared by readers of many threads.
+ */
+final class SnapshotInput {
+
+    static final int SEGMENT_BITS = 30;
+    static final int MAX_SLICE = 1 << 16;
+
+    private final ByteBuffer[] segments;
+    private final int segmentBits;
+    private final long segmentMask;
+    private final int maxSlice;
+    private final long size;
+
+    SnapshotInput(FileChannel channel, int segmentBits, int maxSlice) throws IOException {
+        if (segmentBits < 4 || segmentBits > SEGMENT_BITS)
+            throw new IllegalArgumentException("segmentBits");
+        // varints and longs are read at once
+        if (maxSlice < 16 || (long) maxSlice + (1L << segmentBits) > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("maxSlice");
+        this.segmentBits = segmentBits;
+        this.segmentMask = (1L << segmentBits) - 1;
+        this.maxSlice = maxSlice;
+        this.size = channel.size();
+
+        int count = (int) ((size + segmentMask) >>> segmentBits);
+        segments = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = (long) i << segmentBits;
+            long length = Math.min(size - start, (1L << segmentBits) + maxSlice);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Maximal length of slice
+     */
+    int getMaxSlice() {
+        return maxSlice;
+    }
+
+    byte get(long position) {
+        return segments[(int) (position >>> segmentBits)].get((int) (position & segmentMask));
+    }
+
+    int getInt(long position) {
+        return segments[(int) (position >>> segmentBits)].getInt((int) (position & segmentMask));
+    }
+
+    long getLong(long position) {
+        return segments[(int) (position >>> segmentBits)].getLong((int) (position & segmentMask));
+    }
+
+    /**
+     * Buffer of bytes from position, length is not more than maxSlice. It's not copied.
+     */
+    ByteBuffer slice(long position, int length) {
+        ByteBuffer res = segments[(int) (position >>> segmentBits)].duplicate();
+        int offset = (int) (position & segmentMask);
+        res.limit(offset + length).position(offset);
+        return res.slice();
+    }
+
+    /**
+     * Reads count items of primitive array from position to the start of items (array of the same type)
+     */
+    void readItems(int itemTag, long position, Object items, int count) {
+        ByteBuffer bytes = slice(position, count * Snapshot.itemSize(itemTag));
+        switch (itemTag) {
+            case Snapshot.TRUE: {
+                boolean[] res = (boolean[]) items;
+                for (int i = 0; i < count; i++)
+                    res[i] = bytes.get(i) != 0;
+                break;
+            }
+            case Snapshot.BYTE:
+                bytes.get((byte[]) items, 0, count);
+                break;
+            case Snapshot.SHORT:
+                bytes.asShortBuffer().get((short[]) items, 0, count);
+                break;
+            case Snapshot.CHAR:
+                bytes.asCharBuffer().get((char[]) items, 0, count);
+                break;
+            case Snapshot.INT:
+                bytes.asIntBuffer().get((int[]) items, 0, count);
+                break;
+            case Snapshot.LONG:
+                bytes.asLongBuffer().get((long[]) items, 0, count);
+                break;
+            case Snapshot.FLOAT:
+                bytes.asFloatBuffer().get((float[]) items, 0, count);
+                break;
+            default:
+                bytes.asDoubleBuffer().get((double[]) items, 0, count);
+                break;
+        }
+    }
+}
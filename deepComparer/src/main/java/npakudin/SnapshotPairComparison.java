@@ -0,0 +1,667 @@
+package npakudin;
+
+import npakudin.common.Arrays2;
+
+import java.lang.reflect.Array;
+import java.util.*;
+
+/**
+ * Compares two snapshots (see Snapshot), e.g. outputs of two runs, without loading either graph:
+ * both files are mapped and read side by side, as SnapshotComparison reads one of them.
+ * Memory doesn't depend on size of graphs: there is a frame for each level of the current path
+ * and chunks of primitive arrays, only values and keys of maps with value comparators are created.
+ * Maps on the current path are the exception: they have a bit per entry to match each actual entry once.
+ *
+ * Entries of maps are matched by keys: the next entry of actual map is tried first (maps of both snapshots
+ * are usually iterated in the same order). When a key is out of order, entries of actual map are indexed
+ * by hashes of keys which are compared as values (primitives, strings, enums and texts), other keys are
+ * compared with all entries. So maps with different orders take 16 bytes per entry, and maps of other keys
+ * in different orders are compared in quadratic time.
+ */
+class SnapshotPairComparison {
+
+    private static final int EQUAL = 0;
+    private static final int DIFFERENT = 1;
+    private static final int DESCEND = 2;
+
+    // indexes of properties of class which has the same properties in both snapshots
+    private static final int[] SAME_PROPERTIES = new int[0];
+    // hash of key which is not compared as value
+    private static final long NOT_INDEXED = Long.MAX_VALUE;
+
+    private static final DifferenceListener FIRST_DIFFERENCE = new DifferenceListener() {
+        @Override
+        public boolean onDifference(StackEntry entry, DifferenceKind kind, Object expected, Object actual) {
+            return false;
+        }
+    };
+
+    private final DeepComparer settings;
+    private final Snapshot expected;
+    private final Snapshot actual;
+    private final SnapshotReader expectedReader;
+    private final SnapshotReader actualReader;
+    private final ExcludeMatcher matcher;
+    private final boolean checkIterableTypesStrictly;
+    private final int maxValueLength;
+    // null if there are no value comparators
+    private final ValueComparatorRegistry valueComparators;
+    // null if doubles and floats are compared exactly
+    private final FloatTolerance doubleTolerance;
+    private final FloatTolerance floatTolerance;
+
+    // ids of actual classes by ids of expected classes with the same names, -1 if actual has no such class
+    private final int[] actualClasses;
+    // indexes of actual properties by expected ones (-1 if it's missing) by ids of expected classes
+    private final int[][] properties;
+    // classes of expected snapshot, which are loaded for value comparators, null if class is not found
+    private final Class<?>[] classes;
+    private final boolean[] loaded;
+
+    private DifferenceListener listener;
+    private int differenceCount;
+    private Frame[] frames = new Frame[16];
+    private int depth;
+    // actual records on the current path, frame of record links to the frame above it with the same actual record
+    private final HashMap<Long, Frame> ancestors = new HashMap<Long, Frame>();
+    // comparison of keys of maps, it's created when it's necessary
+    private SnapshotPairComparison keys;
+    // items of primitive arrays are compared by chunks
+    private Object expectedChunk;
+    private Object actualChunk;
+
+    public SnapshotPairComparison(DeepComparer settings, Snapshot expected, Snapshot actual) {
+        this(settings, expected, actual, settings.getExcludeMatcher());
+    }
+
+    private SnapshotPairComparison(DeepComparer settings, Snapshot expected, Snapshot actual, ExcludeMatcher matcher) {
+        this.settings = settings;
+        this.expected = expected;
+        this.actual = actual;
+        this.expectedReader = new SnapshotReader(expected.getInput(), expected);
+        this.actualReader = new SnapshotReader(actual.getInput(), actual);
+        this.matcher = matcher;
+        this.checkIterableTypesStrictly = settings.isCheckIterableTypesStrictly();
+        this.maxValueLength = settings.getMaxValueLength();
+        this.valueComparators = settings.getValueComparatorRegistry();
+        this.doubleTolerance = settings.getToleranceFor(double.class);
+        this.floatTolerance = settings.getToleranceFor(float.class);
+
+        Map<String, Integer> actualIds = new HashMap<String, Integer>();
+        for (int i = 0; i < actual.getClassCount(); i++)
+            actualIds.put(actual.getClassName(i), i);
+        this.actualClasses = new int[expected.getClassCount()];
+        for (int i = 0; i < actualClasses.length; i++) {
+            Integer id = actualIds.get(expected.getClassName(i));
+            actualClasses[i] = id == null ? -1 : id;
+        }
+        this.properties = new int[expected.getClassCount()][];
+        this.classes = new Class<?>[expected.getClassCount()];
+        this.loaded = new boolean[expected.getClassCount()];
+    }
+
+    /**
+     * @return null if snapshots are equal, otherwise string with error
+     */
+    public String compare() {
+        DifferenceCollector collector = new DifferenceCollector(1, maxValueLength);
+        compare(collector);
+        Differences res = collector.getDifferences();
+        return res.isEmpty() ? null : res.getItems().get(0).getMessage();
+    }
+
+    /**
+     * Collects differences until their number reaches maxDifferences
+     */
+    public Differences compareAll(int maxDifferences) {
+        DifferenceCollector collector = new DifferenceCollector(maxDifferences, maxValueLength);
+        compare(collector);
+        return collector.getDifferences();
+    }
+
+    /**
+     * Passes differences to listener until it stops comparison
+     * @return true if snapshots are equal
+     */
+    public boolean compare(DifferenceListener listener) {
+        return compare(expected.getRootPosition(), actual.getRootPosition(), listener);
+    }
+
+    private boolean compare(long expectedPosition, long actualPosition, DifferenceListener listener) {
+        this.listener = listener;
+        differenceCount = 0;
+        Frame root = frame(0);
+        root.expectedStart = expectedPosition;
+        root.actualStart = actualPosition;
+        root.set("$root", null, null);
+        try {
+            if (enter(root) == DESCEND)
+                run();
+            return differenceCount == 0;
+        } finally {
+            clear();
+        }
+    }
+
+    /**
+     * Main loop: takes next pair of children of the top frame and compares it, as in SnapshotComparison
+     */
+    private void run() {
+        depth = 1;
+        while (depth > 0) {
+            Frame frame = frames[depth - 1];
+            Frame child = frame(depth);
+
+            int res = nextChild(frame, child);
+            if (res == DIFFERENT)
+                return;
+            if (res == EQUAL) {
+                leave(frame);
+                depth--;
+                continue;
+            }
+
+            res = enter(child);
+            if (res == DESCEND)
+                depth++;
+            else if (res == DIFFERENT)
+                return;
+        }
+    }
+
+    /**
+     * Compares pair of nodes without their children
+     * @return EQUAL or DIFFERENT if result is known, DESCEND if children must be compared
+     */
+    private int enter(Frame frame) {
+        Frame parent = (Frame) frame.getParent();
+        ExcludeMatcher.State excludeState = matcher.next(
+                parent == null ? matcher.getInitialState() : parent.excludeState, frame);
+        if (excludeState.isExcluded())
+            return EQUAL;
+
+        long e = frame.expectedStart;
+        expectedReader.position = e;
+        int tag = expectedReader.readByte();
+        if (tag == Snapshot.REF) {
+            e = expectedReader.readVarLong();
+            expectedReader.position = e;
+            tag = expectedReader.readByte();
+        }
+        long a = frame.actualStart;
+        actualReader.position = a;
+        int actualTag = actualReader.readByte();
+        if (actualTag == Snapshot.REF) {
+            a = actualReader.readVarLong();
+            actualReader.position = a;
+            actualTag = actualReader.readByte();
+        }
+
+        if (tag == Snapshot.NULL)
+            return actualTag == Snapshot.NULL ? EQUAL
+                    : difference(frame, DifferenceKind.EXPECTED_NULL, null, actualReader.describe(a));
+        if (actualTag == Snapshot.NULL)
+            return difference(frame, DifferenceKind.ACTUAL_NULL, expectedReader.describe(e), null);
+
+        if (tag <= Snapshot.STRING || actualTag <= Snapshot.STRING)
+            return compareValues(frame, e, tag, a, actualTag);
+        if (tag == Snapshot.PRIMITIVE_ARRAY || actualTag == Snapshot.PRIMITIVE_ARRAY)
+            return comparePrimitiveArrays(frame, e, tag, a, actualTag, excludeState);
+
+        int classId = expectedReader.readVarInt();
+        int actualClassId = actualReader.readVarInt();
+        if (actualClasses[classId] != actualClassId &&
+                (checkIterableTypesStrictly || !(tag == Snapshot.ITERABLE && actualTag == Snapshot.ITERABLE)))
+            return type(frame, e, a);
+        // class is saved in another way, if it's changed between snapshots
+        if (tag != actualTag)
+            return type(frame, e, a);
+
+        if (tag == Snapshot.ENUM || tag == Snapshot.TEXT)
+            return compareTexts(frame, e, tag, classId, a);
+
+        // pair of records which is on the current path closes the cycle
+        for (Frame ancestor = ancestors.get(a); ancestor != null; ancestor = ancestor.sameActual) {
+            if (ancestor.expectedNode == e)
+                return EQUAL;
+        }
+        return start(frame, e, a, tag, classId, actualClassId, excludeState);
+    }
+
+    /**
+     * Reads headers of containers, readers are at the end of their classes
+     */
+    private int start(Frame frame, long e, long a, int tag, int classId, int actualClassId,
+                      ExcludeMatcher.State excludeState) {
+        frame.kind = tag;
+        frame.expectedNode = e;
+        frame.actualNode = a;
+        frame.excludeState = excludeState;
+        frame.index = 0;
+        frame.actualIndex = 0;
+
+        // ends of containers
+        expectedReader.readLong();
+        actualReader.readLong();
+        if (tag == Snapshot.OBJECT) {
+            frame.names = expected.getPropertyNames(classId);
+            frame.properties = properties(classId, actualClassId);
+            frame.count = frame.names.length;
+            frame.actualCount = actual.getPropertyNames(actualClassId).length;
+        } else {
+            frame.count = expectedReader.readInt();
+            frame.actualCount = actualReader.readInt();
+            if (frame.count != frame.actualCount && (tag != Snapshot.ITERABLE || isCollection(actualClassId)))
+                return difference(frame, DifferenceKind.SIZE, frame.count, frame.actualCount);
+        }
+        frame.expectedNext = expectedReader.position;
+        frame.actualNext = actualReader.position;
+        frame.actualFirst = actualReader.position;
+        if (tag == Snapshot.MAP)
+            frame.matchedKeys = new BitSet(frame.actualCount);
+        frame.sameActual = ancestors.put(a, frame);
+        return DESCEND;
+    }
+
+    /**
+     * All children of the frame are equal
+     */
+    private void leave(Frame frame) {
+        if (frame.sameActual == null)
+            ancestors.remove(frame.actualNode);
+        else
+            ancestors.put(frame.actualNode, frame.sameActual);
+        frame.clear();
+    }
+
+    /**
+     * Sets the next pair of children of the frame to child frame.
+     * @return DESCEND if child is set, EQUAL if there are no more children, DIFFERENT if comparison is stopped
+     */
+    private int nextChild(Frame frame, Frame child) {
+        switch (frame.kind) {
+            case Snapshot.OBJECT: {
+                while (frame.index < frame.count) {
+                    int i = frame.index++;
+                    child.expectedStart = frame.expectedNext;
+                    frame.expectedNext = expectedReader.skip(child.expectedStart);
+                    if (frame.properties == SAME_PROPERTIES) {
+                        child.actualStart = frame.actualNext;
+                        frame.actualNext = actualReader.skip(child.actualStart);
+                    } else if (frame.properties[i] >= 0) {
+                        child.actualStart = child(frame, frame.properties[i]);
+                    } else {
+                        if (difference(frame, DifferenceKind.MISSING_KEY, frame.names[i], null) == DIFFERENT)
+                            return DIFFERENT;
+                        continue;
+                    }
+                    child.set(frame.names[i], null, null);
+                    return DESCEND;
+                }
+                return EQUAL;
+            }
+            case Snapshot.MAP: {
+                while (frame.index < frame.count) {
+                    frame.index++;
+                    long key = frame.expectedNext;
+                    long value = expectedReader.skip(key);
+                    frame.expectedNext = expectedReader.skip(value);
+                    long actualValue = lookup(frame, key);
+                    if (actualValue < 0) {
+                        if (difference(frame, DifferenceKind.MISSING_KEY, expectedReader.describe(key), null) == DIFFERENT)
+                            return DIFFERENT;
+                        continue;
+                    }
+
+                    child.expectedStart = value;
+                    child.actualStart = actualValue;
+                    child.setKey(expectedReader.describe(key), null, null);
+                    return DESCEND;
+                }
+                return EQUAL;
+            }
+            case Snapshot.ITERABLE:
+            case Snapshot.ARRAY: {
+                int index = frame.index;
+                boolean expectedMove = index < frame.count;
+                boolean actualMove = index < frame.actualCount;
+                if (expectedMove && actualMove) {
+                    frame.index++;
+                    child.expectedStart = frame.expectedNext;
+                    frame.expectedNext = expectedReader.skip(child.expectedStart);
+                    child.actualStart = frame.actualNext;
+                    frame.actualNext = actualReader.skip(child.actualStart);
+                    child.setIndex(index, null, null);
+                    return DESCEND;
+                }
+
+                // sizes of collections are checked before, other iterables are compared as in Comparison
+                if (expectedMove)
+                    return difference(frame, DifferenceKind.EXPECTED_LONGER, index, index);
+                if (actualMove)
+                    return difference(frame, DifferenceKind.ACTUAL_LONGER, index, index);
+                return EQUAL;
+            }
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Primitives, their wrappers and strings, readers are after the tags
+     */
+    private int compareValues(Frame frame, long e, int tag, long a, int actualTag) {
+        Class<?> type = tag <= Snapshot.STRING ? Snapshot.valueType(tag) : null;
+        if (actualTag > Snapshot.STRING || type != Snapshot.valueType(actualTag))
+            return type(frame, e, a);
+
+        ValueComparator<Object> comparator = valueComparators == null ? null : valueComparators.get(type);
+        boolean equal;
+        if (comparator == null && tag == Snapshot.STRING) {
+            equal = expectedReader.stringEquals(actualReader);
+        } else {
+            Object expectedValue = expectedReader.readValue(tag);
+            Object actualValue = actualReader.readValue(actualTag);
+            equal = comparator != null ? comparator.areEqual(expectedValue, actualValue) : expectedValue.equals(actualValue);
+        }
+        return equal ? EQUAL : difference(frame, DifferenceKind.VALUE, expectedReader.describe(e), actualReader.describe(a));
+    }
+
+    /**
+     * Enums and values saved as strings, readers are after the classes.
+     * They are restored only for value comparators, if their class is found.
+     */
+    private int compareTexts(Frame frame, long e, int tag, int classId, long a) {
+        Class<?> clazz = valueComparators == null ? null : loadClass(classId);
+        ValueComparator<Object> comparator = clazz == null ? null : valueComparators.get(clazz);
+        boolean equal;
+        Object expectedValue = comparator == null ? null : SnapshotComparison.restore(tag, clazz, expectedReader.readString());
+        Object actualValue = expectedValue == null ? null : SnapshotComparison.restore(tag, clazz, actualReader.readString());
+        if (actualValue != null) {
+            equal = comparator.areEqual(expectedValue, actualValue);
+        } else {
+            // readers are moved back after the classes
+            expectedReader.position = e + 1;
+            expectedReader.readVarInt();
+            actualReader.position = a + 1;
+            actualReader.readVarInt();
+            equal = expectedReader.stringEquals(actualReader);
+        }
+        return equal ? EQUAL : difference(frame, DifferenceKind.VALUE, expectedReader.describe(e), actualReader.describe(a));
+    }
+
+    /**
+     * Items are read by chunks from both snapshots, equal items are skipped without boxing
+     */
+    private int comparePrimitiveArrays(Frame frame, long e, int tag, long a, int actualTag,
+                                       ExcludeMatcher.State excludeState) {
+        if (tag != actualTag)
+            return type(frame, e, a);
+        int itemTag = expectedReader.readByte();
+        if (actualReader.readByte() != itemTag)
+            return type(frame, e, a);
+        int length = expectedReader.readVarInt();
+        int actualLength = actualReader.readVarInt();
+        if (length != actualLength)
+            return difference(frame, DifferenceKind.SIZE, length, actualLength);
+
+        long data = expectedReader.position;
+        long actualData = actualReader.position;
+        int itemSize = Snapshot.itemSize(itemTag);
+        int chunk = Math.min(expected.getInput().getMaxSlice(), actual.getInput().getMaxSlice()) / itemSize;
+        Class<?> itemType = Snapshot.primitiveArrayClass(itemTag).getComponentType();
+        if (expectedChunk == null || expectedChunk.getClass().getComponentType() != itemType
+                || Array.getLength(expectedChunk) != chunk) {
+            expectedChunk = Array.newInstance(itemType, chunk);
+            actualChunk = Array.newInstance(itemType, chunk);
+        }
+        ValueComparator<Object> comparator = valueComparators == null ? null : valueComparators.get(Snapshot.valueType(itemTag));
+        Frame child = frame(frame.getDepth() + 1);
+
+        for (int from = 0; from < length; from += chunk) {
+            int count = Math.min(chunk, length - from);
+            expected.getInput().readItems(itemTag, data + (long) from * itemSize, expectedChunk, count);
+            actual.getInput().readItems(itemTag, actualData + (long) from * itemSize, actualChunk, count);
+
+            for (int i = mismatch(0, count); i >= 0; i = mismatch(i + 1, count)) {
+                Object expectedItem = Array.get(expectedChunk, i);
+                Object actualItem = Array.get(actualChunk, i);
+                child.setIndex(from + i, null, null);
+                if (matcher.next(excludeState, child).isExcluded())
+                    continue;
+                if (comparator != null && comparator.areEqual(expectedItem, actualItem))
+                    continue;
+                if (difference(child, DifferenceKind.VALUE, expectedItem, actualItem) == DIFFERENT)
+                    return DIFFERENT;
+            }
+        }
+        return EQUAL;
+    }
+
+    /**
+     * Index of the first different item of chunks from fromIndex to count, or -1
+     */
+    private int mismatch(int fromIndex, int count) {
+        if (doubleTolerance != null && expectedChunk instanceof double[])
+            return doubleTolerance.mismatch((double[]) expectedChunk, (double[]) actualChunk, fromIndex, count);
+        if (floatTolerance != null && expectedChunk instanceof float[])
+            return floatTolerance.mismatch((float[]) expectedChunk, (float[]) actualChunk, fromIndex, count);
+        return Arrays2.mismatch(expectedChunk, actualChunk, fromIndex, count);
+    }
+
+    /**
+     * Value of actual map for the key of expected one: the next entry of actual map is tried first,
+     * then entries with the same hash of key (for keys compared as values) or all entries.
+     * Keys are compared as nodes, without exclude paths; each actual entry is matched once.
+     * @return position of actual value or -1
+     */
+    private long lookup(Frame frame, long key) {
+        if (keys == null)
+            keys = new SnapshotPairComparison(settings, expected, actual, new ExcludeMatcher(Collections.<ExcludePath>emptyList()));
+
+        if (frame.actualIndex < frame.actualCount && !frame.matchedKeys.get(frame.actualIndex)) {
+            long res = match(frame, key, frame.actualIndex, frame.actualNext);
+            if (res >= 0)
+                return res;
+        }
+
+        long hash = keyHash(expectedReader, expected, key);
+        if (hash != NOT_INDEXED) {
+            if (frame.keyBuckets == null)
+                indexKeys(frame);
+            long[] buckets = frame.keyBuckets;
+            for (int j = Comparison.bucketStart(buckets, (int) hash); j < buckets.length && (int) (buckets[j] >> 32) == hash; j++) {
+                int i = (int) buckets[j];
+                if (!frame.matchedKeys.get(i)) {
+                    long res = match(frame, key, i, frame.keyPositions[i]);
+                    if (res >= 0)
+                        return res;
+                }
+            }
+            return -1;
+        }
+
+        long actualKey = frame.actualFirst;
+        for (int i = 0; i < frame.actualCount; i++) {
+            long next = actualReader.skip(actualReader.skip(actualKey));
+            if (!frame.matchedKeys.get(i)) {
+                long res = match(frame, key, i, actualKey);
+                if (res >= 0)
+                    return res;
+            }
+            actualKey = next;
+        }
+        return -1;
+    }
+
+    /**
+     * Compares key with key of actual entry, if they are equal, entry is marked as matched
+     * and the next entry is tried first for the next key (the following entries are probably in the same order)
+     * @return position of actual value or -1
+     */
+    private long match(Frame frame, long key, int index, long actualKey) {
+        if (!keys.compare(key, actualKey, FIRST_DIFFERENCE))
+            return -1;
+        frame.matchedKeys.set(index);
+        long res = actualReader.skip(actualKey);
+        frame.actualIndex = index + 1;
+        frame.actualNext = actualReader.skip(res);
+        return res;
+    }
+
+    /**
+     * Hash of key which is equal to other keys by value: primitive or string without value comparator,
+     * enum or text if there are no value comparators. Other keys are NOT_INDEXED.
+     */
+    private long keyHash(SnapshotReader reader, Snapshot snapshot, long at) {
+        reader.position = at;
+        int tag = reader.readByte();
+        if (tag <= Snapshot.STRING) {
+            if (tag != Snapshot.NULL && valueComparators != null && valueComparators.get(Snapshot.valueType(tag)) != null)
+                return NOT_INDEXED;
+            Object value = reader.readValue(tag);
+            return value == null ? 0 : value.hashCode();
+        }
+        if ((tag == Snapshot.ENUM || tag == Snapshot.TEXT) && valueComparators == null) {
+            String className = snapshot.getClassName(reader.readVarInt());
+            return 31 * className.hashCode() + reader.readString().hashCode();
+        }
+        return NOT_INDEXED;
+    }
+
+    /**
+     * Sorts entries of actual map by hashes of keys, it's done once, when the first key is out of order
+     */
+    private void indexKeys(Frame frame) {
+        frame.keyPositions = new long[frame.actualCount];
+        long[] buckets = new long[frame.actualCount];
+        int count = 0;
+        long actualKey = frame.actualFirst;
+        for (int i = 0; i < frame.actualCount; i++) {
+            frame.keyPositions[i] = actualKey;
+            long hash = keyHash(actualReader, actual, actualKey);
+            if (hash != NOT_INDEXED)
+                buckets[count++] = (hash << 32) | i;
+            actualKey = actualReader.skip(actualReader.skip(actualKey));
+        }
+        frame.keyBuckets = Arrays.copyOf(buckets, count);
+        Arrays.sort(frame.keyBuckets);
+    }
+
+    /**
+     * Position of actual property by its index, previous properties are skipped
+     */
+    private long child(Frame frame, int index) {
+        long res = frame.actualFirst;
+        for (int i = 0; i < index; i++)
+            res = actualReader.skip(res);
+        return res;
+    }
+
+    private int type(Frame frame, long e, long a) {
+        return difference(frame, DifferenceKind.TYPE, expectedReader.describe(e), actualReader.describe(a));
+    }
+
+    /**
+     * True if actual iterable is a collection (so its size is compared), or its class is not found
+     */
+    private boolean isCollection(int actualClassId) {
+        Class<?> clazz = SnapshotComparison.forName(actual.getClassName(actualClassId));
+        return clazz == null || Collection.class.isAssignableFrom(clazz);
+    }
+
+    /**
+     * Class of expected snapshot for value comparators, or null if it's not found
+     */
+    private Class<?> loadClass(int classId) {
+        if (!loaded[classId]) {
+            classes[classId] = SnapshotComparison.forName(expected.getClassName(classId));
+            loaded[classId] = true;
+        }
+        return classes[classId];
+    }
+
+    private int[] properties(int classId, int actualClassId) {
+        int[] res = properties[classId];
+        if (res == null) {
+            String[] names = expected.getPropertyNames(classId);
+            List<String> actualNames = Arrays.asList(actual.getPropertyNames(actualClassId));
+            if (actualNames.equals(Arrays.asList(names))) {
+                res = SAME_PROPERTIES;
+            } else {
+                res = new int[names.length];
+                for (int i = 0; i < names.length; i++)
+                    res[i] = actualNames.indexOf(names[i]);
+            }
+            properties[classId] = res;
+        }
+        return res;
+    }
+
+    private int difference(StackEntry entry, DifferenceKind kind, Object expected, Object actual) {
+        differenceCount++;
+        return listener.onDifference(entry, kind, expected, actual) ? EQUAL : DIFFERENT;
+    }
+
+    private Frame frame(int depth) {
+        if (depth == frames.length)
+            frames = Arrays.copyOf(frames, depth * 2);
+        Frame res = frames[depth];
+        if (res == null)
+            res = frames[depth] = new Frame(depth == 0 ? null : frames[depth - 1]);
+        return res;
+    }
+
+    private void clear() {
+        for (int i = 0; i < frames.length && frames[i] != null; i++)
+            frames[i].clear();
+        depth = 0;
+        ancestors.clear();
+        listener = null;
+    }
+
+    /**
+     * Pair of nodes of snapshots, whose children are compared
+     */
+    private static class Frame extends StackEntry {
+        int kind;
+        // records of the nodes (they can be references), records which are compared, records of the next children
+        long expectedStart;
+        long actualStart;
+        long expectedNode;
+        long actualNode;
+        long expectedNext;
+        long actualNext;
+        // the first child of actual node, properties and entries are looked up from it
+        long actualFirst;
+        int index;
+        int actualIndex;
+        int count;
+        int actualCount;
+        String[] names;
+        int[] properties;
+        // entries of actual map which are matched with keys of expected one
+        BitSet matchedKeys;
+        // entries of actual map sorted by hashes of keys (hash in high bits), and positions of their keys
+        long[] keyBuckets;
+        long[] keyPositions;
+        ExcludeMatcher.State excludeState;
+        // frame above with the same actual record
+        Frame sameActual;
+
+        Frame(Frame parent) {
+            super(parent);
+        }
+
+        void clear() {
+            set(null, null, null);
+            names = null;
+            properties = null;
+            matchedKeys = null;
+            keyBuckets = null;
+            keyPositions = null;
+            excludeState = null;
+            sameActual = null;
+        }
+    }
+}
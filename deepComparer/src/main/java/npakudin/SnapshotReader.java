@@ -0,0 +1,213 @@
+package npakudin;
+
+/**
+ * Cursor of snapshot: reads varints, strings and nodes from its position.
+ * Integers are saved as zigzag varints, strings - as byte length and chars as varints.
+ */
+final class SnapshotReader {
+
+    private final SnapshotInput input;
+    private final Snapshot snapshot;
+    long position;
+
+    SnapshotReader(SnapshotInput input, Snapshot snapshot) {
+        this.input = input;
+        this.snapshot = snapshot;
+    }
+
+    int readByte() {
+        return input.get(position++) & 0xFF;
+    }
+
+    int readInt() {
+        int res = input.getInt(position);
+        position += 4;
+        return res;
+    }
+
+    long readLong() {
+        long res = input.getLong(position);
+        position += 8;
+        return res;
+    }
+
+    long readVarLong() {
+        long res = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = readByte();
+            res |= (long) (b & 0x7F) << shift;
+            if (b < 0x80)
+                return res;
+        }
+    }
+
+    int readVarInt() {
+        return (int) readVarLong();
+    }
+
+    long readSignedVarLong() {
+        long res = readVarLong();
+        return (res >>> 1) ^ -(res & 1);
+    }
+
+    String readString() {
+        long end = readVarInt() + position;
+        StringBuilder sb = new StringBuilder();
+        while (position < end)
+            sb.append((char) readVarInt());
+        return sb.toString();
+    }
+
+    /**
+     * Compares string at the position with value without decoding it
+     */
+    boolean stringEquals(String value) {
+        long end = readVarInt() + position;
+        int length = value.length();
+        int i = 0;
+        while (position < end) {
+            if (i == length || readVarInt() != value.charAt(i++))
+                return false;
+        }
+        return i == length;
+    }
+
+    /**
+     * Compares string at the position with string at the position of other reader by bytes, without decoding them.
+     * If they are equal, both readers are moved after them.
+     */
+    boolean stringEquals(SnapshotReader other) {
+        int length = readVarInt();
+        if (other.readVarInt() != length)
+            return false;
+        int slice = Math.min(input.getMaxSlice(), other.input.getMaxSlice());
+        for (int i = 0; i < length; i += slice) {
+            int count = Math.min(slice, length - i);
+            if (input.slice(position + i, count).mismatch(other.input.slice(other.position + i, count)) >= 0)
+                return false;
+        }
+        position += length;
+        other.position += length;
+        return true;
+    }
+
+    /**
+     * Reads value of the tag (its tag is read already), NULL is null
+     */
+    Object readValue(int tag) {
+        switch (tag) {
+            case Snapshot.NULL:
+                return null;
+            case Snapshot.FALSE:
+                return Boolean.FALSE;
+            case Snapshot.TRUE:
+                return Boolean.TRUE;
+            case Snapshot.BYTE:
+                return (byte) readByte();
+            case Snapshot.SHORT:
+                return (short) ((readByte() << 8) | readByte());
+            case Snapshot.CHAR:
+                return (char) ((readByte() << 8) | readByte());
+            case Snapshot.INT:
+                return (int) readSignedVarLong();
+            case Snapshot.LONG:
+                return readSignedVarLong();
+            case Snapshot.FLOAT:
+                return Float.intBitsToFloat(readInt());
+            case Snapshot.DOUBLE:
+                return Double.longBitsToDouble(readLong());
+            case Snapshot.STRING:
+                return readString();
+            default:
+                throw new IllegalStateException(String.format("Tag %d at %d is not a tag of value.", tag, position - 1));
+        }
+    }
+
+    /**
+     * Node at the position for messages of differences: values are read as is,
+     * other nodes are described by SnapshotValue. References are followed.
+     */
+    Object describe(long at) {
+        position = at;
+        int tag = readByte();
+        if (tag == Snapshot.REF) {
+            position = readVarLong();
+            tag = readByte();
+        }
+        if (tag <= Snapshot.STRING)
+            return readValue(tag);
+
+        switch (tag) {
+            case Snapshot.ENUM:
+            case Snapshot.TEXT: {
+                String className = snapshot.getClassName(readVarInt());
+                return new SnapshotValue(className, readString());
+            }
+            case Snapshot.OBJECT: {
+                String className = snapshot.getClassName(readVarInt());
+                return new SnapshotValue(className, className);
+            }
+            case Snapshot.ITERABLE:
+            case Snapshot.ARRAY:
+            case Snapshot.MAP: {
+                String className = snapshot.getClassName(readVarInt());
+                readLong();
+                return new SnapshotValue(className, String.format("%s of size %d", className, readInt()));
+            }
+            case Snapshot.PRIMITIVE_ARRAY: {
+                String className = Snapshot.primitiveArrayClass(readByte()).getName();
+                return new SnapshotValue(className, String.format("%s of size %d", className, readVarInt()));
+            }
+            default:
+                throw new IllegalStateException(String.format("Unknown tag %d at %d.", tag, position - 1));
+        }
+    }
+
+    /**
+     * Skips node at the position
+     * @return position after the node (references are not followed)
+     */
+    long skip(long at) {
+        position = at;
+        int tag = readByte();
+        switch (tag) {
+            case Snapshot.NULL:
+            case Snapshot.FALSE:
+            case Snapshot.TRUE:
+                return position;
+            case Snapshot.BYTE:
+                return position + 1;
+            case Snapshot.SHORT:
+            case Snapshot.CHAR:
+                return position + 2;
+            case Snapshot.FLOAT:
+                return position + 4;
+            case Snapshot.DOUBLE:
+                return position + 8;
+            case Snapshot.INT:
+            case Snapshot.LONG:
+            case Snapshot.REF:
+                readVarLong();
+                return position;
+            case Snapshot.STRING:
+                return readVarInt() + position;
+            case Snapshot.ENUM:
+            case Snapshot.TEXT:
+                readVarInt();
+                return readVarInt() + position;
+            case Snapshot.OBJECT:
+            case Snapshot.ITERABLE:
+            case Snapshot.ARRAY:
+            case Snapshot.MAP:
+                readVarInt();
+                return readLong();
+            case Snapshot.PRIMITIVE_ARRAY: {
+                int itemTag = readByte();
+                long length = readVarInt();
+                return position + length * Snapshot.itemSize(itemTag);
+            }
+            default:
+                throw new IllegalStateException(String.format("Unknown tag %d at %d.", tag, at));
+        }
+    }
+}
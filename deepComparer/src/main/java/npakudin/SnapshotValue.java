@@ -0,0 +1,26 @@
+package npakudin;
+
+/**
+ * Expected value of difference, which is found in snapshot, if it's not a primitive or string:
+ * objects are not restored from snapshot, so it keeps name of their class and text for messages
+ * (string of value saved as text, name of enum, class and size of collection).
+ */
+public final class SnapshotValue {
+
+    private final String className;
+    private final String text;
+
+    public SnapshotValue(String className, String text) {
+        this.className = className;
+        this.text = text;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,382 @@
+package npakudin;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Writes graph to snapshot (see Snapshot). Nodes are written in pre-order through the buffer,
+ * end of container is patched, when its children are written (in the buffer or in the file, if it's flushed).
+ * Traversal is not recursive, as in Comparison, so deep graphs do not overflow the stack.
+ */
+final class SnapshotWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    // number of bytes written to the channel before the buffer
+    private long flushed;
+
+    private final Map<Class<?>, Integer> classIds = new HashMap<Class<?>, Integer>();
+    private final List<Class<?>> classes = new ArrayList<Class<?>>();
+    // properties of classes which are written as objects, by ids of classes
+    private final List<Property[]> classProperties = new ArrayList<Property[]>();
+    // objects which are written already, they are written again as references
+    private final IdentityHashMap<Object, Long> offsets = new IdentityHashMap<Object, Long>();
+
+    private Frame[] frames = new Frame[16];
+    private int depth;
+
+    SnapshotWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    void write(Object value) throws IOException {
+        buffer.putInt(Snapshot.MAGIC);
+        buffer.put((byte) Snapshot.VERSION);
+        // offset of the class table
+        buffer.putLong(0);
+
+        node(value);
+        while (depth > 0) {
+            Frame frame = frames[depth - 1];
+            if (frame.hasNext()) {
+                node(frame.next());
+            } else {
+                patch(frame.endOffset, position(), frame.kind == Snapshot.OBJECT ? -1 : frame.count);
+                frame.clear();
+                depth--;
+            }
+        }
+
+        long tableOffset = position();
+        putVarLong(classes.size());
+        for (int i = 0; i < classes.size(); i++) {
+            putString(classes.get(i).getName());
+            Property[] properties = classProperties.get(i);
+            putVarLong(properties == null ? 0 : properties.length);
+            if (properties != null) {
+                for (Property property : properties)
+                    putString(property.getName());
+            }
+        }
+        patch(5, tableOffset, -1);
+        flush();
+    }
+
+    /**
+     * Writes node, if it's a container, its frame is pushed and its children are written after it
+     */
+    private void node(Object value) throws IOException {
+        if (value == null) {
+            putTag(Snapshot.NULL);
+            return;
+        }
+        // enums with bodies of constants are subclasses of enums, they are written as enums too
+        if (value instanceof Enum) {
+            putTag(Snapshot.ENUM);
+            putVarLong(classId(value.getClass()));
+            putString(((Enum) value).name());
+            return;
+        }
+
+        Class<?> clazz = value.getClass();
+        ClassDescriptor descriptor = ClassDescriptor.forClass(clazz);
+        if (descriptor.isValueType()) {
+            value(value);
+            return;
+        }
+
+        Long offset = offsets.get(value);
+        if (offset != null) {
+            putTag(Snapshot.REF);
+            putVarLong(offset);
+            return;
+        }
+
+        if (Snapshot.isSavedAsText(descriptor, clazz)) {
+            putTag(Snapshot.TEXT);
+            putVarLong(classId(clazz));
+            putString(value.toString());
+            return;
+        }
+        if (Snapshot.isNotSaved(descriptor, clazz))
+            throw new IllegalArgumentException(String.format(
+                    "Class %s overrides equals, but not toString, its objects can't be saved to snapshot.", clazz.getName()));
+
+        offsets.put(value, position());
+        if (descriptor.isPrimitiveArray()) {
+            primitiveArray(value);
+            return;
+        }
+
+        Frame frame = frame(depth++);
+        frame.value = value;
+        frame.count = 0;
+        frame.position = 0;
+        if (descriptor.isMap()) {
+            frame.kind = Snapshot.MAP;
+            frame.iterator = ((Map) value).entrySet().iterator();
+        } else if (descriptor.isArray()) {
+            frame.kind = Snapshot.ARRAY;
+            frame.array = (Object[]) value;
+            frame.count = frame.array.length;
+        } else if (descriptor.isIterable()) {
+            frame.kind = Snapshot.ITERABLE;
+            frame.iterator = ((Iterable) value).iterator();
+        } else {
+            frame.kind = Snapshot.OBJECT;
+            frame.properties = descriptor.getProperties();
+        }
+
+        putTag(frame.kind);
+        int classId = classId(clazz);
+        putVarLong(classId);
+        if (frame.kind == Snapshot.OBJECT)
+            classProperties.set(classId, frame.properties);
+
+        // end of node and number of children are patched when children are written
+        int size = frame.kind == Snapshot.OBJECT ? 8 : 12;
+        ensure(size);
+        frame.endOffset = position();
+        for (int i = 0; i < size; i++)
+            buffer.put((byte) 0);
+    }
+
+    private void value(Object value) throws IOException {
+        if (value instanceof String) {
+            putTag(Snapshot.STRING);
+            putString((String) value);
+        } else if (value instanceof Integer) {
+            putTag(Snapshot.INT);
+            putSignedVarLong((Integer) value);
+        } else if (value instanceof Long) {
+            putTag(Snapshot.LONG);
+            putSignedVarLong((Long) value);
+        } else if (value instanceof Double) {
+            putTag(Snapshot.DOUBLE);
+            ensure(8);
+            buffer.putLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof Boolean) {
+            putTag((Boolean) value ? Snapshot.TRUE : Snapshot.FALSE);
+        } else if (value instanceof Float) {
+            putTag(Snapshot.FLOAT);
+            ensure(4);
+            buffer.putInt(Float.floatToRawIntBits((Float) value));
+        } else if (value instanceof Character) {
+            putTag(Snapshot.CHAR);
+            ensure(2);
+            buffer.putChar((Character) value);
+        } else if (value instanceof Short) {
+            putTag(Snapshot.SHORT);
+            ensure(2);
+            buffer.putShort((Short) value);
+        } else {
+            putTag(Snapshot.BYTE);
+            ensure(1);
+            buffer.put((Byte) value);
+        }
+    }
+
+    /**
+     * Items are written as is, by chunks of the buffer
+     */
+    private void primitiveArray(Object array) throws IOException {
+        int itemTag = Snapshot.itemTag(array.getClass().getComponentType());
+        int itemSize = Snapshot.itemSize(itemTag);
+        int length = Array.getLength(array);
+        putTag(Snapshot.PRIMITIVE_ARRAY);
+        putTag(itemTag);
+        putVarLong(length);
+
+        int i = 0;
+        while (i < length) {
+            ensure(itemSize);
+            int count = Math.min(length - i, buffer.remaining() / itemSize);
+            int position = buffer.position();
+            switch (itemTag) {
+                case Snapshot.TRUE: {
+                    boolean[] items = (boolean[]) array;
+                    for (int j = i; j < i + count; j++)
+                        buffer.put((byte) (items[j] ? 1 : 0));
+                    break;
+                }
+                case Snapshot.BYTE:
+                    buffer.put((byte[]) array, i, count);
+                    break;
+                case Snapshot.SHORT:
+                    buffer.asShortBuffer().put((short[]) array, i, count);
+                    break;
+                case Snapshot.CHAR:
+                    buffer.asCharBuffer().put((char[]) array, i, count);
+                    break;
+                case Snapshot.INT:
+                    buffer.asIntBuffer().put((int[]) array, i, count);
+                    break;
+                case Snapshot.LONG:
+                    buffer.asLongBuffer().put((long[]) array, i, count);
+                    break;
+                case Snapshot.FLOAT:
+                    buffer.asFloatBuffer().put((float[]) array, i, count);
+                    break;
+                default:
+                    buffer.asDoubleBuffer().put((double[]) array, i, count);
+                    break;
+            }
+            buffer.position(position + count * itemSize);
+            i += count;
+        }
+    }
+
+    private int classId(Class<?> clazz) {
+        Integer res = classIds.get(clazz);
+        if (res == null) {
+            res = classes.size();
+            classIds.put(clazz, res);
+            classes.add(clazz);
+            classProperties.add(null);
+        }
+        return res;
+    }
+
+    private long position() {
+        return flushed + buffer.position();
+    }
+
+    private void ensure(int size) throws IOException {
+        if (buffer.remaining() < size)
+            flush();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            flushed += channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void putTag(int tag) throws IOException {
+        ensure(1);
+        buffer.put((byte) tag);
+    }
+
+    private void putVarLong(long value) throws IOException {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void putSignedVarLong(long value) throws IOException {
+        putVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Chars are written as varints, so strings are not broken by unpaired surrogates
+     */
+    private void putString(String value) throws IOException {
+        long size = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            size += c < 0x80 ? 1 : c < 0x4000 ? 2 : 3;
+        }
+        putVarLong(size);
+        for (int i = 0; i < value.length(); i++)
+            putVarLong(value.charAt(i));
+    }
+
+    /**
+     * Writes end of node and number of its children (if count is not negative) at offset
+     */
+    private void patch(long offset, long end, int count) throws IOException {
+        if (offset >= flushed) {
+            buffer.putLong((int) (offset - flushed), end);
+            if (count >= 0)
+                buffer.putInt((int) (offset - flushed) + 8, count);
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(count >= 0 ? 12 : 8);
+        bytes.putLong(end);
+        if (count >= 0)
+            bytes.putInt(count);
+        bytes.flip();
+        while (bytes.hasRemaining())
+            channel.write(bytes, offset + bytes.position());
+    }
+
+    private Frame frame(int depth) {
+        if (depth == frames.length)
+            frames = Arrays.copyOf(frames, depth * 2);
+        Frame res = frames[depth];
+        if (res == null)
+            res = frames[depth] = new Frame();
+        return res;
+    }
+
+    /**
+     * Container whose children are written
+     */
+    private static class Frame {
+        int kind;
+        Object value;
+        long endOffset;
+        // number of items or entries
+        int count;
+        int position;
+        Property[] properties;
+        Object[] array;
+        Iterator iterator;
+        // entry whose key is written, and value is not
+        Map.Entry entry;
+
+        boolean hasNext() {
+            switch (kind) {
+                case Snapshot.OBJECT:
+                    return position < properties.length;
+                case Snapshot.ARRAY:
+                    return position < array.length;
+                case Snapshot.MAP:
+                    return entry != null || iterator.hasNext();
+                default:
+                    return iterator.hasNext();
+            }
+        }
+
+        /**
+         * The next child, entry of map is two children: key and value
+         */
+        Object next() {
+            switch (kind) {
+                case Snapshot.OBJECT:
+                    return properties[position++].get(value);
+                case Snapshot.ARRAY:
+                    return array[position++];
+                case Snapshot.MAP:
+                    if (entry == null) {
+                        entry = (Map.Entry) iterator.next();
+                        count++;
+                        return entry.getKey();
+                    }
+                    Object res = entry.getValue();
+                    entry = null;
+                    return res;
+                default:
+                    count++;
+                    return iterator.next();
+            }
+        }
+
+        void clear() {
+            value = null;
+            properties = null;
+            array = null;
+            iterator = null;
+            entry = null;
+        }
+    }
+}
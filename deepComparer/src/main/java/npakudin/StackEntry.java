@@ -0,0 +1,132 @@
+package npakudin;
+
+/**
+ * One segment of the path to compared objects: name of property, index of item or key of map.
+ * Entries are linked to their parents, so the path is a chain of segments,
+ * it's turned into string only if it's necessary (e.g. difference is found).
+ *
+ * Comparer reuses entries: each depth of its stack has one entry, which is set for each node at this depth.
+ */
+public class StackEntry {
+
+    private final StackEntry parent;
+    private final int depth;
+    private String name;
+    private int index;
+    private Object key;
+    private boolean isKey;
+    private Object expected;
+    private Object actual;
+
+    public StackEntry(StackEntry parent, String name, Object expected, Object actual) {
+        this(parent);
+        set(name, expected, actual);
+    }
+
+    protected StackEntry(StackEntry parent) {
+        this.parent = parent;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+    }
+
+    /**
+     * Entry for item of iterable or array, its name is "[index]"
+     */
+    public static StackEntry forIndex(StackEntry parent, int index, Object expected, Object actual) {
+        StackEntry res = new StackEntry(parent);
+        res.setIndex(index, expected, actual);
+        return res;
+    }
+
+    /**
+     * Entry for value of map, its name is "[key]"
+     */
+    public static StackEntry forKey(StackEntry parent, Object key, Object expected, Object actual) {
+        StackEntry res = new StackEntry(parent);
+        res.setKey(key, expected, actual);
+        return res;
+    }
+
+    protected void set(String name, Object expected, Object actual) {
+        set(name, -1, null, false, expected, actual);
+    }
+
+    protected void setIndex(int index, Object expected, Object actual) {
+        set(null, index, null, false, expected, actual);
+    }
+
+    protected void setKey(Object key, Object expected, Object actual) {
+        set(null, -1, key, true, expected, actual);
+    }
+
+    private void set(String name, int index, Object key, boolean isKey, Object expected, Object actual) {
+        this.name = name;
+        this.index = index;
+        this.key = key;
+        this.isKey = isKey;
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    public StackEntry getParent() {
+        return parent;
+    }
+
+    /**
+     * Depth of the root is 0
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public boolean isIndex() {
+        return name == null && !isKey;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean isKey() {
+        return isKey;
+    }
+
+    public Object getKey() {
+        return key;
+    }
+
+    public String getName() {
+        if (name != null)
+            return name;
+        return "[" + (isKey ? String.valueOf(key) : String.valueOf(index)) + "]";
+    }
+
+    public Object getExpected() {
+        return expected;
+    }
+
+    public Object getActual() {
+        return actual;
+    }
+
+    /**
+     * Full path from the root, e.g. "$root.getChildren.[0]"
+     */
+    public String getPath() {
+        StackEntry[] entries = new StackEntry[depth + 1];
+        for (StackEntry entry = this; entry != null; entry = entry.parent)
+            entries[entry.depth] = entry;
+
+        StringBuilder sb = new StringBuilder();
+        for (StackEntry entry : entries) {
+            if (entry.parent != null)
+                sb.append('.');
+            sb.append(entry.getName());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getPath();
+    }
+}
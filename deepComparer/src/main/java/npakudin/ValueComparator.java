@@ -0,0 +1,15 @@
+package npakudin;
+
+/**
+ * Custom comparison of values of some type, it's registered by DeepComparer.Builder.valueComparator.
+ * Values of the type are compared by it instead of equals or their properties, e.g. BigDecimal regardless of scale.
+ * It must be reflexive and symmetric. Values of the type are hashed by their class only,
+ * so equal values are matched in unordered collections and maps.
+ */
+public interface ValueComparator<T> {
+
+    /**
+     * Values are not null and are of the same class
+     */
+    boolean areEqual(T expected, T actual);
+}
@@ -0,0 +1,67 @@
+package npakudin;
+
+import java.util.*;
+
+/**
+ * Value comparators of DeepComparer by types. Comparator of class is found once:
+ * it's registered for the class or its nearest superclass, otherwise for its interface (nearest first).
+ */
+public class ValueComparatorRegistry {
+
+    private final Map<Class<?>, ValueComparator<?>> comparators;
+
+    private final ClassValue<ValueComparator<?>> byClass = new ClassValue<ValueComparator<?>>() {
+        @Override
+        protected ValueComparator<?> computeValue(Class<?> clazz) {
+            return find(clazz);
+        }
+    };
+
+    ValueComparatorRegistry(Map<Class<?>, ValueComparator<?>> comparators) {
+        this.comparators = comparators;
+    }
+
+    /**
+     * @return comparator of the class or null
+     */
+    @SuppressWarnings("unchecked")
+    public ValueComparator<Object> get(Class<?> clazz) {
+        return (ValueComparator<Object>) byClass.get(clazz);
+    }
+
+    /**
+     * True if items of primitive array are compared by comparator of their wrapper type
+     */
+    public boolean hasItemComparator(Class<?> primitiveArrayClass) {
+        Class<?> type = primitiveArrayClass.getComponentType();
+        Class<?> boxed = type == double.class ? Double.class : type == float.class ? Float.class :
+                type == int.class ? Integer.class : type == long.class ? Long.class :
+                type == short.class ? Short.class : type == byte.class ? Byte.class :
+                type == char.class ? Character.class : Boolean.class;
+        return get(boxed) != null;
+    }
+
+    private ValueComparator<?> find(Class<?> clazz) {
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            ValueComparator<?> res = comparators.get(c);
+            if (res != null)
+                return res;
+        }
+
+        // interfaces by levels: of the class and its superclasses, then their superinterfaces etc.
+        Deque<Class<?>> queue = new ArrayDeque<Class<?>>();
+        Set<Class<?>> visited = new HashSet<Class<?>>();
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass())
+            Collections.addAll(queue, c.getInterfaces());
+        while (!queue.isEmpty()) {
+            Class<?> type = queue.poll();
+            if (!visited.add(type))
+                continue;
+            ValueComparator<?> res = comparators.get(type);
+            if (res != null)
+                return res;
+            Collections.addAll(queue, type.getInterfaces());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,44 @@
+package npakudin;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Built-in value comparators
+ */
+public final class ValueComparators {
+
+    private static final ValueComparator<BigDecimal> BIG_DECIMAL = new ValueComparator<BigDecimal>() {
+        @Override
+        public boolean areEqual(BigDecimal expected, BigDecimal actual) {
+            return expected.compareTo(actual) == 0;
+        }
+    };
+
+    private ValueComparators() {
+    }
+
+    /**
+     * BigDecimals are equal if their values are equal, e.g. 1.0 and 1.00
+     */
+    public static ValueComparator<BigDecimal> bigDecimalIgnoringScale() {
+        return BIG_DECIMAL;
+    }
+
+    /**
+     * Instants are equal if they differ by tolerance at most, e.g. timestamps of database with lower precision
+     */
+    public static ValueComparator<Instant> instantWithin(long tolerance, TimeUnit unit) {
+        if (tolerance < 0)
+            throw new IllegalArgumentException("tolerance");
+        final Duration maxDifference = Duration.ofNanos(unit.toNanos(tolerance));
+        return new ValueComparator<Instant>() {
+            @Override
+            public boolean areEqual(Instant expected, Instant actual) {
+                return Duration.between(expected, actual).abs().compareTo(maxDifference) <= 0;
+            }
+        };
+    }
+}
@@ -0,0 +1,98 @@
+package npakudin;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Renders values for messages of differences, not longer than the limit.
+ * Collections and maps of JDK are rendered item-by-item in the same format as their toString,
+ * so rendering stops at the limit, and items after it are not rendered at all.
+ * Other values are rendered by toString and truncated.
+ */
+public final class ValueRenderer {
+
+    private static final String ELLIPSIS = "...";
+
+    // true if toString of class is the one of JDK, so class is rendered item-by-item
+    private static final ClassValue<Boolean> standardToString = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("toString").getDeclaringClass().getName().startsWith("java.");
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    private ValueRenderer() {
+    }
+
+    /**
+     * The same string as String.valueOf(value), if it's not longer than maxLength,
+     * otherwise its first maxLength chars and "..."
+     */
+    public static String render(Object value, int maxLength) {
+        StringBuilder sb = new StringBuilder();
+        // one more char to know if it's truncated
+        append(sb, value, maxLength == Integer.MAX_VALUE ? maxLength : maxLength + 1);
+        if (sb.length() <= maxLength)
+            return sb.toString();
+        sb.setLength(maxLength);
+        return sb.append(ELLIPSIS).toString();
+    }
+
+    /**
+     * @return false if limit is reached
+     */
+    private static boolean append(StringBuilder sb, Object value, int limit) {
+        if (value instanceof Collection && standardToString.get(value.getClass()))
+            return appendCollection(sb, (Collection<?>) value, limit);
+        if (value instanceof Map && standardToString.get(value.getClass()))
+            return appendMap(sb, (Map<?, ?>) value, limit);
+
+        String s = String.valueOf(value);
+        int free = Math.max(0, limit - sb.length());
+        if (s.length() <= free) {
+            sb.append(s);
+            return true;
+        }
+        sb.append(s, 0, free);
+        return false;
+    }
+
+    private static boolean appendCollection(StringBuilder sb, Collection<?> collection, int limit) {
+        sb.append('[');
+        Iterator<?> iterator = collection.iterator();
+        boolean first = true;
+        while (iterator.hasNext()) {
+            if (sb.length() >= limit)
+                return false;
+            if (!first)
+                sb.append(", ");
+            first = false;
+            Object item = iterator.next();
+            if (!append(sb, item == collection ? "(this Collection)" : item, limit))
+                return false;
+        }
+        return append(sb, "]", limit);
+    }
+
+    private static boolean appendMap(StringBuilder sb, Map<?, ?> map, int limit) {
+        sb.append('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (sb.length() >= limit)
+                return false;
+            if (!first)
+                sb.append(", ");
+            first = false;
+            if (!append(sb, entry.getKey() == map ? "(this Map)" : entry.getKey(), limit) ||
+                    !append(sb, "=", limit) ||
+                    !append(sb, entry.getValue() == map ? "(this Map)" : entry.getValue(), limit))
+                return false;
+        }
+        return append(sb, "}", limit);
+    }
+}
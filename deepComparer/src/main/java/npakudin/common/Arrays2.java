@@ -0,0 +1,72 @@
+package npakudin.common;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * Helpers for arrays of any component type
+ */
+public class Arrays2 {
+
+    /**
+     * Finds the first index from fromIndex, where items of arrays of the same primitive type are different.
+     * Uses Arrays.mismatch, which is vectorized by JVM, so items are not boxed.
+     * Floats and doubles are compared as by Float.equals and Double.equals.
+     *
+     * @return index of the first different item or -1 if all items are equal, length of arrays must be the same
+     */
+    public static int mismatch(Object expected, Object actual, int fromIndex) {
+        return mismatch(expected, actual, fromIndex, Array.getLength(expected));
+    }
+
+    /**
+     * The same in range of indexes, arrays can be longer
+     */
+    public static int mismatch(Object expected, Object actual, int fromIndex, int toIndex) {
+        int length = toIndex;
+        int res;
+        if (expected instanceof int[])
+            res = Arrays.mismatch((int[]) expected, fromIndex, length, (int[]) actual, fromIndex, length);
+        else if (expected instanceof long[])
+            res = Arrays.mismatch((long[]) expected, fromIndex, length, (long[]) actual, fromIndex, length);
+        else if (expected instanceof double[])
+            res = Arrays.mismatch((double[]) expected, fromIndex, length, (double[]) actual, fromIndex, length);
+        else if (expected instanceof byte[])
+            res = Arrays.mismatch((byte[]) expected, fromIndex, length, (byte[]) actual, fromIndex, length);
+        else if (expected instanceof char[])
+            res = Arrays.mismatch((char[]) expected, fromIndex, length, (char[]) actual, fromIndex, length);
+        else if (expected instanceof float[])
+            res = Arrays.mismatch((float[]) expected, fromIndex, length, (float[]) actual, fromIndex, length);
+        else if (expected instanceof short[])
+            res = Arrays.mismatch((short[]) expected, fromIndex, length, (short[]) actual, fromIndex, length);
+        else if (expected instanceof boolean[])
+            res = Arrays.mismatch((boolean[]) expected, fromIndex, length, (boolean[]) actual, fromIndex, length);
+        else
+            throw new IllegalArgumentException("expected");
+
+        return res < 0 ? -1 : fromIndex + res;
+    }
+
+    /**
+     * Arrays.hashCode of array of any primitive type, it's consistent with mismatch
+     */
+    public static int hashCode(Object array) {
+        if (array instanceof int[])
+            return Arrays.hashCode((int[]) array);
+        if (array instanceof long[])
+            return Arrays.hashCode((long[]) array);
+        if (array instanceof double[])
+            return Arrays.hashCode((double[]) array);
+        if (array instanceof byte[])
+            return Arrays.hashCode((byte[]) array);
+        if (array instanceof char[])
+            return Arrays.hashCode((char[]) array);
+        if (array instanceof float[])
+            return Arrays.hashCode((float[]) array);
+        if (array instanceof short[])
+            return Arrays.hashCode((short[]) array);
+        if (array instanceof boolean[])
+            return Arrays.hashCode((boolean[]) array);
+        throw new IllegalArgumentException("array");
+    }
+}
@@ -0,0 +1,135 @@
+package npakudin.common;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from pair of objects to int.
+ * Objects are compared by identity (==) and hashed by System.identityHashCode, so it's O(1)
+ * and does not depend on equals and hashCode of objects.
+ * Keys must not be null.
+ */
+public class IdentityPairMap {
+
+    private static final int NOT_FOUND = -1;
+
+    // keys of slot i are keys[2 * i] and keys[2 * i + 1], slot is empty if keys[2 * i] == null
+    private Object[] keys;
+    private int[] values;
+    private int size;
+
+    public IdentityPairMap() {
+        this(16);
+    }
+
+    public IdentityPairMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2)
+            capacity *= 2;
+        keys = new Object[capacity * 2];
+        values = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of slots, it grows with size and is not shrunk by clear
+     */
+    public int capacity() {
+        return values.length;
+    }
+
+    public boolean containsKey(Object first, Object second) {
+        return indexOf(first, second) >= 0;
+    }
+
+    /**
+     * @return value of the pair or -1 if there is no such pair
+     */
+    public int get(Object first, Object second) {
+        int index = indexOf(first, second);
+        return index < 0 ? NOT_FOUND : values[index];
+    }
+
+    public void put(Object first, Object second, int value) {
+        int mask = values.length - 1;
+        int i = hash(first, second) & mask;
+        while (keys[2 * i] != null) {
+            if (keys[2 * i] == first && keys[2 * i + 1] == second) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[2 * i] = first;
+        keys[2 * i + 1] = second;
+        values[i] = value;
+
+        // load factor is 0.5
+        if (++size * 2 > values.length)
+            resize();
+    }
+
+    public boolean remove(Object first, Object second) {
+        int index = indexOf(first, second);
+        if (index < 0)
+            return false;
+
+        // backward shift deletion: move next entries of the cluster to free slot, if it's on their probe path
+        int mask = values.length - 1;
+        int free = index;
+        int i = (index + 1) & mask;
+        while (keys[2 * i] != null) {
+            int home = hash(keys[2 * i], keys[2 * i + 1]) & mask;
+            if (((i - home) & mask) >= ((i - free) & mask)) {
+                keys[2 * free] = keys[2 * i];
+                keys[2 * free + 1] = keys[2 * i + 1];
+                values[free] = values[i];
+                free = i;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[2 * free] = null;
+        keys[2 * free + 1] = null;
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        if (size == 0)
+            return;
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    private int indexOf(Object first, Object second) {
+        int mask = values.length - 1;
+        int i = hash(first, second) & mask;
+        while (keys[2 * i] != null) {
+            if (keys[2 * i] == first && keys[2 * i + 1] == second)
+                return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void resize() {
+        Object[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new Object[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        size = 0;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldKeys[2 * i] != null)
+                put(oldKeys[2 * i], oldKeys[2 * i + 1], oldValues[i]);
+        }
+    }
+
+    private static int hash(Object first, Object second) {
+        int h = System.identityHashCode(first) * 31 + System.identityHashCode(second);
+        // spread bits, identity hash codes are not random in lower bits
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,71 @@
+package npakudin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class TestClassDescriptor {
+
+    class WithEquals {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof WithEquals;
+        }
+    }
+    class WithEqualsAndHashCode {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof WithEqualsAndHashCode;
+        }
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+    }
+    class WithGetters {
+        public int field;
+        public int getX() {
+            return 0;
+        }
+        public int size() {
+            return 0;
+        }
+    }
+
+    @Test
+    public void descriptorIsCached() {
+        Assert.assertSame(ClassDescriptor.forClass(WithGetters.class), ClassDescriptor.forClass(WithGetters.class));
+    }
+    @Test
+    public void valueTypes() {
+        Assert.assertTrue(ClassDescriptor.forClass(Integer.class).isValueType());
+        Assert.assertTrue(ClassDescriptor.forClass(String.class).isValueType());
+        Assert.assertFalse(ClassDescriptor.forClass(WithGetters.class).isValueType());
+    }
+    @Test
+    public void overriddenEquals() {
+        Assert.assertTrue(ClassDescriptor.forClass(WithEquals.class).overridesEquals());
+        Assert.assertFalse(ClassDescriptor.forClass(WithGetters.class).overridesEquals());
+    }
+    @Test
+    public void overriddenHashCode() {
+        Assert.assertTrue(ClassDescriptor.forClass(WithEqualsAndHashCode.class).overridesHashCode());
+        Assert.assertFalse(ClassDescriptor.forClass(WithEquals.class).overridesHashCode());
+        Assert.assertFalse(ClassDescriptor.forClass(ArrayList.class).overridesHashCode());
+    }
+    @Test
+    public void jdkContainersAreNotComparedByEquals() {
+        Assert.assertFalse(ClassDescriptor.forClass(ArrayList.class).overridesEquals());
+        Assert.assertFalse(ClassDescriptor.forClass(HashMap.class).overridesEquals());
+    }
+    @Test
+    public void fieldsAndGetters() {
+        ClassDescriptor descriptor = ClassDescriptor.forClass(WithGetters.class);
+        Assert.assertEquals(1, descriptor.getFields().length);
+        for (Method getter : descriptor.getGetters())
+            Assert.assertTrue(getter.getName().startsWith("get"));
+    }
+}
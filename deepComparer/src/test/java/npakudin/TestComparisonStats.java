@@ -0,0 +1,116 @@
+package npakudin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+public class TestComparisonStats {
+
+    public static class Node {
+        private final int value;
+        private Node next;
+
+        public Node(int value) {
+            this.value = value;
+        }
+        public int getValue() {
+            return value;
+        }
+        public Node getNext() {
+            return next;
+        }
+    }
+
+    @Test
+    public void countersOfOneCall() {
+        ComparisonStats stats = new ComparisonStats();
+        DeepComparer comparer = DeepComparer.builder()
+                .stats(stats)
+                .build();
+
+        Node expected = new Node(1);
+        expected.next = expected;
+        Node actual = new Node(1);
+        actual.next = actual;
+        Assert.assertTrue(comparer.isEqual(Arrays.asList(expected, "a"), Arrays.asList(actual, new String("a"))));
+
+        Assert.assertEquals(1, stats.getCalls());
+        // $root, $root.[0], $root.[0].getNext, $root.[1]
+        Assert.assertEquals(4, stats.getNodes());
+        Assert.assertEquals(2, stats.getMaxDepth());
+        Assert.assertEquals(1, stats.getCycleHits());
+        // there are no patterns
+        Assert.assertEquals(0, stats.getExcludeMatches());
+        // getNext and getValue of one pair
+        Assert.assertEquals(4, stats.getPropertyReads());
+        Assert.assertTrue(stats.getMaxTime(TimeUnit.NANOSECONDS) > 0);
+        Assert.assertEquals(stats.getMaxTime(TimeUnit.NANOSECONDS), stats.getTotalTime(TimeUnit.NANOSECONDS));
+
+        Map<String, Long> classVisits = stats.getClassVisits();
+        Assert.assertEquals(Long.valueOf(2), classVisits.get(Node.class.getName()));
+        Assert.assertEquals(Node.class.getName(), classVisits.keySet().iterator().next());
+        Assert.assertEquals(Long.valueOf(1), classVisits.get("java.lang.String"));
+        Assert.assertTrue(stats.toString().startsWith("calls: 1; nodes: 4; max depth: 2;"));
+        Assert.assertTrue(stats.toString().contains("Classes: npakudin.TestComparisonStats$Node: 2"));
+    }
+    @Test
+    public void onlyLiveStatesOfPatternsAreCounted() {
+        ComparisonStats stats = new ComparisonStats();
+        DeepComparer comparer = DeepComparer.builder()
+                .stats(stats)
+                .excludePaths("$root.[1]")
+                .build();
+
+        Node expected = new Node(1);
+        expected.next = new Node(2);
+        Node actual = new Node(1);
+        actual.next = new Node(2);
+        Assert.assertTrue(comparer.isEqual(Arrays.asList(expected, "a"), Arrays.asList(actual, "b")));
+        // $root, $root.[0] and $root.[1], pattern can't match below $root.[0]
+        Assert.assertEquals(3, stats.getExcludeMatches());
+        Assert.assertTrue(stats.getNodes() > 3);
+    }
+    @Test
+    public void countersAreAddedAfterEachCall() {
+        ComparisonStats stats = new ComparisonStats();
+        DeepComparer comparer = DeepComparer.builder()
+                .stats(stats)
+                .build();
+        comparer.findDifference(Arrays.asList(1, 2), Arrays.asList(1, 3));
+        comparer.findAllDifferences(Arrays.asList(1, 2), Arrays.asList(1, 3));
+        Assert.assertEquals(2, stats.getCalls());
+        Assert.assertEquals(6, stats.getNodes());
+
+        stats.clear();
+        Assert.assertEquals(0, stats.getCalls());
+        Assert.assertTrue(stats.getClassVisits().isEmpty());
+    }
+    @Test
+    public void parallelAndTrialComparisonsAreCounted() {
+        ComparisonStats stats = new ComparisonStats();
+        DeepComparer comparer = DeepComparer.builder()
+                .stats(stats)
+                .forkJoinPool(new java.util.concurrent.ForkJoinPool(4))
+                .parallelThreshold(2)
+                .unorderedTypes(Set.class)
+                .build();
+        List<Integer> list = new ArrayList<Integer>();
+        for (int i = 0; i < 100; i++)
+            list.add(i);
+        Assert.assertTrue(comparer.isEqual(list, new ArrayList<Integer>(list)));
+        Assert.assertEquals(101, stats.getNodes());
+
+        stats.clear();
+        Set<Node> expected = new LinkedHashSet<Node>(Arrays.asList(new Node(1), new Node(2)));
+        Set<Node> actual = new LinkedHashSet<Node>(Arrays.asList(new Node(2), new Node(1)));
+        Assert.assertTrue(comparer.isEqual(expected, actual));
+        Assert.assertEquals(1, stats.getCalls());
+        Assert.assertTrue(stats.getNodes() > 1);
+    }
+    @Test
+    public void nothingIsCountedWithoutStats() {
+        Assert.assertNull(new DeepComparer().getStats());
+    }
+}
@@ -0,0 +1,1248 @@
+package npakudin;
+
+import npakudin.common.Action2;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestDeepComparer {
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        DeepComparer.setAssertAction(new Action2<Boolean, String>() {
+            @Override
+            public void apply(Boolean aBoolean, String s) {
+                Assert.assertTrue(s, aBoolean);
+            }
+        });
+    }
+
+    @Test
+    public void nullAndStringAreDifferent() {
+        Assert.assertFalse(DeepComparer.areEqual(null, "qqq"));
+    }
+    @Test
+    public void stringAndNullAreDifferent() {
+        Assert.assertFalse(DeepComparer.areEqual("", null));
+    }
+    @Test
+    public void nullsAreEqual() {
+        Assert.assertTrue(DeepComparer.areEqual(null, null));
+    }
+
+
+    @Test
+    public void stringAndIntAreDifferent() {
+        Assert.assertFalse(DeepComparer.areEqual("1", 1));
+    }
+    @Test
+    public void stringsAreEqual() {
+        Assert.assertTrue(DeepComparer.areEqual("Hello 1", "Hello " + new Integer(1)));
+    }
+    @Test
+    public void intsAreEqual() {
+        Assert.assertTrue(DeepComparer.areEqual(1, 1));
+    }
+    @Test
+    public void intsAreDifferent() {
+        Assert.assertFalse(DeepComparer.areEqual(1, 2));
+    }
+
+
+
+
+    class PublicField {
+        public int x;
+        public PublicField(int x) {
+            this.x = x;
+        }
+    }
+    @Test
+    public void publicFieldsAreEqual() {
+        Assert.assertTrue(DeepComparer.areEqual(new PublicField(1), new PublicField(1)));
+    }
+    @Test
+    public void publicFieldsAreDifferent() {
+        Assert.assertFalse(DeepComparer.areEqual(new PublicField(1), new PublicField(2)));
+    }
+
+
+
+    class PublicProperty {
+        private int x;
+        public int getX() {
+            return x;
+        }
+        public PublicProperty(int x) {
+            this.x = x;
+        }
+
+    }
+    @Test
+    public void publicPropertiesAreEqual() {
+        Assert.assertTrue(DeepComparer.areEqual(new PublicProperty(1), new PublicProperty(1)));
+    }
+    @Test
+    public void publicPropertiesAreDifferent() {
+        Assert.assertFalse(DeepComparer.areEqual(new PublicProperty(1), new PublicProperty(2)));
+    }
+
+
+
+    class ListField {
+        private List<Integer> x;
+        public ListField(List<Integer> x) {
+            this.x = x;
+        }
+        public List<Integer> getX() {
+            return x;
+        }
+        public void setX(List<Integer> x) {
+            this.x = x;
+        }
+    }
+    @Test
+    public void listFieldsAreEqual() {
+        Assert.assertTrue(DeepComparer.areEqual(
+                new ListField(Arrays.asList( 1, 2, 3 )),
+                new ListField(Arrays.asList( 1, 2, 3 ))));
+    }
+    @Test
+    public void listFieldsAreDifferent() {
+        Assert.assertFalse(DeepComparer.areEqual(
+                new ListField(Arrays.asList( 1, 2, 3 )),
+                new ListField(Arrays.asList( 1, 2, 4 ))));
+    }
+    @Test
+    public void listFieldsErrorMessage() {
+        Assert.assertEquals("$root.getX.[2]; Expected value: \"3\"; actual value: \"4\".", DeepComparer.getNotEqualPath(
+                new ListField(Arrays.asList( 1, 2, 3 )),
+                new ListField(Arrays.asList( 1, 2, 4 ))));
+    }
+
+
+
+
+    class CycleReference {
+        private int id;
+        private CycleReference reference;
+        public int getId() {
+            return id;
+        }
+        public CycleReference getReference() {
+            return reference;
+        }
+        public CycleReference(int id, CycleReference reference) {
+            this.id = id;
+            this.reference = reference;
+        }
+    }
+    @Test
+    public void cycleReferencesAreEqual() {
+        CycleReference expected = new CycleReference(0, null);
+        expected.reference = expected;
+
+        CycleReference actual = new CycleReference(0, null);
+        actual.reference = actual;
+
+        Assert.assertTrue(DeepComparer.areEqual(expected, actual));
+    }
+    @Test
+    public void cycleReferencesAreDifferent() {
+        CycleReference expected = new CycleReference(0, null);
+        expected.reference = expected;
+
+        CycleReference actual = new CycleReference(0, new CycleReference(0, null));
+
+        Assert.assertFalse(DeepComparer.areEqual(expected, actual));
+    }
+    @Test
+    public void cycleReferencesErrorMessage() {
+        CycleReference expected = new CycleReference(1, new CycleReference(0, null));
+        CycleReference actual = new CycleReference(1, null);
+
+        Assert.assertEquals(String.format("$root.getReference; actual is null, expected is \"%s\".", expected.reference),
+                DeepComparer.getNotEqualPath(expected, actual));
+    }
+    @Test
+    public void cycleReferencesVeryDeepDifference() {
+        CycleReference expected = null;
+        CycleReference actual = null;
+
+        for (int i=0; i<100; i++) {
+            expected = new CycleReference(i, expected);
+            actual = new CycleReference(i, actual);
+        }
+
+        Assert.assertEquals(null, DeepComparer.getNotEqualPath(expected, actual));
+    }
+    @Test
+    public void cycleReferencesExtremelyDeepDifference() {
+        CycleReference expected = null;
+        CycleReference actual = null;
+
+        for (int i=0; i<100000; i++) {
+            expected = new CycleReference(i, expected);
+            actual = new CycleReference(i == 0 ? -1 : i, actual);
+        }
+
+        String path = DeepComparer.getNotEqualPath(expected, actual);
+        Assert.assertTrue(path, path.endsWith(".getReference.getId; Expected value: \"0\"; actual value: \"-1\"."));
+        Assert.assertEquals(100000 - 1, path.split("getReference", -1).length - 1);
+    }
+
+
+
+    @Test
+    public void iterablesAreDifferent() {
+        Assert.assertFalse(DeepComparer.areEqual(
+                new ArrayList<String>(Arrays.asList("foo", "bar", "baz")),
+                new LinkedList<String>(Arrays.asList("foo", "bar"))));
+    }
+    @Test
+    public void iterablesOfDifferentTypesAreEqual() {
+        Assert.assertTrue(DeepComparer.areEqual(
+                new ArrayList<String>(Arrays.asList("foo", "bar", "baz")),
+                new LinkedList<String>(Arrays.asList("foo", "bar", "baz"))));
+    }
+    @Test
+    public void iterablesOfDifferentTypesAreDifferent() {
+        Assert.assertFalse(DeepComparer.areEqual(
+                new ArrayList<String>(Arrays.asList("foo", "bar", "baz")),
+                new LinkedList<String>(Arrays.asList("foo", "bar", "baz")),
+                true));
+    }
+
+
+
+
+    class Node {
+        private Node parent;
+        private List<Node> children;
+
+        public Node() {
+        }
+        public Node(Node parent, List<Node> children) {
+            this.parent = parent;
+            this.children = children;
+        }
+        public Node getParent() {
+            return parent;
+        }
+        public void setParent(Node parent) {
+            this.parent = parent;
+        }
+        public List<Node> getChildren() {
+            return children;
+        }
+        public void setChildren(List<Node> children) {
+            this.children = children;
+        }
+    }
+    @Test
+    public void differentNodesAreEqualWithExcludingSomePaths() {
+        Node root1 = new Node(null, Arrays.asList(new Node(), new Node()));
+        Node root2 = new Node(null, Arrays.asList(new Node(), new Node()));
+        root2.children.get(0).setParent(root2);
+        root2.children.get(1).setParent(root2);
+
+        Assert.assertTrue(DeepComparer.areEqual(root2, root1,
+                "$root.getChildren.[0]",
+                "$root.getChildren.[1]"));
+    }
+    @Test
+    public void differentNodesAreEqualWithExcludingSomeRegexPaths() {
+        Node root1 = new Node(null, Arrays.asList(new Node(), new Node()));
+        Node root2 = new Node(null, Arrays.asList(new Node(), new Node()));
+        root2.children.get(0).setParent(root2);
+        root2.children.get(1).setParent(root2);
+
+        Assert.assertTrue(DeepComparer.areEqual(root2, root1, "$root.getChildren.[*].getParent"));
+    }
+
+
+    class OverriddenEquals {
+        private int internalId;
+        private int publicId;
+
+        public OverriddenEquals(int internalId, int publicId) {
+            this.internalId = internalId;
+            this.publicId = publicId;
+        }
+
+        public int getInternalId() {
+            return internalId;
+        }
+        public int getPublicId() {
+            return publicId;
+        }
+
+        // automatically generated by IDEA
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            OverriddenEquals that = (OverriddenEquals) o;
+
+            if (publicId != that.publicId) return false;
+
+            return true;
+        }
+        @Override
+        public int hashCode() {
+            return publicId;
+        }
+    }
+    @Test
+    public void overriddenEqualsAreDifferent() {
+        Assert.assertFalse(DeepComparer.areEqual(new OverriddenEquals(1, 1), new OverriddenEquals(2, 2)));
+    }
+    @Test
+    public void overriddenEqualsAreEqual() {
+        Assert.assertTrue(DeepComparer.areEqual(new OverriddenEquals(1, 1), new OverriddenEquals(2, 1)));
+    }
+
+
+    class CycleCrossReference {
+        private CycleCrossReference reference1;
+        private CycleCrossReference reference2;
+
+        public CycleCrossReference getReference1() {
+            return reference1;
+        }
+        public void setReference1(CycleCrossReference reference1) {
+            this.reference1 = reference1;
+        }
+        public CycleCrossReference getReference2() {
+            return reference2;
+        }
+        public void setReference2(CycleCrossReference reference2) {
+            this.reference2 = reference2;
+        }
+    }
+    @Test
+    public void cycleCrossReferencesAreEqual() {
+        CycleCrossReference expected = new CycleCrossReference();
+        expected.setReference1(expected);
+
+        CycleCrossReference actual = new CycleCrossReference();
+        actual.setReference1(actual);
+
+        expected.setReference2(actual);
+        actual.setReference2(expected);
+
+        Assert.assertTrue(DeepComparer.areEqual(expected, actual));
+    }
+    @Test
+    public void cycleCrossReferencesAreDifferent() {
+        CycleCrossReference expected = new CycleCrossReference();
+        expected.setReference1(expected);
+
+        CycleCrossReference actual = new CycleCrossReference();
+        actual.setReference1(actual);
+
+        expected.setReference2(actual);
+        actual.setReference2(new CycleCrossReference());
+
+        Assert.assertFalse(DeepComparer.areEqual(expected, actual));
+    }
+
+
+
+    @Test
+    public void cycleReferenceCollectionsAreEqual() {
+        List<Object> expected = new ArrayList<Object>();
+        expected.add(expected);
+
+        List<Object> actual = new ArrayList<Object>();
+        actual.add(actual);
+
+        Assert.assertTrue(DeepComparer.areEqual(expected, actual));
+    }
+    @Test
+    public void cycleReferenceCollectionsAreDifferent() {
+        List<Object> expected = new ArrayList<Object>();
+        expected.add(expected);
+        expected.add(expected);
+
+        List<Object> actual = new ArrayList<Object>();
+        actual.add(actual);
+        actual.add(Arrays.asList(1, 2));
+
+        Assert.assertFalse(DeepComparer.areEqual(expected, actual));
+    }
+    @Test
+    public void cycleReferenceAndCrossReferenceCollectionsAreEqual() {
+        List<Object> expected = new ArrayList<Object>();
+        expected.add(expected);
+
+        List<Object> actual = new ArrayList<Object>();
+        actual.add(actual);
+
+        expected.add(actual);
+        actual.add(expected);
+
+        Assert.assertTrue(DeepComparer.areEqual(expected, actual));
+    }
+    @Test
+    public void cycleReferenceAndReferenceCollectionsAreEqual() {
+        List<Object> expected = new ArrayList<Object>();
+        expected.add(expected);
+
+        List<Object> actual = new ArrayList<Object>();
+        actual.add(actual);
+
+        expected.add(expected);
+        actual.add(expected);
+
+        Assert.assertTrue(DeepComparer.areEqual(expected, actual));
+    }
+    @Test
+    public void cycleReferenceCollectionsAreDifferent2() {
+        List<Object> expected = new ArrayList<Object>();
+        expected.add(expected);
+        expected.add(expected);
+
+        List<Object> actual = new ArrayList<Object>();
+        actual.add(actual);
+        actual.add(expected);
+        actual.add(expected);
+
+        actual.add(Arrays.asList(actual, 2));
+
+        Assert.assertFalse(DeepComparer.areEqual(expected, actual));
+    }
+
+
+
+    class SharedChildren {
+        private SharedChildren left;
+        private SharedChildren right;
+
+        public SharedChildren(SharedChildren child) {
+            this.left = child;
+            this.right = child;
+        }
+        public SharedChildren getLeft() {
+            return left;
+        }
+        public SharedChildren getRight() {
+            return right;
+        }
+    }
+    private static SharedChildren sharedChildren(SharedChildren leaf, int depth) {
+        SharedChildren res = leaf;
+        for (int i = 0; i < depth; i++)
+            res = new TestDeepComparer().new SharedChildren(res);
+        return res;
+    }
+    @Test(timeout = 10000)
+    public void sharedSubgraphsAreComparedOnce() {
+        DeepComparer comparer = DeepComparer.builder()
+                .rememberEqualPairs(true)
+                .build();
+
+        // without remembering equal pairs it's 2^50 nodes
+        Assert.assertTrue(comparer.isEqual(sharedChildren(null, 50), sharedChildren(null, 50)));
+    }
+    @Test
+    public void sharedSubgraphsAreDifferent() {
+        DeepComparer comparer = DeepComparer.builder()
+                .rememberEqualPairs(true)
+                .build();
+
+        SharedChildren expected = sharedChildren(null, 10);
+        SharedChildren actual = sharedChildren(new SharedChildren(null), 10);
+        Assert.assertEquals("$root.getLeft.getLeft.getLeft.getLeft.getLeft.getLeft.getLeft.getLeft.getLeft.getLeft; " +
+                "expected is null, actual is \"" + actual.left.left.left.left.left.left.left.left.left.left + "\".",
+                comparer.findDifference(expected, actual));
+    }
+    @Test
+    public void cyclesAreCorrectWithRememberedPairs() {
+        DeepComparer comparer = DeepComparer.builder()
+                .rememberEqualPairs(true)
+                .build();
+
+        CycleCrossReference expected = new CycleCrossReference();
+        expected.setReference1(expected);
+        CycleCrossReference actual = new CycleCrossReference();
+        actual.setReference1(actual);
+        expected.setReference2(actual);
+        actual.setReference2(new CycleCrossReference());
+
+        Assert.assertFalse(comparer.isEqual(expected, actual));
+    }
+    @Test
+    public void equalityCacheIsUsedByNextComparisons() {
+        DeepComparer comparer = DeepComparer.builder()
+                .equalityCache(new EqualityCache(1024, 1))
+                .build();
+
+        SharedChildren expected = sharedChildren(new SharedChildren(null), 5);
+        SharedChildren actual = sharedChildren(new SharedChildren(null), 5);
+        Assert.assertTrue(comparer.isEqual(expected, actual));
+
+        // cache does not notice changes, pair is equal because it's cached
+        actual.left.left.left.left.left.left = new SharedChildren(null);
+        Assert.assertTrue(comparer.isEqual(expected, actual));
+        Assert.assertFalse(new DeepComparer().isEqual(expected, actual));
+    }
+    @Test
+    public void equalityCacheDoesNotHideDifferences() {
+        DeepComparer comparer = DeepComparer.builder()
+                .equalityCache(new EqualityCache(1024, 1))
+                .build();
+
+        SharedChildren shared = sharedChildren(null, 5);
+        Assert.assertTrue(comparer.isEqual(Arrays.asList(shared, 1), Arrays.asList(shared, 1)));
+        Assert.assertEquals("$root.[1]; Expected value: \"1\"; actual value: \"2\".",
+                comparer.findDifference(Arrays.asList(shared, 1), Arrays.asList(shared, 2)));
+    }
+    @Test
+    public void equalityCacheIgnoresPairsAboveExcludedPaths() {
+        DeepComparer comparer = DeepComparer.builder()
+                .equalityCache(new EqualityCache(1024, 1))
+                .excludePaths("$root.[0].[0]")
+                .build();
+
+        List<PublicField> expected = Arrays.asList(new PublicField(1));
+        List<PublicField> actual = Arrays.asList(new PublicField(2));
+        Assert.assertTrue(comparer.isEqual(Arrays.asList(expected), Arrays.asList(actual)));
+        // pair of lists is equal only because of excluded path, so it's not cached
+        Assert.assertFalse(comparer.isEqual(expected, actual));
+    }
+    @Test
+    public void comparerInstanceUsesExcludePaths() {
+        DeepComparer comparer = DeepComparer.builder()
+                .excludePaths("$root.x")
+                .build();
+        Assert.assertTrue(comparer.isEqual(new PublicField(1), new PublicField(2)));
+    }
+
+
+    @Test
+    public void primitiveArraysAreEqual() {
+        Assert.assertTrue(DeepComparer.areEqual(new byte[] { 1, 2, 3 }, new byte[] { 1, 2, 3 }));
+        Assert.assertTrue(DeepComparer.areEqual(new double[] { 1.5, Double.NaN }, new double[] { 1.5, Double.NaN }));
+    }
+    @Test
+    public void primitiveArraysAreDifferent() {
+        Assert.assertEquals("$root.[2]; Expected value: \"3\"; actual value: \"4\".",
+                DeepComparer.getNotEqualPath(new int[] { 1, 2, 3 }, new int[] { 1, 2, 4 }));
+        Assert.assertEquals("$root.[1]; Expected value: \"b\"; actual value: \"c\".",
+                DeepComparer.getNotEqualPath(new char[] { 'a', 'b' }, new char[] { 'a', 'c' }));
+    }
+    @Test
+    public void primitiveArraysOfDifferentSizes() {
+        Assert.assertEquals("$root; Size of expected: 3; size of actual: 2.",
+                DeepComparer.getNotEqualPath(new long[] { 1, 2, 3 }, new long[] { 1, 2 }));
+    }
+    @Test
+    public void primitiveArraysWithExcludedItems() {
+        Assert.assertTrue(DeepComparer.areEqual(new int[] { 1, 2, 3, 4 }, new int[] { 0, 2, 0, 4 }, "$root.[1]", "$root.[?]"));
+        Assert.assertEquals("$root.[2]; Expected value: \"3\"; actual value: \"0\".",
+                DeepComparer.getNotEqualPath(new int[] { 1, 2, 3, 4 }, new int[] { 0, 2, 0, 4 }, "$root.[0]"));
+    }
+    @Test
+    public void largePrimitiveArrays() {
+        double[] expected = new double[10000000];
+        double[] actual = new double[10000000];
+        actual[9999999] = 1;
+        Assert.assertEquals("$root.[9999999]; Expected value: \"0.0\"; actual value: \"1.0\".",
+                DeepComparer.getNotEqualPath(expected, actual));
+    }
+    @Test
+    public void arraysOfObjects() {
+        Assert.assertTrue(DeepComparer.areEqual(
+                new Object[] { new PublicField(1), "x", null }, new Object[] { new PublicField(1), "x", null }));
+        Assert.assertEquals("$root.[1].x; Expected value: \"2\"; actual value: \"3\".", DeepComparer.getNotEqualPath(
+                new PublicField[] { new PublicField(1), new PublicField(2) },
+                new PublicField[] { new PublicField(1), new PublicField(3) }));
+    }
+    @Test
+    public void arraysOfDifferentTypes() {
+        Assert.assertFalse(DeepComparer.areEqual(new int[] { 1 }, new Integer[] { 1 }));
+    }
+
+    private static DeepComparer parallelComparer() {
+        return parallelBuilder().build();
+    }
+    private static DeepComparer.Builder parallelBuilder() {
+        return DeepComparer.builder()
+                .forkJoinPool(new java.util.concurrent.ForkJoinPool(4))
+                .parallelThreshold(2);
+    }
+    private List<Object> nestedLists(int width, int depth) {
+        List<Object> res = new ArrayList<Object>();
+        for (int i = 0; i < width; i++)
+            res.add(depth == 0 ? (Object) new PublicField(i) : nestedLists(width, depth - 1));
+        return res;
+    }
+    @Test
+    public void parallelComparisonOfEqualGraphs() {
+        Assert.assertTrue(parallelComparer().isEqual(nestedLists(10, 3), nestedLists(10, 3)));
+    }
+    @Test
+    public void parallelComparisonFindsTheFirstDifference() {
+        List<Object> expected = nestedLists(10, 3);
+        List<Object> actual = nestedLists(10, 3);
+        // differences in several chunks, the first one in order of items is reported
+        ((List) ((List) ((List) actual.get(9)).get(0)).get(1)).set(5, new PublicField(-1));
+        ((List) ((List) ((List) actual.get(3)).get(7)).get(2)).set(4, new PublicField(-1));
+        ((List) ((List) ((List) actual.get(3)).get(8)).get(0)).set(0, new PublicField(-1));
+
+        String sequential = DeepComparer.getNotEqualPath(expected, actual);
+        Assert.assertEquals("$root.[3].[7].[2].[4].x; Expected value: \"4\"; actual value: \"-1\".", sequential);
+        for (int i = 0; i < 20; i++)
+            Assert.assertEquals(sequential, parallelComparer().findDifference(expected, actual));
+    }
+    @Test
+    public void parallelComparisonOfMapsArraysAndCycles() {
+        DeepComparer comparer = parallelBuilder()
+                .excludePaths("$root.[k3].[1]")
+                .build();
+
+        Map<String, Object> expected = new LinkedHashMap<String, Object>();
+        Map<String, Object> actual = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < 10; i++) {
+            expected.put("k" + i, new Object[] { expected, new PublicField(i) });
+            actual.put("k" + i, new Object[] { actual, new PublicField(i == 3 ? -1 : i) });
+        }
+        Assert.assertTrue(comparer.isEqual(expected, actual));
+
+        actual.remove("k7");
+        actual.put("k10", null);
+        Assert.assertEquals("$root; actual object does not contain key k7.", comparer.findDifference(expected, actual));
+    }
+    @Test
+    public void smallGraphsAreComparedSequentially() {
+        DeepComparer comparer = parallelBuilder()
+                .parallelThreshold(1000)
+                .build();
+        Assert.assertEquals(DeepComparer.getNotEqualPath(nestedLists(10, 2), nestedLists(9, 2)),
+                comparer.findDifference(nestedLists(10, 2), nestedLists(9, 2)));
+    }
+
+    @Test
+    public void allDifferencesAreCollected() {
+        Map<String, Object> expected = new LinkedHashMap<String, Object>();
+        expected.put("a", new PublicField(1));
+        expected.put("b", Arrays.asList(1, 2, 3));
+        expected.put("c", "x");
+        expected.put("d", null);
+        Map<String, Object> actual = new LinkedHashMap<String, Object>();
+        actual.put("a", new PublicField(2));
+        actual.put("b", Arrays.asList(1, 2));
+        actual.put("e", "x");
+        actual.put("d", 5);
+
+        Differences res = new DeepComparer().findAllDifferences(expected, actual);
+        Assert.assertFalse(res.isTruncated());
+        Assert.assertEquals(4, res.size());
+        Assert.assertEquals("$root.[a].x; Expected value: \"1\"; actual value: \"2\".", res.getItems().get(0).getMessage());
+        Assert.assertEquals("$root.[b]; Size of expected: 3; size of actual: 2.", res.getItems().get(1).getMessage());
+        Assert.assertEquals("$root; actual object does not contain key c.", res.getItems().get(2).getMessage());
+        Assert.assertEquals("$root.[d]; expected is null, actual is \"5\".", res.getItems().get(3).getMessage());
+
+        Difference size = res.getItems().get(1);
+        Assert.assertEquals("$root.[b]", size.getPath());
+        Assert.assertEquals(DifferenceKind.SIZE, size.getKind());
+        Assert.assertEquals(3, size.getExpected());
+        Assert.assertEquals(2, size.getActual());
+        Assert.assertEquals(DifferenceKind.MISSING_KEY, res.getItems().get(2).getKind());
+        Assert.assertEquals("c", res.getItems().get(2).getExpected());
+    }
+    @Test
+    public void collectingStopsAtLimit() {
+        DeepComparer comparer = DeepComparer.builder()
+                .maxDifferences(3)
+                .build();
+        Differences res = comparer.findAllDifferences(new int[] { 1, 2, 3, 4, 5 }, new int[] { 0, 0, 0, 0, 0 });
+        Assert.assertTrue(res.isTruncated());
+        Assert.assertEquals(3, res.size());
+        Assert.assertEquals("$root.[2]; Expected value: \"3\"; actual value: \"0\".", res.getItems().get(2).getMessage());
+
+        comparer = comparer.toBuilder()
+                .maxDifferences(5)
+                .build();
+        res = comparer.findAllDifferences(new int[] { 1, 2, 3, 4, 5 }, new int[] { 0, 0, 0, 0, 0 });
+        Assert.assertEquals(5, res.size());
+    }
+    @Test
+    public void equalGraphsHaveNoDifferences() {
+        Differences res = new DeepComparer().findAllDifferences(nestedLists(3, 3), nestedLists(3, 3));
+        Assert.assertTrue(res.isEmpty());
+        Assert.assertFalse(res.isTruncated());
+    }
+    @Test
+    public void firstCollectedDifferenceIsTheSameAsNotEqualPath() {
+        List<Object> expected = nestedLists(4, 3);
+        List<Object> actual = nestedLists(4, 3);
+        ((List) ((List) actual.get(1)).get(2)).set(3, Arrays.asList(1));
+        ((List) ((List) actual.get(2)).get(0)).set(1, null);
+
+        DeepComparer comparer = new DeepComparer();
+        Differences res = comparer.findAllDifferences(expected, actual);
+        Assert.assertEquals(2, res.size());
+        Assert.assertEquals(comparer.findDifference(expected, actual), res.getItems().get(0).getMessage());
+        Assert.assertEquals("$root.[2].[0].[1]", res.getItems().get(1).getPath());
+    }
+    @Test
+    public void collectedDifferencesWithRememberedPairs() {
+        DeepComparer comparer = DeepComparer.builder()
+                .rememberEqualPairs(true)
+                .build();
+
+        // the same different pair is referenced twice, it's reported twice
+        PublicField expected = new PublicField(1);
+        PublicField actual = new PublicField(2);
+        Differences res = comparer.findAllDifferences(
+                Arrays.asList(Arrays.asList(expected), Arrays.asList(expected)),
+                Arrays.asList(Arrays.asList(actual), Arrays.asList(actual)));
+        Assert.assertEquals(2, res.size());
+    }
+
+    @Test
+    public void listenerReceivesSegmentsAndValues() {
+        final List<String> res = new ArrayList<String>();
+        boolean equal = DeepComparer.getDifferences(
+                Arrays.asList(new PublicField(1), new PublicField(2), new PublicField(3)),
+                Arrays.asList(new PublicField(1), new PublicField(5), new PublicField(6)),
+                new DifferenceListener() {
+                    @Override
+                    public boolean onDifference(StackEntry entry, DifferenceKind kind, Object expected, Object actual) {
+                        Assert.assertEquals("x", entry.getName());
+                        Assert.assertTrue(entry.getParent().isIndex());
+                        res.add(entry.getParent().getIndex() + " " + kind + " " + expected + " " + actual);
+                        return true;
+                    }
+                });
+        Assert.assertFalse(equal);
+        Assert.assertEquals(Arrays.asList("1 VALUE 2 5", "2 VALUE 3 6"), res);
+    }
+    @Test
+    public void listenerStopsComparison() {
+        final List<String> res = new ArrayList<String>();
+        DeepComparer comparer = DeepComparer.builder()
+                .excludePaths("$root.[0]")
+                .build();
+        boolean equal = comparer.findDifferences(new int[] { 1, 2, 3, 4 }, new int[] { 0, 0, 0, 0 }, new DifferenceListener() {
+            @Override
+            public boolean onDifference(StackEntry entry, DifferenceKind kind, Object expected, Object actual) {
+                res.add(entry.getPath());
+                return res.size() < 2;
+            }
+        });
+        Assert.assertFalse(equal);
+        Assert.assertEquals(Arrays.asList("$root.[1]", "$root.[2]"), res);
+    }
+    @Test
+    public void listenerIsNotCalledForEqualObjects() {
+        Assert.assertTrue(DeepComparer.getDifferences(nestedLists(3, 2), nestedLists(3, 2), new DifferenceListener() {
+            @Override
+            public boolean onDifference(StackEntry entry, DifferenceKind kind, Object expected, Object actual) {
+                throw new AssertionError(entry.getPath());
+            }
+        }));
+    }
+
+    class PublicProperties {
+        private int x;
+        private int y;
+        public PublicProperties(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+        public int getX() {
+            return x;
+        }
+        public int getY() {
+            return y;
+        }
+    }
+    private static DeepComparer unorderedComparer() {
+        return unorderedBuilder().build();
+    }
+    private static DeepComparer.Builder unorderedBuilder() {
+        return DeepComparer.builder()
+                .unorderedTypes(Set.class);
+    }
+    @Test
+    public void setsOfObjectsWithoutEqualsAreEqualInAnyOrder() {
+        Set<PublicField> expected = new LinkedHashSet<PublicField>();
+        Set<PublicField> actual = new LinkedHashSet<PublicField>();
+        for (int i = 0; i < 100; i++) {
+            expected.add(new PublicField(i));
+            actual.add(new PublicField(99 - i));
+        }
+        Assert.assertFalse(DeepComparer.areEqual(expected, actual));
+        Assert.assertTrue(unorderedComparer().isEqual(expected, actual));
+    }
+    @Test
+    public void unorderedSetsAreDifferent() {
+        Set<PublicField> expected = new LinkedHashSet<PublicField>(Arrays.asList(new PublicField(1), new PublicField(2), new PublicField(3)));
+        Set<PublicField> actual = new LinkedHashSet<PublicField>(Arrays.asList(new PublicField(3), new PublicField(1), new PublicField(4)));
+        Assert.assertEquals("$root.[1]; actual object does not contain item \"" + expected.toArray()[1] + "\".",
+                unorderedComparer().findDifference(expected, actual));
+    }
+    @Test
+    public void unorderedItemsWithMapsOfKeysWithoutEquals() {
+        Map<PublicField, String> expectedMap = new HashMap<PublicField, String>();
+        expectedMap.put(new PublicField(1), "a");
+        Map<PublicField, String> actualMap = new HashMap<PublicField, String>();
+        actualMap.put(new PublicField(1), "a");
+        Assert.assertNull(new DeepComparer().findDifference(expectedMap, actualMap));
+
+        Set<Object> expected = new HashSet<Object>(Collections.singleton(Collections.singletonList(expectedMap)));
+        Set<Object> actual = new HashSet<Object>(Collections.singleton(Collections.singletonList(actualMap)));
+        Assert.assertNull(unorderedComparer().findDifference(expected, actual));
+    }
+    @Test
+    public void unorderedPathsAndDuplicates() {
+        DeepComparer comparer = DeepComparer.builder()
+                .unorderedPaths("$root.[*]")
+                .build();
+
+        List<Object> expected = Arrays.<Object>asList(
+                Arrays.asList(new PublicField(1), new PublicField(1), new PublicField(2)), Arrays.asList(1, 2));
+        List<Object> actual = Arrays.<Object>asList(
+                Arrays.asList(new PublicField(2), new PublicField(1), new PublicField(1)), Arrays.asList(2, 1));
+        Assert.assertTrue(comparer.isEqual(expected, actual));
+
+        // the root itself is ordered
+        Assert.assertFalse(comparer.isEqual(expected, Arrays.asList(actual.get(1), actual.get(0))));
+
+        // bags: number of equal items matters
+        Assert.assertFalse(comparer.isEqual(
+                Arrays.asList(Arrays.asList(new PublicField(1), new PublicField(1), new PublicField(2))),
+                Arrays.asList(Arrays.asList(new PublicField(1), new PublicField(2), new PublicField(2)))));
+    }
+    @Test
+    public void unorderedItemsWithExcludedPaths() {
+        DeepComparer comparer = unorderedBuilder()
+                .excludePaths("$root.[*].getY")
+                .build();
+
+        Set<PublicProperties> expected = new LinkedHashSet<PublicProperties>(Arrays.asList(
+                new PublicProperties(1, 10), new PublicProperties(2, 20)));
+        Set<PublicProperties> actual = new LinkedHashSet<PublicProperties>(Arrays.asList(
+                new PublicProperties(2, 0), new PublicProperties(1, 0)));
+        Assert.assertTrue(comparer.isEqual(expected, actual));
+    }
+    @Test
+    public void unorderedItemsAreComparedWhenTheyArePaired() {
+        // items of the same bucket (the same hash) are paired and compared, so the deep difference is reported
+        DeepComparer comparer = unorderedBuilder()
+                .excludePaths("$root.[*].getY")
+                .build();
+
+        Set<PublicProperties> expected = new LinkedHashSet<PublicProperties>(Arrays.asList(
+                new PublicProperties(1, 10), new PublicProperties(2, 20)));
+        Set<PublicProperties> actual = new LinkedHashSet<PublicProperties>(Arrays.asList(
+                new PublicProperties(3, 0), new PublicProperties(1, 0)));
+        Assert.assertEquals("$root.[1].getX; Expected value: \"2\"; actual value: \"3\".", comparer.findDifference(expected, actual));
+    }
+    @Test
+    public void unorderedItemsWithCycles() {
+        Node expected = new Node(null, null);
+        expected.setChildren(new ArrayList<Node>(Arrays.asList(new Node(expected, null), new Node(expected, new ArrayList<Node>()))));
+        Node actual = new Node(null, null);
+        actual.setChildren(new ArrayList<Node>(Arrays.asList(new Node(actual, new ArrayList<Node>()), new Node(actual, null))));
+        DeepComparer comparer = DeepComparer.builder()
+                .unorderedPaths("$root.getChildren")
+                .build();
+        Assert.assertTrue(comparer.isEqual(expected, actual));
+        comparer = comparer.toBuilder()
+                .rememberEqualPairs(true)
+                .build();
+        Assert.assertTrue(comparer.isEqual(expected, actual));
+
+        actual.getChildren().get(1).setParent(new Node(actual, null));
+        Assert.assertFalse(comparer.isEqual(expected, actual));
+    }
+    @Test
+    public void allUnorderedDifferencesAreCollected() {
+        Differences res = unorderedComparer().findAllDifferences(
+                new HashSet<Object>(Arrays.asList(1, 2, 3, 4)), new HashSet<Object>(Arrays.asList(1, 5, 3, 6)));
+        Assert.assertEquals(2, res.size());
+        Assert.assertEquals(DifferenceKind.MISSING_ITEM, res.getItems().get(0).getKind());
+        Assert.assertEquals(DifferenceKind.MISSING_ITEM, res.getItems().get(1).getKind());
+    }
+
+    @Test
+    public void sortedMapsAreMerged() {
+        TreeMap<Integer, Object> expected = new TreeMap<Integer, Object>();
+        TreeMap<Integer, Object> actual = new TreeMap<Integer, Object>();
+        for (int i = 0; i < 1000; i++) {
+            expected.put(i, new PublicField(i));
+            actual.put(i, new PublicField(i));
+        }
+        Assert.assertTrue(DeepComparer.areEqual(expected, actual));
+
+        actual.put(500, new PublicField(-1));
+        Assert.assertEquals("$root.[500].x; Expected value: \"500\"; actual value: \"-1\".",
+                DeepComparer.getNotEqualPath(expected, actual));
+    }
+    @Test
+    public void sortedMapsWithDifferentKeys() {
+        TreeMap<String, Integer> expected = new TreeMap<String, Integer>();
+        expected.put("a", 1);
+        expected.put("c", 3);
+        expected.put("e", 5);
+        TreeMap<String, Integer> actual = new TreeMap<String, Integer>();
+        actual.put("a", 1);
+        actual.put("b", 2);
+        actual.put("d", 4);
+        Assert.assertEquals("$root; actual object does not contain key c.", DeepComparer.getNotEqualPath(expected, actual));
+
+        Differences res = new DeepComparer().findAllDifferences(expected, actual);
+        Assert.assertEquals(2, res.size());
+        Assert.assertEquals("$root; actual object does not contain key e.", res.getItems().get(1).getMessage());
+    }
+    @Test
+    public void sortedMapsWithDifferentComparators() {
+        TreeMap<String, Integer> expected = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+        expected.put("A", 1);
+        expected.put("b", 2);
+        TreeMap<String, Integer> actual = new TreeMap<String, Integer>(Collections.<String>reverseOrder());
+        actual.put("A", 1);
+        actual.put("b", 2);
+        Assert.assertTrue(DeepComparer.areEqual(expected, actual));
+
+        TreeMap<String, Integer> caseInsensitive = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+        caseInsensitive.put("a", 1);
+        caseInsensitive.put("B", 2);
+        Assert.assertTrue(DeepComparer.areEqual(expected, caseInsensitive));
+    }
+    @Test
+    public void keysWithoutEqualsAreMatchedDeeply() {
+        Map<PublicField, String> expected = new HashMap<PublicField, String>();
+        Map<PublicField, String> actual = new HashMap<PublicField, String>();
+        for (int i = 0; i < 10; i++) {
+            expected.put(new PublicField(i), "v" + i);
+            actual.put(new PublicField(i), "v" + i);
+        }
+        Assert.assertTrue(DeepComparer.areEqual(expected, actual));
+
+        PublicField shared = new PublicField(100);
+        expected.put(shared, "shared");
+        actual.put(shared, "shared");
+        Assert.assertTrue(DeepComparer.areEqual(expected, actual));
+
+        PublicField key = new PublicField(5);
+        actual.put(key, "other");
+        actual.remove(shared);
+        Assert.assertFalse(DeepComparer.areEqual(expected, actual));
+    }
+    @Test
+    public void keysWithoutEqualsAreMatchedOnce() {
+        // both expected keys are equal to one actual key
+        Map<PublicField, String> expected = new LinkedHashMap<PublicField, String>();
+        expected.put(new PublicField(1), "v");
+        expected.put(new PublicField(1), "v");
+        Map<PublicField, String> actual = new LinkedHashMap<PublicField, String>();
+        actual.put(new PublicField(1), "v");
+        actual.put(new PublicField(2), "v");
+        Assert.assertEquals("$root; actual object does not contain key " + expected.keySet().toArray()[1] + ".",
+                DeepComparer.getNotEqualPath(expected, actual));
+    }
+    @Test
+    public void keysWithoutEqualsInParallelComparison() {
+        Map<PublicField, Integer> expected = new HashMap<PublicField, Integer>();
+        Map<PublicField, Integer> actual = new HashMap<PublicField, Integer>();
+        for (int i = 0; i < 100; i++) {
+            expected.put(new PublicField(i), i);
+            actual.put(new PublicField(i), i);
+        }
+        Assert.assertTrue(parallelComparer().isEqual(expected, actual));
+    }
+    @Test
+    public void builderKeepsSettings() {
+        DeepComparer comparer = DeepComparer.builder()
+                .checkIterableTypesStrictly(true)
+                .excludePaths("$root.x")
+                .maxDifferences(7)
+                .build();
+        DeepComparer copy = comparer.toBuilder().build();
+        Assert.assertTrue(copy.isCheckIterableTypesStrictly());
+        Assert.assertArrayEquals(new String[] { "$root.x" }, copy.getExcludePaths());
+        Assert.assertEquals(7, copy.getMaxDifferences());
+        Assert.assertFalse(copy.isParallel());
+    }
+    @Test(expected = IllegalArgumentException.class)
+    public void builderChecksLimits() {
+        DeepComparer.builder().maxDifferences(0);
+    }
+    @Test
+    public void instanceAssertAction() {
+        final List<String> messages = new ArrayList<String>();
+        DeepComparer comparer = DeepComparer.builder()
+                .assertAction(new Action2<Boolean, String>() {
+                    @Override
+                    public void apply(Boolean aBoolean, String s) {
+                        messages.add(s);
+                    }
+                })
+                .build();
+        comparer.assertEqual(1, 2);
+        Assert.assertEquals(Arrays.asList("$root; Expected value: \"1\"; actual value: \"2\"."), messages);
+    }
+    @Test
+    public void nestedCallsOfTheSameComparer() {
+        final DeepComparer comparer = new DeepComparer();
+        final List<String> nested = new ArrayList<String>();
+        boolean equal = comparer.findDifferences(Arrays.asList(1, 2), Arrays.asList(1, 3), new DifferenceListener() {
+            @Override
+            public boolean onDifference(StackEntry entry, DifferenceKind kind, Object expected, Object actual) {
+                nested.add(comparer.findDifference(expected, actual));
+                return true;
+            }
+        });
+        Assert.assertFalse(equal);
+        Assert.assertEquals(Arrays.asList("$root; Expected value: \"2\"; actual value: \"3\"."), nested);
+        Assert.assertEquals("$root.[1]; Expected value: \"2\"; actual value: \"3\".",
+                comparer.findDifference(Arrays.asList(1, 2), Arrays.asList(1, 3)));
+    }
+    @Test(timeout = 30000)
+    public void comparerIsUsedByManyThreads() throws InterruptedException {
+        final DeepComparer comparer = DeepComparer.builder()
+                .excludePaths("$root.[*].[0]")
+                .rememberEqualPairs(true)
+                .build();
+        final List<Object> expected = nestedLists(5, 3);
+        final List<Object> actual = nestedLists(5, 3);
+        final List<Object> different = nestedLists(5, 3);
+        ((List<Object>) ((List<Object>) different.get(1)).get(2)).set(3, "x");
+        final String difference = new DeepComparer().findDifference(expected, different);
+        final AtomicInteger failures = new AtomicInteger();
+
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 200; i++) {
+                        if (!comparer.isEqual(expected, actual) || !difference.equals(comparer.findDifference(expected, different)))
+                            failures.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        Assert.assertEquals(0, failures.get());
+    }
+    @Test
+    public void grownComparisonIsNotKeptIdle() {
+        DeepComparer comparer = DeepComparer.builder().build();
+        List<Object> expected = new ArrayList<Object>();
+        List<Object> actual = new ArrayList<Object>();
+        for (int i = 0; i < 5000; i++) {
+            expected = new ArrayList<Object>(Arrays.asList(expected));
+            actual = new ArrayList<Object>(Arrays.asList(actual));
+        }
+        Assert.assertTrue(comparer.isEqual(expected, actual));
+        Assert.assertEquals(0, comparer.getIdleComparisonCount());
+
+        Assert.assertTrue(comparer.isEqual(nestedLists(2, 2), nestedLists(2, 2)));
+        Assert.assertEquals(1, comparer.getIdleComparisonCount());
+    }
+    @Test
+    public void comparerOfStaticMethodsIsCachedByPaths() {
+        Assert.assertSame(DeepComparer.forPaths(false, "$root.a", "$root.b"),
+                DeepComparer.forPaths(false, new String[] {"$root.a", "$root.b"}));
+        Assert.assertNotSame(DeepComparer.forPaths(false, "$root.a"), DeepComparer.forPaths(true, "$root.a"));
+        Assert.assertNotSame(DeepComparer.forPaths(false, "$root.a"), DeepComparer.forPaths(false, "$root.b"));
+    }
+    @Test
+    public void comparisonIsStoppedByNumberOfNodes() {
+        DeepComparer comparer = DeepComparer.builder()
+                .maxNodes(5)
+                .build();
+        Assert.assertEquals("$root.[0].[0].[0].[1]; Comparison is stopped: number of nodes exceeds 5.",
+                comparer.findDifference(nestedLists(3, 3), nestedLists(3, 3)));
+        Assert.assertTrue(comparer.isEqual(nestedLists(2, 0), nestedLists(2, 0)));
+    }
+    @Test
+    public void comparisonIsStoppedByDepth() {
+        DeepComparer comparer = DeepComparer.builder()
+                .maxDepth(1)
+                .build();
+        Assert.assertEquals("$root.[0].[0]; Comparison is stopped: depth exceeds 1.",
+                comparer.findDifference(nestedLists(2, 2), nestedLists(2, 2)));
+
+        // listener can not go on after budget is exceeded
+        Differences res = comparer.findAllDifferences(nestedLists(2, 2), nestedLists(2, 2));
+        Assert.assertEquals(1, res.size());
+        Assert.assertEquals(DifferenceKind.BUDGET_EXCEEDED, res.getItems().get(0).getKind());
+    }
+    public static class Link {
+        public Link next;
+
+        static Link chain(int length) {
+            Link res = null;
+            for (int i = 0; i < length; i++) {
+                Link link = new Link();
+                link.next = res;
+                res = link;
+            }
+            return res;
+        }
+    }
+    @Test
+    public void budgetIsExceededByTrialsOfKeys() {
+        DeepComparer comparer = DeepComparer.builder()
+                .maxNodes(20)
+                .build();
+        Map<Link, Integer> expected = Collections.singletonMap(Link.chain(50), 1);
+        Map<Link, Integer> actual = Collections.singletonMap(Link.chain(50), 1);
+        Assert.assertEquals("$root; Comparison is stopped: number of nodes exceeds 20.",
+                comparer.findDifference(expected, actual));
+
+        Differences res = comparer.findAllDifferences(expected, actual);
+        Assert.assertEquals(1, res.size());
+        Assert.assertEquals(DifferenceKind.BUDGET_EXCEEDED, res.getItems().get(0).getKind());
+    }
+    @Test
+    public void budgetIsExceededByTrialsOfUnorderedItems() {
+        DeepComparer comparer = DeepComparer.builder()
+                .maxNodes(20)
+                .unorderedTypes(Set.class)
+                .build();
+        Set<Link> expected = new HashSet<Link>(Arrays.asList(Link.chain(50), Link.chain(3)));
+        Set<Link> actual = new HashSet<Link>(Arrays.asList(Link.chain(50), Link.chain(3)));
+        Assert.assertEquals("$root; Comparison is stopped: number of nodes exceeds 20.",
+                comparer.findDifference(expected, actual));
+
+        Differences res = comparer.findAllDifferences(expected, actual);
+        Assert.assertEquals(1, res.size());
+        Assert.assertEquals(DifferenceKind.BUDGET_EXCEEDED, res.getItems().get(0).getKind());
+    }
+    @Test(timeout = 10000)
+    public void comparisonIsStoppedByTime() {
+        DeepComparer comparer = DeepComparer.builder()
+                .maxTime(100, java.util.concurrent.TimeUnit.MILLISECONDS)
+                .build();
+        // it's 2^50 nodes
+        String res = comparer.findDifference(sharedChildren(null, 50), sharedChildren(null, 50));
+        Assert.assertTrue(res, res.endsWith("; Comparison is stopped: time exceeds 100 ms."));
+    }
+    @Test
+    public void budgetIsSharedWithTrialsAndChunks() {
+        Set<PublicField> expected = new LinkedHashSet<PublicField>();
+        Set<PublicField> actual = new LinkedHashSet<PublicField>();
+        for (int i = 0; i < 100; i++) {
+            expected.add(new PublicField(i));
+            actual.add(new PublicField(99 - i));
+        }
+        DeepComparer comparer = unorderedBuilder()
+                .maxNodes(50)
+                .build();
+        String res = comparer.findDifference(expected, actual);
+        Assert.assertTrue(res, res.endsWith("; Comparison is stopped: number of nodes exceeds 50."));
+
+        comparer = parallelBuilder()
+                .maxNodes(50)
+                .build();
+        res = comparer.findDifference(nestedLists(10, 3), nestedLists(10, 3));
+        Assert.assertTrue(res, res.endsWith("; Comparison is stopped: number of nodes exceeds 50."));
+    }
+    @Test
+    public void valuesInMessagesAreTruncated() {
+        DeepComparer comparer = DeepComparer.builder()
+                .maxValueLength(10)
+                .build();
+        List<Integer> list = new ArrayList<Integer>();
+        for (int i = 0; i < 1000000; i++)
+            list.add(i);
+        Assert.assertEquals("$root.[0]; expected is null, actual is \"[0, 1, 2, ...\".",
+                comparer.findDifference(Arrays.asList((Object) null), Arrays.asList(list)));
+        Assert.assertEquals("$root; Expected value: \"0123456789...\"; actual value: \"x\".",
+                comparer.findDifference("0123456789abc", "x"));
+    }
+    private List<PublicField> fields(int count) {
+        List<PublicField> res = new ArrayList<PublicField>();
+        for (int i = 0; i < count; i++)
+            res.add(new PublicField(i));
+        return res;
+    }
+    @Test
+    public void insertedItemIsOneDifference() {
+        DeepComparer comparer = DeepComparer.builder()
+                .alignedPaths("$root")
+                .build();
+        List<PublicField> expected = fields(100000);
+        List<PublicField> actual = fields(100000);
+        actual.add(0, new PublicField(-1));
+
+        Differences res = comparer.findAllDifferences(expected, actual);
+        Assert.assertEquals(1, res.size());
+        Assert.assertEquals(DifferenceKind.ITEM_INSERTED, res.getItems().get(0).getKind());
+        Assert.assertEquals("$root.[0]", res.getItems().get(0).getPath());
+
+        // without alignment
+        Assert.assertEquals("$root; Size of expected: 100000; size of actual: 100001.",
+                new DeepComparer().findDifference(expected, actual));
+    }
+    @Test
+    public void alignedItemsAreDeletedInsertedAndChanged() {
+        DeepComparer comparer = DeepComparer.builder()
+                .alignedPaths("$root.[*]")
+                .build();
+        List<PublicField> expected = fields(10);
+        List<PublicField> actual = fields(10);
+        actual.remove(2);
+        actual.get(4).x = 50;
+        actual.add(8, new PublicField(80));
+
+        Differences res = comparer.findAllDifferences(Arrays.asList(expected), Arrays.asList(actual));
+        Assert.assertEquals(3, res.size());
+        Assert.assertEquals("$root.[0].[2]; Item \"" + expected.get(2) + "\" of expected is deleted in actual.",
+                res.getItems().get(0).getMessage());
+        // indexes of expected
+        Assert.assertEquals("$root.[0].[5].x; Expected value: \"5\"; actual value: \"50\".",
+                res.getItems().get(1).getMessage());
+        Assert.assertEquals(DifferenceKind.ITEM_INSERTED, res.getItems().get(2).getKind());
+        Assert.assertEquals("$root.[0].[8]", res.getItems().get(2).getPath());
+
+        Assert.assertTrue(comparer.isEqual(Arrays.asList(expected), Arrays.asList(fields(10))));
+        Assert.assertFalse(comparer.isEqual(Arrays.asList(expected), Arrays.asList(fields(11))));
+    }
+    @Test
+    public void alignedArrays() {
+        DeepComparer comparer = DeepComparer.builder()
+                .alignedPaths("$root")
+                .build();
+        String[] expected = { "a", "b", "c" };
+        Assert.assertEquals("$root.[1]; Item \"b\" of expected is deleted in actual.",
+                comparer.findDifference(expected, new String[] { "a", "c" }));
+        Assert.assertEquals("$root.[1]; Expected value: \"b\"; actual value: \"x\".",
+                comparer.findDifference(expected, new String[] { "a", "x", "c" }));
+        Assert.assertNull(comparer.findDifference(expected, expected.clone()));
+    }
+    @Test
+    public void tooManyEditsAreComparedByIndexes() {
+        DeepComparer comparer = DeepComparer.builder()
+                .alignedPaths("$root")
+                .maxAlignmentEdits(1)
+                .build();
+        List<PublicField> expected = fields(10);
+        List<PublicField> actual = fields(10);
+        actual.add(0, new PublicField(-1));
+        Assert.assertEquals("$root.[0]", comparer.findAllDifferences(expected, actual).getItems().get(0).getPath());
+        actual.add(0, new PublicField(-2));
+        Assert.assertEquals("$root; Size of expected: 10; size of actual: 12.", comparer.findDifference(expected, actual));
+
+        // exclude paths can make different items equal, so they are not hashed
+        comparer = comparer.toBuilder()
+                .maxAlignmentEdits(1000)
+                .excludePaths("$root.[*].x")
+                .build();
+        Assert.assertEquals("$root; Size of expected: 10; size of actual: 12.", comparer.findDifference(expected, actual));
+        Assert.assertNull(comparer.findDifference(expected, fields(10)));
+    }
+}
@@ -0,0 +1,64 @@
+package npakudin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class TestDeepHasher {
+
+    public static class Item {
+        public int id;
+        public List<Item> children = new ArrayList<Item>();
+        public Item(int id) {
+            this.id = id;
+        }
+    }
+
+    @Test
+    public void equalGraphsHaveEqualHashes() {
+        Item expected = new Item(1);
+        expected.children.add(new Item(2));
+        Item actual = new Item(1);
+        actual.children.add(new Item(2));
+        Assert.assertEquals(new DeepHasher().hash(expected), new DeepHasher().hash(actual));
+    }
+    @Test
+    public void hashDoesNotDependOnOrder() {
+        DeepHasher hasher = new DeepHasher();
+        Assert.assertEquals(hasher.hash(Arrays.asList(new Item(1), new Item(2))), hasher.hash(Arrays.asList(new Item(2), new Item(1))));
+        Assert.assertEquals(hasher.hash(new LinkedList<Integer>(Arrays.asList(1, 2))), hasher.hash(new ArrayList<Integer>(Arrays.asList(2, 1))));
+    }
+    @Test
+    public void differentValuesHaveDifferentHashes() {
+        DeepHasher hasher = new DeepHasher();
+        Assert.assertNotEquals(hasher.hash(new Item(1)), hasher.hash(new Item(2)));
+        Assert.assertNotEquals(hasher.hash(Arrays.asList(1, 1)), hasher.hash(Arrays.asList(1, 2)));
+    }
+    @Test
+    public void cyclesAreLimitedByDepth() {
+        Item item = new Item(1);
+        item.children.add(item);
+        Assert.assertEquals(new DeepHasher(10).hash(item), new DeepHasher(10).hash(item));
+    }
+    @Test
+    public void deepObjectsAreHashedByClass() {
+        Item expected = new Item(1);
+        expected.children.add(new Item(2));
+        Item actual = new Item(1);
+        actual.children.add(new Item(3));
+        Assert.assertEquals(new DeepHasher(1).hash(expected), new DeepHasher(1).hash(actual));
+        Assert.assertNotEquals(new DeepHasher(3).hash(expected), new DeepHasher(3).hash(actual));
+    }
+    @Test
+    public void keysWithoutEqualsAreHashedByStructure() {
+        Map<Item, String> expected = new HashMap<Item, String>();
+        expected.put(new Item(1), "a");
+        Map<Item, String> actual = new HashMap<Item, String>();
+        actual.put(new Item(1), "a");
+        Assert.assertEquals(new DeepHasher().hash(expected), new DeepHasher().hash(actual));
+        actual.clear();
+        actual.put(new Item(2), "a");
+        Assert.assertNotEquals(new DeepHasher().hash(expected), new DeepHasher().hash(actual));
+    }
+}
@@ -0,0 +1,91 @@
+package npakudin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+
+public class TestEqualityCache {
+
+    @Test
+    public void pairsAreComparedByIdentity() {
+        EqualityCache cache = new EqualityCache(16);
+        String a = new String("a");
+        String b = new String("b");
+        cache.put(a, b);
+
+        Assert.assertTrue(cache.contains(a, b));
+        Assert.assertFalse(cache.contains(new String("a"), b));
+        Assert.assertFalse(cache.contains(b, a));
+    }
+    @Test
+    public void capacityIsRoundedToPowerOf2() {
+        Assert.assertEquals(16, new EqualityCache(10).getCapacity());
+        Assert.assertEquals(32, new EqualityCache(10, 32).getMinSubtreeSize());
+    }
+    @Test(expected = IllegalArgumentException.class)
+    public void tooSmallCapacity() {
+        new EqualityCache(1);
+    }
+    @Test
+    public void sizeIsBounded() {
+        EqualityCache cache = new EqualityCache(16);
+        Object[] objects = new Object[1000];
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = new Object();
+            cache.put(objects[i], objects[i]);
+        }
+        int count = 0;
+        for (Object object : objects) {
+            if (cache.contains(object, object))
+                count++;
+        }
+        Assert.assertTrue(count > 0);
+        Assert.assertTrue(count <= 16);
+        // the last pair is in the first way of its set
+        Assert.assertTrue(cache.contains(objects[999], objects[999]));
+    }
+    @Test
+    public void clear() {
+        EqualityCache cache = new EqualityCache(16);
+        Object a = new Object();
+        cache.put(a, a);
+        cache.clear();
+        Assert.assertFalse(cache.contains(a, a));
+    }
+    @Test
+    public void objectsAreNotKeptAlive() throws InterruptedException {
+        EqualityCache cache = new EqualityCache(16);
+        Object a = new Object();
+        Object b = new Object();
+        cache.put(a, b);
+        WeakReference<Object> reference = new WeakReference<Object>(a);
+        a = null;
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull(reference.get());
+    }
+    @Test
+    public void cacheIsNotSharedByComparersWithOtherSettings() {
+        EqualityCache cache = new EqualityCache(16, 8);
+        DeepComparer comparer = DeepComparer.builder().equalityCache(cache).build();
+        EqualityCache copy = comparer.toBuilder().excludePaths("$root.x").build().getEqualityCache();
+        Assert.assertNotSame(cache, copy);
+        Assert.assertEquals(16, copy.getCapacity());
+        Assert.assertEquals(8, copy.getMinSubtreeSize());
+    }
+    @Test
+    public void comparerIsNotKeptAliveByThread() throws InterruptedException {
+        DeepComparer comparer = DeepComparer.builder().equalityCache(new EqualityCache(16)).build();
+        Assert.assertTrue(comparer.isEqual("a", "a"));
+        WeakReference<DeepComparer> reference = new WeakReference<DeepComparer>(comparer);
+        comparer = null;
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull(reference.get());
+    }
+}
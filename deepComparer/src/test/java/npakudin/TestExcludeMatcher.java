@@ -0,0 +1,68 @@
+package npakudin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestExcludeMatcher {
+
+    private static ExcludeMatcher matcher(String... paths) {
+        List<ExcludePath> excludePaths = new ArrayList<ExcludePath>();
+        for (String path : paths)
+            excludePaths.add(new ExcludePath(path));
+        return new ExcludeMatcher(excludePaths);
+    }
+
+    @Test
+    public void anyOfPatternsMatches() {
+        ExcludeMatcher matcher = matcher("$root.foo", "$root.*.audit*", "$root.[?]");
+        Assert.assertTrue(matcher.matches("$root.foo"));
+        Assert.assertTrue(matcher.matches("$root.getOrder.auditLog"));
+        Assert.assertTrue(matcher.matches("$root.[1]"));
+        Assert.assertFalse(matcher.matches("$root.bar"));
+        Assert.assertFalse(matcher.matches("$root.[10]"));
+    }
+    @Test
+    public void starMatchesManySegments() {
+        Assert.assertTrue(matcher("$root.*.x").matches("$root.a.b.[3].x"));
+    }
+    @Test
+    public void noPatterns() {
+        ExcludeMatcher matcher = matcher();
+        Assert.assertTrue(matcher.getInitialState().isDead());
+        Assert.assertFalse(matcher.matches("$root"));
+    }
+    @Test
+    public void segmentsAreFedIncrementally() {
+        ExcludeMatcher matcher = matcher("$root.getChildren.[*].getParent");
+        StackEntry root = new StackEntry(null, "$root", null, null);
+        StackEntry children = new StackEntry(root, "getChildren", null, null);
+        StackEntry item = StackEntry.forIndex(children, 12, null, null);
+        StackEntry parent = new StackEntry(item, "getParent", null, null);
+
+        ExcludeMatcher.State state = matcher.next(matcher.getInitialState(), root);
+        state = matcher.next(state, children);
+        Assert.assertFalse(state.isExcluded());
+        state = matcher.next(state, item);
+        Assert.assertFalse(state.isExcluded());
+        Assert.assertTrue(matcher.next(state, parent).isExcluded());
+    }
+    @Test
+    public void stateIsDeadWhenNothingCanMatchBelow() {
+        ExcludeMatcher matcher = matcher("$root.foo.bar");
+        StackEntry root = new StackEntry(null, "$root", null, null);
+        ExcludeMatcher.State state = matcher.next(matcher.getInitialState(), root);
+        Assert.assertFalse(state.isDead());
+        Assert.assertFalse(matcher.next(state, new StackEntry(root, "foo", null, null)).isDead());
+        Assert.assertTrue(matcher.next(state, new StackEntry(root, "baz", null, null)).isDead());
+    }
+    @Test
+    public void keysWithAnyChars() {
+        ExcludeMatcher matcher = matcher("$root.[*]");
+        StackEntry root = new StackEntry(null, "$root", null, null);
+        ExcludeMatcher.State state = matcher.next(matcher.getInitialState(), root);
+        Assert.assertTrue(matcher.next(state, StackEntry.forKey(root, "\u043a\u043b\u044e\u0447 #1", null, null)).isExcluded());
+    }
+}
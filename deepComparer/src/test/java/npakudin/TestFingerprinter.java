@@ -0,0 +1,125 @@
+package npakudin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class TestFingerprinter {
+
+    public enum Color { RED, GREEN }
+
+    public static class Item {
+        public int id;
+        public String name;
+        public Color color = Color.RED;
+        public Item parent;
+        public List<Item> children = new ArrayList<Item>();
+        public double[] values = new double[] { 1, 2 };
+
+        public Item(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+        public Item add(Item child) {
+            children.add(child);
+            child.parent = this;
+            return this;
+        }
+    }
+
+    private static Item tree() {
+        return new Item(1, "root").add(new Item(2, "a")).add(new Item(3, "b").add(new Item(4, "c")));
+    }
+
+    @Test
+    public void equalGraphsHaveEqualFingerprints() {
+        Assert.assertEquals(DeepComparer.fingerprint(tree()), DeepComparer.fingerprint(tree()));
+        Assert.assertEquals(DeepComparer.fingerprint(null), DeepComparer.fingerprint(null));
+    }
+    @Test
+    public void fingerprintIsStable() {
+        // the same value in every run: only names of classes, strings and numbers are hashed
+        Assert.assertEquals(DeepComparer.fingerprint(Arrays.asList("a", 1, 2L, Color.GREEN)),
+                Fingerprint.parse(DeepComparer.fingerprint(Arrays.asList("a", 1, 2L, Color.GREEN)).toString()));
+        Assert.assertEquals("b86c30c3fe04306c45fad5498935f8da", DeepComparer.fingerprint(Arrays.asList("a", 1, 2L)).toString());
+    }
+    @Test
+    public void differentGraphsHaveDifferentFingerprints() {
+        Item changed = tree();
+        changed.children.get(1).children.get(0).name = "d";
+        Assert.assertNotEquals(DeepComparer.fingerprint(tree()), DeepComparer.fingerprint(changed));
+
+        changed = tree();
+        changed.values[1] = 3;
+        Assert.assertNotEquals(DeepComparer.fingerprint(tree()), DeepComparer.fingerprint(changed));
+
+        Assert.assertNotEquals(DeepComparer.fingerprint(1), DeepComparer.fingerprint(1L));
+        Assert.assertNotEquals(DeepComparer.fingerprint(Arrays.asList(1, 2)), DeepComparer.fingerprint(Arrays.asList(2, 1)));
+    }
+    @Test
+    public void excludedPathsAreNotHashed() {
+        Item changed = tree();
+        changed.children.get(0).name = "changed";
+        Assert.assertEquals(DeepComparer.fingerprint(tree(), "$root.children.[*].name"),
+                DeepComparer.fingerprint(changed, "$root.children.[*].name"));
+    }
+    @Test
+    public void typesOfIterablesAreHashedOnlyIfTheyAreChecked() {
+        DeepComparer comparer = new DeepComparer();
+        Assert.assertEquals(comparer.getFingerprint(new ArrayList<Integer>(Arrays.asList(1, 2))),
+                comparer.getFingerprint(new LinkedList<Integer>(Arrays.asList(1, 2))));
+        comparer = DeepComparer.builder()
+                .checkIterableTypesStrictly(true)
+                .build();
+        Assert.assertNotEquals(comparer.getFingerprint(new ArrayList<Integer>(Arrays.asList(1, 2))),
+                comparer.getFingerprint(new LinkedList<Integer>(Arrays.asList(1, 2))));
+    }
+    @Test
+    public void orderOfMapsAndUnorderedIterablesIsNotHashed() {
+        Map<String, Integer> expected = new LinkedHashMap<String, Integer>();
+        expected.put("a", 1);
+        expected.put("b", 2);
+        Map<String, Integer> actual = new LinkedHashMap<String, Integer>();
+        actual.put("b", 2);
+        actual.put("a", 1);
+        Assert.assertEquals(DeepComparer.fingerprint(expected), DeepComparer.fingerprint(actual));
+        actual.put("a", 2);
+        Assert.assertNotEquals(DeepComparer.fingerprint(expected), DeepComparer.fingerprint(actual));
+
+        DeepComparer comparer = DeepComparer.builder()
+                .unorderedTypes(Set.class)
+                .build();
+        Assert.assertEquals(comparer.getFingerprint(new LinkedHashSet<Integer>(Arrays.asList(1, 2))),
+                comparer.getFingerprint(new LinkedHashSet<Integer>(Arrays.asList(2, 1))));
+    }
+    @Test
+    public void sharedSubgraphsAreHashedOnce() {
+        List<Object> expected = new ArrayList<Object>();
+        List<Object> shared = new ArrayList<Object>();
+        for (int i = 0; i < 60; i++) {
+            List<Object> next = new ArrayList<Object>();
+            next.add(shared);
+            next.add(shared);
+            shared = next;
+        }
+        expected.add(shared);
+        // without remembering subtrees it's 2^60 nodes
+        Assert.assertNotNull(DeepComparer.fingerprint(expected));
+    }
+    @Test
+    public void treeShowsChangedSubtrees() {
+        Item changed = tree();
+        changed.children.get(1).children.get(0).name = "d";
+        DeepComparer comparer = new DeepComparer();
+        FingerprintNode expected = comparer.getFingerprintTree(tree(), 10);
+        FingerprintNode actual = comparer.getFingerprintTree(changed, 10);
+
+        Assert.assertEquals(comparer.getFingerprint(tree()), expected.getFingerprint());
+        Assert.assertEquals(Arrays.asList("$root.children.[1].children.[0].name"), expected.findDifferentPaths(actual));
+        Assert.assertTrue(expected.findDifferentPaths(comparer.getFingerprintTree(tree(), 10)).isEmpty());
+
+        FingerprintNode shallow = comparer.getFingerprintTree(tree(), 2);
+        Assert.assertEquals(Arrays.asList("$root.children.[1]"), shallow.findDifferentPaths(comparer.getFingerprintTree(changed, 2)));
+    }
+}
@@ -0,0 +1,188 @@
+package npakudin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class TestFloatTolerance {
+
+    public static class Measurement {
+        private final double value;
+        private final float weight;
+
+        public Measurement(double value, float weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+        public double getValue() {
+            return value;
+        }
+        public float getWeight() {
+            return weight;
+        }
+    }
+
+    @Test
+    public void absolute() {
+        FloatTolerance tolerance = FloatTolerance.absolute(0.01);
+        Assert.assertTrue(tolerance.areEqual(1.0, 1.005));
+        Assert.assertTrue(tolerance.areEqual(1000.0, 1000.01));
+        Assert.assertFalse(tolerance.areEqual(1.0, 1.02));
+        Assert.assertTrue(tolerance.areEqual(1.0f, 1.005f));
+        Assert.assertFalse(tolerance.areEqual(1.0f, 1.02f));
+    }
+
+    @Test
+    public void relative() {
+        FloatTolerance tolerance = FloatTolerance.relative(1e-3);
+        Assert.assertTrue(tolerance.areEqual(1000.0, 1000.9));
+        Assert.assertFalse(tolerance.areEqual(1.0, 1.002));
+        Assert.assertTrue(tolerance.areEqual(-1000.0, -1000.9));
+        Assert.assertFalse(tolerance.areEqual(1e-300, -1e-300));
+    }
+
+    @Test
+    public void ulps() {
+        FloatTolerance tolerance = FloatTolerance.ulps(2);
+        Assert.assertTrue(tolerance.areEqual(1.0, Math.nextUp(Math.nextUp(1.0))));
+        Assert.assertFalse(tolerance.areEqual(1.0, Math.nextUp(Math.nextUp(Math.nextUp(1.0)))));
+        Assert.assertTrue(tolerance.areEqual(1.0f, Math.nextDown(1.0f)));
+        // across zero
+        Assert.assertTrue(tolerance.areEqual(Double.MIN_VALUE, -Double.MIN_VALUE));
+        Assert.assertFalse(tolerance.areEqual(Float.MIN_VALUE, -2 * Float.MIN_VALUE));
+        Assert.assertFalse(FloatTolerance.ulps(Long.MAX_VALUE).areEqual(Double.MAX_VALUE, Double.NaN));
+        Assert.assertTrue(FloatTolerance.ulps(1).areEqual(Double.MAX_VALUE, Math.nextDown(Double.MAX_VALUE)));
+        Assert.assertFalse(FloatTolerance.ulps(1L << 62).areEqual(Double.MAX_VALUE, -Double.MAX_VALUE));
+    }
+
+    @Test
+    public void specialValues() {
+        for (FloatTolerance tolerance : Arrays.asList(FloatTolerance.absolute(1), FloatTolerance.relative(1), FloatTolerance.ulps(10))) {
+            Assert.assertTrue(tolerance.areEqual(Double.NaN, Double.NaN));
+            Assert.assertFalse(tolerance.areEqual(Double.NaN, 0.0));
+            Assert.assertTrue(tolerance.areEqual(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY));
+            Assert.assertFalse(tolerance.areEqual(Double.POSITIVE_INFINITY, Double.MAX_VALUE));
+            Assert.assertFalse(tolerance.areEqual(Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY));
+            Assert.assertTrue(tolerance.areEqual(0.0, -0.0));
+            Assert.assertTrue(tolerance.areEqual(0.0f, -0.0f));
+        }
+    }
+
+    @Test
+    public void illegalTolerances() {
+        for (double epsilon : new double[] { -1, Double.NaN, Double.POSITIVE_INFINITY }) {
+            try {
+                FloatTolerance.absolute(epsilon);
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        try {
+            FloatTolerance.ulps(-1);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void mismatchOfArrays() {
+        for (FloatTolerance tolerance : Arrays.asList(FloatTolerance.absolute(1e-4), FloatTolerance.relative(1e-6), FloatTolerance.ulps(4))) {
+            double[] expected = new double[1000];
+            double[] actual = new double[1000];
+            float[] expectedFloats = new float[1000];
+            float[] actualFloats = new float[1000];
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = i * 0.1 + 1;
+                actual[i] = i % 3 == 0 ? expected[i] : Math.nextUp(expected[i]);
+                expectedFloats[i] = (float) expected[i];
+                actualFloats[i] = i % 3 == 0 ? expectedFloats[i] : Math.nextDown(expectedFloats[i]);
+            }
+            expected[300] = actual[300] = Double.NaN;
+            expectedFloats[300] = actualFloats[300] = Float.NaN;
+            String message = tolerance.toString();
+            Assert.assertEquals(message, -1, tolerance.mismatch(expected, actual, 0));
+            Assert.assertEquals(message, -1, tolerance.mismatch(expectedFloats, actualFloats, 0));
+
+            actual[700] = 70.0;
+            actualFloats[700] = 70.0f;
+            Assert.assertEquals(message, 700, tolerance.mismatch(expected, actual, 0));
+            Assert.assertEquals(message, 700, tolerance.mismatch(expectedFloats, actualFloats, 0));
+            Assert.assertEquals(message, -1, tolerance.mismatch(expected, actual, 701));
+
+            actual[10] = Double.POSITIVE_INFINITY;
+            actualFloats[10] = Float.NaN;
+            Assert.assertEquals(message, 10, tolerance.mismatch(expected, actual, 0));
+            Assert.assertEquals(message, 10, tolerance.mismatch(expectedFloats, actualFloats, 0));
+        }
+    }
+
+    @Test
+    public void comparerWithTolerance() {
+        DeepComparer comparer = DeepComparer.builder()
+                .floatTolerance(FloatTolerance.absolute(0.001))
+                .build();
+        Assert.assertNull(comparer.findDifference(new Measurement(1.0, 2.0f), new Measurement(1.0005, 2.0005f)));
+        Assert.assertEquals("$root.getValue; Expected value: \"1.0\"; actual value: \"1.002\".",
+                comparer.findDifference(new Measurement(1.0, 2.0f), new Measurement(1.002, 2.0f)));
+        Assert.assertEquals("$root.getWeight; Expected value: \"2.0\"; actual value: \"2.002\".",
+                comparer.findDifference(new Measurement(1.0, 2.0f), new Measurement(1.0, 2.002f)));
+
+        // without tolerance
+        Assert.assertNotNull(new DeepComparer().findDifference(new Measurement(1.0, 2.0f), new Measurement(1.0005, 2.0f)));
+
+        // boxed values
+        Assert.assertTrue(comparer.isEqual(Arrays.asList(1.0, 2.0f), Arrays.asList(1.0001, 2.0001f)));
+        Assert.assertFalse(comparer.isEqual(Arrays.asList(1.0, 2.0f), Arrays.asList(1.0001, 2.01f)));
+    }
+
+    @Test
+    public void arraysWithTolerance() {
+        DeepComparer comparer = DeepComparer.builder()
+                .floatTolerance(FloatTolerance.ulps(1))
+                .build();
+        double[] expected = { 1.0, 2.0, 3.0 };
+        Assert.assertTrue(comparer.isEqual(expected, new double[] { Math.nextUp(1.0), 2.0, Math.nextDown(3.0) }));
+        Assert.assertEquals("$root.[2]; Expected value: \"3.0\"; actual value: \"3.5\".",
+                comparer.findDifference(expected, new double[] { 1.0, 2.0, 3.5 }));
+        Assert.assertTrue(comparer.isEqual(new float[] { 1.0f }, new float[] { Math.nextUp(1.0f) }));
+        // exclude paths make items compared as children
+        DeepComparer excluding = comparer.toBuilder().excludePaths("$root.[1]").build();
+        Assert.assertTrue(excluding.isEqual(expected, new double[] { Math.nextUp(1.0), 5.0, 3.0 }));
+    }
+
+    @Test
+    public void unorderedAndFingerprints() {
+        DeepComparer comparer = DeepComparer.builder()
+                .floatTolerance(FloatTolerance.absolute(0.01))
+                .unorderedTypes(Set.class)
+                .build();
+        Set<Double> expected = new HashSet<Double>(Arrays.asList(1.0, 2.0, 3.0));
+        Set<Double> actual = new HashSet<Double>(Arrays.asList(3.001, 1.001, 1.999));
+        Assert.assertTrue(comparer.isEqual(expected, actual));
+
+        Assert.assertEquals(comparer.getFingerprint(new Measurement(1.0, 2.0f)), comparer.getFingerprint(new Measurement(1.001, 2.001f)));
+        Assert.assertEquals(comparer.getFingerprint(new double[] { 1.0 }), comparer.getFingerprint(new double[] { 1.001 }));
+        Assert.assertNotEquals(comparer.getFingerprint(new double[] { 1.0 }), comparer.getFingerprint(new double[] { 1.0, 2.0 }));
+        Assert.assertNotEquals(new DeepComparer().getFingerprint(new double[] { 1.0 }), new DeepComparer().getFingerprint(new double[] { 1.001 }));
+    }
+
+    @Test
+    public void valueComparatorGoesBeforeTolerance() {
+        DeepComparer comparer = DeepComparer.builder()
+                .floatTolerance(FloatTolerance.absolute(0.01))
+                .valueComparator(Double.class, new ValueComparator<Double>() {
+                    @Override
+                    public boolean areEqual(Double expected, Double actual) {
+                        return Math.round(expected) == Math.round(actual);
+                    }
+                })
+                .build();
+        Assert.assertNull(comparer.findDifference(new Measurement(1.0, 2.0f), new Measurement(1.3, 2.001f)));
+        Assert.assertNotNull(comparer.findDifference(new Measurement(1.0, 2.0f), new Measurement(1.0, 2.1f)));
+        Assert.assertTrue(comparer.isEqual(new double[] { 1.0 }, new double[] { 0.6 }));
+        Assert.assertSame(comparer.getFloatTolerance(), comparer.toBuilder().build().getFloatTolerance());
+    }
+}
@@ -0,0 +1,126 @@
+package npakudin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestListAligner {
+
+    private static int[] seq(int... items) {
+        return items;
+    }
+
+    /**
+     * Aligned items are equal, indexes of actual increase
+     * @return number of aligned items
+     */
+    private static int check(int[] expected, int[] actual, int[] alignment) {
+        Assert.assertEquals(expected.length, alignment.length);
+        int last = -1;
+        int res = 0;
+        for (int i = 0; i < alignment.length; i++) {
+            if (alignment[i] < 0)
+                continue;
+            Assert.assertTrue(alignment[i] > last);
+            Assert.assertEquals(expected[i], actual[alignment[i]]);
+            last = alignment[i];
+            res++;
+        }
+        return res;
+    }
+
+    private static int lcs(int[] a, int[] b) {
+        int[][] res = new int[a.length + 1][b.length + 1];
+        for (int i = 1; i <= a.length; i++) {
+            for (int j = 1; j <= b.length; j++)
+                res[i][j] = a[i - 1] == b[j - 1] ? res[i - 1][j - 1] + 1 : Math.max(res[i - 1][j], res[i][j - 1]);
+        }
+        return res[a.length][b.length];
+    }
+
+    @Test
+    public void simpleEdits() {
+        ListAligner aligner = new ListAligner(10);
+        Assert.assertArrayEquals(seq(1, 2, 3), aligner.align(seq(1, 2, 3), seq(0, 1, 2, 3)));
+        Assert.assertArrayEquals(seq(-1, 0, 1), aligner.align(seq(0, 1, 2), seq(1, 2)));
+        Assert.assertArrayEquals(seq(0, -1, 2), aligner.align(seq(1, 2, 3), seq(1, 5, 3)));
+        Assert.assertArrayEquals(seq(-1, -1), aligner.align(seq(1, 2), seq(3, 4)));
+        Assert.assertArrayEquals(seq(), aligner.align(seq(), seq(1, 2)));
+        Assert.assertArrayEquals(seq(-1, -1), aligner.align(seq(1, 2), seq()));
+    }
+
+    @Test
+    public void minimalEdits() {
+        Random random = new Random(1);
+        ListAligner aligner = new ListAligner(1000);
+        for (int test = 0; test < 500; test++) {
+            int[] a = new int[random.nextInt(40)];
+            int[] b = new int[random.nextInt(40)];
+            int alphabet = 1 + random.nextInt(6);
+            for (int i = 0; i < a.length; i++)
+                a[i] = random.nextInt(alphabet);
+            for (int i = 0; i < b.length; i++)
+                b[i] = random.nextInt(alphabet);
+            Assert.assertEquals(lcs(a, b), check(a, b, aligner.align(a, b)));
+        }
+    }
+
+    @Test
+    public void largeListWithFewEdits() {
+        int[] expected = new int[200000];
+        for (int i = 0; i < expected.length; i++)
+            expected[i] = i;
+        int[] actual = new int[expected.length];
+        // item inserted at the start, two items deleted in the middle, one changed near the end
+        actual[0] = -1;
+        for (int i = 1, j = 0; i < actual.length; i++, j++) {
+            if (j == 100000)
+                j += 2;
+            actual[i] = j;
+        }
+        actual[actual.length - 10] = -2;
+
+        int[] alignment = new ListAligner(10).align(expected, actual);
+        Assert.assertNotNull(alignment);
+        Assert.assertEquals(expected.length - 2 - 1, check(expected, actual, alignment));
+        Assert.assertEquals(1, alignment[0]);
+        Assert.assertEquals(-1, alignment[100000]);
+        Assert.assertEquals(-1, alignment[100001]);
+    }
+
+    @Test
+    public void tooManyEdits() {
+        int[] expected = new int[1000];
+        int[] actual = new int[1000];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = i;
+            actual[i] = i % 10 == 0 ? -i - 1 : i;
+        }
+        // each changed item is deleted and inserted
+        Assert.assertNull(new ListAligner(199).align(expected, actual));
+        Assert.assertEquals(900, check(expected, actual, new ListAligner(200).align(expected, actual)));
+        Assert.assertNull(new ListAligner(0).align(seq(1), seq(2)));
+        Assert.assertArrayEquals(seq(0), new ListAligner(0).align(seq(1), seq(1)));
+    }
+    @Test
+    public void editsUpToLimitAreFound() {
+        // 3 edits: 1 and 3 are deleted, 4 is inserted
+        Assert.assertNull(new ListAligner(2).align(seq(1, 2, 3), seq(2, 4)));
+        Assert.assertEquals(1, check(seq(1, 2, 3), seq(2, 4), new ListAligner(3).align(seq(1, 2, 3), seq(2, 4))));
+
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            int[] expected = new int[random.nextInt(8)];
+            int[] actual = new int[random.nextInt(8)];
+            for (int j = 0; j < expected.length; j++)
+                expected[j] = random.nextInt(3);
+            for (int j = 0; j < actual.length; j++)
+                actual[j] = random.nextInt(3);
+            int edits = expected.length + actual.length - 2 * lcs(expected, actual);
+            Assert.assertNotNull(new ListAligner(edits).align(expected, actual));
+            if (edits > 0)
+                Assert.assertNull(new ListAligner(edits - 1).align(expected, actual));
+        }
+    }
+}
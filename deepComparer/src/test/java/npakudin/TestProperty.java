@@ -0,0 +1,147 @@
+package npakudin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestProperty {
+
+    class Primitives {
+        public boolean z;
+        public byte b;
+        public short s;
+        public char c;
+        public int i;
+        public long l;
+        public float f;
+        public double d;
+        public static final int STATIC = 1;
+        public String str;
+
+        public double getRatio() {
+            return d / 2;
+        }
+    }
+
+    public static class Getters {
+        public boolean getZ() {
+            return true;
+        }
+        public byte getB() {
+            return 1;
+        }
+        public short getS() {
+            return 2;
+        }
+        public char getC() {
+            return 'c';
+        }
+        public int getI() {
+            return 3;
+        }
+        public long getL() {
+            return 4;
+        }
+        public float getF() {
+            return 5.5f;
+        }
+        public double getD() {
+            return 6.5;
+        }
+        public String getStr() {
+            return "str";
+        }
+        public int[] getArray() {
+            return new int[] { 7 };
+        }
+        public String getFailure() {
+            throw new IllegalStateException("failure");
+        }
+    }
+
+    private static Property property(Class<?> clazz, String name) {
+        for (Property property : ClassDescriptor.forClass(clazz).getProperties()) {
+            if (property.getName().equals(name))
+                return property;
+        }
+        throw new AssertionError(name);
+    }
+
+    @Test
+    public void primitivePropertiesAreNotBoxed() {
+        Assert.assertTrue(property(Primitives.class, "i") instanceof Property.OfInt);
+        Assert.assertTrue(property(Primitives.class, "d") instanceof Property.OfDouble);
+        Assert.assertTrue(property(Primitives.class, "getRatio") instanceof Property.OfDouble);
+        Assert.assertFalse(property(Primitives.class, "str").isPrimitive());
+    }
+    @Test
+    public void getClassIsNotProperty() {
+        for (Property property : ClassDescriptor.forClass(Primitives.class).getProperties())
+            Assert.assertNotEquals("getClass", property.getName());
+    }
+    @Test
+    public void primitiveValues() {
+        Primitives expected = new Primitives();
+        Primitives actual = new Primitives();
+        expected.c = 'x';
+        actual.c = 'x';
+        expected.l = 10;
+        actual.l = 11;
+
+        Assert.assertTrue(property(Primitives.class, "c").primitiveEquals(expected, actual));
+        Assert.assertFalse(property(Primitives.class, "l").primitiveEquals(expected, actual));
+        Assert.assertEquals(10L, property(Primitives.class, "l").get(expected));
+    }
+    @Test
+    public void staticField() {
+        Assert.assertEquals(1, property(Primitives.class, "STATIC").get(new Primitives()));
+    }
+    @Test
+    public void doublesAreComparedAsDoubleEquals() {
+        Primitives expected = new Primitives();
+        Primitives actual = new Primitives();
+        expected.d = Double.NaN;
+        actual.d = Double.NaN;
+        Assert.assertTrue(property(Primitives.class, "d").primitiveEquals(expected, actual));
+
+        expected.d = 0.0;
+        actual.d = -0.0;
+        Assert.assertFalse(property(Primitives.class, "d").primitiveEquals(expected, actual));
+    }
+    @Test
+    public void differentPrimitiveFieldMessage() {
+        Primitives expected = new Primitives();
+        Primitives actual = new Primitives();
+        actual.b = 5;
+
+        Assert.assertEquals("$root.b; Expected value: \"0\"; actual value: \"5\".",
+                DeepComparer.getNotEqualPath(expected, actual));
+    }
+    @Test
+    public void gettersAreReadBySpunAccessors() {
+        Getters owner = new Getters();
+        Assert.assertEquals(true, property(Getters.class, "getZ").get(owner));
+        Assert.assertEquals((byte) 1, property(Getters.class, "getB").get(owner));
+        Assert.assertEquals((short) 2, property(Getters.class, "getS").get(owner));
+        Assert.assertEquals('c', property(Getters.class, "getC").get(owner));
+        Assert.assertEquals(3, ((Property.OfInt) property(Getters.class, "getI")).getInt(owner));
+        Assert.assertEquals(4L, property(Getters.class, "getL").get(owner));
+        Assert.assertEquals(5.5f, property(Getters.class, "getF").get(owner));
+        Assert.assertEquals(6.5, ((Property.OfDouble) property(Getters.class, "getD")).getDouble(owner), 0);
+        Assert.assertEquals("str", property(Getters.class, "getStr").get(owner));
+        Assert.assertArrayEquals(new int[] { 7 }, (int[]) property(Getters.class, "getArray").get(owner));
+
+        Assert.assertEquals("IntGetter", property(Getters.class, "getI").getClass().getSimpleName());
+        Assert.assertEquals("ObjectGetter", property(Getters.class, "getStr").getClass().getSimpleName());
+        // fields are read through MethodHandles
+        Assert.assertEquals("IntHandle", property(Primitives.class, "i").getClass().getSimpleName());
+    }
+    @Test
+    public void exceptionsOfGettersAreWrapped() {
+        try {
+            property(Getters.class, "getFailure").get(new Getters());
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
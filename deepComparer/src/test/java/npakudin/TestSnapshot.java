@@ -0,0 +1,472 @@
+package npakudin;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+public class TestSnapshot {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public enum Status { NEW, DONE }
+
+    public static class Key {
+        private final String name;
+
+        public Key(String name) {
+            this.name = name;
+        }
+        public String getName() {
+            return name;
+        }
+    }
+
+    // equals without toString: comparer uses equals, which can't be done with snapshot
+    public static class Entity {
+        private final int id;
+        private final String note;
+
+        public Entity(int id, String note) {
+            this.id = id;
+            this.note = note;
+        }
+        public int getId() {
+            return id;
+        }
+        public String getNote() {
+            return note;
+        }
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entity && ((Entity) o).id == id;
+        }
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+
+    public static class Item {
+        private final String name;
+        private final double price;
+        private final BigDecimal amount;
+
+        public Item(String name, double price, BigDecimal amount) {
+            this.name = name;
+            this.price = price;
+            this.amount = amount;
+        }
+        public String getName() {
+            return name;
+        }
+        public double getPrice() {
+            return price;
+        }
+        public BigDecimal getAmount() {
+            return amount;
+        }
+    }
+
+    public static class Order {
+        public int id;
+        public long created;
+        public boolean paid;
+        public char code;
+        public byte flags;
+        public short priority;
+        public float weight;
+        public String comment;
+        public Status status;
+        public Instant time;
+        public List<Item> items = new ArrayList<Item>();
+        public Item[] gifts = new Item[0];
+        public Map<String, Item> byName = new LinkedHashMap<String, Item>();
+        public Map<Key, String> byKey = new HashMap<Key, String>();
+        public Map<Status, Integer> counts = new EnumMap<Status, Integer>(Status.class);
+        public Set<BigDecimal> discounts = new TreeSet<BigDecimal>();
+        public double[] prices = new double[0];
+        public int[] quantities = new int[0];
+        public boolean[] checks = new boolean[0];
+    }
+
+    public static class Node {
+        private final String name;
+        private final List<Node> children = new ArrayList<Node>();
+        Node parent;
+
+        public Node(String name) {
+            this.name = name;
+        }
+        public String getName() {
+            return name;
+        }
+        public List<Node> getChildren() {
+            return children;
+        }
+        public Node getParent() {
+            return parent;
+        }
+        Node add(Node child) {
+            child.parent = this;
+            children.add(child);
+            return this;
+        }
+    }
+
+    static Order order(int id) {
+        Order res = new Order();
+        res.id = id;
+        res.created = 1L << 40;
+        res.paid = true;
+        res.code = '\u044f';
+        res.flags = -3;
+        res.priority = 300;
+        res.weight = 1.5f;
+        res.comment = "Order \ud83d\ude00 \ud800";
+        res.status = Status.NEW;
+        res.time = Instant.parse("2020-01-01T10:00:00Z");
+        Item shared = new Item("shared", 1.0, new BigDecimal("1.0"));
+        res.items.add(new Item("a", 10.5, new BigDecimal("2.50")));
+        res.items.add(shared);
+        res.items.add(null);
+        res.gifts = new Item[] { shared, new Item("b", 0, null) };
+        res.byName.put("a", res.items.get(0));
+        res.byName.put("none", null);
+        res.byKey.put(new Key("k1"), "v1");
+        res.byKey.put(new Key("k2"), "v2");
+        res.counts.put(Status.NEW, 1);
+        res.counts.put(Status.DONE, 2);
+        res.discounts.add(new BigDecimal("0.1"));
+        res.discounts.add(new BigDecimal("0.25"));
+        res.prices = new double[] { 1.0, 2.5, Double.NaN, -0.0 };
+        res.quantities = new int[] { 1, -1, Integer.MAX_VALUE };
+        res.checks = new boolean[] { true, false };
+        return res;
+    }
+
+    private Snapshot snapshot(Object value) throws IOException {
+        Path file = folder.newFile().toPath();
+        Snapshot.write(value, file);
+        return Snapshot.open(file);
+    }
+
+    private static List<String> messages(Differences differences) {
+        List<String> res = new ArrayList<String>();
+        for (Difference difference : differences)
+            res.add(difference.getMessage());
+        return res;
+    }
+
+    @Test
+    public void equalGraphs() throws IOException {
+        DeepComparer comparer = new DeepComparer();
+        try (Snapshot snapshot = snapshot(order(1))) {
+            Assert.assertNull(comparer.findSnapshotDifference(snapshot, order(1)));
+            Assert.assertTrue(comparer.findSnapshotDifferences(snapshot, order(1), new DifferenceCollector(10)));
+        }
+        try (Snapshot snapshot = snapshot(null)) {
+            Assert.assertNull(comparer.findSnapshotDifference(snapshot, null));
+            Assert.assertEquals("$root; expected is null, actual is \"1\".", comparer.findSnapshotDifference(snapshot, 1));
+        }
+        try (Snapshot snapshot = snapshot(Arrays.asList("a", 1, 2L, 'c', true, 1.5))) {
+            Assert.assertNull(comparer.findSnapshotDifference(snapshot, Arrays.asList("a", 1, 2L, 'c', true, 1.5)));
+        }
+    }
+
+    @Test
+    public void differencesAreTheSameAsOfComparer() throws IOException {
+        DeepComparer comparer = DeepComparer.builder().maxDifferences(100).build();
+        Order expected = order(1);
+        Order actual = order(2);
+        actual.code = 'x';
+        actual.weight = 2.5f;
+        actual.comment = "Order";
+        actual.status = Status.DONE;
+        actual.time = actual.time.plusSeconds(1);
+        actual.items.add(new Item("c", 1, null));
+        actual.gifts[1] = new Item("b", 1, new BigDecimal("2"));
+        actual.byName.remove("none");
+        actual.byName.put("other", null);
+        actual.byKey.put(findKey(actual.byKey, "k2"), "v3");
+        actual.counts.put(Status.DONE, 3);
+        actual.discounts = new TreeSet<BigDecimal>(Arrays.asList(new BigDecimal("0.1"), new BigDecimal("0.250")));
+        actual.prices[1] = 2.25;
+        actual.quantities[2] = 0;
+        actual.checks = new boolean[] { true };
+
+        List<String> res;
+        try (Snapshot snapshot = snapshot(expected)) {
+            res = messages(comparer.findAllSnapshotDifferences(snapshot, actual));
+        }
+        List<String> comparerRes = messages(comparer.findAllDifferences(expected, actual));
+        // keys without equals are in paths by their toString, it's of expected key in comparer and of actual one here
+        String keyDifference = "$root.byKey.[%s]; Expected value: \"v2\"; actual value: \"v3\".";
+        Assert.assertTrue(comparerRes.remove(String.format(keyDifference, findKey(expected.byKey, "k2"))));
+        Assert.assertTrue(res.remove(String.format(keyDifference, findKey(actual.byKey, "k2"))));
+        Assert.assertEquals(comparerRes, res);
+        Assert.assertEquals(15, res.size());
+    }
+
+    private static Key findKey(Map<Key, String> map, String name) {
+        for (Key key : map.keySet()) {
+            if (key.getName().equals(name))
+                return key;
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    @Test
+    public void nullsTypesAndSizes() throws IOException {
+        DeepComparer comparer = new DeepComparer();
+        try (Snapshot snapshot = snapshot(order(1))) {
+            Order actual = order(1);
+            actual.items = null;
+            Assert.assertEquals("$root.items; actual is null, expected is \"java.util.ArrayList of size 3\".",
+                    comparer.findSnapshotDifference(snapshot, actual));
+            Assert.assertEquals("$root; Expected type: class npakudin.TestSnapshot$Order; actual type: class java.lang.String.",
+                    comparer.findSnapshotDifference(snapshot, "order"));
+            actual = order(1);
+            actual.items = new LinkedList<Item>(actual.items);
+            Assert.assertNull(comparer.findSnapshotDifference(snapshot, actual));
+            Assert.assertEquals("$root.items; Expected type: class java.util.ArrayList; actual type: class java.util.LinkedList.",
+                    comparer.toBuilder().checkIterableTypesStrictly(true).build().findSnapshotDifference(snapshot, actual));
+            actual.items.remove(2);
+            Assert.assertEquals("$root.items; Size of expected: 3; size of actual: 2.", comparer.findSnapshotDifference(snapshot, actual));
+            actual = order(1);
+            actual.prices = new double[1];
+            Assert.assertEquals("$root.prices; Size of expected: 4; size of actual: 1.", comparer.findSnapshotDifference(snapshot, actual));
+        }
+    }
+
+    @Test
+    public void cyclesAndSharedObjects() throws IOException {
+        DeepComparer comparer = new DeepComparer();
+        Node expected = new Node("root").add(new Node("a").add(new Node("b"))).add(new Node("c"));
+        try (Snapshot snapshot = snapshot(expected)) {
+            Node actual = new Node("root").add(new Node("a").add(new Node("b"))).add(new Node("c"));
+            Assert.assertNull(comparer.findSnapshotDifference(snapshot, actual));
+            actual.getChildren().get(0).getChildren().get(0).parent = actual;
+            String res = comparer.findSnapshotDifference(snapshot, actual);
+            Assert.assertTrue(res, res.startsWith("$root.getChildren.[0].getChildren.[0].getParent."));
+            Assert.assertEquals(comparer.findDifference(expected, actual), res);
+        }
+
+        // list which contains itself
+        List<Object> list = new ArrayList<Object>();
+        list.add(list);
+        list.add("x");
+        List<Object> actual = new ArrayList<Object>();
+        actual.add(actual);
+        actual.add("x");
+        try (Snapshot snapshot = snapshot(list)) {
+            Assert.assertNull(comparer.findSnapshotDifference(snapshot, actual));
+        }
+    }
+
+    @Test
+    public void excludePathsAndTolerance() throws IOException {
+        Order actual = order(1);
+        actual.comment = "changed";
+        actual.prices[0] = 1.0001;
+        actual.items.set(0, new Item("a", 10.5001, new BigDecimal("2.50")));
+        actual.weight = 1.50001f;
+        try (Snapshot snapshot = snapshot(order(1))) {
+            DeepComparer comparer = DeepComparer.builder()
+                    .excludePaths("$root.comment")
+                    .floatTolerance(FloatTolerance.absolute(0.001))
+                    .build();
+            Assert.assertNull(comparer.findSnapshotDifference(snapshot, actual));
+            Assert.assertEquals(4, new DeepComparer().findAllSnapshotDifferences(snapshot, actual).size());
+
+            actual.prices[3] = 5;
+            Assert.assertEquals("$root.prices.[3]; Expected value: \"-0.0\"; actual value: \"5.0\".",
+                    comparer.findSnapshotDifference(snapshot, actual));
+            Assert.assertNull(comparer.toBuilder().excludePaths("$root.comment", "$root.prices.[3]").build()
+                    .findSnapshotDifference(snapshot, actual));
+        }
+    }
+
+    @Test
+    public void valuesAreRestoredForComparators() throws IOException {
+        Order actual = order(1);
+        actual.items.set(0, new Item("a", 10.5, new BigDecimal("2.5")));
+        actual.time = actual.time.plusMillis(300);
+        actual.discounts = new TreeSet<BigDecimal>(Arrays.asList(new BigDecimal("0.10"), new BigDecimal("0.25")));
+        try (Snapshot snapshot = snapshot(order(1))) {
+            Assert.assertEquals(3, new DeepComparer().findAllSnapshotDifferences(snapshot, actual).size());
+            DeepComparer comparer = DeepComparer.builder()
+                    .valueComparator(BigDecimal.class, ValueComparators.bigDecimalIgnoringScale())
+                    .valueComparator(Instant.class, ValueComparators.instantWithin(1, TimeUnit.SECONDS))
+                    .build();
+            Assert.assertNull(comparer.findSnapshotDifference(snapshot, actual));
+        }
+    }
+
+    @Test
+    public void keysOfMaps() throws IOException {
+        Map<Object, String> expected = new LinkedHashMap<Object, String>();
+        expected.put(new Key("k"), "key");
+        expected.put(Status.DONE, "enum");
+        expected.put(new BigDecimal("1.5"), "text");
+        expected.put(Arrays.asList(1, 2), "list");
+        expected.put(null, "null");
+        expected.put(7, "int");
+
+        Map<Object, String> actual = new LinkedHashMap<Object, String>();
+        actual.put(7, "int");
+        actual.put(null, "null");
+        actual.put(Arrays.asList(1, 2), "list");
+        actual.put(new BigDecimal("1.5"), "text");
+        actual.put(Status.DONE, "enum");
+        actual.put(new Key("k"), "key");
+        try (Snapshot snapshot = snapshot(expected)) {
+            DeepComparer comparer = new DeepComparer();
+            Assert.assertNull(comparer.findSnapshotDifference(snapshot, actual));
+            actual.remove(7);
+            actual.put(8, "int");
+            Assert.assertEquals("$root; actual object does not contain key 7.", comparer.findSnapshotDifference(snapshot, actual));
+            actual.remove(8);
+            actual.put(7, "int");
+            actual.put(Status.DONE, "other");
+            Assert.assertEquals("$root.[DONE]; Expected value: \"enum\"; actual value: \"other\".",
+                    comparer.findSnapshotDifference(snapshot, actual));
+        }
+    }
+
+    @Test
+    public void keyOfActualMapIsMatchedOnce() throws IOException {
+        Map<Key, Integer> expected = new LinkedHashMap<Key, Integer>();
+        expected.put(new Key("a"), 1);
+        expected.put(new Key("a"), 1);
+        Map<Key, Integer> actual = new LinkedHashMap<Key, Integer>();
+        actual.put(new Key("a"), 1);
+        actual.put(new Key("b"), 5);
+        DeepComparer comparer = new DeepComparer();
+        Assert.assertTrue(comparer.findDifference(expected, actual).startsWith("$root; actual object does not contain key"));
+        try (Snapshot snapshot = snapshot(expected)) {
+            Assert.assertEquals("$root; actual object does not contain key npakudin.TestSnapshot$Key.",
+                    comparer.findSnapshotDifference(snapshot, actual));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void largeMapOfKeysWithoutEquals() throws IOException {
+        Map<Key, List<Object>> expected = new LinkedHashMap<Key, List<Object>>();
+        Map<Key, List<Object>> actual = new LinkedHashMap<Key, List<Object>>();
+        for (int i = 0; i < 20000; i++)
+            expected.put(new Key("k" + i), Arrays.<Object>asList(i, Status.NEW));
+        Key first = new Key("k0");
+        for (int i = 20000 - 1; i > 0; i--)
+            actual.put(new Key("k" + i), Arrays.<Object>asList(i, Status.NEW));
+        actual.put(first, Arrays.<Object>asList(0, Status.NEW));
+        DeepComparer comparer = new DeepComparer();
+        try (Snapshot snapshot = snapshot(expected)) {
+            Assert.assertNull(comparer.findSnapshotDifference(snapshot, actual));
+
+            actual.put(first, Arrays.<Object>asList(0, Status.DONE));
+            Assert.assertEquals(String.format("$root.[%s].[1]; Expected value: \"NEW\"; actual value: \"DONE\".", first),
+                    comparer.findSnapshotDifference(snapshot, actual));
+        }
+    }
+
+    @Test
+    public void keysWithToleranceAreMatched() throws IOException {
+        Map<Item, Integer> expected = Collections.singletonMap(new Item("a", 10.5, new BigDecimal("2.50")), 1);
+        Map<Item, Integer> actual = Collections.singletonMap(new Item("a", 10.5001, new BigDecimal("2.50")), 1);
+        DeepComparer comparer = DeepComparer.builder()
+                .floatTolerance(FloatTolerance.absolute(0.001))
+                .build();
+        Assert.assertNull(comparer.findDifference(expected, actual));
+        try (Snapshot snapshot = snapshot(expected)) {
+            Assert.assertNull(comparer.findSnapshotDifference(snapshot, actual));
+            Assert.assertNotNull(new DeepComparer().findSnapshotDifference(snapshot, actual));
+        }
+    }
+
+    @Test
+    public void smallSegments() throws IOException {
+        List<Object> expected = new ArrayList<Object>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 300; i++)
+            sb.append((char) ('a' + i % 26)).append('\u0436');
+        for (int i = 0; i < 200; i++) {
+            Order order = order(i);
+            order.comment = sb.toString() + i;
+            order.prices = new double[100 + i];
+            for (int j = 0; j < order.prices.length; j++)
+                order.prices[j] = j * 0.5;
+            expected.add(order);
+        }
+        Path file = folder.newFile().toPath();
+        Snapshot.write(expected, file);
+        try (Snapshot snapshot = Snapshot.open(file, 8, 64)) {
+            Assert.assertTrue(snapshot.getSize() > 1 << 16);
+            List<Object> actual = new ArrayList<Object>();
+            for (Object order : expected)
+                actual.add(order);
+            DeepComparer comparer = new DeepComparer();
+            // items are the same objects, but they are compared as others
+            Assert.assertNull(comparer.findSnapshotDifference(snapshot, actual));
+
+            Order changed = order(150);
+            changed.comment = sb.toString() + 150;
+            changed.prices = ((Order) expected.get(150)).prices.clone();
+            changed.prices[201] = 1;
+            actual.set(150, changed);
+            Assert.assertEquals("$root.[150].prices.[201]; Expected value: \"100.5\"; actual value: \"1.0\".",
+                    comparer.findSnapshotDifference(snapshot, actual));
+        }
+    }
+
+    @Test
+    public void deepChain() throws IOException {
+        Node expected = new Node("0");
+        Node last = expected;
+        for (int i = 1; i < 100000; i++) {
+            Node next = new Node(String.valueOf(i));
+            last.add(next);
+            last = next;
+        }
+        try (Snapshot snapshot = snapshot(expected)) {
+            Assert.assertNull(new DeepComparer().findSnapshotDifference(snapshot, expected));
+        }
+    }
+
+    @Test
+    public void objectWithEqualsOnlyIsNotSaved() throws IOException {
+        Assert.assertNull(DeepComparer.builder().build().findDifference(new Entity(1, "x"), new Entity(1, "y")));
+
+        Path file = folder.newFile().toPath();
+        try {
+            Snapshot.write(Arrays.asList("a", new Entity(1, "x")), file);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Class npakudin.TestSnapshot$Entity overrides equals, but not toString, " +
+                    "its objects can't be saved to snapshot.", e.getMessage());
+        }
+        Assert.assertEquals(0, Files.size(file));
+    }
+
+    @Test
+    public void notSnapshot() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, "not a snapshot at all".getBytes(StandardCharsets.UTF_8));
+        try {
+            Snapshot.open(file).close();
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().endsWith("is not a snapshot."));
+        }
+    }
+}
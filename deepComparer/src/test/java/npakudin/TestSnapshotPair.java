@@ -0,0 +1,250 @@
+package npakudin;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static npakudin.TestSnapshot.*;
+
+public class TestSnapshotPair {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Snapshot snapshot(Object value) throws IOException {
+        Path file = folder.newFile().toPath();
+        Snapshot.write(value, file);
+        return Snapshot.open(file);
+    }
+
+    private static List<String> messages(Differences differences) {
+        List<String> res = new ArrayList<String>();
+        for (Difference difference : differences)
+            res.add(difference.getMessage());
+        return res;
+    }
+
+    @Test
+    public void equalSnapshots() throws IOException {
+        DeepComparer comparer = new DeepComparer();
+        try (Snapshot expected = snapshot(order(1)); Snapshot actual = snapshot(order(1))) {
+            Assert.assertNull(comparer.findDifferenceOfSnapshots(expected, actual));
+            Assert.assertTrue(comparer.findDifferencesOfSnapshots(expected, actual, new DifferenceCollector(10)));
+            Assert.assertNull(comparer.findDifferenceOfSnapshots(expected, expected));
+        }
+        try (Snapshot expected = snapshot(null); Snapshot actual = snapshot("a")) {
+            Assert.assertNull(comparer.findDifferenceOfSnapshots(expected, expected));
+            Assert.assertEquals("$root; expected is null, actual is \"a\".", comparer.findDifferenceOfSnapshots(expected, actual));
+            Assert.assertEquals("$root; actual is null, expected is \"a\".", comparer.findDifferenceOfSnapshots(actual, expected));
+        }
+    }
+
+    @Test
+    public void differencesAreTheSameAsOfSnapshotComparison() throws IOException {
+        DeepComparer comparer = DeepComparer.builder().maxDifferences(100).build();
+        Order actual = order(2);
+        actual.code = 'x';
+        actual.weight = 2.5f;
+        actual.comment = "Order";
+        actual.status = Status.DONE;
+        actual.time = actual.time.plusSeconds(1);
+        actual.items.add(new Item("c", 1, null));
+        actual.gifts[1] = new Item("b", 1, new BigDecimal("2"));
+        actual.byName.remove("none");
+        actual.byName.put("other", null);
+        actual.counts.put(Status.DONE, 3);
+        actual.discounts = new TreeSet<BigDecimal>(Arrays.asList(new BigDecimal("0.1"), new BigDecimal("0.250")));
+        actual.prices[1] = 2.25;
+        actual.quantities[2] = 0;
+        actual.checks = new boolean[] { true };
+
+        try (Snapshot expected = snapshot(order(1)); Snapshot actualSnapshot = snapshot(actual)) {
+            List<String> res = messages(comparer.findAllDifferencesOfSnapshots(expected, actualSnapshot));
+            Assert.assertEquals(messages(comparer.findAllSnapshotDifferences(expected, actual)), res);
+            Assert.assertEquals(15, res.size());
+        }
+    }
+
+    @Test
+    public void nullsTypesAndSizes() throws IOException {
+        DeepComparer comparer = new DeepComparer();
+        Order actual = order(1);
+        actual.items = new LinkedList<Item>(actual.items);
+        try (Snapshot expected = snapshot(order(1)); Snapshot linked = snapshot(actual)) {
+            Assert.assertNull(comparer.findDifferenceOfSnapshots(expected, linked));
+            Assert.assertEquals("$root.items; Expected type: class java.util.ArrayList; actual type: class java.util.LinkedList.",
+                    comparer.toBuilder().checkIterableTypesStrictly(true).build().findDifferenceOfSnapshots(expected, linked));
+        }
+        actual.items.remove(2);
+        actual.prices = null;
+        try (Snapshot expected = snapshot(order(1)); Snapshot shorter = snapshot(actual)) {
+            Assert.assertEquals(Arrays.asList(
+                    "$root.items; Size of expected: 3; size of actual: 2.",
+                    "$root.prices; actual is null, expected is \"[D of size 4\"."),
+                    messages(comparer.toBuilder().maxDifferences(10).build().findAllDifferencesOfSnapshots(expected, shorter)));
+        }
+        try (Snapshot expected = snapshot(order(1)); Snapshot string = snapshot("order")) {
+            Assert.assertEquals("$root; Expected type: class npakudin.TestSnapshot$Order; actual type: class java.lang.String.",
+                    comparer.findDifferenceOfSnapshots(expected, string));
+        }
+    }
+
+    @Test
+    public void cycles() throws IOException {
+        DeepComparer comparer = new DeepComparer();
+        Node expected = new Node("root").add(new Node("a").add(new Node("b"))).add(new Node("c"));
+        Node actual = new Node("root").add(new Node("a").add(new Node("b"))).add(new Node("c"));
+        try (Snapshot expectedSnapshot = snapshot(expected); Snapshot actualSnapshot = snapshot(actual)) {
+            Assert.assertNull(comparer.findDifferenceOfSnapshots(expectedSnapshot, actualSnapshot));
+        }
+        actual.getChildren().get(0).getChildren().get(0).parent = actual;
+        try (Snapshot expectedSnapshot = snapshot(expected); Snapshot actualSnapshot = snapshot(actual)) {
+            Assert.assertEquals(comparer.findDifference(expected, actual),
+                    comparer.findDifferenceOfSnapshots(expectedSnapshot, actualSnapshot));
+        }
+    }
+
+    @Test
+    public void mapsInAnotherOrder() throws IOException {
+        Map<Object, String> expected = new LinkedHashMap<Object, String>();
+        expected.put(new Key("k"), "key");
+        expected.put(Status.DONE, "enum");
+        expected.put(new BigDecimal("1.5"), "text");
+        expected.put(Arrays.asList(1, 2), "list");
+        expected.put(null, "null");
+        expected.put(7, "int");
+
+        Map<Object, String> actual = new LinkedHashMap<Object, String>();
+        actual.put(7, "int");
+        actual.put(null, "null");
+        actual.put(Arrays.asList(1, 2), "list");
+        actual.put(new BigDecimal("1.5"), "text");
+        actual.put(Status.DONE, "other");
+        actual.put(new Key("k"), "key");
+        DeepComparer comparer = new DeepComparer();
+        try (Snapshot expectedSnapshot = snapshot(expected); Snapshot actualSnapshot = snapshot(actual)) {
+            Assert.assertEquals("$root.[DONE]; Expected value: \"enum\"; actual value: \"other\".",
+                    comparer.findDifferenceOfSnapshots(expectedSnapshot, actualSnapshot));
+        }
+        actual.put(Status.DONE, "enum");
+        actual.remove(7);
+        actual.put(8, "int");
+        try (Snapshot expectedSnapshot = snapshot(expected); Snapshot actualSnapshot = snapshot(actual)) {
+            Assert.assertEquals("$root; actual object does not contain key 7.",
+                    comparer.findDifferenceOfSnapshots(expectedSnapshot, actualSnapshot));
+        }
+    }
+
+    @Test
+    public void keyOfActualMapIsMatchedOnce() throws IOException {
+        Map<Key, Integer> expected = new LinkedHashMap<Key, Integer>();
+        expected.put(new Key("a"), 1);
+        expected.put(new Key("a"), 1);
+        Map<Key, Integer> actual = new LinkedHashMap<Key, Integer>();
+        actual.put(new Key("a"), 1);
+        actual.put(new Key("b"), 5);
+        try (Snapshot expectedSnapshot = snapshot(expected); Snapshot actualSnapshot = snapshot(actual)) {
+            Assert.assertEquals("$root; actual object does not contain key npakudin.TestSnapshot$Key.",
+                    new DeepComparer().findDifferenceOfSnapshots(expectedSnapshot, actualSnapshot));
+        }
+    }
+
+    @Test
+    public void largeMapsInReverseOrder() throws IOException {
+        Map<Object, Integer> expected = new LinkedHashMap<Object, Integer>();
+        Map<Object, Integer> actual = new LinkedHashMap<Object, Integer>();
+        for (int i = 0; i < 100000; i++)
+            expected.put("k" + i, i);
+        expected.put(Status.NEW, -1);
+        expected.put(null, -2);
+        actual.put(null, -2);
+        actual.put(Status.NEW, -1);
+        for (int i = 100000 - 1; i >= 0; i--)
+            actual.put("k" + i, i == 500 ? 0 : i);
+        try (Snapshot expectedSnapshot = snapshot(expected); Snapshot actualSnapshot = snapshot(actual)) {
+            DeepComparer comparer = new DeepComparer();
+            Assert.assertNull(comparer.findDifferenceOfSnapshots(expectedSnapshot, expectedSnapshot));
+            Assert.assertEquals("$root.[k500]; Expected value: \"500\"; actual value: \"0\".",
+                    comparer.findDifferenceOfSnapshots(expectedSnapshot, actualSnapshot));
+        }
+        actual.remove("k7");
+        actual.put(7, 7);
+        try (Snapshot expectedSnapshot = snapshot(expected); Snapshot actualSnapshot = snapshot(actual)) {
+            Assert.assertEquals(Arrays.asList(
+                    "$root; actual object does not contain key k7.",
+                    "$root.[k500]; Expected value: \"500\"; actual value: \"0\"."),
+                    messages(new DeepComparer().findAllDifferencesOfSnapshots(expectedSnapshot, actualSnapshot)));
+        }
+    }
+
+    @Test
+    public void excludePathsToleranceAndComparators() throws IOException {
+        Order actual = order(1);
+        actual.comment = "changed";
+        actual.prices[0] = 1.0001;
+        actual.weight = 1.50001f;
+        actual.items.set(0, new Item("a", 10.5, new BigDecimal("2.5")));
+        actual.time = actual.time.plusMillis(300);
+        try (Snapshot expected = snapshot(order(1)); Snapshot actualSnapshot = snapshot(actual)) {
+            Assert.assertEquals(5, new DeepComparer().findAllDifferencesOfSnapshots(expected, actualSnapshot).size());
+            DeepComparer comparer = DeepComparer.builder()
+                    .excludePaths("$root.comment")
+                    .floatTolerance(FloatTolerance.absolute(0.001))
+                    .valueComparator(BigDecimal.class, ValueComparators.bigDecimalIgnoringScale())
+                    .valueComparator(Instant.class, ValueComparators.instantWithin(1, TimeUnit.SECONDS))
+                    .build();
+            Assert.assertNull(comparer.findDifferenceOfSnapshots(expected, actualSnapshot));
+        }
+    }
+
+    @Test
+    public void differentSegments() throws IOException {
+        List<Object> expected = new ArrayList<Object>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 300; i++)
+            sb.append((char) ('a' + i % 26)).append('ж');
+        for (int i = 0; i < 200; i++) {
+            Order order = order(i);
+            order.comment = sb.toString() + i;
+            order.prices = new double[100 + i];
+            for (int j = 0; j < order.prices.length; j++)
+                order.prices[j] = j * 0.5;
+            expected.add(order);
+        }
+        Path expectedFile = folder.newFile().toPath();
+        Snapshot.write(expected, expectedFile);
+        ((Order) expected.get(150)).prices[201] = 1;
+        Path actualFile = folder.newFile().toPath();
+        Snapshot.write(expected, actualFile);
+
+        DeepComparer comparer = new DeepComparer();
+        try (Snapshot expectedSnapshot = Snapshot.open(expectedFile, 8, 64);
+             Snapshot actualSnapshot = Snapshot.open(actualFile, 10, 200)) {
+            Assert.assertNull(comparer.findDifferenceOfSnapshots(expectedSnapshot, expectedSnapshot));
+            Assert.assertEquals("$root.[150].prices.[201]; Expected value: \"100.5\"; actual value: \"1.0\".",
+                    comparer.findDifferenceOfSnapshots(expectedSnapshot, actualSnapshot));
+        }
+    }
+
+    @Test
+    public void deepChain() throws IOException {
+        Node expected = new Node("0");
+        Node last = expected;
+        for (int i = 1; i < 100000; i++) {
+            Node next = new Node(String.valueOf(i));
+            last.add(next);
+            last = next;
+        }
+        try (Snapshot snapshot = snapshot(expected)) {
+            Assert.assertNull(new DeepComparer().findDifferenceOfSnapshots(snapshot, snapshot));
+        }
+    }
+}
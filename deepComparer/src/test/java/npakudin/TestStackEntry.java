@@ -0,0 +1,35 @@
+package npakudin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestStackEntry {
+    @Test
+    public void rootPath() {
+        Assert.assertEquals("$root", new StackEntry(null, "$root", null, null).getPath());
+    }
+    @Test
+    public void pathOfSegments() {
+        StackEntry root = new StackEntry(null, "$root", null, null);
+        StackEntry children = new StackEntry(root, "getChildren", null, null);
+        StackEntry item = StackEntry.forIndex(children, 10, null, null);
+        StackEntry value = StackEntry.forKey(item, "key", null, null);
+
+        Assert.assertEquals("$root.getChildren.[10].[key]", value.getPath());
+    }
+    @Test
+    public void entryIsReused() {
+        StackEntry root = new StackEntry(null, "$root", null, null);
+        StackEntry child = new StackEntry(root, "x", null, null);
+        Assert.assertEquals("$root.x", child.getPath());
+
+        child.setIndex(3, null, null);
+        Assert.assertEquals("$root.[3]", child.getPath());
+        Assert.assertEquals(1, child.getDepth());
+    }
+    @Test
+    public void nullKey() {
+        StackEntry root = new StackEntry(null, "$root", null, null);
+        Assert.assertEquals("$root.[null]", StackEntry.forKey(root, null, null, null).getPath());
+    }
+}
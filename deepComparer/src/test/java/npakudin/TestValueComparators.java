@@ -0,0 +1,181 @@
+package npakudin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+public class TestValueComparators {
+
+    public interface Id {
+        String getValue();
+    }
+
+    public static class UserId implements Id {
+        private final String value;
+
+        public UserId(String value) {
+            this.value = value;
+        }
+        public String getValue() {
+            return value;
+        }
+    }
+
+    public static class AdminId extends UserId {
+        public AdminId(String value) {
+            super(value);
+        }
+    }
+
+    public static class Order {
+        private final Id id;
+        private final BigDecimal amount;
+        private final Instant created;
+
+        public Order(Id id, BigDecimal amount, Instant created) {
+            this.id = id;
+            this.amount = amount;
+            this.created = created;
+        }
+        public Id getId() {
+            return id;
+        }
+        public BigDecimal getAmount() {
+            return amount;
+        }
+        public Instant getCreated() {
+            return created;
+        }
+    }
+
+    private static final ValueComparator<Id> ID_IGNORING_CASE = new ValueComparator<Id>() {
+        @Override
+        public boolean areEqual(Id expected, Id actual) {
+            return expected.getValue().equalsIgnoreCase(actual.getValue());
+        }
+    };
+
+    private static final Instant NOW = Instant.parse("2020-01-01T10:00:00Z");
+
+    private static DeepComparer comparer() {
+        return DeepComparer.builder()
+                .valueComparator(BigDecimal.class, ValueComparators.bigDecimalIgnoringScale())
+                .valueComparator(Instant.class, ValueComparators.instantWithin(1, TimeUnit.SECONDS))
+                .valueComparator(Id.class, ID_IGNORING_CASE)
+                .build();
+    }
+
+    @Test
+    public void bigDecimalIgnoringScale() {
+        ValueComparator<BigDecimal> comparator = ValueComparators.bigDecimalIgnoringScale();
+        Assert.assertTrue(comparator.areEqual(new BigDecimal("1.0"), new BigDecimal("1.00")));
+        Assert.assertFalse(comparator.areEqual(new BigDecimal("1.0"), new BigDecimal("1.01")));
+    }
+
+    @Test
+    public void instantWithin() {
+        ValueComparator<Instant> comparator = ValueComparators.instantWithin(100, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(comparator.areEqual(NOW, NOW.plusMillis(100)));
+        Assert.assertTrue(comparator.areEqual(NOW.plusMillis(100), NOW));
+        Assert.assertFalse(comparator.areEqual(NOW, NOW.minusMillis(101)));
+        Assert.assertTrue(ValueComparators.instantWithin(0, TimeUnit.SECONDS).areEqual(Instant.MIN, Instant.MIN));
+    }
+
+    @Test
+    public void comparatorOfNearestType() {
+        ValueComparator<Object> byClass = new ValueComparator<Object>() {
+            @Override
+            public boolean areEqual(Object expected, Object actual) {
+                return true;
+            }
+        };
+        DeepComparer comparer = DeepComparer.builder()
+                .valueComparator(Id.class, ID_IGNORING_CASE)
+                .valueComparator(UserId.class, byClass)
+                .build();
+        Assert.assertSame(byClass, comparer.getValueComparator(UserId.class));
+        // superclass goes before interface
+        Assert.assertSame(byClass, comparer.getValueComparator(AdminId.class));
+        Assert.assertSame(ID_IGNORING_CASE, comparer.getValueComparator(Id.class));
+        Assert.assertNull(comparer.getValueComparator(String.class));
+        Assert.assertNull(new DeepComparer().getValueComparator(UserId.class));
+    }
+
+    @Test
+    public void registrations() {
+        DeepComparer comparer = comparer();
+        Assert.assertEquals(Arrays.<Class<?>>asList(BigDecimal.class, Instant.class, Id.class),
+                new ArrayList<Class<?>>(comparer.getValueComparators().keySet()));
+
+        DeepComparer copy = comparer.toBuilder().valueComparator(Instant.class, null).build();
+        Assert.assertEquals(Arrays.<Class<?>>asList(BigDecimal.class, Id.class),
+                new ArrayList<Class<?>>(copy.getValueComparators().keySet()));
+        Assert.assertEquals(3, comparer.getValueComparators().size());
+
+        try {
+            DeepComparer.builder().valueComparator(int.class, new ValueComparator<Integer>() {
+                @Override
+                public boolean areEqual(Integer expected, Integer actual) {
+                    return true;
+                }
+            });
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void propertiesAreComparedByComparators() {
+        DeepComparer comparer = comparer();
+        Order expected = new Order(new UserId("a1"), new BigDecimal("10.5"), NOW);
+        Assert.assertNull(comparer.findDifference(expected,
+                new Order(new UserId("A1"), new BigDecimal("10.50"), NOW.plusMillis(500))));
+
+        Assert.assertEquals("$root.getAmount; Expected value: \"10.5\"; actual value: \"10.6\".",
+                comparer.findDifference(expected, new Order(new UserId("a1"), new BigDecimal("10.6"), NOW)));
+        Assert.assertTrue(comparer.findDifference(expected, new Order(new UserId("a1"), new BigDecimal("10.5"), NOW.plusSeconds(2)))
+                .startsWith("$root.getCreated; "));
+
+        // without comparators
+        Assert.assertTrue(new DeepComparer().findDifference(expected, new Order(new UserId("a1"), new BigDecimal("10.50"), NOW))
+                .startsWith("$root.getAmount; "));
+    }
+
+    @Test
+    public void unorderedItemsAndKeys() {
+        DeepComparer comparer = comparer().toBuilder().unorderedTypes(Set.class).build();
+        Set<BigDecimal> expected = new HashSet<BigDecimal>(Arrays.asList(new BigDecimal("1.0"), new BigDecimal("2"), new BigDecimal("3.5")));
+        Set<BigDecimal> actual = new HashSet<BigDecimal>(Arrays.asList(new BigDecimal("3.50"), new BigDecimal("1.000"), new BigDecimal("2.0")));
+        Assert.assertTrue(comparer.isEqual(expected, actual));
+        actual.add(new BigDecimal("4"));
+        Assert.assertFalse(comparer.isEqual(expected, actual));
+
+        Map<BigDecimal, String> expectedMap = new HashMap<BigDecimal, String>();
+        expectedMap.put(new BigDecimal("1.0"), "one");
+        expectedMap.put(new BigDecimal("2"), "two");
+        Map<BigDecimal, String> actualMap = new HashMap<BigDecimal, String>();
+        actualMap.put(new BigDecimal("2.00"), "two");
+        actualMap.put(new BigDecimal("1"), "one");
+        Assert.assertTrue(comparer.isEqual(expectedMap, actualMap));
+        actualMap.put(new BigDecimal("1"), "uno");
+        Assert.assertFalse(comparer.isEqual(expectedMap, actualMap));
+    }
+
+    @Test
+    public void fingerprintsOfEqualValues() {
+        DeepComparer comparer = comparer();
+        Order expected = new Order(new UserId("a1"), new BigDecimal("10.5"), NOW);
+        Order actual = new Order(new UserId("A1"), new BigDecimal("10.50"), NOW.plusMillis(1));
+        Assert.assertEquals(comparer.getFingerprint(expected), comparer.getFingerprint(actual));
+        Assert.assertNotEquals(new DeepComparer().getFingerprint(expected), new DeepComparer().getFingerprint(actual));
+
+        Map<BigDecimal, String> expectedMap = Collections.singletonMap(new BigDecimal("1.0"), "one");
+        Map<BigDecimal, String> actualMap = Collections.singletonMap(new BigDecimal("1"), "one");
+        Assert.assertEquals(comparer.getFingerprint(expectedMap), comparer.getFingerprint(actualMap));
+    }
+}
@@ -0,0 +1,48 @@
+package npakudin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class TestValueRenderer {
+
+    @Test
+    public void shortValuesAreTheSameAsToString() {
+        List<Object> list = new ArrayList<Object>(Arrays.asList(1, "a", null, Arrays.asList(2, 3)));
+        list.add(list);
+        Map<String, Object> map = new TreeMap<String, Object>();
+        map.put("a", 1);
+        map.put("b", Collections.singletonMap("c", 2));
+        Set<Integer> set = Collections.unmodifiableSet(new LinkedHashSet<Integer>(Arrays.asList(1, 2)));
+
+        for (Object value : new Object[] { null, "abc", 12, list, map, set, new int[0], new Object() })
+            Assert.assertEquals(String.valueOf(value), ValueRenderer.render(value, 1000));
+    }
+    @Test
+    public void longValuesAreTruncated() {
+        Assert.assertEquals("abc...", ValueRenderer.render("abcdef", 3));
+        Assert.assertEquals("abc", ValueRenderer.render("abc", 3));
+        Assert.assertEquals("[1, 2...", ValueRenderer.render(Arrays.asList(1, 2, 3), 5));
+        Map<String, Integer> map = new TreeMap<String, Integer>();
+        map.put("a", 1);
+        map.put("b", 2);
+        Assert.assertEquals("{a=1, ...", ValueRenderer.render(map, 6));
+    }
+    @Test(timeout = 10000)
+    public void itemsAfterLimitAreNotRendered() {
+        final int[] rendered = new int[1];
+        List<Object> list = new ArrayList<Object>();
+        for (int i = 0; i < 1000000; i++) {
+            list.add(new Object() {
+                @Override
+                public String toString() {
+                    rendered[0]++;
+                    return "item";
+                }
+            });
+        }
+        Assert.assertEquals("[item, ite...", ValueRenderer.render(list, 10));
+        Assert.assertEquals(2, rendered[0]);
+    }
+}
@@ -0,0 +1,29 @@
+package npakudin.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestArrays2 {
+
+    @Test
+    public void equalArrays() {
+        Assert.assertEquals(-1, Arrays2.mismatch(new int[] { 1, 2, 3 }, new int[] { 1, 2, 3 }, 0));
+        Assert.assertEquals(-1, Arrays2.mismatch(new boolean[0], new boolean[0], 0));
+    }
+    @Test
+    public void firstDifferentIndex() {
+        Assert.assertEquals(2, Arrays2.mismatch(new long[] { 1, 2, 3, 4 }, new long[] { 1, 2, 0, 0 }, 0));
+        Assert.assertEquals(3, Arrays2.mismatch(new long[] { 1, 2, 3, 4 }, new long[] { 1, 2, 0, 0 }, 3));
+        Assert.assertEquals(-1, Arrays2.mismatch(new char[] { 'a', 'b' }, new char[] { 'x', 'b' }, 1));
+    }
+    @Test
+    public void doublesAreComparedAsDoubleEquals() {
+        Assert.assertEquals(-1, Arrays2.mismatch(new double[] { Double.NaN }, new double[] { Double.NaN }, 0));
+        Assert.assertEquals(0, Arrays2.mismatch(new double[] { 0.0 }, new double[] { -0.0 }, 0));
+        Assert.assertEquals(0, Arrays2.mismatch(new float[] { 0.0f }, new float[] { -0.0f }, 0));
+    }
+    @Test(expected = IllegalArgumentException.class)
+    public void arraysOfObjectsAreNotSupported() {
+        Arrays2.mismatch(new Object[1], new Object[1], 0);
+    }
+}
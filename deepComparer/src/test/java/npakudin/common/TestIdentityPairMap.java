@@ -0,0 +1,59 @@
+package npakudin.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestIdentityPairMap {
+
+    @Test
+    public void pairsAreComparedByIdentity() {
+        IdentityPairMap map = new IdentityPairMap();
+        String a = new String("a");
+        String b = new String("b");
+        map.put(a, b, 1);
+
+        Assert.assertEquals(1, map.get(a, b));
+        Assert.assertFalse(map.containsKey(new String("a"), b));
+        Assert.assertFalse(map.containsKey(b, a));
+        Assert.assertEquals(-1, map.get(b, a));
+    }
+    @Test
+    public void putReplacesValue() {
+        IdentityPairMap map = new IdentityPairMap();
+        Object a = new Object();
+        map.put(a, a, 1);
+        map.put(a, a, 2);
+        Assert.assertEquals(2, map.get(a, a));
+        Assert.assertEquals(1, map.size());
+    }
+    @Test
+    public void manyPairsAndRemoving() {
+        IdentityPairMap map = new IdentityPairMap();
+        List<Object> objects = new ArrayList<Object>();
+        for (int i = 0; i < 1000; i++)
+            objects.add(new Object());
+
+        for (int i = 0; i < 999; i++)
+            map.put(objects.get(i), objects.get(i + 1), i);
+        Assert.assertEquals(999, map.size());
+
+        for (int i = 0; i < 999; i += 2)
+            Assert.assertTrue(map.remove(objects.get(i), objects.get(i + 1)));
+        Assert.assertFalse(map.remove(objects.get(0), objects.get(1)));
+
+        for (int i = 0; i < 999; i++)
+            Assert.assertEquals(i % 2 == 0 ? -1 : i, map.get(objects.get(i), objects.get(i + 1)));
+    }
+    @Test
+    public void clear() {
+        IdentityPairMap map = new IdentityPairMap();
+        Object a = new Object();
+        map.put(a, a, 1);
+        map.clear();
+        Assert.assertEquals(0, map.size());
+        Assert.assertFalse(map.containsKey(a, a));
+    }
+}
@@ -0,0 +1,205 @@
+package npakudin.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates [binary name]_DeepComparator for each class marked with npakudin.DeepComparable.
+ * Its properties are the same as ClassDescriptor finds by reflection - public fields and public getters
+ * without parameters (except getClass), including inherited ones, but they read fields and call getters directly.
+ * Members, which are not accessible from package of the class (e.g. declared in package-private class
+ * of other package), and void getters are skipped - they are read by reflection at runtime.
+ */
+@SupportedAnnotationTypes(DeepComparableProcessor.ANNOTATION)
+public class DeepComparableProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "npakudin.DeepComparable";
+
+    /**
+     * The same as GeneratedComparator.SUFFIX, the processor does not depend on the library
+     */
+    static final String SUFFIX = "_DeepComparator";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                String error = checkType(element);
+                if (error != null) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, error, element);
+                    continue;
+                }
+                try {
+                    generate((TypeElement) element);
+                } catch (IOException e) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            String.format("Can't generate comparator: %s", e), element);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return null if comparator can be generated for the type, otherwise error
+     */
+    private static String checkType(Element element) {
+        // objects are compared by their runtime classes, so interfaces are useless; enums and records use equals
+        if (element.getKind() != ElementKind.CLASS)
+            return "@DeepComparable is applicable to classes only.";
+
+        TypeElement type = (TypeElement) element;
+        if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS)
+            return "@DeepComparable is not applicable to local and anonymous classes.";
+
+        // generated class is in the same package and casts objects to the class
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE))
+                return String.format("Class %s must not be private.", e.getSimpleName());
+        }
+        return null;
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        // Outer$Inner_DeepComparator is a valid name of top-level class
+        String simpleName = (pkg.isUnnamed() ? binaryName : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+        String className = type.getQualifiedName().toString();
+
+        List<String> properties = new ArrayList<String>();
+        for (Element member : processingEnv.getElementUtils().getAllMembers(type)) {
+            if (!member.getModifiers().contains(Modifier.PUBLIC) || !isAccessible(member.getEnclosingElement(), pkg))
+                continue;
+
+            if (member.getKind() == ElementKind.FIELD) {
+                properties.add(property(className, member, false));
+            } else if (member.getKind() == ElementKind.METHOD) {
+                ExecutableElement method = (ExecutableElement) member;
+                String name = method.getSimpleName().toString();
+                if (!name.startsWith("get") || !method.getParameters().isEmpty() || name.equals("getClass") ||
+                        method.getReturnType().getKind() == TypeKind.VOID)
+                    continue;
+                properties.add(property(className, member, true));
+            }
+        }
+
+        String fullName = pkg.isUnnamed() ? simpleName : packageName + "." + simpleName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(fullName, type).openWriter()) {
+            if (!pkg.isUnnamed())
+                writer.write("package " + packageName + ";\n\n");
+            writer.write("/**\n" +
+                    " * Comparator of " + className + ", generated by " + DeepComparableProcessor.class.getName() + "\n" +
+                    " */\n" +
+                    "@javax.annotation.processing.Generated(\"" + DeepComparableProcessor.class.getName() + "\")\n" +
+                    "@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n" +
+                    "public final class " + simpleName + " implements npakudin.GeneratedComparator {\n" +
+                    "\n" +
+                    "    @Override\n" +
+                    "    public npakudin.Property[] getProperties() {\n" +
+                    "        return new npakudin.Property[] {\n");
+            for (String property : properties)
+                writer.write(property);
+            writer.write("        };\n" +
+                    "    }\n" +
+                    "}\n");
+        }
+    }
+
+    /**
+     * Source of anonymous Property, primitive ones are read without boxing.
+     * Exceptions of getters are wrapped as by reflective properties.
+     */
+    private String property(String className, Element member, boolean isGetter) {
+        String name = member.getSimpleName().toString();
+        TypeMirror type = isGetter ? ((ExecutableElement) member).getReturnType() : member.asType();
+        String access = (member.getModifiers().contains(Modifier.STATIC) ? className : "((" + className + ") owner)") +
+                "." + name + (isGetter ? "()" : "");
+
+        String header;
+        String getter;
+        if (type.getKind().isPrimitive()) {
+            String primitive = type.getKind().name().toLowerCase();
+            String capitalized = Character.toUpperCase(primitive.charAt(0)) + primitive.substring(1);
+            header = "new npakudin.Property.Of" + capitalized + "(\"" + name + "\")";
+            getter = "public " + primitive + " get" + capitalized + "(Object owner)";
+        } else {
+            header = "new npakudin.Property(\"" + name + "\", " + classLiteral(type) + ")";
+            getter = "public Object get(Object owner)";
+        }
+
+        String body = isGetter ?
+                "                    try {\n" +
+                "                        return " + access + ";\n" +
+                "                    } catch (Throwable e) {\n" +
+                "                        throw wrap(e);\n" +
+                "                    }\n" :
+                "                    return " + access + ";\n";
+
+        return "            " + header + " {\n" +
+                "                @Override\n" +
+                "                " + getter + " {\n" +
+                body +
+                "                }\n" +
+                "            },\n";
+    }
+
+    /**
+     * Literal of erased type, e.g. java.util.List.class for List&lt;T&gt;
+     */
+    private String classLiteral(TypeMirror type) {
+        return typeName(type) + ".class";
+    }
+
+    private String typeName(TypeMirror type) {
+        if (type.getKind().isPrimitive())
+            return type.getKind().name().toLowerCase();
+        if (type.getKind() == TypeKind.ARRAY)
+            return typeName(((ArrayType) type).getComponentType()) + "[]";
+        if (type.getKind() == TypeKind.DECLARED)
+            return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+        // type variables, intersections etc.
+        return typeName(processingEnv.getTypeUtils().erasure(type));
+    }
+
+    /**
+     * Class declaring a member is accessible from the package if it and all its enclosing classes are public,
+     * or they are in the same package and are not private
+     */
+    private static boolean isAccessible(Element declaring, PackageElement pkg) {
+        for (Element e = declaring; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            Set<Modifier> modifiers = e.getModifiers();
+            if (modifiers.contains(Modifier.PUBLIC))
+                continue;
+            if (modifiers.contains(Modifier.PRIVATE) || !isInPackage(e, pkg))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isInPackage(Element element, PackageElement pkg) {
+        Element e = element;
+        while (!(e instanceof PackageElement))
+            e = e.getEnclosingElement();
+        return e.equals(pkg);
+    }
+}
@@ -0,0 +1,189 @@
+package npakudin.processor;
+
+import npakudin.ClassDescriptor;
+import npakudin.DeepComparer;
+import npakudin.Property;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+public class TestDeepComparableProcessor {
+
+    private static final String BASE = "package sample;\n" +
+            "public class Base {\n" +
+            "    public String name;\n" +
+            "    public String getName() { return name; }\n" +
+            "}\n";
+
+    private static final String POINT = "package sample;\n" +
+            "import java.util.List;\n" +
+            "@npakudin.DeepComparable\n" +
+            "public class Point<T> extends Base {\n" +
+            "    public int x;\n" +
+            "    public double y;\n" +
+            "    public List<T> tags;\n" +
+            "    private long hidden;\n" +
+            "    public Point(int x, double y, long hidden) { this.x = x; this.y = y; this.hidden = hidden; }\n" +
+            "    public boolean getVisible() { return x >= 0; }\n" +
+            "    public char[] getChars() { return String.valueOf(x).toCharArray(); }\n" +
+            "    public T getFirst() throws java.io.IOException {\n" +
+            "        if (x == 42) throw new java.io.IOException(\"42\");\n" +
+            "        return tags == null || tags.isEmpty() ? null : tags.get(0);\n" +
+            "    }\n" +
+            "    public int getX(int scale) { return x * scale; }\n" +
+            "}\n";
+
+    private static final String INNER = "package sample;\n" +
+            "@npakudin.DeepComparable\n" +
+            "public class Outer {\n" +
+            "    @npakudin.DeepComparable\n" +
+            "    public static class Inner {\n" +
+            "        public Point<String> point;\n" +
+            "    }\n" +
+            "}\n";
+
+    private static File output;
+    private static ClassLoader loader;
+
+    @BeforeClass
+    public static void compile() throws IOException {
+        output = Files.createTempDirectory("deepComparable").toFile();
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = compile(output,
+                source("sample.Base", BASE), source("sample.Point", POINT), source("sample.Outer", INNER));
+        Assert.assertTrue(diagnostics.toString(), diagnostics.isEmpty());
+        loader = new URLClassLoader(new URL[] { output.toURI().toURL() }, TestDeepComparableProcessor.class.getClassLoader());
+    }
+
+    private static JavaFileObject source(String className, final String code) {
+        return new SimpleJavaFileObject(new File(className.replace('.', '/') + ".java").toURI(), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+    private static List<Diagnostic<? extends JavaFileObject>> compile(File output, JavaFileObject... sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        List<String> options = Arrays.asList("-d", output.getPath(), "-s", output.getPath(),
+                "-classpath", System.getProperty("java.class.path"));
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null, Arrays.asList(sources));
+        task.setProcessors(Collections.singletonList(new DeepComparableProcessor()));
+        task.call();
+        return diagnostics.getDiagnostics();
+    }
+
+    private static Object point(int x, double y, long hidden, String name, String... tags) throws Exception {
+        Object res = loader.loadClass("sample.Point").getConstructor(int.class, double.class, long.class).newInstance(x, y, hidden);
+        res.getClass().getField("name").set(res, name);
+        res.getClass().getField("tags").set(res, Arrays.asList(tags));
+        return res;
+    }
+
+    private static Set<String> names(Property[] properties) {
+        Set<String> res = new TreeSet<String>();
+        for (Property property : properties)
+            res.add(property.getName());
+        return res;
+    }
+
+    @Test
+    public void generatesSources() throws IOException {
+        String source = new String(Files.readAllBytes(new File(output, "sample/Point_DeepComparator.java").toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(source, source.contains("new npakudin.Property.OfInt(\"x\")"));
+        Assert.assertTrue(source, source.contains("new npakudin.Property(\"tags\", java.util.List.class)"));
+        Assert.assertTrue(source, source.contains("new npakudin.Property(\"getFirst\", java.lang.Object.class)"));
+        Assert.assertTrue(source, source.contains("new npakudin.Property(\"getChars\", char[].class)"));
+        Assert.assertFalse(source, source.contains("hidden"));
+        Assert.assertFalse(source, source.contains("getClass"));
+
+        Assert.assertTrue(new File(output, "sample/Outer$Inner_DeepComparator.java").exists());
+        // no properties at all
+        Assert.assertTrue(new File(output, "sample/Outer_DeepComparator.java").exists());
+    }
+
+    @Test
+    public void generatedPropertiesAreUsed() throws Exception {
+        Class<?> clazz = loader.loadClass("sample.Point");
+        Property[] properties = ClassDescriptor.forClass(clazz).getProperties();
+        Assert.assertEquals(new TreeSet<String>(Arrays.asList("x", "y", "tags", "name", "getName", "getVisible", "getChars", "getFirst")),
+                names(properties));
+
+        for (Property property : properties)
+            Assert.assertTrue(property.getName(), property.getClass().getName().startsWith("sample.Point_DeepComparator$"));
+
+        Class<?> inner = loader.loadClass("sample.Outer$Inner");
+        Assert.assertTrue(ClassDescriptor.forClass(inner).getProperties()[0].getClass().getName()
+                .startsWith("sample.Outer$Inner_DeepComparator$"));
+    }
+
+    @Test
+    public void primitivesAreNotBoxed() throws Exception {
+        Class<?> clazz = loader.loadClass("sample.Point");
+        for (Property property : ClassDescriptor.forClass(clazz).getProperties()) {
+            if (property.getName().equals("x")) {
+                Assert.assertTrue(property instanceof Property.OfInt);
+                Assert.assertEquals(5, ((Property.OfInt) property).getInt(point(5, 0, 0, null)));
+            }
+            if (property.getName().equals("getVisible"))
+                Assert.assertTrue(property instanceof Property.OfBoolean);
+        }
+    }
+
+    @Test
+    public void comparesAsReflection() throws Exception {
+        DeepComparer comparer = new DeepComparer();
+        Assert.assertNull(comparer.findDifference(point(1, 2, 3, "a", "t"), point(1, 2, 4, "a", "t")));
+
+        String difference = comparer.findDifference(point(1, 2, 3, "a", "t"), point(1, 2, 3, "a", "u"));
+        Assert.assertTrue(difference, difference.startsWith("$root.tags.[0]; "));
+
+        difference = comparer.findDifference(point(1, 2.5, 3, "a"), point(1, 2, 3, "a"));
+        Assert.assertTrue(difference, difference.startsWith("$root.y; "));
+    }
+
+    @Test
+    public void exceptionsOfGettersAreWrapped() throws Exception {
+        try {
+            new DeepComparer().findDifference(point(42, 0, 0, null), point(42, 0, 0, null));
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void privateClassIsError() throws IOException {
+        String code = "package sample;\n" +
+                "public class Holder {\n" +
+                "    @npakudin.DeepComparable\n" +
+                "    private static class Hidden {}\n" +
+                "}\n";
+        File dir = Files.createTempDirectory("deepComparable").toFile();
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = compile(dir, source("sample.Holder", code));
+        Assert.assertEquals(1, diagnostics.size());
+        Assert.assertEquals(Diagnostic.Kind.ERROR, diagnostics.get(0).getKind());
+        Assert.assertEquals("Class Hidden must not be private.", diagnostics.get(0).getMessage(Locale.ROOT));
+    }
+
+    @Test
+    public void interfaceIsError() throws IOException {
+        String code = "package sample;\n" +
+                "@npakudin.DeepComparable\n" +
+                "public interface Shape {}\n";
+        File dir = Files.createTempDirectory("deepComparable").toFile();
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = compile(dir, source("sample.Shape", code));
+        Assert.assertEquals(1, diagnostics.size());
+        Assert.assertEquals("@DeepComparable is applicable to classes only.", diagnostics.get(0).getMessage(Locale.ROOT));
+    }
+}